@@ -1,45 +1,600 @@
 package fr.univcotedazur.repositories;
 
-import java.util.HashMap;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
 
 public class BasicRepositoryImpl<T, ID> implements Repository<T, ID> {
 
-    private HashMap<ID,T> storage = new HashMap<>();
+    private static final long NO_SNAPSHOT = Long.MAX_VALUE;
+
+    // thread-safe map as entities are also saved from kitchen threads, holding the entities
+    // themselves, or their Versions while snapshots may read former ones
+    private final Map<ID, Object> storage;
+
+    // Snapshots see the versions written up to the epoch at which they were opened. A writer
+    // counts itself in the epoch it read, on a stripe of its own, without any lock: opening a
+    // snapshot moves to the next epoch, then waits for the writers still counted in the former
+    // one, so that no version of an epoch is published once a snapshot of that epoch is open.
+    // Epochs alternate between two counters per stripe, the writers of the new epoch never
+    // holding back the opening snapshot.
+    private static final int WRITER_STRIPES = 32;
+    private static final int PADDING = 8; // longs, a cache line per counter
+    private final AtomicLongArray writers = new AtomicLongArray(WRITER_STRIPES * 2 * PADDING);
+    private volatile long epoch;
+    private volatile boolean clearing; // writers wait until the repository is cleared
+    private final Object snapshotLock = new Object(); // opening, closing snapshots and clearing
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>(); // epoch -> count, guarded by the snapshot lock
+    private volatile long oldestSnapshot = NO_SNAPSHOT;
+    private final Queue<ID> versioned = new ConcurrentLinkedQueue<>(); // ids holding Versions
+    private final AtomicInteger deletions = new AtomicInteger(); // Versions of deleted entities
+
+    // optional expiry of the entities, null when they are kept forever
+    private final RetentionPolicy<? super T> retention;
+    private final Clock clock;
+    // Sharded by id, each shard being locked around the writes of its ids and their scheduling,
+    // so that the writers of different entities seldom wait for each other nor for an expiry
+    private static final int EXPIRY_SHARDS = 16;
+    private final List<TimingWheel<ID>> expirations;
+    private volatile long nextTickMillis = Long.MAX_VALUE;
+
+    private final List<RepositoryListener<T, ID>> listeners = new CopyOnWriteArrayList<>();
+    // Mutations queued within their atomic update, so in their order for a given id, then told
+    // to the listeners once the update is done, by one writer at a time
+    private final Queue<Mutation<T, ID>> notifications = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean notifying = new AtomicBoolean();
+
+    public BasicRepositoryImpl() {
+        this(null, null, null);
+    }
+
+    // Entities are deleted once their retention, evaluated at each save, has elapsed.
+    // Expired entities are collected by the operations of the repository, tick by tick.
+    public BasicRepositoryImpl(RetentionPolicy<? super T> retention, Clock clock, Duration tick) {
+        this(new ConcurrentHashMap<>(), retention, clock, tick);
+    }
+
+    // Entities stored in the given thread-safe map, e.g. a UuidHashMap, whose compute methods are atomic
+    public BasicRepositoryImpl(Map<ID, Object> storage, RetentionPolicy<? super T> retention, Clock clock, Duration tick) {
+        this.storage = storage;
+        this.retention = retention;
+        this.clock = retention == null ? null : clock;
+        if (retention == null) {
+            this.expirations = null;
+        } else {
+            List<TimingWheel<ID>> shards = new ArrayList<>(EXPIRY_SHARDS);
+            for (int i = 0; i < EXPIRY_SHARDS; i++)
+                shards.add(new TimingWheel<>(tick.toMillis(), clock.millis()));
+            this.expirations = List.copyOf(shards);
+            this.nextTickMillis = shards.get(0).nextTickMillis();
+        }
+    }
+
+    public void addListener(RepositoryListener<T, ID> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RepositoryListener<T, ID> listener) {
+        listeners.remove(listener);
+    }
 
     @Override
     public long count() {
-        return storage.size();
+        expireIfDue();
+        return storage.size() - deletions.get();
     }
 
     @Override
     public void deleteAll() {
-        storage.clear();
+        // the schedules cleared first: a write meanwhile is either cleared along with its schedule,
+        // or scheduled afterwards, at worst leaving the schedule of a deleted entity, deleting nothing
+        if (expirations != null) {
+            for (TimingWheel<ID> shard : expirations) {
+                synchronized (shard) {
+                    shard.clear();
+                }
+            }
+        }
+        clear();
     }
 
     @Override
     public void deleteById(ID id) {
-        storage.remove(id);
+        if (expirations == null) {
+            remove(id);
+            return;
+        }
+        TimingWheel<ID> shard = expirations(id);
+        synchronized (shard) {
+            remove(id);
+            shard.cancel(id);
+        }
     }
 
     @Override
     public boolean existsById(ID id) {
-        return storage.containsKey(id);
+        expireIfDue();
+        return latest(storage.get(id)) != null;
     }
 
     @Override
     public Iterable<T> findAll() {
-        return storage.values();
+        expireIfDue();
+        return () -> new Entities(NO_SNAPSHOT);
     }
 
     @Override
     public Optional<T> findById(ID id) {
-        return Optional.ofNullable(storage.get(id));
+        expireIfDue();
+        return Optional.ofNullable(latest(storage.get(id)));
+    }
+
+    // Consistent view of the repository as of now, which its reader can scan for as long as it
+    // likes, without holding back the writers. The versions it needs are kept along with the
+    // entities until it is closed.
+    public RepositorySnapshot<T, ID> snapshot() {
+        synchronized (snapshotLock) {
+            long snapshotEpoch = epoch;
+            openSnapshots.merge(snapshotEpoch, 1, Integer::sum);
+            oldestSnapshot = openSnapshots.firstKey();
+            epoch = snapshotEpoch + 1;
+            awaitWriters(snapshotEpoch);
+            return new Snapshot(snapshotEpoch);
+        }
+    }
+
+    // Number of entities holding former versions for the snapshots, or waiting to be reclaimed
+    public int versioned() {
+        return versioned.size();
     }
 
     @Override
     public <S extends T> void save(S entity, ID id) {
-        storage.put(id,entity);
+        if (expirations == null) {
+            put(id, entity);
+            return;
+        }
+        expireIfDue();
+        TimingWheel<ID> shard = expirations(id);
+        synchronized (shard) {
+            put(id, entity);
+            retain(shard, entity, id);
+        }
+    }
+
+    @Override
+    public Optional<T> update(ID id, UnaryOperator<T> transformation) {
+        if (expirations == null)
+            return Optional.ofNullable(transform(id, transformation));
+        expireIfDue();
+        TimingWheel<ID> shard = expirations(id);
+        synchronized (shard) {
+            T updated = transform(id, transformation);
+            if (updated != null)
+                retain(shard, updated, id);
+            return Optional.ofNullable(updated);
+        }
+    }
+
+    // Deletes the entities whose retention has elapsed, also done by the other operations.
+    public void expire() {
+        if (expirations == null)
+            return;
+        long now = clock.millis();
+        long nextTick = Long.MAX_VALUE;
+        for (TimingWheel<ID> shard : expirations) {
+            synchronized (shard) {
+                shard.advance(now, this::remove);
+                nextTick = Math.min(nextTick, shard.nextTickMillis());
+            }
+        }
+        nextTickMillis = nextTick;
+    }
+
+    // Number of entities waiting for their expiry
+    public int expiring() {
+        if (expirations == null)
+            return 0;
+        int expiring = 0;
+        for (TimingWheel<ID> shard : expirations) {
+            synchronized (shard) {
+                expiring += shard.size();
+            }
+        }
+        return expiring;
+    }
+
+    // a single volatile read and clock read while no tick is due
+    private void expireIfDue() {
+        if (clock != null && clock.millis() >= nextTickMillis)
+            expire();
+    }
+
+    private TimingWheel<ID> expirations(ID id) {
+        int hash = id.hashCode();
+        return expirations.get((hash ^ (hash >>> 16)) & (EXPIRY_SHARDS - 1));
+    }
+
+    // with the lock of the shard of the id held
+    private void retain(TimingWheel<ID> shard, T entity, ID id) {
+        Duration kept = retention.retention(entity);
+        if (kept == null) {
+            shard.cancel(id);
+        } else if (!shard.schedule(id, clock.millis() + kept.toMillis())) {
+            remove(id); // already expired
+        }
+    }
+
+    private void put(ID id, T entity) {
+        write(id, entity);
+    }
+
+    private T transform(ID id, UnaryOperator<T> transformation) {
+        return rewrite(id, transformation);
+    }
+
+    private void remove(ID id) {
+        write(id, null);
+    }
+
+    // Excludes the writers, of both epochs, so that no mutation is notified after the listeners
+    // were told that the repository was cleared
+    private void clear() {
+        synchronized (snapshotLock) {
+            clearing = true;
+            try {
+                awaitWriters(epoch - 1);
+                awaitWriters(epoch);
+                for (Map.Entry<ID, Object> entry : storage.entrySet()) {
+                    T former = latest(entry.getValue());
+                    if (former != null)
+                        changed(entry.getKey(), former, null);
+                }
+                if (oldestSnapshot == NO_SNAPSHOT) {
+                    storage.clear();
+                    versioned.clear();
+                    deletions.set(0);
+                } else {
+                    for (ID id : storage.keySet())
+                        storage.compute(id, (key, current) -> next(key, current, null, epoch, oldestSnapshot));
+                }
+                if (!listeners.isEmpty())
+                    notifications.add(new Mutation<>(null, null, true));
+            } finally {
+                clearing = false;
+            }
+        }
+        notifyListeners();
+    }
+
+    // Called within the atomic update of an entity, former or entity being null when it is
+    // created or deleted, deleteAll included, so that indexes of the subclasses follow the
+    // storage without any lock of their own. To be kept short, and without using the repository.
+    protected void changed(ID id, T former, T entity) {
+    }
+
+    // Within the atomic update of the entity: the indexes follow it, the listeners are told later
+    private void mutated(ID id, T former, T entity) {
+        changed(id, former, entity);
+        if (!listeners.isEmpty() && (entity != null || former != null))
+            notifications.add(new Mutation<>(id, entity, false));
+    }
+
+    // Listeners are notified once the update of the entity is done, in the order of its mutations:
+    // the writer finding nobody notifying tells them the queued mutations, its own included, the
+    // others leaving theirs to it rather than waiting
+    private void notifyListeners() {
+        while (!notifications.isEmpty() && notifying.compareAndSet(false, true)) {
+            try {
+                Mutation<T, ID> mutation;
+                while ((mutation = notifications.poll()) != null) {
+                    for (RepositoryListener<T, ID> listener : listeners) {
+                        if (mutation.cleared)
+                            listener.cleared();
+                        else if (mutation.entity != null)
+                            listener.saved(mutation.id, mutation.entity);
+                        else
+                            listener.deleted(mutation.id);
+                    }
+                }
+            } finally {
+                notifying.set(false);
+            }
+        }
+    }
+
+    // Stores the entity, null deleting it, and returns the former one
+    @SuppressWarnings("unchecked")
+    private T write(ID id, T entity) {
+        Object[] former = new Object[1];
+        int stripe = writerStripe();
+        long writeEpoch = enter(stripe);
+        try {
+            storage.compute(id, (key, current) -> {
+                T formerEntity = latest(current);
+                former[0] = formerEntity;
+                Object result = next(key, current, entity, writeEpoch, oldestSnapshot);
+                mutated(key, formerEntity, entity);
+                return result;
+            });
+        } finally {
+            exit(stripe, writeEpoch);
+        }
+        notifyListeners();
+        return (T) former[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T rewrite(ID id, UnaryOperator<T> transformation) {
+        Object[] updated = new Object[1];
+        int stripe = writerStripe();
+        long writeEpoch = enter(stripe);
+        try {
+            storage.computeIfPresent(id, (key, current) -> {
+                T entity = latest(current);
+                if (entity == null)
+                    return current; // deleted, only kept for the snapshots
+                T transformed = transformation.apply(entity);
+                updated[0] = transformed;
+                Object result = next(key, current, transformed, writeEpoch, oldestSnapshot);
+                mutated(key, entity, transformed);
+                return result;
+            });
+        } finally {
+            exit(stripe, writeEpoch);
+        }
+        notifyListeners();
+        return (T) updated[0];
+    }
+
+    // Counts the writer in the current epoch, once the repository is not being cleared, and
+    // returns the epoch. The epoch read again once counted tells that no snapshot of it was
+    // opened meanwhile, which would otherwise not wait for the writer.
+    private long enter(int stripe) {
+        while (true) {
+            long writeEpoch = epoch;
+            int counter = counter(stripe, writeEpoch);
+            writers.incrementAndGet(counter);
+            if (writeEpoch == epoch && !clearing)
+                return writeEpoch;
+            writers.decrementAndGet(counter);
+            while (clearing)
+                Thread.onSpinWait();
+        }
+    }
+
+    private void exit(int stripe, long writeEpoch) {
+        writers.decrementAndGet(counter(stripe, writeEpoch));
+    }
+
+    // Waits for the writers counted in the given epoch, which are all within an update
+    private void awaitWriters(long writeEpoch) {
+        for (int stripe = 0; stripe < WRITER_STRIPES; stripe++) {
+            int counter = counter(stripe, writeEpoch);
+            while (writers.get(counter) != 0)
+                Thread.onSpinWait();
+        }
+    }
+
+    private static int writerStripe() {
+        long thread = Thread.currentThread().getId();
+        return (int) (thread ^ (thread >>> 16)) & (WRITER_STRIPES - 1);
+    }
+
+    private static int counter(int stripe, long writeEpoch) {
+        return (stripe * 2 + (int) (writeEpoch & 1)) * PADDING;
+    }
+
+    // What the storage holds once the entity (null when deleted) replaces the current value
+    // within the epoch: the entity itself while no snapshot is open, a Version otherwise
+    private Object next(ID id, Object current, T entity, long writeEpoch, long oldest) {
+        Object result;
+        if (oldest == NO_SNAPSHOT) {
+            result = entity;
+        } else {
+            Version older = current instanceof Version ? (Version) current
+                    : current == null ? null : new Version(current, Long.MIN_VALUE, null);
+            if (older != null && older.epoch == writeEpoch)
+                older = older.older; // seen by no snapshot
+            older = Version.retained(older, oldest);
+            result = entity == null && older == null ? null : new Version(entity, writeEpoch, older);
+        }
+        settled(id, current, result);
+        return result;
+    }
+
+    // Keeps the ids holding Versions queued for their reclamation, and the deletions counted
+    private void settled(ID id, Object current, Object result) {
+        if (result instanceof Version && !(current instanceof Version))
+            versioned.add(id);
+        if (isDeletion(current))
+            deletions.decrementAndGet();
+        if (isDeletion(result))
+            deletions.incrementAndGet();
+    }
+
+    private static boolean isDeletion(Object stored) {
+        return stored instanceof Version && ((Version) stored).entity == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T latest(Object stored) {
+        return (T) (stored instanceof Version ? ((Version) stored).entity : stored);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T visible(Object stored, long snapshotEpoch) {
+        if (snapshotEpoch == NO_SNAPSHOT || !(stored instanceof Version))
+            return latest(stored);
+        for (Version version = (Version) stored; version != null; version = version.older) {
+            if (version.epoch <= snapshotEpoch)
+                return (T) version.entity;
+        }
+        return null;
+    }
+
+    private void release(long snapshotEpoch) {
+        long formerOldest;
+        synchronized (snapshotLock) {
+            formerOldest = oldestSnapshot;
+            openSnapshots.computeIfPresent(snapshotEpoch, (e, count) -> count == 1 ? null : count - 1);
+            oldestSnapshot = openSnapshots.isEmpty() ? NO_SNAPSHOT : openSnapshots.firstKey();
+        }
+        if (oldestSnapshot != formerOldest)
+            reclaim();
+    }
+
+    // Drops the versions that no open snapshot can read any more, done by the closing reader
+    private void reclaim() {
+        for (int pending = versioned.size(); pending > 0; pending--) {
+            ID id = versioned.poll();
+            if (id == null)
+                return;
+            int stripe = writerStripe();
+            long writeEpoch = enter(stripe);
+            try {
+                storage.computeIfPresent(id, (key, current) -> {
+                    if (!(current instanceof Version))
+                        return current;
+                    // read within the update: a version written in a newer epoch sees a snapshot open
+                    Object result = Version.settle((Version) current, oldestSnapshot);
+                    if (isDeletion(current))
+                        deletions.decrementAndGet();
+                    if (isDeletion(result))
+                        deletions.incrementAndGet();
+                    if (result instanceof Version)
+                        versioned.add(key);
+                    return result;
+                });
+            } finally {
+                exit(stripe, writeEpoch);
+            }
+        }
+    }
+
+    // A mutation of an entity, null when deleted, or the repository being cleared
+    private static final class Mutation<T, ID> {
+
+        private final ID id;
+        private final T entity;
+        private final boolean cleared;
+
+        private Mutation(ID id, T entity, boolean cleared) {
+            this.id = id;
+            this.entity = entity;
+            this.cleared = cleared;
+        }
+    }
+
+    // Value of an entity written in an epoch, null when deleted, preceded by its older versions
+    private static final class Version {
+
+        private final Object entity;
+        private final long epoch;
+        private final Version older;
+
+        private Version(Object entity, long epoch, Version older) {
+            this.entity = entity;
+            this.epoch = epoch;
+            this.older = older;
+        }
+
+        // the latest entity itself once every open snapshot sees it, or its versions they may read
+        private static Object settle(Version version, long oldest) {
+            Version retained = retained(version, oldest);
+            return retained != null && retained.older == null && retained.epoch <= oldest ? retained.entity : retained;
+        }
+
+        // the versions that the snapshots of the oldest epoch onwards may read
+        private static Version retained(Version version, long oldest) {
+            if (version == null)
+                return null;
+            if (version.epoch <= oldest) {
+                if (version.entity == null)
+                    return null;
+                return version.older == null ? version : new Version(version.entity, version.epoch, null);
+            }
+            Version older = retained(version.older, oldest);
+            return older == version.older ? version : new Version(version.entity, version.epoch, older);
+        }
+    }
+
+    // The entities visible in an epoch, skipping the deleted ones
+    private final class Entities implements Iterator<T> {
+
+        private final Iterator<Object> stored = storage.values().iterator();
+        private final long snapshotEpoch;
+        private T next;
+
+        private Entities(long snapshotEpoch) {
+            this.snapshotEpoch = snapshotEpoch;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && stored.hasNext())
+                next = visible(stored.next(), snapshotEpoch);
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    private final class Snapshot implements RepositorySnapshot<T, ID> {
+
+        private final long snapshotEpoch;
+        private boolean closed;
+
+        private Snapshot(long snapshotEpoch) {
+            this.snapshotEpoch = snapshotEpoch;
+        }
+
+        @Override
+        public long count() {
+            long count = 0;
+            for (Iterator<T> entities = new Entities(snapshotEpoch); entities.hasNext(); entities.next())
+                count++;
+            return count;
+        }
+
+        @Override
+        public Iterable<T> findAll() {
+            return () -> new Entities(snapshotEpoch);
+        }
+
+        @Override
+        public Optional<T> findById(ID id) {
+            return Optional.ofNullable(visible(storage.get(id), snapshotEpoch));
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed)
+                return;
+            closed = true;
+            release(snapshotEpoch);
+        }
     }
 
 }
@@ -1,6 +1,7 @@
 package fr.univcotedazur.repositories;
 
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 public interface Repository <T, ID> {
 
@@ -25,4 +26,7 @@ public interface Repository <T, ID> {
     // Saves a given entity through its id.
     <S extends T> void save(S entity, ID id);
 
+    // Atomically replaces the entity with the given id by its transformation, if present.
+    Optional<T> update(ID id, UnaryOperator<T> transformation);
+
 }
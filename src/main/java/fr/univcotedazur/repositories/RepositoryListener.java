@@ -0,0 +1,17 @@
+package fr.univcotedazur.repositories;
+
+// Notified of the mutations of a repository, in their order for a given id, once the atomic
+// update of the entity is done, one mutation at a time: to be kept short, as the writer
+// notifying may be telling the mutations of others
+public interface RepositoryListener<T, ID> {
+
+    // The entity was saved or updated, expiry included.
+    void saved(ID id, T entity);
+
+    // The entity was deleted, expiry included.
+    void deleted(ID id);
+
+    // All entities were deleted.
+    void cleared();
+
+}
@@ -0,0 +1,21 @@
+package fr.univcotedazur.repositories;
+
+import java.util.Optional;
+
+// Point-in-time view of a repository, unaffected by the later mutations, to be closed once read
+public interface RepositorySnapshot<T, ID> extends AutoCloseable {
+
+    // Returns the number of entities at the time of the snapshot, by a scan.
+    long count();
+
+    // Returns the entities at the time of the snapshot.
+    Iterable<T> findAll();
+
+    // Retrieves an entity as it was at the time of the snapshot.
+    Optional<T> findById(ID id);
+
+    // Lets the repository reclaim the versions kept for the snapshot.
+    @Override
+    void close();
+
+}
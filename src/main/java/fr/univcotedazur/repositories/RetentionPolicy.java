@@ -0,0 +1,11 @@
+package fr.univcotedazur.repositories;
+
+import java.time.Duration;
+
+@FunctionalInterface
+public interface RetentionPolicy<T> {
+
+    // How long the entity is kept once saved in this state, or null to keep it forever.
+    Duration retention(T entity);
+
+}
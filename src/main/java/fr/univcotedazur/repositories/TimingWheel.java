@@ -0,0 +1,177 @@
+package fr.univcotedazur.repositories;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of keys expiring at a deadline. Level k has 64 buckets of
+ * 64^k ticks each; a key sits in the coarsest level its remaining delay needs, and the
+ * buckets of a level are cascaded down to finer levels when the time reaches them.
+ * Scheduling and cancelling are O(1), and advancing the time only costs the expired keys,
+ * the cascaded ones and the non-empty buckets traversed. Not thread-safe.
+ */
+public class TimingWheel<K> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    private final long tickMillis;
+
+    private final Node<K>[][] buckets;
+
+    private final int[] levelSizes = new int[LEVELS];
+
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        this.tickMillis = tickMillis;
+        this.buckets = new Node[LEVELS][SLOTS];
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Time in millis when the next tick is due
+    public long nextTickMillis() {
+        return (currentTick + 1) * tickMillis;
+    }
+
+    // (Re)schedules the key, returns false if the deadline has already passed.
+    // Keys expire at the first tick at or after their deadline, never before.
+    public boolean schedule(K key, long deadlineMillis) {
+        cancel(key);
+        long expiryTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        if (expiryTick <= currentTick)
+            return false;
+        Node<K> node = new Node<>(key, expiryTick);
+        nodes.put(key, node);
+        insert(node);
+        return true;
+    }
+
+    public boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null)
+            return false;
+        unlink(node);
+        return true;
+    }
+
+    public void clear() {
+        for (Node<K>[] level : buckets)
+            Arrays.fill(level, null);
+        Arrays.fill(levelSizes, 0);
+        nodes.clear();
+    }
+
+    // Moves the time forward, giving the keys that expired on the way
+    public void advance(long nowMillis, Consumer<? super K> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            int lowest = lowestNonEmptyLevel();
+            if (lowest < 0) {
+                currentTick = targetTick;
+                return;
+            }
+            // the finer levels are empty: jump to the next bucket boundary of the lowest one
+            long next = ((currentTick >>> (BITS * lowest)) + 1) << (BITS * lowest);
+            if (next > targetTick || next <= currentTick) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick = next;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0)
+                    cascade(level, expired);
+            }
+            Node<K> node = detach(0, (int) (currentTick & MASK));
+            while (node != null) {
+                Node<K> following = node.next;
+                nodes.remove(node.key);
+                expired.accept(node.key);
+                node = following;
+            }
+        }
+    }
+
+    private void cascade(int level, Consumer<? super K> expired) {
+        Node<K> node = detach(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+        while (node != null) {
+            Node<K> following = node.next;
+            if (node.expiryTick <= currentTick) {
+                nodes.remove(node.key);
+                expired.accept(node.key);
+            } else {
+                insert(node);
+            }
+            node = following;
+        }
+    }
+
+    private void insert(Node<K> node) {
+        long delay = node.expiryTick - currentTick;
+        int level = (63 - Long.numberOfLeadingZeros(delay)) / BITS;
+        int slot = (int) ((node.expiryTick >>> (BITS * level)) & MASK);
+        node.level = level;
+        node.slot = slot;
+        node.prev = null;
+        node.next = buckets[level][slot];
+        if (node.next != null)
+            node.next.prev = node;
+        buckets[level][slot] = node;
+        levelSizes[level]++;
+    }
+
+    private void unlink(Node<K> node) {
+        if (node.prev != null)
+            node.prev.next = node.next;
+        else
+            buckets[node.level][node.slot] = node.next;
+        if (node.next != null)
+            node.next.prev = node.prev;
+        levelSizes[node.level]--;
+    }
+
+    // empties the bucket and returns its former list
+    private Node<K> detach(int level, int slot) {
+        Node<K> head = buckets[level][slot];
+        buckets[level][slot] = null;
+        for (Node<K> node = head; node != null; node = node.next)
+            levelSizes[level]--;
+        return head;
+    }
+
+    private int lowestNonEmptyLevel() {
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelSizes[level] > 0)
+                return level;
+        }
+        return -1;
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private final long expiryTick;
+        private int level;
+        private int slot;
+        private Node<K> prev;
+        private Node<K> next;
+
+        private Node(K key, long expiryTick) {
+            this.key = key;
+            this.expiryTick = expiryTick;
+        }
+    }
+
+}
@@ -0,0 +1,600 @@
+package fr.univcotedazur.repositories;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+
+/**
+ * Map keyed by UUIDs kept as their two longs, for repositories of millions of entities: no
+ * UUID object nor node per entry, only the 16 bytes of the key, in a long[] on the heap or in
+ * a direct buffer off the heap, and a value reference per slot.
+ * Open addressing with linear probing, removals shifting the following entries back instead
+ * of leaving tombstones. The table grows incrementally: a table twice as large takes the
+ * writes, each of them moving a few entries of the former table, which lookups still probe
+ * until it is emptied, so that no write pays for a whole rehash.
+ * Writes are serialized by a lock; reads are optimistic, retried under the lock when a write
+ * interleaved. Functions given to the compute methods run under the lock and must not use
+ * the map. Views are copies, made a chunk of slots at a time so that writers are not held
+ * back by a whole scan: a copy seeing entries moved meanwhile, by a removal or a growth, is
+ * made again, and in one go after a few attempts.
+ */
+public final class UuidHashMap<V> extends AbstractMap<UUID, V> implements ConcurrentMap<UUID, V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_HEAP_CAPACITY = 1 << 29; // 2 longs per slot in a single array, of at most 2^30 longs
+    private static final int MAX_OFF_HEAP_CAPACITY = 1 << 26; // 16 bytes per slot in a single buffer, of at most 1 GB
+    private static final double MAX_LOAD = 0.7;
+    private static final int MIGRATION_STEP = 8; // slots of the former table moved per write
+    private static final int COPY_CHUNK = 4096; // slots copied by the views per hold of the read lock
+    private static final int COPY_ATTEMPTS = 3;
+
+    // value left in the former table by an entry moved to the current one
+    private static final Object MOVED = new Object();
+
+    private final boolean offHeap;
+    private final int initialCapacity;
+    private final StampedLock lock = new StampedLock();
+
+    private volatile Table table;
+    private volatile Table former; // being migrated, null otherwise
+    private volatile int size;
+    private int migrated; // next slot of the former table to move, guarded by the write lock
+    private long moves; // entries moved to other slots or tables, guarded by the write lock
+
+    private UuidHashMap(int expectedSize, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.initialCapacity = capacityFor(expectedSize, maxCapacity(offHeap));
+        this.table = new Table(initialCapacity, offHeap);
+    }
+
+    // keys in long arrays
+    public static <V> UuidHashMap<V> onHeap(int expectedSize) {
+        return new UuidHashMap<>(expectedSize, false);
+    }
+
+    // keys in direct buffers, released when the tables are collected
+    public static <V> UuidHashMap<V> offHeap(int expectedSize) {
+        return new UuidHashMap<>(expectedSize, true);
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    // bytes taken by the keys and value references of the tables
+    public long footprint() {
+        long stamp = lock.readLock();
+        try {
+            Table f = former;
+            return table.footprint() + (f == null ? 0 : f.footprint());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!(key instanceof UUID))
+            return null;
+        UUID id = (UUID) key;
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        Object value = lookup(high, low);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = lookup(high, low);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (V) value;
+    }
+
+    @Override
+    public V put(UUID key, V value) {
+        return write(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(UUID key, V value) {
+        return write(key, value, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (!(key instanceof UUID))
+            return null;
+        UUID id = (UUID) key;
+        long stamp = lock.writeLock();
+        try {
+            return (V) delete(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof UUID) || value == null)
+            return false;
+        UUID id = (UUID) key;
+        long stamp = lock.writeLock();
+        try {
+            if (!value.equals(lookup(id.getMostSignificantBits(), id.getLeastSignificantBits())))
+                return false;
+            delete(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V replace(UUID key, V value) {
+        Objects.requireNonNull(value);
+        long stamp = lock.writeLock();
+        try {
+            Object current = lookup(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            if (current != null)
+                store(key.getMostSignificantBits(), key.getLeastSignificantBits(), value, false);
+            return (V) current;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(UUID key, V oldValue, V newValue) {
+        Objects.requireNonNull(newValue);
+        long stamp = lock.writeLock();
+        try {
+            Object current = lookup(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            if (current == null || !current.equals(oldValue))
+                return false;
+            store(key.getMostSignificantBits(), key.getLeastSignificantBits(), newValue, false);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V computeIfPresent(UUID key, BiFunction<? super UUID, ? super V, ? extends V> remapping) {
+        long high = key.getMostSignificantBits();
+        long low = key.getLeastSignificantBits();
+        long stamp = lock.writeLock();
+        try {
+            V current = (V) lookup(high, low);
+            if (current == null)
+                return null;
+            V updated = remapping.apply(key, current);
+            if (updated == null)
+                delete(high, low);
+            else
+                store(high, low, updated, false);
+            return updated;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V compute(UUID key, BiFunction<? super UUID, ? super V, ? extends V> remapping) {
+        long high = key.getMostSignificantBits();
+        long low = key.getLeastSignificantBits();
+        long stamp = lock.writeLock();
+        try {
+            V current = (V) lookup(high, low);
+            V updated = remapping.apply(key, current);
+            if (updated != null)
+                store(high, low, updated, false);
+            else if (current != null)
+                delete(high, low);
+            return updated;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(initialCapacity, offHeap);
+            former = null;
+            size = 0;
+            moves++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>(size);
+        forEachEntry(new Copy() {
+            public void add(long high, long low, Object value) {
+                values.add((V) value);
+            }
+
+            public void restart() {
+                values.clear();
+            }
+        });
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<Map.Entry<UUID, V>> entrySet() {
+        Set<Map.Entry<UUID, V>> entries = new LinkedHashSet<>(size * 2);
+        forEachEntry(new Copy() {
+            public void add(long high, long low, Object value) {
+                entries.add(new SimpleImmutableEntry<>(new UUID(high, low), (V) value));
+            }
+
+            public void restart() {
+                entries.clear();
+            }
+        });
+        return Collections.unmodifiableSet(entries);
+    }
+
+    private interface Copy {
+        void add(long high, long low, Object value);
+
+        void restart();
+    }
+
+    private void forEachEntry(Copy copy) {
+        for (int attempt = 0; attempt < COPY_ATTEMPTS; attempt++) {
+            if (attempt > 0)
+                copy.restart();
+            if (copyInChunks(copy))
+                return;
+        }
+        copy.restart();
+        long stamp = lock.readLock();
+        try {
+            table.forEach(0, Integer.MAX_VALUE, copy);
+            Table f = former;
+            if (f != null)
+                f.forEach(0, Integer.MAX_VALUE, copy);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // the slots of the current table then of the former one, false when entries moved meanwhile
+    private boolean copyInChunks(Copy copy) {
+        long startMoves;
+        Table current;
+        Table f;
+        long stamp = lock.readLock();
+        try {
+            startMoves = moves;
+            current = table;
+            f = former;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        int currentSlots = current.values.length;
+        int slots = currentSlots + (f == null ? 0 : f.values.length);
+        for (int from = 0; from < slots; from += COPY_CHUNK) {
+            stamp = lock.readLock();
+            try {
+                if (moves != startMoves)
+                    return false;
+                int to = Math.min(from + COPY_CHUNK, slots);
+                if (from < currentSlots)
+                    current.forEach(from, Math.min(to, currentSlots), copy);
+                if (to > currentSlots)
+                    f.forEach(Math.max(from, currentSlots) - currentSlots, to - currentSlots, copy);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return true;
+    }
+
+    private Object lookup(long high, long low) {
+        Object value = table.get(high, low);
+        Table f = former;
+        if (value == null && f != null) {
+            value = f.get(high, low);
+            if (value == MOVED)
+                value = null;
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V write(UUID key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+        long stamp = lock.writeLock();
+        try {
+            return (V) store(key.getMostSignificantBits(), key.getLeastSignificantBits(), value, onlyIfAbsent);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // under the write lock, returns the previous value
+    private Object store(long high, long low, Object value, boolean onlyIfAbsent) {
+        migrateStep();
+        Table current = table;
+        int slot = current.indexOf(high, low);
+        if (slot >= 0) {
+            Object previous = current.values[slot];
+            if (!onlyIfAbsent)
+                current.values[slot] = value;
+            return previous;
+        }
+        // an entry still in the former table moves to the current one
+        Object previous = null;
+        Table f = former;
+        if (f != null) {
+            int formerSlot = f.indexOf(high, low);
+            if (formerSlot >= 0 && f.values[formerSlot] != MOVED) {
+                previous = f.values[formerSlot];
+                if (onlyIfAbsent)
+                    return previous;
+                f.values[formerSlot] = MOVED;
+                moves++;
+            }
+        }
+        current.insert(high, low, value);
+        if (previous == null)
+            size++;
+        if (current.used > current.threshold)
+            grow();
+        return previous;
+    }
+
+    // under the write lock, returns the removed value
+    private Object delete(long high, long low) {
+        migrateStep();
+        Object previous = table.remove(high, low);
+        Table f = former;
+        if (previous == null && f != null) {
+            int formerSlot = f.indexOf(high, low);
+            if (formerSlot >= 0 && f.values[formerSlot] != MOVED) {
+                previous = f.values[formerSlot];
+                f.values[formerSlot] = MOVED; // keeps the probe sequences of the former table
+            }
+        }
+        if (previous != null) {
+            size--;
+            moves++; // the following entries may have shifted back
+        }
+        return previous;
+    }
+
+    private void grow() {
+        while (former != null)
+            migrateStep();
+        Table current = table;
+        int capacity = grownCapacity(current.values.length, offHeap, size);
+        migrated = 0;
+        moves++;
+        former = current;
+        table = new Table(capacity, offHeap);
+    }
+
+    private void migrateStep() {
+        Table f = former;
+        if (f == null)
+            return;
+        int end = Math.min(migrated + MIGRATION_STEP, f.values.length);
+        for (int slot = migrated; slot < end; slot++) {
+            Object value = f.values[slot];
+            if (value != null && value != MOVED) {
+                table.insert(f.keys.high(slot), f.keys.low(slot), value);
+                f.values[slot] = MOVED;
+                moves++;
+            }
+        }
+        migrated = end;
+        if (end == f.values.length)
+            former = null;
+    }
+
+    static int maxCapacity(boolean offHeap) {
+        return offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_HEAP_CAPACITY;
+    }
+
+    // Capacity of the table replacing a full one, refused beyond the largest table that can be allocated
+    static int grownCapacity(int capacity, boolean offHeap, int size) {
+        if (capacity >= maxCapacity(offHeap))
+            throw new IllegalStateException("UUID map full at " + size + " entries");
+        return capacity * 2;
+    }
+
+    static int capacityFor(int expectedSize, int maxCapacity) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < maxCapacity)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    // the 16 bytes of the keys of a table
+    private interface KeySlots {
+        long high(int slot);
+
+        long low(int slot);
+
+        void set(int slot, long high, long low);
+
+        long footprint();
+    }
+
+    private static final class HeapKeys implements KeySlots {
+        private final long[] keys;
+
+        private HeapKeys(int capacity) {
+            this.keys = new long[2 * capacity];
+        }
+
+        public long high(int slot) {
+            return keys[2 * slot];
+        }
+
+        public long low(int slot) {
+            return keys[2 * slot + 1];
+        }
+
+        public void set(int slot, long high, long low) {
+            keys[2 * slot] = high;
+            keys[2 * slot + 1] = low;
+        }
+
+        public long footprint() {
+            return 16L + 8L * keys.length;
+        }
+    }
+
+    private static final class DirectKeys implements KeySlots {
+        private final ByteBuffer keys;
+
+        private DirectKeys(int capacity) {
+            this.keys = ByteBuffer.allocateDirect(16 * capacity).order(ByteOrder.nativeOrder());
+        }
+
+        public long high(int slot) {
+            return keys.getLong(16 * slot);
+        }
+
+        public long low(int slot) {
+            return keys.getLong(16 * slot + 8);
+        }
+
+        public void set(int slot, long high, long low) {
+            keys.putLong(16 * slot, high);
+            keys.putLong(16 * slot + 8, low);
+        }
+
+        public long footprint() {
+            return keys.capacity();
+        }
+    }
+
+    private static final class Table {
+        private final KeySlots keys;
+        private final Object[] values; // null in the empty slots, whatever their key
+        private final int mask;
+        private final int threshold;
+        private int used; // slots holding a key, guarded by the write lock
+
+        private Table(int capacity, boolean offHeap) {
+            this.keys = offHeap ? new DirectKeys(capacity) : new HeapKeys(capacity);
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            this.threshold = (int) (capacity * MAX_LOAD);
+        }
+
+        private int home(long high, long low) {
+            long hash = high * 0x9E3779B97F4A7C15L ^ low;
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            return (int) hash & mask;
+        }
+
+        // bounded by the capacity, as an optimistic read may see a table being written
+        private int indexOf(long high, long low) {
+            int slot = home(high, low);
+            for (int probes = 0; probes <= mask; probes++) {
+                if (values[slot] == null)
+                    return -1;
+                if (keys.high(slot) == high && keys.low(slot) == low)
+                    return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private Object get(long high, long low) {
+            int slot = indexOf(high, low);
+            return slot < 0 ? null : values[slot];
+        }
+
+        // the key being absent
+        private void insert(long high, long low, Object value) {
+            int slot = home(high, low);
+            while (values[slot] != null)
+                slot = (slot + 1) & mask;
+            keys.set(slot, high, low);
+            values[slot] = value;
+            used++;
+        }
+
+        // backward shift: the following entries of the cluster that may fill the hole move back
+        private Object remove(long high, long low) {
+            int hole = indexOf(high, low);
+            if (hole < 0)
+                return null;
+            Object removed = values[hole];
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (values[slot] == null)
+                    break;
+                int home = home(keys.high(slot), keys.low(slot));
+                // the entry at slot can move to the hole if its home is not within (hole, slot]
+                boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+                if (movable) {
+                    keys.set(hole, keys.high(slot), keys.low(slot));
+                    values[hole] = values[slot];
+                    hole = slot;
+                }
+            }
+            values[hole] = null;
+            used--;
+            return removed;
+        }
+
+        private void forEach(int from, int to, Copy copy) {
+            for (int slot = from; slot < Math.min(to, values.length); slot++) {
+                Object value = values[slot];
+                if (value != null && value != MOVED)
+                    copy.add(keys.high(slot), keys.low(slot), value);
+            }
+        }
+
+        private long footprint() {
+            return keys.footprint() + 16L + 4L * values.length;
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package fr.univcotedazur.repositories;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Storage of the entities of a repository keyed by UUIDs
+public enum UuidStorage {
+
+    // a ConcurrentHashMap, with a UUID key and a node per entry
+    HASH_MAP,
+    // a UuidHashMap whose keys are in long arrays
+    HEAP,
+    // a UuidHashMap whose keys are in direct buffers
+    OFF_HEAP;
+
+    public <T> Map<UUID, T> create(int expectedSize) {
+        switch (this) {
+            case HEAP:
+                return UuidHashMap.onHeap(expectedSize);
+            case OFF_HEAP:
+                return UuidHashMap.offHeap(expectedSize);
+            default:
+                return new ConcurrentHashMap<>(expectedSize);
+        }
+    }
+
+}
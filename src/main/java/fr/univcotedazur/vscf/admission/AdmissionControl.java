@@ -0,0 +1,104 @@
+package fr.univcotedazur.vscf.admission;
+
+import fr.univcotedazur.vscf.exceptions.OverloadedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission of the calls into two lanes, each with its own concurrency limit, so that a slow
+ * bank piling up checkouts never holds back the reads:
+ *   - checkouts, limited by a GradientLimiter following their latency;
+ *   - reads (order tracking, catalog), higher priority: a fixed limit of their own, never
+ *     shrunk by the checkouts.
+ * A call beyond the limit of its lane is refused at once with an OverloadedException, rather
+ * than queued. Admission is done where a call enters the instance (the AdmissionGuard aspect,
+ * or the REST controller before leaving the event loop), once per call.
+ */
+@Component
+public class AdmissionControl {
+
+    public static final String CHECKOUT = "checkout";
+    public static final String READ = "read";
+
+    private final boolean enabled;
+    private final GradientLimiter checkouts;
+    private final GradientLimiter reads;
+    private final AtomicLong checkoutsRejected = new AtomicLong();
+    private final AtomicLong readsRejected = new AtomicLong();
+
+    // whether the current thread already runs an admitted call
+    private static final ThreadLocal<Boolean> ADMITTED = new ThreadLocal<>();
+
+    private static final Permit NO_PERMIT = new Permit(null);
+
+    @Autowired
+    public AdmissionControl(@Value("${vscf.admission.enabled:true}") boolean enabled,
+                            @Value("${vscf.admission.checkout-initial-limit:20}") int checkoutInitialLimit,
+                            @Value("${vscf.admission.checkout-min-limit:2}") int checkoutMinLimit,
+                            @Value("${vscf.admission.checkout-max-limit:200}") int checkoutMaxLimit,
+                            @Value("${vscf.admission.read-limit:256}") int readLimit) {
+        this.enabled = enabled;
+        this.checkouts = new GradientLimiter(checkoutInitialLimit, checkoutMinLimit, checkoutMaxLimit);
+        this.reads = new GradientLimiter(readLimit, readLimit, readLimit);
+    }
+
+    public Permit admitCheckout() {
+        return admit(CHECKOUT, checkouts, checkoutsRejected);
+    }
+
+    public Permit admitRead() {
+        return admit(READ, reads, readsRejected);
+    }
+
+    private Permit admit(String lane, GradientLimiter limiter, AtomicLong rejected) {
+        if (!enabled || admitted())
+            return NO_PERMIT;
+        if (!limiter.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new OverloadedException(lane, limiter.getLimit());
+        }
+        return new Permit(limiter);
+    }
+
+    public static boolean admitted() {
+        return ADMITTED.get() != null;
+    }
+
+    public AdmissionStatus status() {
+        return new AdmissionStatus(enabled, checkouts.getLimit(), checkouts.getInFlight(), checkoutsRejected.get(),
+                checkouts.getLatencyMillis(), reads.getLimit(), reads.getInFlight(), readsRejected.get());
+    }
+
+    // A slot in a lane, to be released once, its latency then adapting the limit
+    public static final class Permit {
+
+        private final GradientLimiter limiter;
+        private final long start = System.nanoTime();
+
+        private Permit(GradientLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        // Runs the call on the current thread without admitting it again
+        public <T> T within(Callable<T> call) throws Exception {
+            if (admitted())
+                return call.call();
+            ADMITTED.set(Boolean.TRUE);
+            try {
+                return call.call();
+            } finally {
+                ADMITTED.remove();
+            }
+        }
+
+        public void release() {
+            if (limiter != null)
+                limiter.release(System.nanoTime() - start);
+        }
+    }
+
+}
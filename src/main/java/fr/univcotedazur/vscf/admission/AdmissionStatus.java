@@ -0,0 +1,68 @@
+package fr.univcotedazur.vscf.admission;
+
+// Snapshot of the admission lanes
+public class AdmissionStatus {
+
+    private boolean enabled;
+
+    private int checkoutLimit;
+
+    private int checkoutsInFlight;
+
+    private long checkoutsRejected;
+
+    private double checkoutLatencyMillis;
+
+    private int readLimit;
+
+    private int readsInFlight;
+
+    private long readsRejected;
+
+    public AdmissionStatus(boolean enabled, int checkoutLimit, int checkoutsInFlight, long checkoutsRejected,
+                           double checkoutLatencyMillis, int readLimit, int readsInFlight, long readsRejected) {
+        this.enabled = enabled;
+        this.checkoutLimit = checkoutLimit;
+        this.checkoutsInFlight = checkoutsInFlight;
+        this.checkoutsRejected = checkoutsRejected;
+        this.checkoutLatencyMillis = checkoutLatencyMillis;
+        this.readLimit = readLimit;
+        this.readsInFlight = readsInFlight;
+        this.readsRejected = readsRejected;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // current adaptive limit of the concurrent checkouts
+    public int getCheckoutLimit() {
+        return checkoutLimit;
+    }
+
+    public int getCheckoutsInFlight() {
+        return checkoutsInFlight;
+    }
+
+    // since startup, refused without being queued
+    public long getCheckoutsRejected() {
+        return checkoutsRejected;
+    }
+
+    // short-term average latency of the admitted checkouts
+    public double getCheckoutLatencyMillis() {
+        return checkoutLatencyMillis;
+    }
+
+    public int getReadLimit() {
+        return readLimit;
+    }
+
+    public int getReadsInFlight() {
+        return readsInFlight;
+    }
+
+    public long getReadsRejected() {
+        return readsRejected;
+    }
+}
@@ -0,0 +1,90 @@
+package fr.univcotedazur.vscf.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit adapted to the observed latency, after the gradient limiters of Netflix's
+ * concurrency-limits: a short-term average of the call latency is compared with the latency
+ * without queueing, the lowest one observed. While the average stays within TOLERANCE times
+ * the latter, the limit grows additively, by about one per round of calls; beyond, it shrinks
+ * in proportion to their gradient, a little at every call. The lowest latency slowly rises
+ * towards the average, so that a lasting slowdown of the calls themselves is eventually taken
+ * as the new normal. A call over the limit is refused at once. A limiter whose minimum and
+ * maximum are equal is a fixed limit.
+ */
+final class GradientLimiter {
+
+    private static final double TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_WEIGHT = 0.1;   // about the last 10 calls
+    private static final double RISE = 0.001;         // of the gap to the average, per call
+    private static final long NOISE_NANOS = 1_000_000; // latencies below are not told apart
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private double shortLatency;
+    private double noLoadLatency;
+
+    GradientLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Concurrency limits must be positive and ordered: "
+                    + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit)
+                return false;
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release(long latencyNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (minLimit != maxLimit)
+            sample(latencyNanos, inFlightBefore);
+    }
+
+    private synchronized void sample(long latencyNanos, int inFlightBefore) {
+        double latency = Math.max(latencyNanos, NOISE_NANOS);
+        if (noLoadLatency == 0) {
+            shortLatency = noLoadLatency = latency;
+            return;
+        }
+        shortLatency += (latency - shortLatency) * SHORT_WEIGHT;
+        noLoadLatency = Math.min(latency, noLoadLatency + (shortLatency - noLoadLatency) * RISE);
+        // a limit not half used tells nothing about a larger one
+        if (inFlightBefore < estimatedLimit / 2)
+            return;
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadLatency / shortLatency));
+        if (gradient < 1.0)
+            estimatedLimit = Math.max(minLimit, estimatedLimit * (1 - SMOOTHING * (1 - gradient)));
+        else
+            estimatedLimit = Math.min(maxLimit, estimatedLimit + 1 / estimatedLimit);
+        limit = (int) estimatedLimit;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    synchronized double getLatencyMillis() {
+        return shortLatency / 1e6;
+    }
+
+}
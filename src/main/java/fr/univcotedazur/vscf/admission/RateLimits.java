@@ -0,0 +1,113 @@
+package fr.univcotedazur.vscf.admission;
+
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits of the operations open to bots, per customer id (cart updates) or per name
+ * (registrations): every key has a token bucket of `calls` tokens, refilled at the rate of
+ * `calls` per `period`, in a single table of TokenBuckets shared by the operations, of
+ * `vscf.ratelimit.buckets` slots whatever the number of keys. An operation without a limit
+ * is not counted.
+ */
+@Component
+@ConditionalOnProperty("vscf.ratelimit.limits")
+public class RateLimits {
+
+    public static final String CART_UPDATE = "CartModifier.update";
+    public static final String REGISTRATION = "CustomerRegistration.register";
+
+    // indexed as below
+    private static final List<String> OPERATIONS = List.of(CART_UPDATE, REGISTRATION);
+    private static final int CART_UPDATE_INDEX = 0;
+    private static final int REGISTRATION_INDEX = 1;
+
+    private final TokenBuckets buckets;
+    private final LongSupplier nanoTime;
+    private final long origin;
+    // by operation index, an interval of 0 being unlimited
+    private final long[] intervals = new long[OPERATIONS.size()];
+    private final int[] bursts = new int[OPERATIONS.size()];
+    private final AtomicLong limited = new AtomicLong();
+
+    // e.g. "CartModifier.update=20/1s,CustomerRegistration.register=3/1m": calls per period
+    @Autowired
+    public RateLimits(@Value("${vscf.ratelimit.limits}") String limits,
+                      @Value("${vscf.ratelimit.buckets:262144}") int buckets) {
+        this(limits, buckets, System::nanoTime);
+    }
+
+    public RateLimits(String limits, int buckets, Clock clock) {
+        this(limits, buckets, () -> nanos(clock.instant()));
+    }
+
+    private RateLimits(String limits, int buckets, LongSupplier nanoTime) {
+        this.buckets = new TokenBuckets(buckets);
+        this.nanoTime = nanoTime;
+        this.origin = nanoTime.getAsLong() - 1; // times from 1
+        for (String limit : limits.split(",")) {
+            if (limit.isBlank())
+                continue;
+            String[] operation = limit.split("=");
+            String[] rate = operation.length == 2 ? operation[1].split("/") : new String[0];
+            if (rate.length != 2 || !OPERATIONS.contains(operation[0].trim()))
+                throw new IllegalArgumentException("Rate limits are Interface.method=calls/period, with the methods "
+                        + OPERATIONS + ", not " + limit);
+            int calls = Integer.parseInt(rate[0].trim());
+            Duration period = DurationStyle.detectAndParse(rate[1].trim());
+            if (calls <= 0 || period.isNegative() || period.isZero())
+                throw new IllegalArgumentException("Rate limits need positive calls and period: " + limit);
+            int index = OPERATIONS.indexOf(operation[0].trim());
+            intervals[index] = Math.max(1, period.toNanos() / calls);
+            bursts[index] = calls;
+        }
+    }
+
+    public void acquireCartUpdate(UUID customerId) {
+        if (intervals[CART_UPDATE_INDEX] != 0)
+            acquire(CART_UPDATE_INDEX, TokenBuckets.hash(customerId.getMostSignificantBits(), customerId.getLeastSignificantBits()), customerId);
+    }
+
+    public void acquireRegistration(String name) {
+        if (intervals[REGISTRATION_INDEX] != 0)
+            acquire(REGISTRATION_INDEX, TokenBuckets.hash(name), name);
+    }
+
+    private void acquire(int index, long keyHash, Object key) {
+        long wait = buckets.tryAcquire(TokenBuckets.mix(keyHash + index), intervals[index], bursts[index],
+                nanoTime.getAsLong() - origin);
+        if (wait > 0) {
+            limited.incrementAndGet();
+            throw new RateLimitedException(OPERATIONS.get(index), String.valueOf(key),
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+        }
+    }
+
+    // calls refused since startup
+    public long limited() {
+        return limited.get();
+    }
+
+    // buckets forgotten before being full, to bound the memory
+    public long evictions() {
+        return buckets.evictions();
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+}
@@ -0,0 +1,120 @@
+package fr.univcotedazur.vscf.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets of many keys in a fixed open-addressing table of two longs per slot, without
+ * locks: the 64-bit hash of the key, and the bucket itself as its theoretical arrival time
+ * (GCRA). A bucket of `burst` tokens refilled every `interval` lets a call at `now` in when
+ * its arrival time is at most (burst - 1) intervals ahead of now, and then moves it one
+ * interval further; the refill is thus computed lazily, at the next call of the key.
+ * A bucket whose arrival time is past is full, just as an absent one: its slot may be taken
+ * by another key. When the few slots a key may use are all busy, the fullest bucket is
+ * evicted, so that the table never grows whatever the number of keys, at the cost of
+ * forgetting the most idle of them; a call racing with the eviction of its bucket may also
+ * be charged to the key taking the slot. Times are nanoseconds from any positive origin.
+ */
+public final class TokenBuckets {
+
+    private static final int PROBES = 8;
+    private static final long EMPTY = 0;
+
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray arrivals;
+    private final AtomicLong evictions = new AtomicLong();
+
+    // capacity: number of slots, a power of two
+    public TokenBuckets(int capacity) {
+        if (capacity < PROBES || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Bucket tables are a power of two of at least " + PROBES + " slots: " + capacity);
+        this.mask = capacity - 1;
+        this.keys = new AtomicLongArray(capacity);
+        this.arrivals = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Takes a token from the bucket of the key, returns 0 when granted, otherwise the
+     * nanoseconds to wait for the next token.
+     */
+    public long tryAcquire(long key, long intervalNanos, int burst, long now) {
+        if (key == EMPTY)
+            key = 1;
+        int slot = slot(key, now);
+        long tolerance = intervalNanos * (burst - 1);
+        while (true) {
+            long arrival = arrivals.get(slot);
+            long start = Math.max(arrival, now);
+            if (start - now > tolerance)
+                return start - now - tolerance;
+            if (arrivals.compareAndSet(slot, arrival, start + intervalNanos))
+                return 0;
+        }
+    }
+
+    // The slot of the key, taken first if empty or idle, the fullest bucket being evicted otherwise
+    private int slot(long key, long now) {
+        int home = (int) mix(key) & mask;
+        while (true) {
+            int free = -1;
+            int fullest = home;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (home + i) & mask;
+                long owner = keys.get(slot);
+                if (owner == key)
+                    return slot;
+                if (free < 0 && (owner == EMPTY || arrivals.get(slot) <= now))
+                    free = slot;
+                if (arrivals.get(slot) < arrivals.get(fullest))
+                    fullest = slot;
+            }
+            int taken = free >= 0 ? free : fullest;
+            long owner = keys.get(taken);
+            if (owner == key)
+                return taken;
+            // a racing call of another key may win the slot: look again
+            if (keys.compareAndSet(taken, owner, key)) {
+                if (owner != EMPTY && arrivals.get(taken) > now) {
+                    evictions.incrementAndGet();
+                    arrivals.set(taken, EMPTY); // the new key starts full
+                }
+                return taken;
+            }
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // buckets forgotten while not full, since creation
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public static long hash(long mostSignificantBits, long leastSignificantBits) {
+        return mix(mostSignificantBits ^ mix(leastSignificantBits));
+    }
+
+    // FNV-1a of the chars, then mixed
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // finalizer of MurmurHash3
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
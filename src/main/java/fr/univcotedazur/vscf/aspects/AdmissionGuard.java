@@ -0,0 +1,47 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.admission.AdmissionControl;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Checkouts and reads are admitted in their lane before anything but the capture, routing
+// included, unless the caller already admitted them. Disabled with vscf.admission.enabled=false
+@Aspect
+@Component
+@ConditionalOnProperty(name = "vscf.admission.enabled", havingValue = "true", matchIfMissing = true)
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class AdmissionGuard {
+
+    private final AdmissionControl admission;
+
+    @Autowired
+    public AdmissionGuard(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.validate(..))")
+    public Object checkout(ProceedingJoinPoint joinPoint) throws Throwable {
+        return proceed(joinPoint, admission.admitCheckout());
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.Tracker.retrieveStatus(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.CatalogExplorator.*(..))")
+    public Object read(ProceedingJoinPoint joinPoint) throws Throwable {
+        return proceed(joinPoint, admission.admitRead());
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint, AdmissionControl.Permit permit) throws Throwable {
+        try {
+            return joinPoint.proceed();
+        } finally {
+            permit.release();
+        }
+    }
+
+}
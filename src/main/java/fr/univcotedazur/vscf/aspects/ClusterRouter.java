@@ -0,0 +1,116 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.cluster.ClusterNode;
+import fr.univcotedazur.vscf.cluster.OrderTracking;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+
+// In cluster mode, calls about a customer are executed by the node owning it,
+// order statuses are asked to the node keeping the order, and payments made by the
+// node keeping the card. Ordered before the rate limits, counted by the owner
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@ConditionalOnProperty("vscf.cluster.port")
+public class ClusterRouter {
+
+    private final ClusterNode node;
+    private final OrderTracking tracking;
+
+    @Autowired
+    public ClusterRouter(ClusterNode node, OrderTracking tracking) {
+        this.node = node;
+        this.tracking = tracking;
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CustomerFinder.findById(..)) && args(id)")
+    public Object findById(ProceedingJoinPoint joinPoint, UUID id) throws Throwable {
+        return node.find(id, joinPoint::proceed);
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CustomerFinder.findByName(..)) && args(name)")
+    public Object findByName(ProceedingJoinPoint joinPoint, String name) throws Throwable {
+        @SuppressWarnings("unchecked")
+        Optional<Customer> local = (Optional<Customer>) joinPoint.proceed();
+        return local.isPresent() || node.servingPeer() ? local : node.findByName(name);
+    }
+
+    // The new customer is created on the owner of its new id, once its name is checked on every node
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CustomerRegistration.register(..)) && args(name, creditCard)")
+    public Object register(ProceedingJoinPoint joinPoint, String name, String creditCard) throws Throwable {
+        return node.servingPeer() ? joinPoint.proceed() : node.register(name, creditCard);
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartModifier.update(..)) && args(customer, item)")
+    public Object update(ProceedingJoinPoint joinPoint, Customer customer, Item item) throws Throwable {
+        return node.execute(customer.getId(), owner -> node.update(owner, customer, item), joinPoint::proceed);
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.contents(..)) && args(customer)")
+    public Object contents(ProceedingJoinPoint joinPoint, Customer customer) throws Throwable {
+        return node.execute(customer.getId(), owner -> node.contents(owner, customer), joinPoint::proceed);
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.price(..)) && args(customer)")
+    public Object price(ProceedingJoinPoint joinPoint, Customer customer) throws Throwable {
+        return node.execute(customer.getId(), owner -> node.price(owner, customer), joinPoint::proceed);
+    }
+
+    // Paid with the customer as stored by its owner, whose card token may have changed when it moved
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.validate(..)) && args(customer)")
+    public Object validate(ProceedingJoinPoint joinPoint, Customer customer) throws Throwable {
+        return node.execute(customer.getId(), owner -> node.validate(owner, customer),
+                () -> joinPoint.proceed(new Object[] {node.stored(customer)}));
+    }
+
+    // The card is resolved and paid by the node keeping it, or by the owner of the customer
+    // when no member keeps it
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.Bank.pay(..)) && args(customer, value)")
+    public Object pay(ProceedingJoinPoint joinPoint, Customer customer, double value) throws Throwable {
+        String keeper = node.cardNode(customer.getCardToken());
+        if (keeper == null)
+            return node.execute(customer.getId(), owner -> node.pay(owner, customer, value), joinPoint::proceed);
+        return keeper.equals(node.getSelf()) ? joinPoint.proceed() : node.pay(keeper, customer, value);
+    }
+
+    // Tokens are tagged with the node keeping the card, which alone resolves them
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CardVault.tokenize(..))")
+    public Object tokenize(ProceedingJoinPoint joinPoint) throws Throwable {
+        return node.cardToken((String) joinPoint.proceed());
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CardVault.resolve(..)) && args(token)")
+    public Object resolve(ProceedingJoinPoint joinPoint, String token) throws Throwable {
+        if (node.keepsCard(token) || node.orphanCard(token))
+            return joinPoint.proceed(new Object[] {ClusterNode.vaultToken(token)});
+        return Optional.empty();
+    }
+
+    // A card is kept as long as its customer, even when the customer moves to another node
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CardVault.forget(..)) && args(token)")
+    public Object forget(ProceedingJoinPoint joinPoint, String token) throws Throwable {
+        if (!node.releases(token))
+            return null;
+        if (node.keepsCard(token))
+            return joinPoint.proceed(new Object[] {ClusterNode.vaultToken(token)});
+        node.forget(token);
+        return null;
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.Tracker.retrieveStatus(..)) && args(orderId)")
+    public Object retrieveStatus(ProceedingJoinPoint joinPoint, UUID orderId) throws Throwable {
+        return tracking.routes(orderId) ? tracking.retrieveStatus(orderId) : joinPoint.proceed();
+    }
+
+}
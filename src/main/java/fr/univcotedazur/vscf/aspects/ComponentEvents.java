@@ -0,0 +1,155 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.jfr.BankCallEvent;
+import fr.univcotedazur.vscf.jfr.CartUpdateEvent;
+import fr.univcotedazur.vscf.jfr.CatalogSearchEvent;
+import fr.univcotedazur.vscf.jfr.CheckoutEvent;
+import fr.univcotedazur.vscf.jfr.KitchenTransitionEvent;
+import fr.univcotedazur.vscf.jfr.PaymentEvent;
+import fr.univcotedazur.vscf.repositories.CartRepository;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Emits the Flight Recorder events of the component operations, whatever their outcome. Left
+// at the lowest precedence, an event only times the operation, not the guards around it.
+// Disabled with vscf.aspects.events=false
+@Aspect
+@Component
+@ConditionalOnProperty(name = "vscf.aspects.events", havingValue = "true", matchIfMissing = true)
+public class ComponentEvents {
+
+    private final CartRepository cartRepository;
+
+    @Autowired
+    public ComponentEvents(CartRepository cartRepository) {
+        this.cartRepository = cartRepository;
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.validate(..)) && args(customer)")
+    public Object checkout(ProceedingJoinPoint joinPoint, Customer customer) throws Throwable {
+        CheckoutEvent event = new CheckoutEvent();
+        event.begin();
+        int cartSize = event.isEnabled() ? cartSize(customer) : 0; // the cart is gone once validated
+        Order order = null;
+        try {
+            order = (Order) joinPoint.proceed();
+            return order;
+        } catch (Throwable e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            event.end(customer, order, cartSize);
+        }
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CartModifier.update(..)) && args(customer, item)")
+    public Object cartUpdate(ProceedingJoinPoint joinPoint, Customer customer, Item item) throws Throwable {
+        CartUpdateEvent event = new CartUpdateEvent();
+        event.begin();
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            event.end(customer, item, event.isEnabled() ? cartSize(customer) : 0);
+        }
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.Payment.payOrder(..)) && args(customer, items)")
+    public Object payment(ProceedingJoinPoint joinPoint, Customer customer, Set<Item> items) throws Throwable {
+        PaymentEvent event = new PaymentEvent();
+        event.begin();
+        Order order = null;
+        try {
+            order = (Order) joinPoint.proceed();
+            return order;
+        } catch (Throwable e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            event.end(customer, order, items.size());
+        }
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.Bank.pay(..)) && args(customer, value)")
+    public Object bankCall(ProceedingJoinPoint joinPoint, Customer customer, double value) throws Throwable {
+        BankCallEvent event = new BankCallEvent();
+        event.begin();
+        boolean accepted = false;
+        try {
+            Object result = joinPoint.proceed();
+            accepted = Boolean.TRUE.equals(result);
+            return result;
+        } catch (Throwable e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            event.end(customer, value, accepted);
+        }
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.OrderProcessing.process(..)) && args(order)")
+    public Object inProgress(ProceedingJoinPoint joinPoint, Order order) throws Throwable {
+        KitchenTransitionEvent event = new KitchenTransitionEvent();
+        event.begin();
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            event.failed(e);
+            throw e;
+        } finally {
+            event.end(order, OrderStatus.IN_PROGRESS);
+        }
+    }
+
+    // An order turns READY in the callback of the ovens, which is timed in their place
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.Baking.bake(..)) && args(order, whenBaked)")
+    public Object baking(ProceedingJoinPoint joinPoint, Order order, Consumer<Order> whenBaked) throws Throwable {
+        Consumer<Order> ready = baked -> {
+            KitchenTransitionEvent event = new KitchenTransitionEvent();
+            event.begin();
+            try {
+                whenBaked.accept(baked);
+            } catch (RuntimeException e) {
+                event.failed(e);
+                throw e;
+            } finally {
+                event.end(baked, OrderStatus.READY);
+            }
+        };
+        return joinPoint.proceed(new Object[] {order, ready});
+    }
+
+    @Around("execution(* fr.univcotedazur.vscf.interfaces.CatalogExplorator.exploreCatalogue(..)) && args(regexp)")
+    public Object catalogSearch(ProceedingJoinPoint joinPoint, String regexp) throws Throwable {
+        CatalogSearchEvent event = new CatalogSearchEvent();
+        event.begin();
+        Set<?> found = Set.of();
+        try {
+            found = (Set<?>) joinPoint.proceed();
+            return found;
+        } catch (Throwable e) {
+            event.failed(e); // e.g. an invalid expression
+            throw e;
+        } finally {
+            event.end(regexp, found.size());
+        }
+    }
+
+    private int cartSize(Customer customer) {
+        return cartRepository.findById(customer.getId()).map(Set::size).orElse(0);
+    }
+
+}
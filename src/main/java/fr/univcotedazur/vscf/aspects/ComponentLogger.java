@@ -4,10 +4,13 @@ import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+// Disabled with vscf.aspects.logging=false: components are then no longer proxied for logging
 @Aspect
 @Component
+@ConditionalOnProperty(name = "vscf.aspects.logging", havingValue = "true", matchIfMissing = true)
 public class ComponentLogger {
 
         private static final Logger LOG = LoggerFactory.getLogger(ComponentLogger.class);
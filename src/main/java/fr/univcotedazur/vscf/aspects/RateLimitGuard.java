@@ -0,0 +1,39 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.admission.RateLimits;
+import fr.univcotedazur.vscf.entities.Customer;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Cart updates and registrations are counted where they are executed: after the routing of the
+// cluster, by the node owning the customer, so that a forwarded call is counted once. The
+// registrations routed by the cluster are counted by ClusterNode.register, the node taking them
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty("vscf.ratelimit.limits")
+public class RateLimitGuard {
+
+    private final RateLimits limits;
+
+    @Autowired
+    public RateLimitGuard(RateLimits limits) {
+        this.limits = limits;
+    }
+
+    @Before("execution(* fr.univcotedazur.vscf.interfaces.CartModifier.update(..)) && args(customer, ..)")
+    public void cartUpdate(Customer customer) {
+        limits.acquireCartUpdate(customer.getId());
+    }
+
+    @Before("execution(* fr.univcotedazur.vscf.interfaces.CustomerRegistration.register(..)) && args(name, ..)")
+    public void registration(String name) {
+        limits.acquireRegistration(name);
+    }
+
+}
@@ -0,0 +1,33 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.exceptions.NotLeaderException;
+import fr.univcotedazur.vscf.replication.ReplicationNode;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Followers only serve reads: their repositories are written by the replication stream only
+@Aspect
+@Component
+@ConditionalOnProperty("vscf.replication.port")
+public class ReplicaWriteGuard {
+
+    private final ReplicationNode node;
+
+    @Autowired
+    public ReplicaWriteGuard(ReplicationNode node) {
+        this.node = node;
+    }
+
+    @Before("execution(* fr.univcotedazur.vscf.interfaces.CustomerRegistration.register(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.CartModifier.update(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.validate(..))")
+    public void writeOnLeaderOnly(JoinPoint joinPoint) {
+        if (!node.isLeader())
+            throw new NotLeaderException(joinPoint.getSignature().getName());
+    }
+
+}
@@ -0,0 +1,27 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.interfaces.SalesRecorder;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+public class SalesListener {
+
+    private final SalesRecorder salesRecorder;
+
+    @Autowired
+    public SalesListener(SalesRecorder salesRecorder) {
+        this.salesRecorder = salesRecorder;
+    }
+
+    // Every successfully paid order feeds the sales analytics
+    @AfterReturning(pointcut = "execution(* fr.univcotedazur.vscf.interfaces.Payment.payOrder(..))", returning = "order")
+    public void orderPaid(Order order) {
+        salesRecorder.record(order);
+    }
+
+}
@@ -0,0 +1,97 @@
+package fr.univcotedazur.vscf.aspects;
+
+import fr.univcotedazur.vscf.capture.TrafficRecord;
+import fr.univcotedazur.vscf.capture.TrafficWriter;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Captures the traffic to replay (see TrafficReplay) at the join points of ComponentLogger,
+// first of all aspects, so that the calls refused by the admission control are captured too.
+// The capture never changes the outcome of a call: it stops at its first failure.
+// Enabled by vscf.capture.file, the log to write
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty("vscf.capture.file")
+public class TrafficRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private final TrafficWriter writer;
+
+    private volatile boolean capturing = true;
+
+    @Autowired
+    public TrafficRecorder(@Value("${vscf.capture.file}") String file) throws IOException {
+        this.writer = new TrafficWriter(Path.of(file));
+        LOG.info("VSCF:Capture writing the traffic to {}", file);
+    }
+
+    @Pointcut("execution(public * fr.univcotedazur.vscf.components..*(..))")
+    private void allComponentsMethods() {}
+
+    @Pointcut("execution(* fr.univcotedazur.vscf.interfaces.CustomerRegistration.register(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.CartModifier.update(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.CartProcessor.validate(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.Tracker.retrieveStatus(..))"
+            + " || execution(* fr.univcotedazur.vscf.interfaces.CatalogExplorator.exploreCatalogue(..))")
+    private void capturedMethods() {}
+
+    @Around("allComponentsMethods() && capturedMethods()")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!capturing)
+            return joinPoint.proceed();
+        long start = writer.clock();
+        Object result = null;
+        TrafficRecord.Outcome outcome = TrafficRecord.Outcome.FAILED;
+        try {
+            result = joinPoint.proceed();
+            outcome = TrafficRecord.Outcome.RETURNED;
+            return result;
+        } catch (Throwable thrown) {
+            outcome = TrafficRecord.outcome(thrown);
+            throw thrown;
+        } finally {
+            capture(joinPoint, result, outcome, start);
+        }
+    }
+
+    private void capture(ProceedingJoinPoint joinPoint, Object result, TrafficRecord.Outcome outcome, long start) {
+        try {
+            writer.append(TrafficRecord.of(joinPoint.getSignature().getName(), joinPoint.getArgs(), result, outcome,
+                    start, writer.clock() - start));
+        } catch (RuntimeException e) {
+            if (capturing) {
+                capturing = false;
+                LOG.error("VSCF:Capture stopped, the traffic is no longer written", e);
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        capturing = false;
+        writer.close();
+        if (writer.dropped() > 0)
+            LOG.warn("VSCF:Capture dropped {} calls, the disk not keeping up", writer.dropped());
+    }
+
+}
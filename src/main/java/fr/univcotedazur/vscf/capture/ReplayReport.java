@@ -0,0 +1,100 @@
+package fr.univcotedazur.vscf.capture;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Throughput and latencies of a replay per operation, next to the recorded ones
+public class ReplayReport {
+
+    private static final TrafficRecord.Operation[] OPERATIONS = TrafficRecord.Operation.values();
+
+    private final double speed;
+    private final long elapsedNanos;
+    private final Map<TrafficRecord.Operation, long[]> latencies = new EnumMap<>(TrafficRecord.Operation.class);
+    private final Map<TrafficRecord.Operation, long[]> recorded = new EnumMap<>(TrafficRecord.Operation.class);
+    private final int[] counts = new int[OPERATIONS.length];
+    // calls whose outcome differs from the recorded one
+    private final int[] mismatches = new int[OPERATIONS.length];
+    private boolean sorted;
+
+    ReplayReport(double speed, long elapsedNanos) {
+        this.speed = speed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void add(TrafficRecord call, TrafficRecord.Outcome outcome, long latencyNanos) {
+        TrafficRecord.Operation operation = call.getOperation();
+        int count = counts[operation.ordinal()]++;
+        long[] replayed = latencies.computeIfAbsent(operation, o -> new long[16]);
+        if (count == replayed.length) {
+            latencies.put(operation, replayed = Arrays.copyOf(replayed, count * 2));
+            recorded.put(operation, Arrays.copyOf(recorded.get(operation), count * 2));
+        }
+        replayed[count] = latencyNanos;
+        recorded.computeIfAbsent(operation, o -> new long[16])[count] = call.getDurationNanos();
+        if (outcome != call.getOutcome())
+            mismatches[operation.ordinal()]++;
+        sorted = false;
+    }
+
+    public int count(TrafficRecord.Operation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    public int total() {
+        return Arrays.stream(counts).sum();
+    }
+
+    public int mismatches(TrafficRecord.Operation operation) {
+        return mismatches[operation.ordinal()];
+    }
+
+    // calls per second
+    public double throughput() {
+        return total() / (elapsedNanos / 1e9);
+    }
+
+    // in nanoseconds, e.g. percentile(VALIDATE, 99.0)
+    public long percentile(TrafficRecord.Operation operation, double percentile) {
+        return percentile(latencies, operation, percentile);
+    }
+
+    public long recordedPercentile(TrafficRecord.Operation operation, double percentile) {
+        return percentile(recorded, operation, percentile);
+    }
+
+    private long percentile(Map<TrafficRecord.Operation, long[]> samples, TrafficRecord.Operation operation, double percentile) {
+        int count = count(operation);
+        if (count == 0)
+            return 0;
+        if (!sorted) {
+            for (TrafficRecord.Operation o : OPERATIONS) {
+                if (counts[o.ordinal()] > 0) {
+                    Arrays.sort(latencies.get(o), 0, counts[o.ordinal()]);
+                    Arrays.sort(recorded.get(o), 0, counts[o.ordinal()]);
+                }
+            }
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return samples.get(operation)[Math.max(0, Math.min(rank, count - 1))];
+    }
+
+    public void print(PrintStream out) {
+        out.printf("Replayed %d calls at %s in %.1f s: %.1f calls/s%n", total(),
+                speed == TrafficReplay.MAX_SPEED ? "maximum speed" : "x" + speed, elapsedNanos / 1e9, throughput());
+        out.printf("%-10s %9s %10s %10s %10s %10s %14s %14s%n", "operation", "count", "mismatches",
+                "p50 (us)", "p99 (us)", "max (us)", "rec. p50 (us)", "rec. p99 (us)");
+        for (TrafficRecord.Operation operation : OPERATIONS) {
+            if (count(operation) == 0)
+                continue;
+            out.printf("%-10s %9d %10d %10.1f %10.1f %10.1f %14.1f %14.1f%n", operation, count(operation),
+                    mismatches(operation), percentile(operation, 50) / 1e3, percentile(operation, 99) / 1e3,
+                    percentile(operation, 100) / 1e3, recordedPercentile(operation, 50) / 1e3,
+                    recordedPercentile(operation, 99) / 1e3);
+        }
+    }
+
+}
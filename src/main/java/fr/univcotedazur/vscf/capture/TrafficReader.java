@@ -0,0 +1,117 @@
+package fr.univcotedazur.vscf.capture;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+// Reads a log written by TrafficWriter, a record cut by a crash ending it
+public class TrafficReader implements Closeable {
+
+    private static final TrafficRecord.Operation[] OPERATIONS = TrafficRecord.Operation.values();
+    private static final TrafficRecord.Outcome[] OUTCOMES = TrafficRecord.Outcome.values();
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    private final DataInputStream in;
+    private final Instant start;
+    private long previousMicros;
+
+    public TrafficReader(Path file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        if (in.readInt() != TrafficWriter.MAGIC || in.readByte() != TrafficWriter.VERSION) {
+            in.close();
+            throw new IOException("Not a traffic capture: " + file);
+        }
+        start = Instant.ofEpochMilli(in.readLong());
+    }
+
+    // The records of the log, by start
+    public static List<TrafficRecord> readAll(Path file) throws IOException {
+        List<TrafficRecord> records = new ArrayList<>();
+        try (TrafficReader reader = new TrafficReader(file)) {
+            for (TrafficRecord record = reader.next(); record != null; record = reader.next())
+                records.add(record);
+        }
+        records.sort(Comparator.comparingLong(TrafficRecord::getStartNanos));
+        return records;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    // null at the end of the log
+    public TrafficRecord next() throws IOException {
+        int operation = in.read();
+        if (operation < 0)
+            return null;
+        try {
+            TrafficRecord.Outcome outcome = OUTCOMES[in.readByte()];
+            long micros = previousMicros + unzigzag(readVarint());
+            long duration = readVarint() * 1000;
+            previousMicros = micros;
+            boolean returned = outcome == TrafficRecord.Outcome.RETURNED;
+            switch (OPERATIONS[operation]) {
+                case REGISTER:
+                    String name = in.readUTF();
+                    boolean card = in.readBoolean();
+                    return new TrafficRecord(TrafficRecord.Operation.REGISTER, micros * 1000, duration, outcome, name, card,
+                            returned ? readId() : null, null, 0, null);
+                case UPDATE:
+                    UUID customer = readId();
+                    Cookies cookie = COOKIES[in.readByte()];
+                    return new TrafficRecord(TrafficRecord.Operation.UPDATE, micros * 1000, duration, outcome, null, false,
+                            customer, cookie, (int) unzigzag(readVarint()), null);
+                case VALIDATE:
+                    UUID payer = readId();
+                    return new TrafficRecord(TrafficRecord.Operation.VALIDATE, micros * 1000, duration, outcome, null, false,
+                            payer, null, 0, returned ? readId() : null);
+                case STATUS:
+                    return new TrafficRecord(TrafficRecord.Operation.STATUS, micros * 1000, duration, outcome, null, false,
+                            null, null, 0, readId());
+                case EXPLORE:
+                    return new TrafficRecord(TrafficRecord.Operation.EXPLORE, micros * 1000, duration, outcome, in.readUTF(), false,
+                            null, null, 0, null);
+                default:
+                    throw new IOException("Unknown operation " + operation);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private UUID readId() throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
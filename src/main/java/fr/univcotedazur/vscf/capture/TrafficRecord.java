@@ -0,0 +1,132 @@
+package fr.univcotedazur.vscf.capture;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+
+import java.util.UUID;
+
+/**
+ * A component call of the captured traffic: when it started (nanoseconds since the start of
+ * the capture), how long it took, how it ended, and what is needed to replay it. The ids
+ * are those of the recorded instance, the replay mapping them to its own ones. Card numbers
+ * are never captured, only whether the customer gave one.
+ */
+public final class TrafficRecord {
+
+    public enum Operation {
+        REGISTER, UPDATE, VALIDATE, STATUS, EXPLORE
+    }
+
+    public enum Outcome {
+        RETURNED,   // normally
+        REFUSED,    // with a business (checked) exception
+        FAILED      // with an unchecked exception: unavailable, overloaded, rate limited...
+    }
+
+    private final Operation operation;
+    private final long startNanos;
+    private final long durationNanos;
+    private final Outcome outcome;
+    private final String text;         // name of REGISTER, regexp of EXPLORE
+    private final boolean card;        // REGISTER with a card number
+    private final UUID customerId;     // of UPDATE and VALIDATE, created by REGISTER
+    private final Cookies cookie;      // of UPDATE
+    private final int quantity;        // of UPDATE
+    private final UUID orderId;        // of STATUS, created by VALIDATE
+
+    TrafficRecord(Operation operation, long startNanos, long durationNanos, Outcome outcome, String text,
+                  boolean card, UUID customerId, Cookies cookie, int quantity, UUID orderId) {
+        this.operation = operation;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+        this.outcome = outcome;
+        this.text = text;
+        this.card = card;
+        this.customerId = customerId;
+        this.cookie = cookie;
+        this.quantity = quantity;
+        this.orderId = orderId;
+    }
+
+    // From the join point of a component method: its name, arguments and result (null unless returned)
+    public static TrafficRecord of(String method, Object[] args, Object result, Outcome outcome,
+                                   long startNanos, long durationNanos) {
+        switch (method) {
+            case "register":
+                String card = (String) args[1];
+                return new TrafficRecord(Operation.REGISTER, startNanos, durationNanos, outcome, (String) args[0],
+                        card != null && !card.isBlank(), result == null ? null : ((Customer) result).getId(), null, 0, null);
+            case "update":
+                Item item = (Item) args[1];
+                return new TrafficRecord(Operation.UPDATE, startNanos, durationNanos, outcome, null, false,
+                        ((Customer) args[0]).getId(), item.getCookie(), item.getQuantity(), null);
+            case "validate":
+                return new TrafficRecord(Operation.VALIDATE, startNanos, durationNanos, outcome, null, false,
+                        ((Customer) args[0]).getId(), null, 0, result == null ? null : ((Order) result).getId());
+            case "retrieveStatus":
+                return new TrafficRecord(Operation.STATUS, startNanos, durationNanos, outcome, null, false,
+                        null, null, 0, (UUID) args[0]);
+            case "exploreCatalogue":
+                return new TrafficRecord(Operation.EXPLORE, startNanos, durationNanos, outcome, (String) args[0], false,
+                        null, null, 0, null);
+            default:
+                throw new IllegalArgumentException("Not a captured method: " + method);
+        }
+    }
+
+    public static Outcome outcome(Throwable thrown) {
+        return thrown instanceof RuntimeException || thrown instanceof Error ? Outcome.FAILED : Outcome.REFUSED;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public String getName() {
+        return text;
+    }
+
+    public String getRegexp() {
+        return text;
+    }
+
+    public boolean hasCard() {
+        return card;
+    }
+
+    public UUID getCustomerId() {
+        return customerId;
+    }
+
+    public Cookies getCookie() {
+        return cookie;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public UUID getOrderId() {
+        return orderId;
+    }
+
+    @Override
+    public String toString() {
+        return operation + "@" + startNanos / 1000 + "us " + outcome;
+    }
+
+}
@@ -0,0 +1,181 @@
+package fr.univcotedazur.vscf.capture;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CatalogExplorator;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays captured traffic against the components of an instance, at the original pace
+ * multiplied by a speed, or as fast as possible (MAX_SPEED). The calls about a customer
+ * (its registrations, cart updates, checkouts and the tracking of its orders) are replayed
+ * in their recorded order by the same lane, one thread per lane, the lanes running side by
+ * side. Recorded ids are mapped to the ids created by the replay; a customer registered
+ * before the capture started is registered on its first call. Paced, the latency of a call
+ * is measured from the time it should have started, so that a replay falling behind shows
+ * in the latencies rather than in a slower pace.
+ */
+public class TrafficReplay {
+
+    public static final double MAX_SPEED = 0;
+
+    private static final String CARD = "1234567890";
+
+    private final CustomerRegistration registration;
+    private final CartModifier cartModifier;
+    private final CartProcessor cartProcessor;
+    private final Tracker tracker;
+    private final CatalogExplorator catalog;
+
+    // recorded id -> replayed customer, or order id
+    private final Map<UUID, Customer> customers = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> orders = new ConcurrentHashMap<>();
+
+    public TrafficReplay(CustomerRegistration registration, CartModifier cartModifier, CartProcessor cartProcessor,
+                         Tracker tracker, CatalogExplorator catalog) {
+        this.registration = registration;
+        this.cartModifier = cartModifier;
+        this.cartProcessor = cartProcessor;
+        this.tracker = tracker;
+        this.catalog = catalog;
+    }
+
+    public ReplayReport replay(List<TrafficRecord> records, double speed, int lanes) throws InterruptedException {
+        if (speed < 0 || lanes <= 0)
+            throw new IllegalArgumentException("Replays need a positive speed (0 for the maximum) and lanes: " + speed + ", " + lanes);
+        List<List<TrafficRecord>> byLane = split(records, lanes);
+        long[][] latencies = new long[lanes][];
+        TrafficRecord.Outcome[][] outcomes = new TrafficRecord.Outcome[lanes][];
+        CountDownLatch done = new CountDownLatch(lanes);
+        long first = records.stream().mapToLong(TrafficRecord::getStartNanos).min().orElse(0);
+        long start = System.nanoTime() + 10_000_000; // once every lane is started
+        for (int l = 0; l < lanes; l++) {
+            int lane = l;
+            Thread thread = new Thread(() -> {
+                try {
+                    List<TrafficRecord> calls = byLane.get(lane);
+                    latencies[lane] = new long[calls.size()];
+                    outcomes[lane] = new TrafficRecord.Outcome[calls.size()];
+                    waitUntil(start);
+                    for (int i = 0; i < calls.size(); i++) {
+                        TrafficRecord call = calls.get(i);
+                        long scheduled = speed == MAX_SPEED ? System.nanoTime() : start + (long) ((call.getStartNanos() - first) / speed);
+                        waitUntil(scheduled);
+                        outcomes[lane][i] = execute(call);
+                        latencies[lane][i] = System.nanoTime() - scheduled;
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "vscf-replay-" + lane);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        ReplayReport report = new ReplayReport(speed, elapsed);
+        for (int lane = 0; lane < lanes; lane++)
+            for (int i = 0; i < byLane.get(lane).size(); i++)
+                report.add(byLane.get(lane).get(i), outcomes[lane][i], latencies[lane][i]);
+        return report;
+    }
+
+    // The calls about a customer in the same lane, in their recorded order
+    private static List<List<TrafficRecord>> split(List<TrafficRecord> records, int lanes) {
+        List<List<TrafficRecord>> byLane = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++)
+            byLane.add(new ArrayList<>());
+        Map<UUID, Integer> orderLanes = new HashMap<>();
+        Map<String, Integer> nameLanes = new HashMap<>(); // a refused registration after the first one
+        int next = 0;
+        for (TrafficRecord record : records) {
+            int lane;
+            switch (record.getOperation()) {
+                case REGISTER:
+                    String name = String.valueOf(record.getName());
+                    lane = record.getCustomerId() != null ? lane(record.getCustomerId(), lanes)
+                            : nameLanes.getOrDefault(name, Math.floorMod(name.hashCode(), lanes));
+                    nameLanes.putIfAbsent(name, lane);
+                    break;
+                case UPDATE:
+                    lane = lane(record.getCustomerId(), lanes);
+                    break;
+                case VALIDATE:
+                    lane = lane(record.getCustomerId(), lanes);
+                    if (record.getOrderId() != null)
+                        orderLanes.put(record.getOrderId(), lane);
+                    break;
+                case STATUS:
+                    lane = orderLanes.getOrDefault(record.getOrderId(), lane(record.getOrderId(), lanes));
+                    break;
+                default:
+                    lane = next++ % lanes;
+            }
+            byLane.get(lane).add(record);
+        }
+        return byLane;
+    }
+
+    private static int lane(UUID id, int lanes) {
+        return Math.floorMod(id.hashCode(), lanes);
+    }
+
+    private TrafficRecord.Outcome execute(TrafficRecord call) {
+        try {
+            switch (call.getOperation()) {
+                case REGISTER:
+                    Customer customer = registration.register(call.getName(), call.hasCard() ? CARD : "");
+                    if (call.getCustomerId() != null)
+                        customers.put(call.getCustomerId(), customer);
+                    break;
+                case UPDATE:
+                    cartModifier.update(customer(call.getCustomerId()), new Item(call.getCookie(), call.getQuantity()));
+                    break;
+                case VALIDATE:
+                    Order order = cartProcessor.validate(customer(call.getCustomerId()));
+                    if (call.getOrderId() != null)
+                        orders.put(call.getOrderId(), order.getId());
+                    break;
+                case STATUS:
+                    tracker.retrieveStatus(orders.getOrDefault(call.getOrderId(), call.getOrderId()));
+                    break;
+                case EXPLORE:
+                    catalog.exploreCatalogue(call.getRegexp());
+                    break;
+            }
+            return TrafficRecord.Outcome.RETURNED;
+        } catch (Exception e) {
+            return TrafficRecord.outcome(e);
+        }
+    }
+
+    // A customer known before the capture is registered on its first call
+    private Customer customer(UUID recordedId) throws AlreadyExistingCustomerException {
+        Customer customer = customers.get(recordedId);
+        if (customer == null) {
+            customer = registration.register("replayed-" + recordedId, CARD);
+            customers.put(recordedId, customer);
+        }
+        return customer;
+    }
+
+    private static void waitUntil(long nanoTime) {
+        for (long wait = nanoTime - System.nanoTime(); wait > 0; wait = nanoTime - System.nanoTime())
+            LockSupport.parkNanos(wait);
+    }
+
+}
@@ -0,0 +1,209 @@
+package fr.univcotedazur.vscf.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends the captured calls to a binary log:
+ *   header: MAGIC (int), VERSION (byte), start of the capture (epoch millis, long)
+ *   record: operation ordinal (byte), outcome ordinal (byte),
+ *           start since the previous record (zigzag varint of microseconds), duration (varint of microseconds),
+ *           then, by operation:
+ *     REGISTER  name (UTF), card given (boolean), customer id (2 longs) when returned
+ *     UPDATE    customer id (2 longs), cookie ordinal (byte), quantity (zigzag varint)
+ *     VALIDATE  customer id (2 longs), order id (2 longs) when returned
+ *     STATUS    order id (2 longs)
+ *     EXPLORE   regexp (UTF)
+ * Records are appended as calls complete, so that their starts may go slightly backwards.
+ * The calling threads only queue their records, a writer thread encoding and writing them, so
+ * that calls never wait for the disk: when the queue is full, records are dropped and counted.
+ * Writes are buffered: the calls of the last moments are lost if the process crashes.
+ */
+public class TrafficWriter implements Closeable {
+
+    public static final int MAGIC = 0x56534346; // "VSCF"
+    public static final byte VERSION = 1;
+
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+
+    private final DataOutputStream out; // only used by the writer thread once started
+    private final long origin = System.nanoTime();
+    private long previousMicros;
+
+    // records, and the flushes waited for, in their order
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile IOException failure;
+
+    public TrafficWriter(Path file) throws IOException {
+        // not an interruptible channel, the writer thread being interrupted to stop it
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        writer = new Thread(this::write, "vscf-capture-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // nanoseconds since the start of the capture
+    public long clock() {
+        return System.nanoTime() - origin;
+    }
+
+    // Queues the record without waiting, dropping it when the writer lags behind.
+    // Throws once the writer failed, nothing being written any more.
+    public void append(TrafficRecord record) {
+        IOException failed = failure;
+        if (failed != null)
+            throw new UncheckedIOException(failed);
+        if (!queue.offer(record))
+            dropped.incrementAndGet();
+    }
+
+    // Number of records dropped as the queue was full
+    public long dropped() {
+        return dropped.get();
+    }
+
+    // Waits for the records appended so far to be written
+    public void flush() throws IOException {
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        enqueue(flushed);
+        try {
+            flushed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing the capture");
+        } catch (ExecutionException e) {
+            throw new IOException("Capture not written", e.getCause());
+        }
+    }
+
+    // Writes the records appended so far, and stops the writer thread
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.close();
+        }
+    }
+
+    private void enqueue(Object flush) throws IOException {
+        IOException failed = failure;
+        if (failed != null)
+            throw failed;
+        try {
+            queue.put(flush);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing the capture");
+        }
+        // unless the writer failed meanwhile, and already gave up what it found queued
+        failed = failure;
+        if (failed != null && queue.remove(flush))
+            throw failed;
+    }
+
+    // the writer thread, until interrupted by close or a write fails
+    private void write() {
+        List<Object> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Object next : batch) {
+                    if (next instanceof TrafficRecord) {
+                        write((TrafficRecord) next);
+                    } else {
+                        out.flush();
+                        ((CompletableFuture<?>) next).complete(null);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (IOException | RuntimeException e) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            queue.drainTo(batch);
+            for (Object next : batch)
+                if (next instanceof CompletableFuture)
+                    ((CompletableFuture<?>) next).completeExceptionally(failure);
+        }
+    }
+
+    private void write(TrafficRecord record) throws IOException {
+        long micros = record.getStartNanos() / 1000;
+        out.writeByte(record.getOperation().ordinal());
+        out.writeByte(record.getOutcome().ordinal());
+        writeVarint(out, zigzag(micros - previousMicros));
+        writeVarint(out, record.getDurationNanos() / 1000);
+        previousMicros = micros;
+        boolean returned = record.getOutcome() == TrafficRecord.Outcome.RETURNED;
+        switch (record.getOperation()) {
+            case REGISTER:
+                out.writeUTF(String.valueOf(record.getName()));
+                out.writeBoolean(record.hasCard());
+                if (returned)
+                    writeId(out, record.getCustomerId());
+                break;
+            case UPDATE:
+                writeId(out, record.getCustomerId());
+                out.writeByte(record.getCookie().ordinal());
+                writeVarint(out, zigzag(record.getQuantity()));
+                break;
+            case VALIDATE:
+                writeId(out, record.getCustomerId());
+                if (returned)
+                    writeId(out, record.getOrderId());
+                break;
+            case STATUS:
+                writeId(out, record.getOrderId());
+                break;
+            case EXPLORE:
+                out.writeUTF(String.valueOf(record.getRegexp()));
+                break;
+        }
+    }
+
+    private static void writeId(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+}
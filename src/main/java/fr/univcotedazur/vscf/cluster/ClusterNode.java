@@ -0,0 +1,753 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.vscf.admission.RateLimits;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.IdGenerator;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.exceptions.ClusterException;
+import fr.univcotedazur.vscf.exceptions.CustomerMovedException;
+import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.NotLeaderException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.OverloadedException;
+import fr.univcotedazur.vscf.exceptions.PaymentException;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import fr.univcotedazur.vscf.interfaces.CardVault;
+import fr.univcotedazur.vscf.pos.PosProtocol;
+import fr.univcotedazur.vscf.repositories.CartRepository;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static fr.univcotedazur.vscf.cluster.ClusterProtocol.*;
+
+/**
+ * Cluster mode, enabled by setting vscf.cluster.port: customers, with their carts, are
+ * partitioned across the nodes listed in vscf.cluster.nodes by consistent hashing of their
+ * id (see HashRing). Calls about a customer owned by another node are forwarded to it by
+ * the ClusterRouter aspect, through the cluster endpoint of that node (ClusterServer).
+ * When a node joins or leaves, every node hands the customers it no longer owns over to
+ * their new owner, in the background: a moving customer is fenced on its former owner, the
+ * calls about it waiting there for the end of its handover, and its new owner forwards the
+ * calls about it to its former owner until it arrives. Orders stay on the node where they
+ * were paid, whose tag, derived from its address, is carried by their ids (see
+ * OrderTracking). Card numbers stay in the vault of the node that tokenized them, whose tag
+ * the tokens carry too: only tokens travel, the payments being made by that node.
+ * The cluster endpoint listens on vscf.cluster.bind (the host of the node by default), and
+ * only serves the addresses of the configured nodes and of the members.
+ */
+@Component
+@Lazy(false) // the node must serve its peers even when beans are lazily initialized
+@ConditionalOnProperty("vscf.cluster.port")
+public class ClusterNode {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterNode.class);
+
+    // set while the cluster endpoint serves a peer, whose calls are always executed locally
+    private static final ThreadLocal<Boolean> SERVING_PEER = new ThreadLocal<>();
+
+    private static final int FENCES = 64;
+    private static final int ATTEMPTS = 3;
+
+    private final CustomerRepository customerRepository;
+    private final CartRepository cartRepository;
+    private final CardVault cardVault;
+    private final Optional<RateLimits> rateLimits;
+    private final int port;
+    private final String self;
+    private final String bindAddress;
+    private final Set<String> configured;
+    private final int virtualNodes;
+    private final int timeoutMillis;
+
+    private volatile HashRing ring;
+    private volatile HashRing formerRing; // before the last membership change
+    private volatile Map<Integer, String> tags;
+    private volatile Set<InetAddress> peers;
+
+    // customers being handed over by this node, whose calls wait for the end of the handover
+    private final Map<UUID, CountDownLatch> handovers = new ConcurrentHashMap<>();
+    // taken shared by the calls about a customer kept here, exclusively to start its handover
+    private final ReentrantReadWriteLock[] fences = new ReentrantReadWriteLock[FENCES];
+    // tokens of the cards of customers registered or handed over to other nodes, with their
+    // customers, not to be wiped when they are deleted here
+    private final Map<String, UUID> remoteCards = new ConcurrentHashMap<>();
+
+    private final Map<String, BlockingQueue<PeerConnection>> connections = new ConcurrentHashMap<>();
+    private final ExecutorService rebalancer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "vscf-cluster-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong movedIn = new AtomicLong();
+    private final AtomicLong movedOut = new AtomicLong();
+
+    @Autowired
+    public ClusterNode(CustomerRepository customerRepository, CartRepository cartRepository, CardVault cardVault,
+                       Optional<RateLimits> rateLimits,
+                       @Value("${vscf.cluster.port}") int port,
+                       @Value("${vscf.cluster.self:}") String self,
+                       @Value("${vscf.cluster.bind:}") String bind,
+                       @Value("${vscf.cluster.nodes:}") String nodes,
+                       @Value("${vscf.cluster.virtual-nodes:128}") int virtualNodes,
+                       @Value("${vscf.cluster.timeout:2s}") Duration timeout) {
+        if (port <= 0)
+            throw new IllegalArgumentException("The cluster endpoint needs a fixed port: " + port);
+        this.customerRepository = customerRepository;
+        this.cartRepository = cartRepository;
+        this.cardVault = cardVault;
+        this.rateLimits = rateLimits;
+        this.port = port;
+        this.self = self.isBlank() ? "localhost:" + port : address(self.trim());
+        this.bindAddress = bind.isBlank() ? host(this.self) : bind.trim();
+        this.virtualNodes = virtualNodes;
+        this.timeoutMillis = (int) timeout.toMillis();
+        TreeSet<String> members = new TreeSet<>();
+        for (String node : nodes.split(","))
+            if (!node.isBlank())
+                members.add(address(node.trim()));
+        members.add(this.self);
+        this.configured = Set.copyOf(members);
+        this.ring = new HashRing(members, virtualNodes);
+        this.formerRing = ring.without(this.self); // a starting node may be joining, its customers kept by the others
+        this.tags = tags(members);
+        this.peers = resolve(members);
+        for (int i = 0; i < FENCES; i++)
+            fences[i] = new ReentrantReadWriteLock();
+    }
+
+    @PreDestroy
+    public void close() {
+        rebalancer.shutdownNow();
+        for (BlockingQueue<PeerConnection> pool : connections.values())
+            for (PeerConnection connection : pool)
+                closeQuietly(connection);
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    // Whether the cluster endpoint serves a connection from the address
+    public boolean isPeer(InetAddress address) {
+        return peers.contains(address);
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    public String owner(UUID customerId) {
+        return ring.owner(customerId);
+    }
+
+    // Tag of the ids of the orders taken by this node
+    public int getTag() {
+        return tag(self);
+    }
+
+    // The member that took an order, null when its id carries no member tag
+    public String orderNode(UUID orderId) {
+        return tags.get(IdGenerator.tag(orderId));
+    }
+
+    // The node executing the calls about the customer: its owner, or its former owner while
+    // the customer is not handed over to this node, its new owner, yet
+    String target(UUID customerId) {
+        String owner = ring.owner(customerId);
+        if (!owner.equals(self))
+            return servingPeer() ? self : owner;
+        HashRing former = formerRing;
+        if (former.isEmpty() || customerRepository.existsById(customerId))
+            return self;
+        return former.owner(customerId);
+    }
+
+    public interface Call {
+        Object proceed() throws Throwable;
+    }
+
+    public interface Remote {
+        Object call(String node) throws Throwable;
+    }
+
+    // Finds a customer on the node keeping it, asking its new owner when it moved meanwhile
+    public Object find(UUID customerId, Call local) throws Throwable {
+        return route(customerId, target -> findById(target, customerId), local, false);
+    }
+
+    // Executes a call about a customer on the node keeping it, again where it went when it moved meanwhile
+    public Object execute(UUID customerId, Remote remote, Call local) throws Throwable {
+        return route(customerId, remote, local, true);
+    }
+
+    private Object route(UUID customerId, Remote remote, Call local, boolean kept) throws Throwable {
+        String target = target(customerId);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (!target.equals(self))
+                    return remote.call(target);
+                return fenced(customerId, () -> {
+                    if (kept && !customerRepository.existsById(customerId))
+                        throw new CustomerMovedException(self, destination(customerId));
+                    return local.proceed();
+                });
+            } catch (CustomerMovedException e) {
+                String moved = e.getDestination() != null ? e.getDestination() : target(customerId);
+                if (moved.equals(target) || attempt == ATTEMPTS)
+                    throw e;
+                target = moved;
+            }
+        }
+    }
+
+    // Where a customer not kept here went, null when this node owns it
+    String destination(UUID customerId) {
+        String owner = ring.owner(customerId);
+        return owner.equals(self) ? null : owner;
+    }
+
+    // Executes a call about a customer kept here, once its handover, if any, is over
+    private Object fenced(UUID customerId, Call call) throws Throwable {
+        ReentrantReadWriteLock fence = fences[Math.floorMod(customerId.hashCode(), FENCES)];
+        if (fence.getReadHoldCount() > 0)
+            return call.proceed(); // nested call, a waiting handover would wait for it
+        while (true) {
+            CountDownLatch handover = handovers.get(customerId);
+            if (handover != null)
+                awaitHandover(handover);
+            fence.readLock().lock();
+            try {
+                if (!handovers.containsKey(customerId))
+                    return call.proceed();
+            } finally {
+                fence.readLock().unlock();
+            }
+        }
+    }
+
+    private void awaitHandover(CountDownLatch handover) {
+        try {
+            if (!handover.await(timeoutMillis * 2L, TimeUnit.MILLISECONDS))
+                throw new ClusterException(self, "handover of the customer still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterException(self, e);
+        }
+    }
+
+    public boolean servingPeer() {
+        return SERVING_PEER.get() != null;
+    }
+
+    static void servingPeer(boolean serving) {
+        if (serving)
+            SERVING_PEER.set(Boolean.TRUE);
+        else
+            SERVING_PEER.remove();
+    }
+
+    // The customer as kept by this node, or as given when this node does not own it
+    public Customer stored(Customer customer) {
+        return customerRepository.findById(customer.getId()).orElse(customer);
+    }
+
+    public ClusterStatus status() {
+        return new ClusterStatus(self, ring.nodes(), customerRepository.count(), movedIn.get(), movedOut.get());
+    }
+
+    // ---- calls forwarded to the owner of a customer
+
+    public Optional<Customer> findById(String node, UUID id) {
+        ByteBuffer response = call(node, request(FIND, id, 0));
+        if (response.get(0) == PosProtocol.UNKNOWN_CUSTOMER)
+            return Optional.empty();
+        expectOk(node, response);
+        return Optional.of(readCustomer(id, response));
+    }
+
+    // Names are not partitioned: every other node is asked in turn
+    public Optional<Customer> findByName(String name) {
+        for (String node : ring.nodes()) {
+            if (node.equals(self))
+                continue;
+            ByteBuffer response = call(node, putString(request(FIND_BY_NAME, null, stringSize(name)), name));
+            if (response.get(0) == PosProtocol.UNKNOWN_CUSTOMER)
+                continue;
+            expectOk(node, response);
+            UUID id = new UUID(response.getLong(), response.getLong());
+            return Optional.of(readCustomer(id, response));
+        }
+        return Optional.empty();
+    }
+
+    public int update(String owner, Customer customer, Item item) throws NegativeQuantityException {
+        ByteBuffer response = call(owner, request(PosProtocol.UPDATE, customer.getId(), 5)
+                .put((byte) item.getCookie().ordinal()).putInt(item.getQuantity()));
+        if (response.get(0) == PosProtocol.NEGATIVE_QUANTITY)
+            throw new NegativeQuantityException(customer.getName(), item.getCookie(), response.position(1).getInt());
+        expectOk(owner, response);
+        return response.getInt();
+    }
+
+    public Set<Item> contents(String owner, Customer customer) {
+        return getItems(exchange(owner, request(PosProtocol.CONTENTS, customer.getId(), 0)));
+    }
+
+    public double price(String owner, Customer customer) {
+        return exchange(owner, request(PRICE, customer.getId(), 0)).getDouble();
+    }
+
+    public Order validate(String owner, Customer customer) throws EmptyCartException, PaymentException, OutOfStockException {
+        ByteBuffer response = call(owner, request(CHECKOUT, customer.getId(), 0));
+        if (response.get(0) == PosProtocol.EMPTY_CART)
+            throw new EmptyCartException(customer.getName());
+        if (response.get(0) == PosProtocol.PAYMENT_REFUSED)
+            throw new PaymentException(customer.getName(), response.position(1).getDouble());
+        if (response.get(0) == PosProtocol.OUT_OF_STOCK)
+            throw new OutOfStockException(Cookies.values()[response.get(1)], response.position(2).getInt(), response.getLong());
+        expectOk(owner, response);
+        UUID orderId = new UUID(response.getLong(), response.getLong());
+        OrderStatus status = OrderStatus.values()[response.get()];
+        double price = response.getDouble();
+        return Order.restore(orderId, customer.getId(), getItems(response), status, price);
+    }
+
+    // The customer is created on the owner of its new id, its card being kept by this node,
+    // which only hands the token over. Counted by this node, the name having no owner, before
+    // the name is looked for on every node
+    public Customer register(String name, String creditCard) throws AlreadyExistingCustomerException {
+        rateLimits.ifPresent(limits -> limits.acquireRegistration(name));
+        for (Customer customer : customerRepository.findAll())
+            if (name.equals(customer.getName()))
+                throw new AlreadyExistingCustomerException(name);
+        if (findByName(name).isPresent())
+            throw new AlreadyExistingCustomerException(name);
+        UUID id = IdGenerator.next();
+        String owner = owner(id);
+        String token = creditCard == null ? null : cardVault.tokenize(creditCard);
+        if (owner.equals(self))
+            return create(id, name, token);
+        ByteBuffer request = request(REGISTER, id, stringSize(name) + stringSize(token));
+        try {
+            Customer customer = readCustomer(id, exchange(owner, putString(putString(request, name), token)));
+            if (token != null)
+                remoteCards.put(token, id);
+            return customer;
+        } catch (RuntimeException e) {
+            if (token != null)
+                cardVault.forget(token);
+            throw e;
+        }
+    }
+
+    Customer create(UUID id, String name, String cardToken) {
+        Customer customer = new Customer(id, name, cardToken);
+        customerRepository.save(customer, id);
+        return customer;
+    }
+
+    // Takes the ownership of a customer and of its cart, handed over by another node, and of
+    // its card when given its number, the node keeping it leaving
+    Customer adopt(UUID id, String name, String cardToken, Set<Item> cart, String cardNumber) {
+        Customer customer = create(id, name, cardNumber.isEmpty() ? cardToken : cardVault.tokenize(cardNumber));
+        if (cardToken != null && keepsCard(cardToken))
+            remoteCards.remove(cardToken); // back with its card
+        if (!cart.isEmpty())
+            cartRepository.save(new HashSet<>(cart), id);
+        movedIn.incrementAndGet();
+        return customer;
+    }
+
+    // The customer is fenced from the calls in progress on, so that no cart update is lost
+    // between its copy and its deletion, the calls about it then going to its new owner
+    private void handOver(String node, UUID id) {
+        CountDownLatch handedOver = new CountDownLatch(1);
+        ReentrantReadWriteLock fence = fences[Math.floorMod(id.hashCode(), FENCES)];
+        fence.writeLock().lock();
+        try {
+            handovers.put(id, handedOver);
+        } finally {
+            fence.writeLock().unlock();
+        }
+        try {
+            Optional<Customer> customer = customerRepository.findById(id);
+            if (customer.isEmpty())
+                return;
+            String name = customer.get().getName();
+            String token = customer.get().getCardToken();
+            Set<Item> cart = cartRepository.findById(id).orElse(Set.of());
+            String number = leaving() && keepsCard(token) ? cardVault.resolve(token).orElse("") : "";
+            ByteBuffer request = request(ADOPT, id, stringSize(name) + stringSize(token) + itemsSize(cart) + stringSize(number));
+            exchange(node, putString(putItems(putString(putString(request, name), token), cart), number));
+            if (token != null && number.isEmpty())
+                remoteCards.put(token, id); // still the card of the customer, on its new owner
+            customerRepository.deleteById(id);
+            cartRepository.deleteById(id);
+            movedOut.incrementAndGet();
+        } finally {
+            handovers.remove(id);
+            handedOver.countDown();
+        }
+    }
+
+    // ---- cards, kept by the node that tokenized them
+
+    // The token of a card tokenized by this node, tagged with it
+    public String cardToken(String vaultToken) {
+        return vaultToken == null ? null : String.format("%03x.", getTag()) + vaultToken;
+    }
+
+    // The token given to the vault of the node keeping the card
+    public static String vaultToken(String cardToken) {
+        return cardToken.substring(4);
+    }
+
+    // The member keeping the card, this node even once it left, null for a token without a
+    // member tag
+    public String cardNode(String cardToken) {
+        int tag = cardTag(cardToken);
+        if (tag < 0)
+            return null;
+        return tag == getTag() ? self : tags.get(tag);
+    }
+
+    public boolean keepsCard(String cardToken) {
+        return self.equals(cardNode(cardToken));
+    }
+
+    // A card whose node left without handing it over, which the owner of its customer may keep
+    public boolean orphanCard(String cardToken) {
+        return cardTag(cardToken) >= 0 && cardNode(cardToken) == null;
+    }
+
+    private static int cardTag(String cardToken) {
+        if (cardToken == null || cardToken.length() < 4 || cardToken.charAt(3) != '.')
+            return -1;
+        try {
+            return Integer.parseInt(cardToken.substring(0, 3), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Whether the card is to be wiped along with its customer: not when the customer moved,
+    // a card kept here being then remembered until its owner forgets it
+    public boolean releases(String cardToken) {
+        if (cardToken == null)
+            return true;
+        return (keepsCard(cardToken) ? remoteCards.get(cardToken) : remoteCards.remove(cardToken)) == null;
+    }
+
+    // The owner of a moved customer forgot its card, which is wiped here from then on
+    void forgotten(String cardToken) {
+        remoteCards.remove(cardToken);
+    }
+
+    // Keeps the card of a customer kept here, handed over by the node keeping it, which leaves
+    void keepCard(UUID customerId, String formerToken, String cardNumber) {
+        try {
+            execute(customerId, owner -> {
+                throw new CustomerMovedException(self, owner);
+            }, () -> {
+                String token = cardVault.tokenize(cardNumber);
+                Optional<Customer> updated = customerRepository.update(customerId, customer -> formerToken.equals(customer.getCardToken())
+                        ? new Customer(customerId, customer.getName(), token) : customer);
+                if (updated.isEmpty() || !token.equals(updated.get().getCardToken()))
+                    cardVault.forget(token); // the customer changed its card meanwhile
+                return null;
+            });
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ClusterException(self, e);
+        }
+    }
+
+    // This node leaving, the cards of the customers kept by other nodes go to their owners
+    private void handCards() {
+        for (Map.Entry<String, UUID> moved : remoteCards.entrySet()) {
+            String token = moved.getKey();
+            UUID id = moved.getValue();
+            if (!keepsCard(token)) {
+                remoteCards.remove(token);
+                continue;
+            }
+            Optional<String> number = cardVault.resolve(token);
+            try {
+                if (number.isPresent()) {
+                    ByteBuffer request = request(CARD, id, stringSize(token) + stringSize(number.get()));
+                    execute(id, owner -> exchange(owner, putString(putString(request, token), number.get())), () -> null);
+                }
+                remoteCards.remove(token);
+                cardVault.forget(token);
+            } catch (Throwable e) {
+                LOG.warn("VSCF:Cluster cannot hand the card of {} over: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private boolean leaving() {
+        return !ring.nodes().contains(self);
+    }
+
+    // Payments are made by the node keeping the card, the card number never leaving it
+    public boolean pay(String node, Customer customer, double value) {
+        ByteBuffer request = request(PAY, customer.getId(), stringSize(customer.getName()) + stringSize(customer.getCardToken()) + Double.BYTES);
+        return exchange(node, putString(putString(request, customer.getName()), customer.getCardToken()).putDouble(value)).get() != 0;
+    }
+
+    // In the background, as the customer repository drops cards within its updates
+    public void forget(String cardToken) {
+        String keeper = cardNode(cardToken);
+        if (keeper == null)
+            return;
+        try {
+            rebalancer.execute(() -> {
+                try {
+                    exchange(keeper, putString(request(FORGET, null, stringSize(cardToken)), cardToken));
+                } catch (ClusterException e) {
+                    LOG.warn("VSCF:Cluster cannot have {} forget a card: {}", keeper, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.debug("VSCF:Cluster closed, card kept by {} not forgotten", keeper);
+        }
+    }
+
+    // ---- membership
+
+    public void join(String node) {
+        HashRing former;
+        HashRing changed;
+        synchronized (this) {
+            former = ring;
+            changed = former.with(address(node));
+            members(changed.nodes());
+        }
+        notifyMembers(former, changed);
+    }
+
+    public void leave(String node) {
+        HashRing former;
+        HashRing changed;
+        synchronized (this) {
+            former = ring;
+            changed = former.without(address(node));
+            members(changed.nodes());
+        }
+        notifyMembers(former, changed);
+    }
+
+    // Also notifies a leaving node, so that it hands its customers over
+    private void notifyMembers(HashRing former, HashRing changed) {
+        Set<String> notified = new TreeSet<>(former.nodes());
+        notified.addAll(changed.nodes());
+        notified.remove(self);
+        for (String node : notified) {
+            ByteBuffer request = request(MEMBERS, null, Short.BYTES + changed.nodes().stream().mapToInt(ClusterProtocol::stringSize).sum());
+            request.putShort((short) changed.nodes().size());
+            changed.nodes().forEach(member -> putString(request, member));
+            try {
+                exchange(node, request);
+            } catch (ClusterException e) {
+                LOG.warn("VSCF:Cluster cannot notify {} of the membership: {}", node, e.getMessage());
+            }
+        }
+    }
+
+    synchronized void members(Collection<String> members) {
+        tags = tags(members);
+        if (!ring.nodes().equals(new TreeSet<>(members)))
+            formerRing = ring;
+        ring = new HashRing(members, virtualNodes);
+        Set<String> known = new HashSet<>(configured);
+        known.addAll(members);
+        peers = resolve(known);
+        LOG.info("VSCF:Cluster members are now {}", ring.nodes());
+        rebalancer.execute(this::rebalance);
+    }
+
+    // Hands the customers owned by other nodes over, those that cannot be are retried at the next change
+    private void rebalance() {
+        HashRing current = ring;
+        List<Customer> leaving = new ArrayList<>();
+        for (Customer customer : customerRepository.findAll())
+            if (current.isEmpty() || !current.owner(customer.getId()).equals(self))
+                leaving.add(customer);
+        for (Customer customer : leaving) {
+            if (current.isEmpty())
+                break; // no node left to take them
+            UUID id = customer.getId();
+            String owner = current.owner(id);
+            try {
+                handOver(owner, id);
+            } catch (ClusterException e) {
+                LOG.warn("VSCF:Cluster cannot hand {} over to {}: {}", id, owner, e.getMessage());
+            }
+        }
+        if (!leaving.isEmpty())
+            LOG.info("VSCF:Cluster handed {} customers over", movedOut.get());
+        if (!current.isEmpty() && leaving())
+            handCards();
+    }
+
+    // Waits for the pending rebalancing, for tests and benchmarks
+    public void awaitRebalancing(Duration timeout) throws InterruptedException {
+        try {
+            rebalancer.submit(() -> {}).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Rebalancing not completed", e);
+        }
+    }
+
+    // Every member needs its own tag, checked before a membership is applied
+    private static Map<Integer, String> tags(Collection<String> members) {
+        Map<Integer, String> tags = new HashMap<>();
+        for (String member : members) {
+            String other = tags.put(tag(member), member);
+            if (other != null)
+                throw new IllegalArgumentException("Cluster nodes " + other + " and " + member
+                        + " share the order tag " + tag(member) + ", one of them must use another address");
+        }
+        return tags;
+    }
+
+    static int tag(String node) {
+        return (int) (HashRing.hash(node) & IdGenerator.MAX_TAG);
+    }
+
+    // ---- transport
+
+    ByteBuffer call(String node, ByteBuffer request) {
+        BlockingQueue<PeerConnection> pool = connections.computeIfAbsent(node, key -> new LinkedBlockingQueue<>());
+        PeerConnection connection = pool.poll();
+        try {
+            if (connection == null)
+                connection = new PeerConnection(socketAddress(node), timeoutMillis);
+            ByteBuffer response = connection.exchange(request);
+            pool.offer(connection);
+            return response;
+        } catch (IOException e) {
+            if (connection != null)
+                closeQuietly(connection);
+            throw new ClusterException(node, e);
+        }
+    }
+
+    private ByteBuffer exchange(String node, ByteBuffer request) {
+        ByteBuffer response = call(node, request);
+        expectOk(node, response);
+        return response;
+    }
+
+    static void expectOk(String node, ByteBuffer response) {
+        byte status = response.get();
+        if (status == PosProtocol.NOT_LEADER)
+            throw new NotLeaderException("a call forwarded to " + node);
+        if (status == PosProtocol.OVERLOADED)
+            throw new OverloadedException(getString(response) + " on " + node, response.getInt());
+        if (status == MOVED)
+            throw new CustomerMovedException(node, getString(response));
+        if (status == PosProtocol.UNKNOWN_CUSTOMER)
+            throw new CustomerMovedException(node, null);
+        if (status == PosProtocol.RATE_LIMITED)
+            throw new RateLimitedException(getString(response), getString(response), response.getLong());
+        if (status != PosProtocol.OK)
+            throw new ClusterException(node, "request refused with status " + status);
+    }
+
+    private static Customer readCustomer(UUID id, ByteBuffer response) {
+        String name = getString(response);
+        String token = getString(response);
+        return new Customer(id, name, token.isEmpty() ? null : token);
+    }
+
+    private static String address(String node) {
+        int colon = node.lastIndexOf(':');
+        if (colon <= 0)
+            throw new IllegalArgumentException("Cluster nodes are host:port, not " + node);
+        Integer.parseInt(node.substring(colon + 1)); // a numeric port
+        return node;
+    }
+
+    private static String host(String node) {
+        return node.substring(0, node.lastIndexOf(':'));
+    }
+
+    // The addresses of the nodes, those whose host cannot be resolved being left out
+    private static Set<InetAddress> resolve(Collection<String> nodes) {
+        Set<InetAddress> addresses = new HashSet<>();
+        for (String node : nodes) {
+            try {
+                addresses.addAll(Arrays.asList(InetAddress.getAllByName(host(node))));
+            } catch (UnknownHostException e) {
+                LOG.warn("VSCF:Cluster cannot resolve {}: {}", node, e.getMessage());
+            }
+        }
+        return addresses;
+    }
+
+    private static InetSocketAddress socketAddress(String node) {
+        int colon = node.lastIndexOf(':');
+        return new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+    }
+
+    private static void closeQuietly(PeerConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            LOG.debug("VSCF:Cluster close failure", e);
+        }
+    }
+
+}
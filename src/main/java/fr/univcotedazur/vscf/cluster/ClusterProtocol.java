@@ -0,0 +1,110 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.pos.PosProtocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Requests between the nodes of a cluster, on the framing of PosProtocol: an opcode, the
+ * customer id as two longs, then:
+ *   UPDATE, CONTENTS as in PosProtocol, NEGATIVE_QUANTITY carrying the potential quantity (int)
+ *   FIND                                  -> status + customer
+ *   FIND_BY_NAME + name (id ignored)      -> status + id (2 longs) + customer
+ *   PRICE                                 -> status + price (double)
+ *   CHECKOUT                              -> status + order id (2 longs) + status ordinal (byte) + price (double) + items,
+ *                                            PAYMENT_REFUSED carrying the amount (double),
+ *                                            OUT_OF_STOCK the cookie ordinal (byte), requested (int) and available (long) units
+ *   REGISTER + name + card token          -> status + customer, created by the node owning its id
+ *   ADOPT + name + card token + items + card number -> status + customer, the node now owns the customer and
+ *                                            its cart, and keeps its card when a number is given (empty otherwise)
+ *   MEMBERS + count (short) + count x node (id ignored) -> status
+ *   STATUS + node (the order id instead)  -> status + status ordinal (byte), UNKNOWN_ORDER when not kept,
+ *                                            the node being sent an INVALIDATE at the next change of the order
+ *   INVALIDATE (the order id instead)     -> status
+ *   PAY + name + card token + amount (double) -> status + accepted (byte), paid by the node keeping the card
+ *   FORGET + card token (id ignored)      -> status, the node keeping the card wipes it
+ *   CARD + card token + card number       -> status, the owner of the customer keeps its card from then on
+ * MOVED, for any request about a customer this node does not keep but another one owns, carries that
+ * node (string), the customer having been handed over to it or being unknown.
+ * OVERLOADED, for any request refused by the admission control of the node, carries the lane (string)
+ * and its limit (int); RATE_LIMITED the operation and key (strings) and the wait in milliseconds (long).
+ * Card numbers only travel when the node keeping them leaves, to the owners of their customers
+ * (ADOPT, CARD): a card token names the node keeping the card (see ClusterNode.cardNode).
+ * A customer is its name then its card token, an absent card being an empty string;
+ * strings are a short length followed by UTF-8 bytes and items a count (byte) followed by
+ * count x (ordinal byte, quantity int).
+ */
+public final class ClusterProtocol {
+
+    private ClusterProtocol() {}
+
+    public static final byte FIND = 16;
+    public static final byte FIND_BY_NAME = 17;
+    public static final byte PRICE = 18;
+    public static final byte CHECKOUT = 19;
+    public static final byte ADOPT = 20;
+    public static final byte MEMBERS = 21;
+    public static final byte REGISTER = 22;
+    public static final byte STATUS = 23;
+    public static final byte INVALIDATE = 24;
+    public static final byte PAY = 25;
+    public static final byte FORGET = 26;
+    public static final byte CARD = 27;
+
+    // status, beyond those of PosProtocol
+    public static final byte UNKNOWN_ORDER = 16;
+    public static final byte MOVED = 17;
+
+    private static final Cookies[] COOKIES = Cookies.values();
+    private static final UUID NO_ID = new UUID(0, 0);
+
+    static ByteBuffer request(byte opcode, UUID id, int capacity) {
+        UUID key = id == null ? NO_ID : id;
+        return ByteBuffer.allocate(1 + 2 * Long.BYTES + capacity).put(opcode)
+                .putLong(key.getMostSignificantBits()).putLong(key.getLeastSignificantBits());
+    }
+
+    static ByteBuffer putString(ByteBuffer buffer, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        return buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int stringSize(String value) {
+        return Short.BYTES + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    static ByteBuffer putItems(ByteBuffer buffer, Set<Item> items) {
+        buffer.put((byte) items.size());
+        for (Item item : items)
+            buffer.put((byte) item.getCookie().ordinal()).putInt(item.getQuantity());
+        return buffer;
+    }
+
+    static Set<Item> getItems(ByteBuffer buffer) {
+        Set<Item> items = new HashSet<>();
+        for (int count = buffer.get(); count > 0; count--) {
+            int ordinal = buffer.get();
+            if (ordinal < 0 || ordinal >= COOKIES.length)
+                throw new IllegalArgumentException("Unknown cookie " + ordinal);
+            items.add(new Item(COOKIES[ordinal], buffer.getInt()));
+        }
+        return items;
+    }
+
+    static int itemsSize(Set<Item> items) {
+        return 1 + items.size() * (1 + Integer.BYTES);
+    }
+
+}
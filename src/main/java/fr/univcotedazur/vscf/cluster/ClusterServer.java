@@ -0,0 +1,245 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.exceptions.ClusterException;
+import fr.univcotedazur.vscf.exceptions.CustomerMovedException;
+import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.NotLeaderException;
+import fr.univcotedazur.vscf.exceptions.OverloadedException;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.PaymentException;
+import fr.univcotedazur.vscf.exceptions.UnknownOrderId;
+import fr.univcotedazur.vscf.interfaces.Bank;
+import fr.univcotedazur.vscf.interfaces.CardVault;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CustomerFinder;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import fr.univcotedazur.vscf.pos.PosProtocol;
+import fr.univcotedazur.vscf.pos.PosServer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static fr.univcotedazur.vscf.cluster.ClusterProtocol.*;
+
+/**
+ * Cluster endpoint of a node, listening on vscf.cluster.port for the calls forwarded by its
+ * peers (see ClusterProtocol), on the bind address of the node and for its peers only. It
+ * runs on its own selector thread and vscf.cluster.workers threads, apart from the
+ * terminals, and executes every call locally, so that a node waiting for a peer never waits
+ * for itself, and a peer waiting for the bank never holds the calls of the others.
+ */
+@Component
+@Lazy(false) // the endpoint must listen even when beans are lazily initialized
+@ConditionalOnProperty("vscf.cluster.port")
+public class ClusterServer extends PosServer {
+
+    private final CustomerFinder finder;
+    private final CartModifier cartModifier;
+    private final CartProcessor cartProcessor;
+    private final Tracker tracker;
+    private final Bank bank;
+    private final CardVault cardVault;
+    private final ClusterNode node;
+    private final OrderTracking tracking;
+
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    @Autowired
+    public ClusterServer(CustomerFinder finder, CartModifier cartModifier, CartProcessor cartProcessor, Tracker tracker,
+                         Bank bank, CardVault cardVault, ClusterNode node, OrderTracking tracking,
+                         @Value("${vscf.cluster.workers:16}") int workers) {
+        super(finder, cartModifier, cartProcessor, node.getBindAddress(), node.getPort(), workers, "Cluster");
+        this.finder = finder;
+        this.cartModifier = cartModifier;
+        this.cartProcessor = cartProcessor;
+        this.tracker = tracker;
+        this.bank = bank;
+        this.cardVault = cardVault;
+        this.node = node;
+        this.tracking = tracking;
+    }
+
+    // The members can change the membership: only they and the configured nodes are served
+    @Override
+    protected boolean accepts(InetSocketAddress remote) {
+        return node.isPeer(remote.getAddress());
+    }
+
+    @Override
+    protected ByteBuffer handle(ByteBuffer frame) {
+        ClusterNode.servingPeer(true);
+        try {
+            return serve(frame);
+        } catch (CustomerMovedException e) {
+            return unknown(e.getDestination());
+        } catch (ClusterException e) {
+            return status(PosProtocol.UNAVAILABLE);
+        } catch (NotLeaderException e) {
+            return status(PosProtocol.NOT_LEADER);
+        } catch (OverloadedException e) {
+            return putString(ByteBuffer.allocate(1 + stringSize(e.getLane()) + Integer.BYTES).put(PosProtocol.OVERLOADED), e.getLane())
+                    .putInt(e.getLimit()).flip();
+        } catch (RateLimitedException e) {
+            return putString(putString(ByteBuffer.allocate(1 + stringSize(e.getOperation()) + stringSize(e.getKey()) + Long.BYTES)
+                    .put(PosProtocol.RATE_LIMITED), e.getOperation()), e.getKey()).putLong(e.getRetryAfterMillis()).flip();
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return status(PosProtocol.BAD_REQUEST);
+        } finally {
+            ClusterNode.servingPeer(false);
+        }
+    }
+
+    private ByteBuffer serve(ByteBuffer frame) {
+        byte opcode = frame.get();
+        UUID id = new UUID(frame.getLong(), frame.getLong());
+        switch (opcode) {
+            case REGISTER:
+            case ADOPT:
+                String name = getString(frame);
+                String token = getString(frame);
+                Customer adopted = opcode == REGISTER ? node.create(id, name, token.isEmpty() ? null : token)
+                        : node.adopt(id, name, token.isEmpty() ? null : token, getItems(frame), getString(frame));
+                return customer(ByteBuffer.allocate(1 + customerSize(adopted)).put(PosProtocol.OK), adopted).flip();
+            case PAY:
+                return pay(new Customer(id, getString(frame), getString(frame)), frame.getDouble());
+            case CARD:
+                String former = getString(frame);
+                node.keepCard(id, former, getString(frame));
+                return status(PosProtocol.OK);
+            case FORGET:
+                String forgotten = getString(frame);
+                if (node.keepsCard(forgotten)) {
+                    node.forgotten(forgotten);
+                    cardVault.forget(forgotten);
+                }
+                return status(PosProtocol.OK);
+            case MEMBERS:
+                List<String> members = new ArrayList<>();
+                for (int count = frame.getShort(); count > 0; count--)
+                    members.add(getString(frame));
+                node.members(members);
+                return status(PosProtocol.OK);
+            case FIND_BY_NAME:
+                Optional<Customer> named = finder.findByName(getString(frame));
+                if (named.isEmpty())
+                    return status(PosProtocol.UNKNOWN_CUSTOMER);
+                UUID namedId = named.get().getId();
+                ByteBuffer found = ByteBuffer.allocate(1 + 2 * Long.BYTES + customerSize(named.get())).put(PosProtocol.OK)
+                        .putLong(namedId.getMostSignificantBits()).putLong(namedId.getLeastSignificantBits());
+                return customer(found, named.get()).flip();
+            case STATUS:
+                return status(id, getString(frame));
+            case INVALIDATE:
+                tracking.invalidate(id);
+                return status(PosProtocol.OK);
+            default:
+                break;
+        }
+        Optional<Customer> customer = finder.findById(id);
+        if (customer.isEmpty())
+            return unknown(node.destination(id));
+        switch (opcode) {
+            case FIND:
+                return customer(ByteBuffer.allocate(1 + customerSize(customer.get())).put(PosProtocol.OK), customer.get()).flip();
+            case PosProtocol.CONTENTS:
+                Set<Item> items = cartProcessor.contents(customer.get());
+                return putItems(ByteBuffer.allocate(1 + itemsSize(items)).put(PosProtocol.OK), items).flip();
+            case PosProtocol.UPDATE:
+                return update(customer.get(), frame);
+            case PRICE:
+                return ByteBuffer.allocate(1 + Double.BYTES).put(PosProtocol.OK).putDouble(cartProcessor.price(customer.get())).flip();
+            case CHECKOUT:
+                return checkout(customer.get());
+            default:
+                return status(PosProtocol.BAD_REQUEST);
+        }
+    }
+
+    private ByteBuffer update(Customer customer, ByteBuffer frame) {
+        int ordinal = frame.get();
+        if (ordinal < 0 || ordinal >= COOKIES.length)
+            return status(PosProtocol.BAD_REQUEST);
+        try {
+            int quantity = cartModifier.update(customer, new Item(COOKIES[ordinal], frame.getInt()));
+            return ByteBuffer.allocate(1 + Integer.BYTES).put(PosProtocol.OK).putInt(quantity).flip();
+        } catch (NegativeQuantityException e) {
+            return ByteBuffer.allocate(1 + Integer.BYTES).put(PosProtocol.NEGATIVE_QUANTITY).putInt(e.getPotentialQuantity()).flip();
+        }
+    }
+
+    private ByteBuffer pay(Customer customer, double value) {
+        boolean accepted;
+        try {
+            accepted = bank.pay(customer, value);
+        } catch (PaymentException e) {
+            accepted = false;
+        }
+        return ByteBuffer.allocate(2).put(PosProtocol.OK).put((byte) (accepted ? 1 : 0)).flip();
+    }
+
+    private ByteBuffer checkout(Customer customer) {
+        try {
+            Order order = cartProcessor.validate(customer);
+            ByteBuffer response = ByteBuffer.allocate(2 + 2 * Long.BYTES + Double.BYTES + itemsSize(order.getItems())).put(PosProtocol.OK)
+                    .putLong(order.getId().getMostSignificantBits()).putLong(order.getId().getLeastSignificantBits())
+                    .put((byte) order.getStatus().ordinal()).putDouble(order.getPrice());
+            return putItems(response, order.getItems()).flip();
+        } catch (EmptyCartException e) {
+            return status(PosProtocol.EMPTY_CART);
+        } catch (PaymentException e) {
+            return ByteBuffer.allocate(1 + Double.BYTES).put(PosProtocol.PAYMENT_REFUSED).putDouble(e.getAmount()).flip();
+        } catch (OutOfStockException e) {
+            return ByteBuffer.allocate(2 + Integer.BYTES + Long.BYTES).put(PosProtocol.OUT_OF_STOCK)
+                    .put((byte) e.getCookie().ordinal()).putInt(e.getRequested()).putLong(e.getAvailable()).flip();
+        }
+    }
+
+    // Watched before being read, so that a change racing with the answer is still pushed
+    private ByteBuffer status(UUID orderId, String peer) {
+        tracking.watch(orderId, peer);
+        try {
+            return ByteBuffer.allocate(2).put(PosProtocol.OK).put((byte) tracker.retrieveStatus(orderId).ordinal()).flip();
+        } catch (UnknownOrderId e) {
+            tracking.unwatch(orderId, peer);
+            return status(UNKNOWN_ORDER);
+        }
+    }
+
+    private static ByteBuffer customer(ByteBuffer buffer, Customer customer) {
+        return putString(putString(buffer, customer.getName()), customer.getCardToken());
+    }
+
+    private static int customerSize(Customer customer) {
+        return stringSize(customer.getName()) + stringSize(customer.getCardToken());
+    }
+
+    // A customer not kept here: the node that owns it, if another one
+    private static ByteBuffer unknown(String destination) {
+        if (destination == null)
+            return status(PosProtocol.UNKNOWN_CUSTOMER);
+        return putString(ByteBuffer.allocate(1 + stringSize(destination)).put(MOVED), destination).flip();
+    }
+
+    private static ByteBuffer status(byte status) {
+        return ByteBuffer.allocate(1).put(status).flip();
+    }
+
+}
@@ -0,0 +1,48 @@
+package fr.univcotedazur.vscf.cluster;
+
+import java.util.SortedSet;
+
+// Snapshot of the cluster as seen by a node
+public class ClusterStatus {
+
+    private String self;
+
+    private SortedSet<String> members;
+
+    private long customers;
+
+    private long movedIn;
+
+    private long movedOut;
+
+    public ClusterStatus(String self, SortedSet<String> members, long customers, long movedIn, long movedOut) {
+        this.self = self;
+        this.members = members;
+        this.customers = customers;
+        this.movedIn = movedIn;
+        this.movedOut = movedOut;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public SortedSet<String> getMembers() {
+        return members;
+    }
+
+    // customers owned by this node
+    public long getCustomers() {
+        return customers;
+    }
+
+    // customers handed over to this node by a rebalancing
+    public long getMovedIn() {
+        return movedIn;
+    }
+
+    // customers handed over by this node to their new owner
+    public long getMovedOut() {
+        return movedOut;
+    }
+}
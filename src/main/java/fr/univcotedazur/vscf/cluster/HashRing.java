@@ -0,0 +1,104 @@
+package fr.univcotedazur.vscf.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Immutable consistent-hash ring of the cluster nodes. Every node is placed at several
+ * points of a 64-bit ring (its virtual nodes), and a customer belongs to the node of the
+ * first point following the hash of its id. Adding or removing a node thus only moves the
+ * customers of the ring arcs it gains or loses, about 1/n of them.
+ */
+public final class HashRing {
+
+    private final SortedSet<String> nodes;
+    private final int virtualNodes;
+    private final long[] points; // sorted hashes of the virtual nodes
+    private final String[] owners; // node of each point
+
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes <= 0)
+            throw new IllegalArgumentException("At least one virtual node per node: " + virtualNodes);
+        this.nodes = Collections.unmodifiableSortedSet(new TreeSet<>(nodes));
+        this.virtualNodes = virtualNodes;
+        long[] hashes = new long[this.nodes.size() * virtualNodes];
+        String[] names = new String[hashes.length];
+        int i = 0;
+        for (String node : this.nodes) {
+            for (int v = 0; v < virtualNodes; v++, i++) {
+                hashes[i] = hash(node + "#" + v);
+                names[i] = node;
+            }
+        }
+        // sort the points, carrying their owner along
+        Integer[] order = new Integer[hashes.length];
+        Arrays.setAll(order, k -> k);
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[hashes.length];
+        this.owners = new String[hashes.length];
+        for (int k = 0; k < order.length; k++) {
+            points[k] = hashes[order[k]];
+            owners[k] = names[order[k]];
+        }
+    }
+
+    public SortedSet<String> nodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    public HashRing with(String node) {
+        TreeSet<String> members = new TreeSet<>(nodes);
+        members.add(node);
+        return new HashRing(members, virtualNodes);
+    }
+
+    public HashRing without(String node) {
+        TreeSet<String> members = new TreeSet<>(nodes);
+        members.remove(node);
+        return new HashRing(members, virtualNodes);
+    }
+
+    public String owner(UUID id) {
+        if (points.length == 0)
+            throw new IllegalStateException("Empty cluster");
+        int index = Arrays.binarySearch(points, hash(id));
+        if (index < 0)
+            index = -index - 1;
+        return owners[index == points.length ? 0 : index]; // wraps around the ring
+    }
+
+    // The random bits of the ids are mixed, so that ids generated in the same millisecond spread
+    static long hash(UUID id) {
+        return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+    }
+
+    // FNV-1a of the UTF-8 bytes, then mixed, as String.hashCode() spreads similar names poorly
+    static long hash(String point) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : point.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // finalizer of MurmurHash3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
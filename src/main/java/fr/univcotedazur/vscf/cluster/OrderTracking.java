@@ -0,0 +1,237 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.repositories.RepositoryListener;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.exceptions.ClusterException;
+import fr.univcotedazur.vscf.exceptions.UnknownOrderId;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fr.univcotedazur.vscf.cluster.ClusterProtocol.*;
+
+/**
+ * Order tracking across the cluster: an order stays on the node where it was paid, and its
+ * id carries the tag of that node (see ClusterNode.orderNode), so that its status is asked
+ * directly to that node, never broadcast. The statuses obtained from other nodes are kept
+ * in a bounded near-cache; the node keeping an order remembers who asked for it and, at the
+ * next change of the order, pushes them an invalidation, in the background. A pushed
+ * invalidation may be lost with its peer, so cached statuses also expire.
+ */
+@Component
+@Lazy(false) // the orders must be tagged from the first one
+@ConditionalOnProperty("vscf.cluster.port")
+public class OrderTracking {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderTracking.class);
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final ClusterNode node;
+    private final OrderRepository orderRepository;
+    private final int cacheSize;
+    private final long cacheTtlMillis;
+    private final int watchedOrders;
+
+    private static final class Cached {
+        final OrderStatus status;
+        final long expiresAt;
+
+        Cached(OrderStatus status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // statuses of the orders kept by other nodes, least recently used first
+    private final LinkedHashMap<UUID, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // order id -> token of the pending fetch, whose status is only cached if not invalidated meanwhile
+    private final Map<UUID, Object> fetching = new ConcurrentHashMap<>();
+    // order kept by this node -> nodes caching its status, oldest first
+    private final LinkedHashMap<UUID, Set<String>> watchers = new LinkedHashMap<>();
+
+    private final ExecutorService pusher = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "vscf-cluster-invalidate");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final RepositoryListener<Order, UUID> listener = new RepositoryListener<>() {
+        @Override
+        public void saved(UUID id, Order order) {
+            changed(id);
+        }
+
+        @Override
+        public void deleted(UUID id) {
+            changed(id);
+        }
+
+        @Override
+        public void cleared() {
+            List<UUID> all;
+            synchronized (watchers) {
+                all = new ArrayList<>(watchers.keySet());
+            }
+            all.forEach(OrderTracking.this::changed);
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidationsSent = new AtomicLong();
+    private final AtomicLong invalidationsReceived = new AtomicLong();
+
+    @Autowired
+    public OrderTracking(ClusterNode node, OrderRepository orderRepository,
+                         @Value("${vscf.cluster.status-cache-size:10000}") int cacheSize,
+                         @Value("${vscf.cluster.status-cache-ttl:30s}") Duration cacheTtl,
+                         @Value("${vscf.cluster.watched-orders:100000}") int watchedOrders) {
+        if (cacheSize <= 0 || watchedOrders <= 0)
+            throw new IllegalArgumentException("Tracking caches must be positive: " + cacheSize + ", " + watchedOrders);
+        this.node = node;
+        this.orderRepository = orderRepository;
+        this.cacheSize = cacheSize;
+        this.cacheTtlMillis = cacheTtl.toMillis();
+        this.watchedOrders = watchedOrders;
+        orderRepository.setNodeTag(node.getTag());
+        orderRepository.addListener(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        orderRepository.removeListener(listener);
+        pusher.shutdownNow();
+    }
+
+    // Whether the status of the order must be asked to another node
+    public boolean routes(UUID orderId) {
+        if (node.servingPeer())
+            return false;
+        String keeper = node.orderNode(orderId);
+        return keeper != null && !keeper.equals(node.getSelf());
+    }
+
+    public OrderStatus retrieveStatus(UUID orderId) throws UnknownOrderId {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Cached cached = cache.get(orderId);
+            if (cached != null && cached.expiresAt > now) {
+                hits.incrementAndGet();
+                return cached.status;
+            }
+        }
+        misses.incrementAndGet();
+        String keeper = node.orderNode(orderId);
+        Object token = new Object();
+        fetching.put(orderId, token);
+        ByteBuffer response;
+        try {
+            response = node.call(keeper, putString(request(STATUS, orderId, stringSize(node.getSelf())), node.getSelf()));
+        } catch (ClusterException e) {
+            fetching.remove(orderId, token);
+            throw e;
+        }
+        if (response.get(0) == UNKNOWN_ORDER) {
+            fetching.remove(orderId, token);
+            throw new UnknownOrderId(orderId);
+        }
+        ClusterNode.expectOk(keeper, response);
+        OrderStatus status = STATUSES[response.get()];
+        if (fetching.remove(orderId, token)) {
+            synchronized (cache) {
+                cache.put(orderId, new Cached(status, now + cacheTtlMillis));
+                if (cache.size() > cacheSize)
+                    cache.remove(cache.keySet().iterator().next());
+            }
+        }
+        return status;
+    }
+
+    // The peer asking for an order kept by this node is told of its next change
+    void watch(UUID orderId, String peer) {
+        synchronized (watchers) {
+            watchers.computeIfAbsent(orderId, id -> new HashSet<>()).add(peer);
+            while (watchers.size() > watchedOrders) {
+                // the oldest watched order could no longer be told of: invalidated right away
+                Iterator<Map.Entry<UUID, Set<String>>> eldest = watchers.entrySet().iterator();
+                Map.Entry<UUID, Set<String>> evicted = eldest.next();
+                eldest.remove();
+                pusher.execute(() -> push(evicted.getKey(), evicted.getValue()));
+            }
+        }
+    }
+
+    void unwatch(UUID orderId, String peer) {
+        synchronized (watchers) {
+            Set<String> peers = watchers.get(orderId);
+            if (peers != null && peers.remove(peer) && peers.isEmpty())
+                watchers.remove(orderId);
+        }
+    }
+
+    // Pushed by the node keeping the order: the next lookup asks it again
+    void invalidate(UUID orderId) {
+        invalidationsReceived.incrementAndGet();
+        fetching.remove(orderId);
+        synchronized (cache) {
+            cache.remove(orderId);
+        }
+    }
+
+    // Called by the writer of the order, the invalidations being sent by the pusher thread
+    private void changed(UUID orderId) {
+        Set<String> peers;
+        synchronized (watchers) {
+            peers = watchers.remove(orderId);
+        }
+        if (peers != null)
+            pusher.execute(() -> push(orderId, peers));
+    }
+
+    private void push(UUID orderId, Set<String> peers) {
+        for (String peer : peers) {
+            try {
+                ClusterNode.expectOk(peer, node.call(peer, request(INVALIDATE, orderId, 0)));
+                invalidationsSent.incrementAndGet();
+            } catch (ClusterException e) {
+                LOG.warn("VSCF:Cluster cannot invalidate order {} on {}: {}", orderId, peer, e.getMessage());
+            }
+        }
+    }
+
+    public TrackingStatus status() {
+        int cached;
+        int watched;
+        synchronized (cache) {
+            cached = cache.size();
+        }
+        synchronized (watchers) {
+            watched = watchers.size();
+        }
+        return new TrackingStatus(node.getTag(), cached, watched, hits.get(), misses.get(),
+                invalidationsSent.get(), invalidationsReceived.get());
+    }
+
+}
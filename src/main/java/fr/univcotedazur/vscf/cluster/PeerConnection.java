@@ -0,0 +1,55 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.vscf.pos.PosProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+// Blocking connection to the cluster endpoint of a peer, one request at a time
+class PeerConnection implements Closeable {
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    PeerConnection(InetSocketAddress address, int timeoutMillis) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // Sends a request written up to its position and returns the response, ready to be read
+    ByteBuffer exchange(ByteBuffer request) throws IOException {
+        request.flip();
+        out.writeInt(request.remaining());
+        out.write(request.array(), request.arrayOffset() + request.position(), request.remaining());
+        out.flush();
+        int length = in.readInt();
+        if (length <= 0 || length > PosProtocol.MAX_FRAME)
+            throw new IOException("invalid frame length " + length);
+        byte[] response = new byte[length];
+        in.readFully(response);
+        return ByteBuffer.wrap(response);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+}
@@ -0,0 +1,61 @@
+package fr.univcotedazur.vscf.cluster;
+
+// Snapshot of the order tracking of a node
+public class TrackingStatus {
+
+    private int tag;
+
+    private int cached;
+
+    private int watched;
+
+    private long hits;
+
+    private long misses;
+
+    private long invalidationsSent;
+
+    private long invalidationsReceived;
+
+    public TrackingStatus(int tag, int cached, int watched, long hits, long misses,
+                          long invalidationsSent, long invalidationsReceived) {
+        this.tag = tag;
+        this.cached = cached;
+        this.watched = watched;
+        this.hits = hits;
+        this.misses = misses;
+        this.invalidationsSent = invalidationsSent;
+        this.invalidationsReceived = invalidationsReceived;
+    }
+
+    // tag carried by the ids of the orders taken by this node
+    public int getTag() {
+        return tag;
+    }
+
+    // statuses of orders kept by other nodes, in the near-cache
+    public int getCached() {
+        return cached;
+    }
+
+    // orders kept by this node whose status is cached by other nodes
+    public int getWatched() {
+        return watched;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getInvalidationsSent() {
+        return invalidationsSent;
+    }
+
+    public long getInvalidationsReceived() {
+        return invalidationsReceived;
+    }
+}
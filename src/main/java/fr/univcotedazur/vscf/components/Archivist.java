@@ -0,0 +1,29 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.interfaces.OrderHistory;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class Archivist implements OrderHistory {
+
+    private OrderRepository orderRepository;
+
+    @Autowired
+    public Archivist(OrderRepository orderRepository) {
+        this.orderRepository = orderRepository;
+    }
+
+    @Override
+    public List<Order> history(Customer customer, int page, int pageSize) {
+        if (page < 0 || pageSize <= 0)
+            throw new IllegalArgumentException("Invalid page " + page + " of size " + pageSize);
+        return orderRepository.findByCustomerId(customer.getId(), page, pageSize);
+    }
+
+}
@@ -5,11 +5,14 @@ import fr.univcotedazur.vscf.entities.Item;
 import fr.univcotedazur.vscf.entities.Order;
 import fr.univcotedazur.vscf.exceptions.EmptyCartException;
 import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.PaidCheckoutException;
 import fr.univcotedazur.vscf.exceptions.PaymentException;
 import fr.univcotedazur.vscf.interfaces.CartModifier;
 import fr.univcotedazur.vscf.interfaces.CartProcessor;
 import fr.univcotedazur.vscf.interfaces.Payment;
-import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.interfaces.Pricing;
+import fr.univcotedazur.vscf.repositories.CartRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -20,60 +23,83 @@ import java.util.Set;
 @Component
 public class CartHandler implements CartModifier, CartProcessor {
 
-    CustomerRepository customerRepository;
+    CartRepository cartRepository;
 
     Payment payment;
 
+    Pricing pricing;
+
     @Autowired
-    public CartHandler(CustomerRepository customerRepository, Payment payment) {
-        this.customerRepository = customerRepository;
+    public CartHandler(CartRepository cartRepository, Payment payment, Pricing pricing) {
+        this.cartRepository = cartRepository;
         this.payment = payment;
+        this.pricing = pricing;
     }
 
+    // Within a single update of the cart, so that concurrent updates of a customer add up
     @Override
     public int update(Customer c, Item item) throws NegativeQuantityException {
-        int newQuantity = item.getQuantity();
-        Set<Item> items = contents(c);
-        Optional<Item> existing = items.stream().filter(e -> e.getCookie().equals(item.getCookie())).findFirst();
-        if (existing.isPresent()) {
-            newQuantity += existing.get().getQuantity();
-        }
-        if (newQuantity < 0) {
-            throw new NegativeQuantityException(c.getName(), item.getCookie(), newQuantity);
-        } else if (newQuantity >= 0) {
+        int[] newQuantity = {item.getQuantity()};
+        cartRepository.update(c.getId(), items -> {
+            newQuantity[0] = item.getQuantity();
+            Optional<Item> existing = items.stream().filter(e -> e.getCookie().equals(item.getCookie())).findFirst();
             if (existing.isPresent()) {
-                items.remove(existing.get());
+                newQuantity[0] += existing.get().getQuantity();
             }
-            if (newQuantity > 0) {
-                items.add(new Item(item.getCookie(), newQuantity));
+            if (newQuantity[0] >= 0) { // the cart is left as is otherwise
+                if (existing.isPresent()) {
+                    items.remove(existing.get());
+                }
+                if (newQuantity[0] > 0) {
+                    items.add(new Item(item.getCookie(), newQuantity[0]));
+                }
             }
+            return items;
+        });
+        if (newQuantity[0] < 0) {
+            throw new NegativeQuantityException(c.getName(), item.getCookie(), newQuantity[0]);
         }
-        c.setCart(items);
-        return newQuantity;
+        return newQuantity[0];
     }
 
     @Override
     public Set<Item> contents(Customer c) {
-        return c.getCart();
+        return cartRepository.findById(c.getId()).orElseGet(HashSet::new);
     }
 
     @Override
     public double price(Customer c) {
-        double result = 0.0;
-        for (Item item : contents(c)) {
-            result += (item.getQuantity() * item.getCookie().getPrice());
-        }
-        return result;
+        return pricing.price(c, contents(c));
     }
 
+    // The cart is taken before being paid, so that it is paid once however many checkouts
+    // race, and given back if the payment fails, with the items added meanwhile
     @Override
-    public Order validate(Customer c) throws PaymentException, EmptyCartException {
-        if (contents(c).isEmpty())
+    public Order validate(Customer c) throws PaymentException, EmptyCartException, OutOfStockException {
+        Set<Item> items = cartRepository.remove(c.getId()).orElseGet(HashSet::new);
+        if (items.isEmpty())
             throw new EmptyCartException(c.getName());
-        Order newOrder = payment.payOrder(c, contents(c));
-        c.setCart(new HashSet<>());
-        customerRepository.save(c,c.getId());
-        return newOrder;
+        try {
+            return payment.payOrder(c, items); // the former cart now belongs to the order
+        } catch (Exception e) {
+            if (!(e instanceof PaidCheckoutException)) // else paid, the cart is gone
+                cartRepository.update(c.getId(), added -> merge(items, added));
+            throw e;
+        }
+    }
+
+    private static Set<Item> merge(Set<Item> cart, Set<Item> added) {
+        Set<Item> merged = new HashSet<>(cart);
+        for (Item item : added) {
+            Optional<Item> existing = merged.stream().filter(e -> e.getCookie().equals(item.getCookie())).findFirst();
+            int quantity = item.getQuantity();
+            if (existing.isPresent()) {
+                merged.remove(existing.get());
+                quantity += existing.get().getQuantity();
+            }
+            merged.add(new Item(item.getCookie(), quantity));
+        }
+        return merged;
     }
 
 
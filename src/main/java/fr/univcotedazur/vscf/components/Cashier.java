@@ -3,15 +3,18 @@ package fr.univcotedazur.vscf.components;
 import fr.univcotedazur.vscf.entities.Customer;
 import fr.univcotedazur.vscf.entities.Item;
 import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.PaidCheckoutException;
 import fr.univcotedazur.vscf.exceptions.PaymentException;
 import fr.univcotedazur.vscf.interfaces.Bank;
 import fr.univcotedazur.vscf.interfaces.OrderProcessing;
 import fr.univcotedazur.vscf.interfaces.Payment;
+import fr.univcotedazur.vscf.interfaces.Pricing;
+import fr.univcotedazur.vscf.interfaces.StockReservation;
 import fr.univcotedazur.vscf.repositories.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
 import java.util.Set;
 
 @Component
@@ -23,25 +26,42 @@ public class Cashier implements Payment {
 
     private OrderRepository orderRepository;
 
+    private StockReservation stock;
+
+    private Pricing pricing;
+
     @Autowired
-    public Cashier(Bank bank, OrderProcessing kitchen, OrderRepository orderRepository) {
+    public Cashier(Bank bank, OrderProcessing kitchen, OrderRepository orderRepository, StockReservation stock, Pricing pricing) {
         this.bank = bank;
         this.kitchen = kitchen;
         this.orderRepository = orderRepository;
+        this.stock = stock;
+        this.pricing = pricing;
     }
 
     @Override
-    public Order payOrder(Customer customer, Set<Item> items) throws PaymentException {
-        Order order = new Order(customer, new HashSet<>(items));
-        double price = order.getPrice();
-        boolean status = false;
-        status = bank.pay(customer, price);
-        if (!status) {
-            throw new PaymentException(customer.getName(), price);
+    public Order payOrder(Customer customer, Set<Item> items) throws PaymentException, OutOfStockException {
+        double price = pricing.price(customer, items);
+        Order order = new Order(orderRepository.nextId(), customer, items, price);
+        stock.reserve(items);
+        boolean paid = false;
+        boolean taken = false;
+        try {
+            paid = bank.pay(customer, price);
+            if (!paid) {
+                throw new PaymentException(customer.getName(), price);
+            }
+            orderRepository.save(order,order.getId());
+            taken = true;
+            return kitchen.process(order);
+        } catch (RuntimeException e) {
+            if (paid)
+                throw new PaidCheckoutException(customer.getName(), price, e); // the cart is not given back
+            throw e;
+        } finally {
+            if (!taken)
+                stock.release(items); // back on sale, no order holding it
         }
-        orderRepository.save(order,order.getId());
-        kitchen.process(order);
-        return order;
     }
 
 }
@@ -2,6 +2,7 @@ package fr.univcotedazur.vscf.components;
 
 import fr.univcotedazur.vscf.entities.Customer;
 import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.interfaces.CardVault;
 import fr.univcotedazur.vscf.interfaces.CustomerFinder;
 import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
 import fr.univcotedazur.vscf.repositories.CustomerRepository;
@@ -10,16 +11,19 @@ import org.springframework.stereotype.Component;
 
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.StreamSupport;
 
 @Component
 public class CustomerRegistry implements CustomerRegistration, CustomerFinder {
 
     private CustomerRepository customerRepository;
 
+    private CardVault cardVault;
+
     @Autowired // annotation is optional since Spring 4.3 if component has only one constructor
-    public CustomerRegistry(CustomerRepository customerRepository) {
+    public CustomerRegistry(CustomerRepository customerRepository, CardVault cardVault) {
         this.customerRepository = customerRepository;
+        this.cardVault = cardVault;
+        customerRepository.onCardDropped(cardVault::forget);
     }
 
     @Override
@@ -27,15 +31,14 @@ public class CustomerRegistry implements CustomerRegistration, CustomerFinder {
             throws AlreadyExistingCustomerException {
         if(findByName(name).isPresent())
             throw new AlreadyExistingCustomerException(name);
-        Customer newcustomer = new Customer(name, creditCard);
+        Customer newcustomer = new Customer(name, cardVault.tokenize(creditCard));
         customerRepository.save(newcustomer,newcustomer.getId());
         return newcustomer;
     }
 
     @Override
     public Optional<Customer> findByName(String name) {
-        return StreamSupport.stream(customerRepository.findAll().spliterator(), false)
-                 .filter(cust -> name.equals(cust.getName())).findAny();
+        return customerRepository.findByName(name);
     }
 
     @Override
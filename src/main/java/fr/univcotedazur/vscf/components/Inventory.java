@@ -0,0 +1,136 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.interfaces.StockManagement;
+import fr.univcotedazur.vscf.interfaces.StockReservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock level of every recipe, in units, kept as primitive counters indexed by the cookie
+ * ordinal. A checkout reserves its items by compare-and-set on these counters, without any
+ * lock, so that customers racing for the last units of a recipe only contend on that
+ * counter; once it is too low, they fail on a plain read. The counters are padded apart,
+ * a flash sale on one recipe not slowing the others down by false sharing.
+ * A multi-item reservation takes its items in turn, giving them back if one is missing:
+ * units are never oversold, but a concurrent checkout may meanwhile see them as taken.
+ */
+@Component
+public class Inventory implements StockReservation, StockManagement {
+
+    private static final Cookies[] COOKIES = Cookies.values();
+    private static final int STRIDE = 16; // longs per counter: 128 bytes, two cache lines
+    private static final long UNLIMITED = -1;
+
+    private final AtomicLongArray levels = new AtomicLongArray((COOKIES.length + 1) * STRIDE);
+
+    // e.g. "DARK_TEMPTATION=200,CHOCOLALALA=1000", the recipes not listed being unlimited
+    @Autowired
+    public Inventory(@Value("${vscf.inventory.stock:}") String stock) {
+        for (Cookies cookie : COOKIES)
+            levels.set(slot(cookie), UNLIMITED);
+        for (String level : stock.split(",")) {
+            if (level.isBlank())
+                continue;
+            String[] recipe = level.split("=");
+            if (recipe.length != 2)
+                throw new IllegalArgumentException("Stock levels are RECIPE=units, not " + level);
+            setLevel(Cookies.valueOf(recipe[0].trim()), Long.parseLong(recipe[1].trim()));
+        }
+    }
+
+    @Override
+    public void reserve(Set<Item> items) throws OutOfStockException {
+        for (Item item : items) {
+            long left = take(item);
+            if (left >= 0) {
+                for (Item taken : items) { // a set iterates in the same order while unchanged
+                    if (taken == item)
+                        break;
+                    give(taken);
+                }
+                throw new OutOfStockException(item.getCookie(), item.getQuantity(), left);
+            }
+        }
+    }
+
+    @Override
+    public void release(Set<Item> items) {
+        for (Item item : items)
+            give(item);
+    }
+
+    // -1 once taken, otherwise the units left, fewer than those requested
+    private long take(Item item) {
+        int slot = slot(item.getCookie());
+        long level;
+        do {
+            level = levels.get(slot);
+            if (level == UNLIMITED)
+                return -1;
+            if (level < item.getQuantity())
+                return level;
+        } while (!levels.compareAndSet(slot, level, level - item.getQuantity()));
+        return -1;
+    }
+
+    private void give(Item item) {
+        int slot = slot(item.getCookie());
+        long level;
+        do {
+            level = levels.get(slot);
+            if (level == UNLIMITED)
+                return;
+        } while (!levels.compareAndSet(slot, level, level + item.getQuantity()));
+    }
+
+    @Override
+    public Map<Cookies, Long> levels() {
+        Map<Cookies, Long> result = new EnumMap<>(Cookies.class);
+        for (Cookies cookie : COOKIES) {
+            long level = levels.get(slot(cookie));
+            if (level != UNLIMITED)
+                result.put(cookie, level);
+        }
+        return result;
+    }
+
+    @Override
+    public void setLevel(Cookies cookie, long units) {
+        if (units < 0)
+            throw new IllegalArgumentException("Negative stock level for " + cookie + ": " + units);
+        levels.set(slot(cookie), units);
+    }
+
+    @Override
+    public long restock(Cookies cookie, long units) {
+        if (units < 0)
+            throw new IllegalArgumentException("Negative restocking of " + cookie + ": " + units);
+        int slot = slot(cookie);
+        long level;
+        do {
+            level = levels.get(slot);
+            if (level == UNLIMITED)
+                return UNLIMITED;
+        } while (!levels.compareAndSet(slot, level, level + units));
+        return level + units;
+    }
+
+    @Override
+    public void unlimit(Cookies cookie) {
+        levels.set(slot(cookie), UNLIMITED);
+    }
+
+    private static int slot(Cookies cookie) {
+        return (cookie.ordinal() + 1) * STRIDE; // the first one away from the array header
+    }
+
+}
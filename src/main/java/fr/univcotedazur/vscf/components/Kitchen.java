@@ -1,31 +1,45 @@
 package fr.univcotedazur.vscf.components;
 
 import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderPage;
 import fr.univcotedazur.vscf.entities.OrderStatus;
 import fr.univcotedazur.vscf.exceptions.UnknownOrderId;
+import fr.univcotedazur.vscf.interfaces.Baking;
+import fr.univcotedazur.vscf.interfaces.KitchenBoard;
 import fr.univcotedazur.vscf.interfaces.OrderProcessing;
 import fr.univcotedazur.vscf.interfaces.Tracker;
 import fr.univcotedazur.vscf.repositories.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 @Component
-public class Kitchen implements OrderProcessing, Tracker {
+public class Kitchen implements OrderProcessing, Tracker, KitchenBoard {
 
     OrderRepository orderRepository;
 
+    Baking ovens;
+
     @Autowired
-    public Kitchen(OrderRepository orderRepository) {
+    public Kitchen(OrderRepository orderRepository, Baking ovens) {
         this.orderRepository = orderRepository;
+        this.ovens = ovens;
     }
 
     @Override
-    public void process(Order order) {
-        order.setStatus(OrderStatus.IN_PROGRESS);
-        orderRepository.save(order, order.getId());
+    public Order process(Order order) {
+        Order inProgress = order.withStatus(OrderStatus.IN_PROGRESS);
+        orderRepository.save(inProgress, inProgress.getId());
+        ovens.bake(inProgress, this::orderBaked);
+        return inProgress;
+    }
+
+    private void orderBaked(Order order) {
+        orderRepository.update(order.getId(), baked -> baked.withStatus(OrderStatus.READY));
     }
 
     @Override
@@ -36,4 +50,19 @@ public class Kitchen implements OrderProcessing, Tracker {
         return  orderOpt.get().getStatus();
     }
 
+    @Override
+    public OrderPage ordersWithStatus(OrderStatus status, long after, int pageSize) {
+        if (after < 0 || pageSize <= 0)
+            throw new IllegalArgumentException("Invalid page after " + after + " of size " + pageSize);
+        return orderRepository.findByStatus(status, after, pageSize);
+    }
+
+    @Override
+    public Map<OrderStatus, Integer> countsByStatus() {
+        Map<OrderStatus, Integer> counts = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values())
+            counts.put(status, orderRepository.countByStatus(status));
+        return counts;
+    }
+
 }
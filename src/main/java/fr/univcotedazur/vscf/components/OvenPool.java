@@ -0,0 +1,141 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OvenMetrics;
+import fr.univcotedazur.vscf.interfaces.Baking;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Simulation of the shop ovens. Each oven is a worker of a work-stealing ForkJoinPool:
+ * an order is split into one batch per cookie (its items of the same cookie being packed
+ * together, see PackedItems), and an idle oven steals the queued batches of the busy ones. With no oven configured (the default), nothing is baked and orders
+ * stay IN_PROGRESS as in the MVP.
+ */
+@Component
+public class OvenPool implements Baking {
+
+    private final int ovens;
+
+    private final double cookiesPerSecond;
+
+    private final ForkJoinPool pool;
+
+    private final LongAdder bakedOrders = new LongAdder();
+    private final LongAdder bakedBatches = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    private volatile long startNanos = System.nanoTime();
+
+    @Autowired
+    public OvenPool(@Value("${vscf.kitchen.ovens:0}") int ovens,
+                    @Value("${vscf.kitchen.oven-speed:10}") double cookiesPerSecond) {
+        if (ovens < 0 || cookiesPerSecond <= 0)
+            throw new IllegalArgumentException("Invalid oven configuration: " + ovens + " ovens at " + cookiesPerSecond + " cookies/s");
+        this.ovens = ovens;
+        this.cookiesPerSecond = cookiesPerSecond;
+        // asyncMode: queued batches are baked in FIFO order, as they never join each other
+        this.pool = ovens == 0 ? null : new ForkJoinPool(ovens, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    @Override
+    public void bake(Order order, Consumer<Order> whenBaked) {
+        if (pool == null)
+            return;
+        pool.execute(new OrderBaking(order, whenBaked, System.nanoTime()));
+    }
+
+    @Override
+    public OvenMetrics metrics() {
+        long batches = bakedBatches.sum();
+        double elapsed = (double) ovens * (System.nanoTime() - startNanos);
+        return new OvenMetrics(ovens, bakedOrders.sum(), batches,
+                batches == 0 ? 0.0 : queueWaitNanos.sum() / (batches * 1e6),
+                elapsed <= 0 ? 0.0 : Math.min(1.0, busyNanos.sum() / elapsed));
+    }
+
+    public void resetMetrics() {
+        bakedOrders.reset();
+        bakedBatches.reset();
+        queueWaitNanos.reset();
+        busyNanos.reset();
+        startNanos = System.nanoTime();
+    }
+
+    public int getOvens() {
+        return ovens;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdownNow();
+    }
+
+    // Root task of an order, completed when its last batch has been baked
+    private class OrderBaking extends CountedCompleter<Void> {
+
+        private final Order order;
+        private final Consumer<Order> whenBaked;
+        private final long submittedAt;
+
+        OrderBaking(Order order, Consumer<Order> whenBaked, long submittedAt) {
+            this.order = order;
+            this.whenBaked = whenBaked;
+            this.submittedAt = submittedAt;
+        }
+
+        @Override
+        public void compute() {
+            setPendingCount(order.getItems().size());
+            for (Item item : order.getItems()) {
+                new BatchBaking(this, item.getQuantity(), submittedAt).fork();
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            bakedOrders.increment();
+            whenBaked.accept(order);
+        }
+    }
+
+    // One batch keeps one oven busy for quantity / speed seconds
+    private class BatchBaking extends CountedCompleter<Void> {
+
+        private final int quantity;
+        private final long submittedAt;
+
+        BatchBaking(CountedCompleter<?> parent, int quantity, long submittedAt) {
+            super(parent);
+            this.quantity = quantity;
+            this.submittedAt = submittedAt;
+        }
+
+        @Override
+        public void compute() {
+            long start = System.nanoTime();
+            queueWaitNanos.add(start - submittedAt);
+            long deadline = start + (long) (quantity * TimeUnit.SECONDS.toNanos(1) / cookiesPerSecond);
+            for (long remaining = deadline - start; remaining > 0 && !Thread.currentThread().isInterrupted(); remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(remaining);
+            }
+            busyNanos.add(System.nanoTime() - start);
+            bakedBatches.increment();
+            tryComplete();
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.PricingRule;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A rule set compiled into flat tables indexed by cookie ordinal, immutable once built:
+ *   - the units to pay for every quantity below TABLE, the multi-buy deals of the cookie
+ *     being combined at best (by dynamic programming), larger quantities being brought
+ *     back into the table by the deal saving the most per unit;
+ *   - the price factor of every minute of the day, the best happy hour applying;
+ *   - the price factors of the customers with discounts, by name.
+ * Pricing an item is then a few array reads and multiplications, whatever the rule count.
+ */
+final class PriceList {
+
+    static final int TABLE = 128;
+    static final int MAX_DEAL = TABLE / 2;
+    private static final int MINUTES = 24 * 60;
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    private final double[] unitPrices = new double[COOKIES.length];
+    private final int[][] paidUnits = new int[COOKIES.length][TABLE];
+    // best deal per cookie for the quantities beyond the table, size 0 when none
+    private final int[] dealSizes = new int[COOKIES.length];
+    private final int[] dealPaid = new int[COOKIES.length];
+    private final double[] minuteFactors = new double[COOKIES.length * MINUTES];
+    private final Map<String, double[]> customerFactors = new HashMap<>();
+
+    PriceList(Collection<PricingRule> rules) {
+        for (Cookies cookie : COOKIES)
+            unitPrices[cookie.ordinal()] = cookie.getPrice();
+        Arrays.fill(minuteFactors, 1.0);
+        for (int[] units : paidUnits)
+            Arrays.setAll(units, quantity -> quantity);
+        for (PricingRule rule : rules) {
+            check(rule);
+            switch (rule.getKind()) {
+                case MULTI_BUY:
+                    deal(rule.getCookie().ordinal(), rule.getBuy(), rule.getFree());
+                    break;
+                case HAPPY_HOUR:
+                    happyHour(rule);
+                    break;
+                case CUSTOMER_DISCOUNT:
+                    double[] factors = customerFactors.computeIfAbsent(rule.getCustomer(), name -> filled(COOKIES.length));
+                    for (Cookies cookie : cookies(rule))
+                        factors[cookie.ordinal()] = Math.min(factors[cookie.ordinal()], factor(rule));
+                    break;
+            }
+        }
+    }
+
+    private static void check(PricingRule rule) {
+        if (rule.getKind() == null)
+            throw new IllegalArgumentException("Pricing rule without kind");
+        if (rule.getKind() == PricingRule.Kind.MULTI_BUY && (rule.getCookie() == null || rule.getBuy() <= 0
+                || rule.getFree() <= 0 || rule.getBuy() + rule.getFree() > MAX_DEAL))
+            throw new IllegalArgumentException("Multi-buy deals need a cookie and at most " + MAX_DEAL
+                    + " units, bought and free ones positive: " + rule.getCookie() + " " + rule.getBuy() + "+" + rule.getFree());
+        if (rule.getKind() == PricingRule.Kind.HAPPY_HOUR && (rule.getFrom() == null || rule.getTo() == null))
+            throw new IllegalArgumentException("Happy hours need a time window");
+        // an empty window would never apply, rather than all day long
+        if (rule.getKind() == PricingRule.Kind.HAPPY_HOUR && minuteOfDay(rule.getFrom()) == minuteOfDay(rule.getTo()))
+            throw new IllegalArgumentException("Happy hours need a window of at least a minute: " + rule.getFrom() + "-" + rule.getTo());
+        if (rule.getKind() == PricingRule.Kind.CUSTOMER_DISCOUNT && (rule.getCustomer() == null || rule.getCustomer().isBlank()))
+            throw new IllegalArgumentException("Customer discounts need a customer");
+        if (!(rule.getPercent() >= 0 && rule.getPercent() <= 100)) // NaN included
+            throw new IllegalArgumentException("Discounts are between 0 and 100%: " + rule.getPercent());
+    }
+
+    // Unbounded knapsack: the best use of the deals seen so far, then of this one, any number of times
+    private void deal(int ordinal, int buy, int free) {
+        int size = buy + free;
+        int[] paid = paidUnits[ordinal];
+        for (int quantity = size; quantity < TABLE; quantity++)
+            paid[quantity] = Math.min(paid[quantity], paid[quantity - size] + buy);
+        if (dealSizes[ordinal] == 0 || (double) buy / size < (double) dealPaid[ordinal] / dealSizes[ordinal]) {
+            dealSizes[ordinal] = size;
+            dealPaid[ordinal] = buy;
+        }
+    }
+
+    private void happyHour(PricingRule rule) {
+        int from = minuteOfDay(rule.getFrom());
+        int to = minuteOfDay(rule.getTo());
+        double factor = factor(rule);
+        for (Cookies cookie : cookies(rule)) {
+            int base = cookie.ordinal() * MINUTES;
+            for (int minute = from; minute != to; minute = (minute + 1) % MINUTES)
+                minuteFactors[base + minute] = Math.min(minuteFactors[base + minute], factor);
+        }
+    }
+
+    double price(String customer, Set<Item> items, int minuteOfDay) {
+        double[] discounts = customer == null ? null : customerFactors.get(customer);
+        double result = 0.0;
+        for (Item item : items) {
+            int ordinal = item.getCookie().ordinal();
+            double factor = minuteFactors[ordinal * MINUTES + minuteOfDay];
+            if (discounts != null)
+                factor = Math.min(factor, discounts[ordinal]);
+            result += paidUnits(ordinal, item.getQuantity()) * unitPrices[ordinal] * factor;
+        }
+        return result;
+    }
+
+    private int paidUnits(int ordinal, int quantity) {
+        if (quantity < TABLE)
+            return paidUnits[ordinal][Math.max(quantity, 0)];
+        int size = dealSizes[ordinal];
+        if (size == 0)
+            return quantity;
+        int deals = (quantity - TABLE) / size + 1;
+        return paidUnits[ordinal][quantity - deals * size] + deals * dealPaid[ordinal];
+    }
+
+    static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static Cookies[] cookies(PricingRule rule) {
+        return rule.getCookie() == null ? COOKIES : new Cookies[] {rule.getCookie()};
+    }
+
+    private static double factor(PricingRule rule) {
+        return 1.0 - rule.getPercent() / 100.0;
+    }
+
+    private static double[] filled(int length) {
+        double[] factors = new double[length];
+        Arrays.fill(factors, 1.0);
+        return factors;
+    }
+
+}
@@ -0,0 +1,89 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.PricingRule;
+import fr.univcotedazur.vscf.interfaces.Pricing;
+import fr.univcotedazur.vscf.interfaces.PricingManagement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Promotions: a rule set is compiled into a PriceList when loaded, never interpreted at
+ * checkout. Rule sets are swapped as a whole, with the list they were compiled from, through
+ * a single volatile reference: a price is always computed from one rule set, old or new.
+ */
+@Component
+public class PricingEngine implements Pricing, PricingManagement {
+
+    private static final class Snapshot {
+        final List<PricingRule> rules;
+        final PriceList prices;
+
+        Snapshot(List<PricingRule> rules) {
+            this.rules = List.copyOf(rules);
+            this.prices = new PriceList(this.rules);
+        }
+    }
+
+    // the minute of the day, computed again when the clock leaves it rather than at every price
+    private static final class Minute {
+        final long startMillis;
+        final int ofDay;
+
+        Minute(long startMillis, int ofDay) {
+            this.startMillis = startMillis;
+            this.ofDay = ofDay;
+        }
+    }
+
+    private final Clock clock;
+
+    private volatile Snapshot current = new Snapshot(List.of());
+    private volatile Minute minute = new Minute(Long.MIN_VALUE, 0);
+
+    // happy hours are in the time zone of the shop, the system one by default
+    @Autowired
+    public PricingEngine(@Value("${vscf.pricing.zone:}") String zone) {
+        this(zone.isBlank() ? Clock.systemDefaultZone() : Clock.system(ZoneId.of(zone)));
+    }
+
+    public PricingEngine(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public double price(Customer customer, Set<Item> items) {
+        return current.prices.price(customer.getName(), items, minuteOfDay());
+    }
+
+    private int minuteOfDay() {
+        long now = clock.millis();
+        Minute known = minute;
+        if (now < known.startMillis || now >= known.startMillis + 60_000) {
+            LocalTime time = Instant.ofEpochMilli(now).atZone(clock.getZone()).toLocalTime();
+            known = new Minute(now - time.getSecond() * 1000L - time.getNano() / 1_000_000, PriceList.minuteOfDay(time));
+            minute = known;
+        }
+        return known.ofDay;
+    }
+
+    @Override
+    public List<PricingRule> rules() {
+        return current.rules;
+    }
+
+    @Override
+    public void replaceRules(List<PricingRule> rules) {
+        current = new Snapshot(rules); // compiled before being published
+    }
+
+}
@@ -0,0 +1,166 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.interfaces.SalesRecorder;
+import fr.univcotedazur.vscf.interfaces.SalesReporting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental sales counters: a ring of time buckets, each bucket holding one LongAdder
+ * per cookie (indexed by ordinal) for units and revenue (in cents). Recording a sale never
+ * locks, and queries cost O(buckets in the window), whatever the number of orders.
+ * A bucket is recycled by swapping a fresh one in its slot once its time slice is over.
+ */
+@Component
+public class SalesAnalytics implements SalesRecorder, SalesReporting {
+
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    private final Clock clock;
+
+    private final long bucketMillis;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    @Autowired
+    public SalesAnalytics(@Value("${vscf.analytics.bucket-width:60s}") Duration bucketWidth,
+                          @Value("${vscf.analytics.buckets:1440}") int bucketCount) {
+        this(Clock.systemUTC(), bucketWidth, bucketCount);
+    }
+
+    public SalesAnalytics(Clock clock, Duration bucketWidth, int bucketCount) {
+        if (bucketWidth.toMillis() <= 0 || bucketCount <= 0)
+            throw new IllegalArgumentException("Invalid analytics buckets: " + bucketCount + " x " + bucketWidth);
+        this.clock = clock;
+        this.bucketMillis = bucketWidth.toMillis();
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    @Override
+    public void record(Order paidOrder) {
+        Bucket bucket = bucketFor(currentEpoch());
+        // promotions are shared out between the items in proportion to their catalog price
+        double catalogPrice = Order.catalogPrice(paidOrder.getItems());
+        double paidShare = catalogPrice == 0 ? 1.0 : paidOrder.getPrice() / catalogPrice;
+        for (Item item : paidOrder.getItems()) {
+            int ordinal = item.getCookie().ordinal();
+            bucket.units[ordinal].add(item.getQuantity());
+            bucket.cents[ordinal].add(Math.round(item.getQuantity() * item.getCookie().getPrice() * paidShare * 100));
+        }
+    }
+
+    @Override
+    public double revenue(Cookies cookie, Duration window) {
+        return sum(cookie, window, true) / 100.0;
+    }
+
+    @Override
+    public long unitsSold(Cookies cookie, Duration window) {
+        return sum(cookie, window, false);
+    }
+
+    @Override
+    public double[] revenueTimeline(Cookies cookie, Duration window, Duration step) {
+        int bucketsPerStep = (int) Math.max(1, step.toMillis() / bucketMillis);
+        int steps = (bucketsInWindow(window) + bucketsPerStep - 1) / bucketsPerStep;
+        double[] timeline = new double[steps];
+        long now = currentEpoch();
+        for (int back = 0; back < steps * bucketsPerStep && back < buckets.length(); back++) {
+            Bucket bucket = liveBucket(now - back);
+            if (bucket != null)
+                timeline[steps - 1 - back / bucketsPerStep] += bucket.cents[cookie.ordinal()].sum() / 100.0;
+        }
+        return timeline;
+    }
+
+    @Override
+    public List<Cookies> topSellers(int n, Duration window) {
+        long[] cents = new long[COOKIES.length];
+        long now = currentEpoch();
+        for (int back = 0; back < bucketsInWindow(window); back++) {
+            Bucket bucket = liveBucket(now - back);
+            if (bucket != null) {
+                for (int i = 0; i < cents.length; i++)
+                    cents[i] += bucket.cents[i].sum();
+            }
+        }
+        return Arrays.stream(COOKIES)
+                .filter(cookie -> cents[cookie.ordinal()] > 0)
+                .sorted(Comparator.comparingLong((Cookies cookie) -> cents[cookie.ordinal()]).reversed())
+                .limit(n)
+                .collect(Collectors.toList());
+    }
+
+    private long sum(Cookies cookie, Duration window, boolean revenue) {
+        long total = 0;
+        long now = currentEpoch();
+        for (int back = 0; back < bucketsInWindow(window); back++) {
+            Bucket bucket = liveBucket(now - back);
+            if (bucket != null)
+                total += (revenue ? bucket.cents : bucket.units)[cookie.ordinal()].sum();
+        }
+        return total;
+    }
+
+    private long currentEpoch() {
+        return clock.millis() / bucketMillis;
+    }
+
+    private int bucketsInWindow(Duration window) {
+        long count = (window.toMillis() + bucketMillis - 1) / bucketMillis;
+        return (int) Math.min(Math.max(count, 1), buckets.length());
+    }
+
+    private Bucket liveBucket(long epoch) {
+        Bucket bucket = buckets.get(slot(epoch));
+        return bucket != null && bucket.epoch == epoch ? bucket : null;
+    }
+
+    private Bucket bucketFor(long epoch) {
+        int slot = slot(epoch);
+        Bucket bucket = buckets.get(slot);
+        while (bucket == null || bucket.epoch < epoch) {
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(slot, bucket, fresh))
+                return fresh;
+            bucket = buckets.get(slot);
+        }
+        return bucket;
+    }
+
+    private int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) buckets.length());
+    }
+
+    private static final class Bucket {
+
+        private final long epoch;
+        private final LongAdder[] units = adders();
+        private final LongAdder[] cents = adders();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        private static LongAdder[] adders() {
+            LongAdder[] adders = new LongAdder[COOKIES.length];
+            for (int i = 0; i < adders.length; i++)
+                adders[i] = new LongAdder();
+            return adders;
+        }
+    }
+
+}
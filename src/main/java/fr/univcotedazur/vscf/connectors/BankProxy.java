@@ -2,15 +2,27 @@ package fr.univcotedazur.vscf.connectors;
 
 import fr.univcotedazur.vscf.interfaces.Bank;
 import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.interfaces.CardVault;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Optional;
+
 @Component
 public class BankProxy implements Bank {
 
+    private CardVault cardVault;
+
+    @Autowired
+    public BankProxy(CardVault cardVault) {
+        this.cardVault = cardVault;
+    }
+
     @Override
     public boolean pay(Customer customer, double value) {
-        // should be an external connection to a bank service
-        return (value>0);
+        Optional<String> cardNumber = cardVault.resolve(customer.getCardToken());
+        // should be an external connection to a bank service, given the card number
+        return cardNumber.isPresent() && (value>0);
     }
 
 }
\ No newline at end of file
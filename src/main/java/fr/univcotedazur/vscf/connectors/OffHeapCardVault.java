@@ -0,0 +1,129 @@
+package fr.univcotedazur.vscf.connectors;
+
+import fr.univcotedazur.vscf.interfaces.CardVault;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Optional;
+
+/**
+ * Local tokenisation vault. Card numbers are written in fixed-size slots of direct buffers,
+ * out of the Java heap (and of heap dumps), each slot starting with a random nonce. A token
+ * encodes its slot and nonce, so it is resolved without any index nor cache holding card
+ * numbers on the heap, and a forged token fails the nonce check. Forgotten cards are wiped,
+ * their slots being reused with another nonce: the nonce is read again after the card, so that
+ * a card read while its slot changes hands is never given out.
+ * Not in the components package on purpose: the component logger would print card numbers.
+ */
+@Component
+public class OffHeapCardVault implements CardVault {
+
+    private static final String PREFIX = "tok_";
+    private static final int SLOT_SIZE = 64;
+    private static final int MAX_CARD_BYTES = SLOT_SIZE - Long.BYTES - 1;
+    private static final int SLOTS_PER_CHUNK = 1 << 14; // 1MB chunks
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    private int slots; // guarded by this
+
+    private final Deque<Integer> freeSlots = new ArrayDeque<>(); // guarded by this
+
+    @Override
+    public synchronized String tokenize(String cardNumber) {
+        byte[] card = cardNumber.getBytes(StandardCharsets.UTF_8);
+        if (card.length > MAX_CARD_BYTES)
+            throw new IllegalArgumentException("Card number too long");
+        Integer free = freeSlots.poll();
+        int slot = free != null ? free : slots++;
+        if (slot / SLOTS_PER_CHUNK == chunks.length) {
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT_SIZE);
+            chunks = grown;
+        }
+        long nonce;
+        do {
+            nonce = random.nextLong();
+        } while (nonce == 0); // zero is the nonce of the free slots
+        ByteBuffer chunk = chunks[slot / SLOTS_PER_CHUNK];
+        int offset = (slot % SLOTS_PER_CHUNK) * SLOT_SIZE;
+        chunk.put(offset + Long.BYTES, (byte) card.length);
+        chunk.put(offset + Long.BYTES + 1, card);
+        VarHandle.storeStoreFence(); // the card before the nonce validating it
+        chunk.putLong(offset, nonce);
+        Arrays.fill(card, (byte) 0);
+        // the token reaches other threads through the customer repository, a safe publication
+        return PREFIX + ENCODER.encodeToString(ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(slot).putLong(nonce).array());
+    }
+
+    @Override
+    public Optional<String> resolve(String token) {
+        ByteBuffer decoded = decode(token);
+        if (decoded == null)
+            return Optional.empty();
+        int slot = decoded.getInt();
+        long nonce = decoded.getLong();
+        ByteBuffer chunk = chunk(slot, nonce);
+        if (chunk == null)
+            return Optional.empty();
+        int offset = (slot % SLOTS_PER_CHUNK) * SLOT_SIZE;
+        byte[] card = new byte[chunk.get(offset + Long.BYTES)];
+        chunk.get(offset + Long.BYTES + 1, card);
+        VarHandle.loadLoadFence(); // the card before the nonce telling whether it still was the token's
+        if (chunk.getLong(offset) != nonce) {
+            Arrays.fill(card, (byte) 0);
+            return Optional.empty();
+        }
+        return Optional.of(new String(card, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void forget(String token) {
+        ByteBuffer decoded = decode(token);
+        if (decoded == null)
+            return;
+        int slot = decoded.getInt();
+        ByteBuffer chunk = chunk(slot, decoded.getLong());
+        if (chunk == null)
+            return;
+        int offset = (slot % SLOTS_PER_CHUNK) * SLOT_SIZE;
+        chunk.putLong(offset, 0);
+        VarHandle.storeStoreFence(); // the nonce invalidated before the card is wiped
+        for (int i = Long.BYTES; i < SLOT_SIZE; i++)
+            chunk.put(offset + i, (byte) 0);
+        freeSlots.push(slot);
+    }
+
+    // the slot and nonce of a well-formed token, null otherwise
+    private static ByteBuffer decode(String token) {
+        if (token == null || token.length() != PREFIX.length() + 16 || !token.startsWith(PREFIX))
+            return null;
+        try {
+            return ByteBuffer.wrap(DECODER.decode(token.substring(PREFIX.length())));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // the chunk holding the slot, null if the slot does not hold the nonce
+    private ByteBuffer chunk(int slot, long nonce) {
+        ByteBuffer[] current = chunks;
+        if (nonce == 0 || slot < 0 || slot / SLOTS_PER_CHUNK >= current.length)
+            return null;
+        ByteBuffer chunk = current[slot / SLOTS_PER_CHUNK];
+        return chunk.getLong((slot % SLOTS_PER_CHUNK) * SLOT_SIZE) == nonce ? chunk : null;
+    }
+
+}
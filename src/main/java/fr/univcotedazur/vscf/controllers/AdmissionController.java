@@ -0,0 +1,30 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.admission.AdmissionControl;
+import fr.univcotedazur.vscf.admission.AdmissionStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = AdmissionController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class AdmissionController {
+
+    public static final String BASE_URI = "/admission";
+
+    private final AdmissionControl admission;
+
+    @Autowired
+    public AdmissionController(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @GetMapping
+    public AdmissionStatus status() {
+        return admission.status();
+    }
+
+}
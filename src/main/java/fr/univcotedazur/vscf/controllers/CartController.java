@@ -0,0 +1,90 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.admission.AdmissionControl;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CustomerFinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static fr.univcotedazur.vscf.controllers.CustomerController.retrieveCustomer;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = CartController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class CartController {
+
+    public static final String BASE_URI = "/customers/{customerId}/cart";
+
+    private final CustomerFinder finder;
+
+    private final CartModifier cartModifier;
+
+    private final CartProcessor cartProcessor;
+
+    private final AdmissionControl admission;
+
+    @Autowired
+    public CartController(CustomerFinder finder, CartModifier cartModifier, CartProcessor cartProcessor,
+                          AdmissionControl admission) {
+        this.finder = finder;
+        this.cartModifier = cartModifier;
+        this.cartProcessor = cartProcessor;
+        this.admission = admission;
+    }
+
+    // carts may be read back from the spill file, and customers be served by a peer in cluster
+    // mode: the cart operations run out of the event loop
+    @GetMapping
+    public Mono<Set<Item>> contents(@PathVariable UUID customerId) {
+        return Mono.fromCallable(() -> cartProcessor.contents(retrieveCustomer(finder, customerId)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // returns the new quantity of the cookie in the cart
+    @PostMapping(consumes = APPLICATION_JSON_VALUE)
+    public Mono<Integer> update(@PathVariable UUID customerId, @RequestBody Item item) {
+        return Mono.fromCallable(() -> cartModifier.update(retrieveCustomer(finder, customerId), item))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping("/price")
+    public Mono<Double> price(@PathVariable UUID customerId) {
+        return Mono.fromCallable(() -> cartProcessor.price(retrieveCustomer(finder, customerId)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // the bank may be slow: validation runs out of the event loop, once admitted
+    // on it, so that the checkouts beyond the limit are refused rather than queued.
+    // The permit is held until the checkout ends, even when the client goes away
+    // meanwhile, and only released at once when the checkout never started.
+    @PostMapping("/validate")
+    public Mono<Order> validate(@PathVariable UUID customerId) {
+        AdmissionControl.Permit permit = admission.admitCheckout();
+        AtomicBoolean claimed = new AtomicBoolean();
+        return Mono.fromCallable(() -> {
+                    if (!claimed.compareAndSet(false, true))
+                        throw new CancellationException("Checkout cancelled before it started");
+                    try {
+                        return permit.within(() -> cartProcessor.validate(retrieveCustomer(finder, customerId)));
+                    } finally {
+                        permit.release();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> {
+                    if (claimed.compareAndSet(false, true))
+                        permit.release();
+                });
+    }
+
+}
@@ -0,0 +1,33 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.interfaces.CatalogExplorator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = CatalogController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class CatalogController {
+
+    public static final String BASE_URI = "/catalog";
+
+    private final CatalogExplorator catalog;
+
+    @Autowired
+    public CatalogController(CatalogExplorator catalog) {
+        this.catalog = catalog;
+    }
+
+    @GetMapping
+    public Set<Cookies> recipes(@RequestParam(required = false) String pattern) {
+        return pattern == null ? catalog.listPreMadeRecipes() : catalog.exploreCatalogue(pattern);
+    }
+
+}
@@ -0,0 +1,57 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.cluster.ClusterNode;
+import fr.univcotedazur.vscf.cluster.ClusterStatus;
+import fr.univcotedazur.vscf.cluster.OrderTracking;
+import fr.univcotedazur.vscf.cluster.TrackingStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = ClusterController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+@ConditionalOnProperty("vscf.cluster.port")
+public class ClusterController {
+
+    public static final String BASE_URI = "/cluster";
+
+    private final ClusterNode node;
+    private final OrderTracking tracking;
+
+    @Autowired
+    public ClusterController(ClusterNode node, OrderTracking tracking) {
+        this.node = node;
+        this.tracking = tracking;
+    }
+
+    @GetMapping
+    public ClusterStatus status() {
+        return node.status();
+    }
+
+    @GetMapping("/tracking")
+    public TrackingStatus tracking() {
+        return tracking.status();
+    }
+
+    // The node (host:port of its cluster endpoint) must already be running
+    @PostMapping("/nodes/{node}")
+    public ClusterStatus join(@PathVariable("node") String joining) {
+        node.join(joining);
+        return node.status();
+    }
+
+    @DeleteMapping("/nodes/{node}")
+    public ClusterStatus leave(@PathVariable("node") String leaving) {
+        node.leave(leaving);
+        return node.status();
+    }
+
+}
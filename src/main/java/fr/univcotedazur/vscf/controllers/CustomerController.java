@@ -0,0 +1,56 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.controllers.dto.RegistrationDTO;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.interfaces.CustomerFinder;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.UUID;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = CustomerController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class CustomerController {
+
+    public static final String BASE_URI = "/customers";
+
+    private final CustomerRegistration registry;
+
+    private final CustomerFinder finder;
+
+    @Autowired
+    public CustomerController(CustomerRegistration registry, CustomerFinder finder) {
+        this.registry = registry;
+        this.finder = finder;
+    }
+
+    // customers may be served by a peer in cluster mode: they are registered and found out of
+    // the event loop, as the cart operations are
+    @PostMapping(consumes = APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Customer> register(@RequestBody RegistrationDTO registration) {
+        if (registration.getName() == null || registration.getCreditCard() == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "name and creditCard are required");
+        return Mono.fromCallable(() -> registry.register(registration.getName(), registration.getCreditCard()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping("/{customerId}")
+    public Mono<Customer> findById(@PathVariable UUID customerId) {
+        return Mono.fromCallable(() -> retrieveCustomer(finder, customerId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    static Customer retrieveCustomer(CustomerFinder finder, UUID customerId) {
+        return finder.findById(customerId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown customer " + customerId));
+    }
+
+}
@@ -0,0 +1,90 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.controllers.dto.ErrorDTO;
+import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.exceptions.ClusterException;
+import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.NotLeaderException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.OverloadedException;
+import fr.univcotedazur.vscf.exceptions.PaidCheckoutException;
+import fr.univcotedazur.vscf.exceptions.PaymentException;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import fr.univcotedazur.vscf.exceptions.UnknownOrderId;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+// Maps business exceptions to HTTP statuses for all controllers
+@RestControllerAdvice
+public class GlobalControllerAdvice {
+
+    @ExceptionHandler(AlreadyExistingCustomerException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorDTO handleExceptions(AlreadyExistingCustomerException e) {
+        return new ErrorDTO("Customer already exists", e.getConflictingName());
+    }
+
+    @ExceptionHandler(NegativeQuantityException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorDTO handleExceptions(NegativeQuantityException e) {
+        return new ErrorDTO("Negative quantity", e.getPotentialQuantity() + " x " + e.getCookie() + " for " + e.getName());
+    }
+
+    @ExceptionHandler(EmptyCartException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorDTO handleExceptions(EmptyCartException e) {
+        return new ErrorDTO("Empty cart", e.getName());
+    }
+
+    @ExceptionHandler(PaymentException.class)
+    @ResponseStatus(HttpStatus.PAYMENT_REQUIRED)
+    public ErrorDTO handleExceptions(PaymentException e) {
+        return new ErrorDTO("Payment refused", e.getName() + " for " + e.getAmount());
+    }
+
+    @ExceptionHandler(PaidCheckoutException.class)
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public ErrorDTO handleExceptions(PaidCheckoutException e) {
+        return new ErrorDTO("Order not taken after payment", e.getName() + " for " + e.getAmount());
+    }
+
+    @ExceptionHandler(OutOfStockException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorDTO handleExceptions(OutOfStockException e) {
+        return new ErrorDTO("Out of stock", e.getRequested() + " x " + e.getCookie() + " requested, " + e.getAvailable() + " left");
+    }
+
+    @ExceptionHandler(UnknownOrderId.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorDTO handleExceptions(UnknownOrderId e) {
+        return new ErrorDTO("Unknown order", String.valueOf(e.getOrderId()));
+    }
+
+    @ExceptionHandler(NotLeaderException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorDTO handleExceptions(NotLeaderException e) {
+        return new ErrorDTO("Read-only follower", e.getOperation() + " must be sent to the leader");
+    }
+
+    @ExceptionHandler(ClusterException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorDTO handleExceptions(ClusterException e) {
+        return new ErrorDTO("Cluster node unavailable", e.getMessage());
+    }
+
+    @ExceptionHandler(OverloadedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorDTO handleExceptions(OverloadedException e) {
+        return new ErrorDTO("Overloaded", e.getLane() + " calls limited to " + e.getLimit() + " at once, retry later");
+    }
+
+    @ExceptionHandler(RateLimitedException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ErrorDTO handleExceptions(RateLimitedException e) {
+        return new ErrorDTO("Too many requests", e.getOperation() + " for " + e.getKey() + ", retry in " + e.getRetryAfterMillis() + "ms");
+    }
+
+}
@@ -0,0 +1,65 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.interfaces.StockManagement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = InventoryController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class InventoryController {
+
+    public static final String BASE_URI = "/inventory";
+
+    private final StockManagement stock;
+
+    @Autowired
+    public InventoryController(StockManagement stock) {
+        this.stock = stock;
+    }
+
+    // units left of the recipes with a stock level, the others being unlimited
+    @GetMapping
+    public Map<Cookies, Long> levels() {
+        return stock.levels();
+    }
+
+    @PutMapping(path = "/{cookie}", consumes = APPLICATION_JSON_VALUE)
+    public Map<Cookies, Long> setLevel(@PathVariable Cookies cookie, @RequestBody long units) {
+        requirePositive(units);
+        stock.setLevel(cookie, units);
+        return stock.levels();
+    }
+
+    // returns the new stock level, -1 for an unlimited recipe
+    @PostMapping(path = "/{cookie}", consumes = APPLICATION_JSON_VALUE)
+    public long restock(@PathVariable Cookies cookie, @RequestBody long units) {
+        requirePositive(units);
+        return stock.restock(cookie, units);
+    }
+
+    @DeleteMapping("/{cookie}")
+    public Map<Cookies, Long> unlimit(@PathVariable Cookies cookie) {
+        stock.unlimit(cookie);
+        return stock.levels();
+    }
+
+    private static void requirePositive(long units) {
+        if (units < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Negative units: " + units);
+    }
+
+}
@@ -0,0 +1,62 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.entities.OrderPage;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.interfaces.KitchenBoard;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = OrderController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class OrderController {
+
+    public static final String BASE_URI = "/orders";
+
+    private final Tracker tracker;
+
+    private final KitchenBoard board;
+
+    @Autowired
+    public OrderController(Tracker tracker, KitchenBoard board) {
+        this.tracker = tracker;
+        this.board = board;
+    }
+
+    // kitchen dashboards, e.g. /orders?status=READY for the orders awaiting pickup, then
+    // /orders?status=READY&after=<next> for the following ones
+    @GetMapping
+    public OrderPage withStatus(@RequestParam OrderStatus status,
+                                @RequestParam(defaultValue = "0") long after,
+                                @RequestParam(defaultValue = "50") int size) {
+        if (size <= 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be positive");
+        return board.ordersWithStatus(status, after, size);
+    }
+
+    @GetMapping("/counts")
+    public Map<OrderStatus, Integer> counts() {
+        return board.countsByStatus();
+    }
+
+    // the order may be kept by a peer in cluster mode: its status is retrieved out of the event loop
+    @GetMapping("/{orderId}/status")
+    public Mono<OrderStatus> status(@PathVariable UUID orderId) {
+        return Mono.fromCallable(() -> tracker.retrieveStatus(orderId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+}
@@ -0,0 +1,47 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.entities.PricingRule;
+import fr.univcotedazur.vscf.interfaces.PricingManagement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = PricingController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+public class PricingController {
+
+    public static final String BASE_URI = "/pricing/rules";
+
+    private final PricingManagement pricing;
+
+    @Autowired
+    public PricingController(PricingManagement pricing) {
+        this.pricing = pricing;
+    }
+
+    @GetMapping
+    public List<PricingRule> rules() {
+        return pricing.rules();
+    }
+
+    // the new rule set replaces the former one as a whole
+    @PutMapping(consumes = APPLICATION_JSON_VALUE)
+    public List<PricingRule> replace(@RequestBody List<PricingRule> rules) {
+        try {
+            pricing.replaceRules(rules);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return pricing.rules();
+    }
+
+}
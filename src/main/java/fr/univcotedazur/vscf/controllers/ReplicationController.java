@@ -0,0 +1,40 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.replication.ReplicationNode;
+import fr.univcotedazur.vscf.replication.ReplicationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@RequestMapping(path = ReplicationController.BASE_URI, produces = APPLICATION_JSON_VALUE)
+@ConditionalOnProperty("vscf.replication.port")
+public class ReplicationController {
+
+    public static final String BASE_URI = "/replication";
+
+    private final ReplicationNode node;
+
+    @Autowired
+    public ReplicationController(ReplicationNode node) {
+        this.node = node;
+    }
+
+    @GetMapping
+    public ReplicationStatus status() {
+        return node.status();
+    }
+
+    // Failover: makes this follower the leader, the former one must be down
+    @PostMapping("/promote")
+    public ReplicationStatus promote() {
+        node.promote();
+        return node.status();
+    }
+
+}
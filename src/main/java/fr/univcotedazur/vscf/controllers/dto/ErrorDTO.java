@@ -0,0 +1,21 @@
+package fr.univcotedazur.vscf.controllers.dto;
+
+public class ErrorDTO {
+
+    private String error;
+
+    private String details;
+
+    public ErrorDTO(String error, String details) {
+        this.error = error;
+        this.details = details;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+}
@@ -0,0 +1,31 @@
+package fr.univcotedazur.vscf.controllers.dto;
+
+public class RegistrationDTO {
+
+    private String name;
+
+    private String creditCard;
+
+    public RegistrationDTO() {}
+
+    public RegistrationDTO(String name, String creditCard) {
+        this.name = name;
+        this.creditCard = creditCard;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCreditCard() {
+        return creditCard;
+    }
+
+    public void setCreditCard(String creditCard) {
+        this.creditCard = creditCard;
+    }
+}
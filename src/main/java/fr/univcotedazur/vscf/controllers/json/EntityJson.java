@@ -0,0 +1,83 @@
+package fr.univcotedazur.vscf.controllers.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+/**
+ * Hand-written serializers of the entities: fields are written directly, without bean
+ * introspection, and only what clients need is exposed (never the credit card).
+ */
+@JsonComponent
+public class EntityJson {
+
+    public static class CustomerSerializer extends JsonSerializer<Customer> {
+        @Override
+        public void serialize(Customer customer, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            json.writeStringField("id", customer.getId().toString());
+            json.writeStringField("name", customer.getName());
+            json.writeEndObject();
+        }
+    }
+
+    public static class OrderSerializer extends JsonSerializer<Order> {
+        @Override
+        public void serialize(Order order, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            json.writeStringField("id", order.getId().toString());
+            json.writeStringField("customerId", order.getCustomerId().toString());
+            json.writeStringField("status", order.getStatus().name());
+            json.writeNumberField("price", order.getPrice());
+            json.writeArrayFieldStart("items");
+            for (Item item : order.getItems()) {
+                writeItem(item, json);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    public static class ItemSerializer extends JsonSerializer<Item> {
+        @Override
+        public void serialize(Item item, JsonGenerator json, SerializerProvider provider) throws IOException {
+            writeItem(item, json);
+        }
+    }
+
+    public static class ItemDeserializer extends JsonDeserializer<Item> {
+        @Override
+        public Item deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonNode node = parser.getCodec().readTree(parser);
+            JsonNode cookie = node.get("cookie");
+            JsonNode quantity = node.get("quantity");
+            if (cookie == null || quantity == null || !quantity.canConvertToInt())
+                throw InvalidFormatException.from(parser, "An item needs a cookie and a quantity", node, Item.class);
+            try {
+                return new Item(Cookies.valueOf(cookie.asText()), quantity.asInt());
+            } catch (IllegalArgumentException e) {
+                throw InvalidFormatException.from(parser, "Unknown cookie " + cookie.asText(), node, Item.class);
+            }
+        }
+    }
+
+    private static void writeItem(Item item, JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("cookie", item.getCookie().name());
+        json.writeNumberField("quantity", item.getQuantity());
+        json.writeEndObject();
+    }
+
+}
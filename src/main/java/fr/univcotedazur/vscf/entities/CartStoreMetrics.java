@@ -0,0 +1,55 @@
+package fr.univcotedazur.vscf.entities;
+
+// Snapshot of the cart store activity since its start (or last reset)
+public class CartStoreMetrics {
+
+    private long residentCarts;
+
+    private long spilledCarts;
+
+    private long evictions;
+
+    private long restores;
+
+    private double seconds;
+
+    public CartStoreMetrics(long residentCarts, long spilledCarts, long evictions, long restores, double seconds) {
+        this.residentCarts = residentCarts;
+        this.spilledCarts = spilledCarts;
+        this.evictions = evictions;
+        this.restores = restores;
+        this.seconds = seconds;
+    }
+
+    // carts held in memory
+    public long getResidentCarts() {
+        return residentCarts;
+    }
+
+    // carts evicted to the spill file and not restored since
+    public long getSpilledCarts() {
+        return spilledCarts;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getRestores() {
+        return restores;
+    }
+
+    public double getEvictionsPerSecond() {
+        return seconds > 0 ? evictions / seconds : 0;
+    }
+
+    public double getRestoresPerSecond() {
+        return seconds > 0 ? restores / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d resident carts, %d spilled, %d evictions (%.1f/s), %d restores (%.1f/s)",
+                residentCarts, spilledCarts, evictions, getEvictionsPerSecond(), restores, getRestoresPerSecond());
+    }
+}
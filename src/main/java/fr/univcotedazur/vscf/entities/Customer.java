@@ -1,28 +1,32 @@
 package fr.univcotedazur.vscf.entities;
 
-import java.util.HashSet;
-import java.util.Objects;
-import java.util.Set;
 import java.util.UUID;
 
+// Compact at millions of customers: the id is kept as a pair of longs, and recurring names are shared
 public class Customer {
 
-    private UUID id;
+    private final long idHigh;
+    private final long idLow;
 
     private String name;
 
-    private String creditCard;
-
-    private Set<Item> cart = new HashSet<>();
+    // opaque token of the credit card, whose number is only kept by the CardVault
+    private String cardToken;
 
     public Customer(String n, String c) {
-        this.name = n;
-        this.creditCard = c;
-        this.id = UUID.randomUUID();
+        this(IdGenerator.next(), n, c);
+    }
+
+    // Rebuilds a known customer, e.g. a replicated one
+    public Customer(UUID id, String n, String c) {
+        this.name = SharedValues.name(n);
+        this.cardToken = c;
+        this.idHigh = id.getMostSignificantBits();
+        this.idLow = id.getLeastSignificantBits();
     }
 
     public UUID getId() {
-        return id;
+        return new UUID(idHigh, idLow);
     }
 
     public String getName() {
@@ -30,37 +34,30 @@ public class Customer {
     }
 
     public void setName(String name) {
-        this.name = name;
-    }
-
-    public String getCreditCard() {
-        return creditCard;
-    }
-
-    public void setCreditCard(String creditCard) {
-        this.creditCard = creditCard;
+        this.name = SharedValues.name(name);
     }
 
-    public Set<Item> getCart() {
-        return cart;
+    public String getCardToken() {
+        return cardToken;
     }
 
-    public void setCart(Set<Item> cart) {
-        this.cart = cart;
+    public void setCardToken(String cardToken) {
+        this.cardToken = cardToken;
     }
 
+    // identity is the id only: stable when the name or card change, and cheap to hash
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Customer)) return false;
         Customer customer = (Customer) o;
-        if (!getId().equals(customer.getId())) return false;
-        if (!getName().equals(customer.getName())) return false;
-        return getCreditCard().equals(customer.getCreditCard());
+        return idHigh == customer.idHigh && idLow == customer.idLow;
     }
 
+    // the hash of the UUID id
     @Override
     public int hashCode() {
-        return Objects.hash(name, creditCard);
+        long bits = idHigh ^ idLow;
+        return ((int) (bits >> 32)) ^ (int) bits;
     }
 }
@@ -0,0 +1,46 @@
+package fr.univcotedazur.vscf.entities;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Time-ordered identifiers following the UUID version 7 layout: 48 bits of Unix milliseconds,
+ * then random bits. Randomness comes from ThreadLocalRandom, so that generating an id neither
+ * locks nor contends, unlike the shared SecureRandom behind UUID.randomUUID().
+ * The 12 bits following the version may instead carry a tag, e.g. the node that generated
+ * the id, leaving 62 random bits to tell the ids of a same millisecond apart.
+ * These ids are unique, not secret: they must not be used as security tokens.
+ */
+public final class IdGenerator {
+
+    private IdGenerator() {}
+
+    public static final int MAX_TAG = 0x0FFF;
+
+    public static UUID next() {
+        return generate(ThreadLocalRandom.current().nextInt() & MAX_TAG);
+    }
+
+    public static UUID next(int tag) {
+        if (tag < 0 || tag > MAX_TAG)
+            throw new IllegalArgumentException("Id tags are 12 bits: " + tag);
+        return generate(tag);
+    }
+
+    // The tag of an id generated by next(int), random bits otherwise
+    public static int tag(UUID id) {
+        return (int) (id.getMostSignificantBits() & MAX_TAG);
+    }
+
+    private static UUID generate(int tag) {
+        long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | tag;
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    // Milliseconds since the epoch at which a version 7 id was generated
+    public static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+}
@@ -2,13 +2,12 @@ package fr.univcotedazur.vscf.entities;
 
 import java.util.Objects;
 
-public class Item {
+// Immutable value, shared between carts and order snapshots
+public final class Item {
 
-    private Cookies cookie;
+    private final Cookies cookie;
 
-    private int quantity;
-
-    public Item() {}
+    private final int quantity;
 
     public Item(Cookies cookie, int quantity) {
         this.cookie = cookie;
@@ -18,16 +17,10 @@ public class Item {
     public Cookies getCookie() {
         return cookie;
     }
-    public void setCookie(Cookies cookie) {
-        this.cookie = cookie;
-    }
 
     public int getQuantity() {
         return quantity;
     }
-    public void setQuantity(int quantity) {
-        this.quantity = quantity;
-    }
 
     @Override
     public String toString() { return quantity + "x" + cookie.toString(); }
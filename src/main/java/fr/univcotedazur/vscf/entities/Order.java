@@ -1,50 +1,94 @@
 package fr.univcotedazur.vscf.entities;
 
-import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 
-public class Order {
+/**
+ * Immutable snapshot of an order: a status transition produces a new version of the order,
+ * swapped in the repository, so that readers never need locks nor defensive copies.
+ * Compact at millions of orders: its id and the id of its customer are kept as pairs of
+ * longs, and its items as one quantity per cookie (see PackedItems), shared between the
+ * versions of the order and with the orders of the same basket.
+ */
+public final class Order {
 
-    private UUID id;
+    private final long idHigh;
+    private final long idLow;
 
-    private Customer customer;
+    private final long customerIdHigh;
+    private final long customerIdLow;
 
-    private Set<Item> items;
+    private final int[] quantities; // per cookie ordinal
 
-    private OrderStatus status;
+    private final OrderStatus status;
 
+    // as paid, promotions included
+    private final double price;
+
+    // Without a price, the cookies are paid at their catalog price.
     public Order(Customer customer, Set<Item> items) {
-        this.customer = customer;
-        this.items = items;
-        this.status = OrderStatus.VALIDATED;
-        this.id = UUID.randomUUID();
+        this(IdGenerator.next(), customer, items, catalogPrice(items));
     }
 
-    public Order() {
+    // With an id issued by the repository, e.g. tagged with the node taking the order
+    public Order(UUID id, Customer customer, Set<Item> items, double price) {
+        this(id, customer.getId(), PackedItems.pack(items), OrderStatus.VALIDATED, price);
     }
 
-    public OrderStatus getStatus() {
-        return status;
+    private Order(UUID id, UUID customerId, int[] quantities, OrderStatus status, double price) {
+        this(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                customerId.getMostSignificantBits(), customerId.getLeastSignificantBits(), quantities, status, price);
     }
 
-    public void setStatus(OrderStatus status) {
+    private Order(long idHigh, long idLow, long customerIdHigh, long customerIdLow, int[] quantities,
+                  OrderStatus status, double price) {
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.customerIdHigh = customerIdHigh;
+        this.customerIdLow = customerIdLow;
+        this.quantities = quantities;
         this.status = status;
+        this.price = price;
+    }
+
+    // Rebuilds a known version of an order, e.g. a replicated one
+    public static Order restore(UUID id, UUID customerId, Set<Item> items, OrderStatus status, double price) {
+        return new Order(id, customerId, PackedItems.pack(items), status, price);
+    }
+
+    public Order withStatus(OrderStatus newStatus) {
+        return newStatus == status ? this
+                : new Order(idHigh, idLow, customerIdHigh, customerIdLow, quantities, newStatus, price);
+    }
+
+    public OrderStatus getStatus() {
+        return status;
     }
 
     public UUID getId() {
-        return id;
+        return new UUID(idHigh, idLow);
+    }
+
+    // orders reference their customer by id, the customer being found in the CustomerRepository
+    public UUID getCustomerId() {
+        return new UUID(customerIdHigh, customerIdLow);
     }
 
-    public Customer getCustomer() {
-        return customer;
+    public boolean belongsTo(Customer customer) {
+        UUID id = customer.getId();
+        return id.getMostSignificantBits() == customerIdHigh && id.getLeastSignificantBits() == customerIdLow;
     }
 
-    public Set<Item> getItems() {
-        return items;
+    // a read-only view, whose items are created while iterating
+    public PackedItems getItems() {
+        return new PackedItems(quantities);
     }
 
     public double getPrice() {
+        return price;
+    }
+
+    public static double catalogPrice(Set<Item> items) {
         double result = 0.0;
         for (Item item : items) {
             result += (item.getQuantity() * item.getCookie().getPrice());
@@ -52,20 +96,19 @@ public class Order {
         return result;
     }
 
+    // identity is the id only: stable when the status changes, and cheap to hash
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Order)) return false;
         Order order = (Order) o;
-        if (!getId().equals(order.getId())) return false;
-        if (!getCustomer().equals(order.getCustomer())) return false;
-        if (!getItems().equals(order.getItems())) return false;
-        return getStatus() == order.getStatus();
-
+        return idHigh == order.idHigh && idLow == order.idLow;
     }
 
+    // the hash of the UUID id
     @Override
     public int hashCode() {
-        return Objects.hash(customer, items, status);
+        long bits = idHigh ^ idLow;
+        return ((int) (bits >> 32)) ^ (int) bits;
     }
 }
@@ -0,0 +1,25 @@
+package fr.univcotedazur.vscf.entities;
+
+import java.util.List;
+
+// Orders in a status, oldest first, with the cursor to read the following ones from
+public class OrderPage {
+
+    private List<Order> orders;
+
+    private long next;
+
+    public OrderPage(List<Order> orders, long next) {
+        this.orders = orders;
+        this.next = next;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    // the cursor following this page, to poll for the orders reaching the status later on
+    public long getNext() {
+        return next;
+    }
+}
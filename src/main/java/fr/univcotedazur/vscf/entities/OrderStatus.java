@@ -1,6 +1,6 @@
 package fr.univcotedazur.vscf.entities;
 
-// MVP no use of the READY status
+// READY is only reached when ovens are simulated (vscf.kitchen.ovens > 0)
 public enum OrderStatus {
 
     VALIDATED, IN_PROGRESS, READY
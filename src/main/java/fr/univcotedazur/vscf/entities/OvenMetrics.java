@@ -0,0 +1,51 @@
+package fr.univcotedazur.vscf.entities;
+
+// Snapshot of the oven pool activity since its start (or last reset)
+public class OvenMetrics {
+
+    private int ovens;
+
+    private long bakedOrders;
+
+    private long bakedBatches;
+
+    private double averageQueueWaitMillis;
+
+    private double utilisation;
+
+    public OvenMetrics(int ovens, long bakedOrders, long bakedBatches, double averageQueueWaitMillis, double utilisation) {
+        this.ovens = ovens;
+        this.bakedOrders = bakedOrders;
+        this.bakedBatches = bakedBatches;
+        this.averageQueueWaitMillis = averageQueueWaitMillis;
+        this.utilisation = utilisation;
+    }
+
+    public int getOvens() {
+        return ovens;
+    }
+
+    public long getBakedOrders() {
+        return bakedOrders;
+    }
+
+    public long getBakedBatches() {
+        return bakedBatches;
+    }
+
+    // mean time a batch waited between the order submission and an oven starting to bake it
+    public double getAverageQueueWaitMillis() {
+        return averageQueueWaitMillis;
+    }
+
+    // ratio of time the ovens spent baking, between 0 and 1
+    public double getUtilisation() {
+        return utilisation;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ovens, %d orders, %d batches, queue wait %.2f ms, utilisation %.1f%%",
+                ovens, bakedOrders, bakedBatches, averageQueueWaitMillis, utilisation * 100);
+    }
+}
@@ -0,0 +1,79 @@
+package fr.univcotedazur.vscf.entities;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only set of items packed as one quantity per cookie ordinal, zero quantities being
+ * absent, as orders keep them (and CartRepository the carts): 16 bytes plus 4 per recipe
+ * instead of a HashSet of boxed items. Items are created while iterating.
+ */
+public final class PackedItems extends AbstractSet<Item> {
+
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    private final int[] quantities;
+
+    PackedItems(int[] quantities) {
+        this.quantities = quantities;
+    }
+
+    // quantities of the same cookie are summed, the result being shared with equal baskets
+    static int[] pack(Set<Item> items) {
+        int[] quantities = new int[COOKIES.length];
+        for (Item item : items)
+            quantities[item.getCookie().ordinal()] += item.getQuantity();
+        return SharedValues.basket(quantities);
+    }
+
+    public int quantity(Cookies cookie) {
+        return quantities[cookie.ordinal()];
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int quantity : quantities)
+            if (quantity != 0)
+                size++;
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Item))
+            return false;
+        Item item = (Item) o;
+        return item.getQuantity() != 0 && quantities[item.getCookie().ordinal()] == item.getQuantity();
+    }
+
+    @Override
+    public Iterator<Item> iterator() {
+        return new Iterator<>() {
+            private int next = skipEmpty(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < quantities.length;
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Item item = new Item(COOKIES[next], quantities[next]);
+                next = skipEmpty(next + 1);
+                return item;
+            }
+        };
+    }
+
+    private int skipEmpty(int from) {
+        while (from < quantities.length && quantities[from] == 0)
+            from++;
+        return from;
+    }
+
+}
@@ -0,0 +1,129 @@
+package fr.univcotedazur.vscf.entities;
+
+import java.time.LocalTime;
+
+/**
+ * A promotion, as written by marketing; rule sets are checked and compiled by the
+ * PricingEngine when loaded. Percentage discounts do not stack: an item gets the best
+ * one applying to it, on the units left to pay after the multi-buy deals.
+ */
+public class PricingRule {
+
+    public enum Kind {
+        MULTI_BUY,          // buy + free units of the cookie for the price of buy units
+        HAPPY_HOUR,         // percent off the cookie (every cookie when null) between from and to
+        CUSTOMER_DISCOUNT   // percent off the cookie (every cookie when null) for the named customer
+    }
+
+    private Kind kind;
+
+    private Cookies cookie;
+
+    private String customer;
+
+    private int buy;
+
+    private int free;
+
+    private double percent;
+
+    private LocalTime from;
+
+    private LocalTime to;
+
+    public PricingRule() {}
+
+    public static PricingRule multiBuy(Cookies cookie, int buy, int free) {
+        PricingRule rule = new PricingRule();
+        rule.kind = Kind.MULTI_BUY;
+        rule.cookie = cookie;
+        rule.buy = buy;
+        rule.free = free;
+        return rule;
+    }
+
+    // the window wraps around midnight when from is after to
+    public static PricingRule happyHour(Cookies cookie, LocalTime from, LocalTime to, double percent) {
+        PricingRule rule = new PricingRule();
+        rule.kind = Kind.HAPPY_HOUR;
+        rule.cookie = cookie;
+        rule.from = from;
+        rule.to = to;
+        rule.percent = percent;
+        return rule;
+    }
+
+    public static PricingRule customerDiscount(String customer, Cookies cookie, double percent) {
+        PricingRule rule = new PricingRule();
+        rule.kind = Kind.CUSTOMER_DISCOUNT;
+        rule.customer = customer;
+        rule.cookie = cookie;
+        rule.percent = percent;
+        return rule;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public Cookies getCookie() {
+        return cookie;
+    }
+
+    public void setCookie(Cookies cookie) {
+        this.cookie = cookie;
+    }
+
+    public String getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(String customer) {
+        this.customer = customer;
+    }
+
+    public int getBuy() {
+        return buy;
+    }
+
+    public void setBuy(int buy) {
+        this.buy = buy;
+    }
+
+    public int getFree() {
+        return free;
+    }
+
+    public void setFree(int free) {
+        this.free = free;
+    }
+
+    public double getPercent() {
+        return percent;
+    }
+
+    public void setPercent(double percent) {
+        this.percent = percent;
+    }
+
+    public LocalTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalTime from) {
+        this.from = from;
+    }
+
+    public LocalTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalTime to) {
+        this.to = to;
+    }
+
+}
@@ -0,0 +1,48 @@
+package fr.univcotedazur.vscf.entities;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Deduplication of the values held by many entities: recurring customer names and order
+ * baskets (packed quantities) are shared instead of being copied in every entity. Each kind
+ * is a fixed, lossy table indexed by hash: a value equal to the one in its slot is replaced
+ * by it, otherwise takes the slot. Frequent values thus stay shared, at a constant memory
+ * and without any lock, the table being safely published slot by slot.
+ */
+final class SharedValues {
+
+    private static final int SLOTS = 4096; // a power of two
+
+    private static final AtomicReferenceArray<String> NAMES = new AtomicReferenceArray<>(SLOTS);
+    private static final AtomicReferenceArray<int[]> BASKETS = new AtomicReferenceArray<>(SLOTS);
+
+    private SharedValues() {
+    }
+
+    static String name(String name) {
+        if (name == null)
+            return null;
+        int slot = spread(name.hashCode());
+        String shared = NAMES.get(slot);
+        if (name.equals(shared))
+            return shared;
+        NAMES.set(slot, name);
+        return name;
+    }
+
+    // the given quantities must not be modified afterwards
+    static int[] basket(int[] quantities) {
+        int slot = spread(Arrays.hashCode(quantities));
+        int[] shared = BASKETS.get(slot);
+        if (Arrays.equals(quantities, shared))
+            return shared;
+        BASKETS.set(slot, quantities);
+        return quantities;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) & (SLOTS - 1);
+    }
+
+}
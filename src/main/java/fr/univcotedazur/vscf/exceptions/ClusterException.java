@@ -0,0 +1,21 @@
+package fr.univcotedazur.vscf.exceptions;
+
+// Unchecked: raised by the infrastructure when the node owning a customer cannot serve a routed call
+public class ClusterException extends RuntimeException {
+
+    private String node;
+
+    public ClusterException(String node, String message) {
+        super("Cluster node " + node + ": " + message);
+        this.node = node;
+    }
+
+    public ClusterException(String node, Throwable cause) {
+        super("Cluster node " + node + " unavailable: " + cause, cause);
+        this.node = node;
+    }
+
+    public String getNode() {
+        return node;
+    }
+}
@@ -0,0 +1,17 @@
+package fr.univcotedazur.vscf.exceptions;
+
+// Unchecked: a call about a customer reached a node that does not keep it, having just handed it
+// over to another node, the destination, when known
+public class CustomerMovedException extends ClusterException {
+
+    private String destination;
+
+    public CustomerMovedException(String node, String destination) {
+        super(node, destination == null ? "unknown customer" : "the customer moved to " + destination);
+        this.destination = destination;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+}
@@ -0,0 +1,16 @@
+package fr.univcotedazur.vscf.exceptions;
+
+// Unchecked: raised by the infrastructure on any write operation reaching a follower
+public class NotLeaderException extends RuntimeException {
+
+    private String operation;
+
+    public NotLeaderException(String operation) {
+        super("Read-only follower, " + operation + " must be sent to the leader");
+        this.operation = operation;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+}
@@ -0,0 +1,43 @@
+package fr.univcotedazur.vscf.exceptions;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+
+public class OutOfStockException extends Exception {
+
+    private Cookies cookie;
+    private int requested;
+    private long available;
+
+    public OutOfStockException() {
+    }
+
+    public OutOfStockException(Cookies cookie, int requested, long available) {
+        this.cookie = cookie;
+        this.requested = requested;
+        this.available = available;
+    }
+
+    public Cookies getCookie() {
+        return cookie;
+    }
+
+    public void setCookie(Cookies cookie) {
+        this.cookie = cookie;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public void setRequested(int requested) {
+        this.requested = requested;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(long available) {
+        this.available = available;
+    }
+}
@@ -0,0 +1,23 @@
+package fr.univcotedazur.vscf.exceptions;
+
+// Unchecked: raised by the admission control when a lane is at its concurrency limit, before any work
+public class OverloadedException extends RuntimeException {
+
+    private String lane;
+
+    private int limit;
+
+    public OverloadedException(String lane, int limit) {
+        super("Overloaded, " + lane + " lane at its limit of " + limit + " concurrent calls");
+        this.lane = lane;
+        this.limit = limit;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
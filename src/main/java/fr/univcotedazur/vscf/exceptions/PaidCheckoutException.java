@@ -0,0 +1,22 @@
+package fr.univcotedazur.vscf.exceptions;
+
+// Unchecked: the customer was charged, but the order could not be saved or sent to the kitchen
+public class PaidCheckoutException extends RuntimeException {
+
+    private String name;
+    private double amount;
+
+    public PaidCheckoutException(String customerName, double amount, Throwable cause) {
+        super("Order of " + customerName + " paid " + amount + " but not taken: " + cause, cause);
+        this.name = customerName;
+        this.amount = amount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
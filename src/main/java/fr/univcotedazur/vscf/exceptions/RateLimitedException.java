@@ -0,0 +1,30 @@
+package fr.univcotedazur.vscf.exceptions;
+
+// Unchecked: raised by the rate limits when a customer (or name) calls an operation too often
+public class RateLimitedException extends RuntimeException {
+
+    private String operation;
+
+    private String key;
+
+    private long retryAfterMillis;
+
+    public RateLimitedException(String operation, String key, long retryAfterMillis) {
+        super("Too many calls to " + operation + " for " + key + ", retry in " + retryAfterMillis + "ms");
+        this.operation = operation;
+        this.key = key;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,15 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OvenMetrics;
+
+import java.util.function.Consumer;
+
+public interface Baking {
+
+    // Bakes every item of the order as a batch, whenBaked being called once all batches are out of the ovens
+    void bake(Order order, Consumer<Order> whenBaked);
+
+    OvenMetrics metrics();
+
+}
@@ -0,0 +1,17 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import java.util.Optional;
+
+public interface CardVault {
+
+    // Stores the card number and returns an opaque token standing for it
+    String tokenize(String cardNumber);
+
+    // The card number behind the token, empty for an unknown or forged token
+    Optional<String> resolve(String token);
+
+    // Wipes the card number behind the token, which resolves to nothing from then on.
+    // Unknown or forged tokens are ignored.
+    void forget(String token);
+
+}
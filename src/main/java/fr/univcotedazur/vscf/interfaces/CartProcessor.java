@@ -4,6 +4,7 @@ import fr.univcotedazur.vscf.entities.Customer;
 import fr.univcotedazur.vscf.entities.Item;
 import fr.univcotedazur.vscf.entities.Order;
 import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
 import fr.univcotedazur.vscf.exceptions.PaymentException;
 
 import java.util.Set;
@@ -14,6 +15,6 @@ public interface CartProcessor {
 
     double price(Customer c);
 
-    Order validate(Customer c) throws EmptyCartException, PaymentException;
+    Order validate(Customer c) throws EmptyCartException, PaymentException, OutOfStockException;
 
 }
@@ -0,0 +1,15 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.OrderPage;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+
+import java.util.Map;
+
+public interface KitchenBoard {
+
+    // the orders in the status, oldest first, after the cursor of the previous page (0 for the first one)
+    OrderPage ordersWithStatus(OrderStatus status, long after, int pageSize);
+
+    Map<OrderStatus, Integer> countsByStatus();
+
+}
@@ -0,0 +1,13 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Order;
+
+import java.util.List;
+
+public interface OrderHistory {
+
+    // the customer's orders, newest first, page numbers starting at 0
+    List<Order> history(Customer customer, int page, int pageSize);
+
+}
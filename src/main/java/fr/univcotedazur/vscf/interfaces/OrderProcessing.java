@@ -2,10 +2,11 @@ package fr.univcotedazur.vscf.interfaces;
 
 import fr.univcotedazur.vscf.entities.Order;
 
-// very partial vision, the OrderStatus cannot properly make progress
-// MVP just to set the order from VALIDATED to IN_PROGRESS
+// very partial vision, the order is set from VALIDATED to IN_PROGRESS,
+// then to READY once baked if ovens are simulated
 public interface OrderProcessing {
 
-    void process(Order order);
+    // returns the new version of the order
+    Order process(Order order);
 
 }
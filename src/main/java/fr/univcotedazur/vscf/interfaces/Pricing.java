@@ -0,0 +1,13 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+
+import java.util.Set;
+
+public interface Pricing {
+
+    // price of the items for the customer, now, with the current promotions
+    double price(Customer customer, Set<Item> items);
+
+}
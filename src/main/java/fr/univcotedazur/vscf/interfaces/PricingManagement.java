@@ -0,0 +1,14 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.PricingRule;
+
+import java.util.List;
+
+public interface PricingManagement {
+
+    List<PricingRule> rules();
+
+    // replaces the whole rule set at once, unchanged when a rule is invalid (IllegalArgumentException)
+    void replaceRules(List<PricingRule> rules);
+
+}
@@ -0,0 +1,9 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Order;
+
+public interface SalesRecorder {
+
+    void record(Order paidOrder);
+
+}
@@ -0,0 +1,21 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+
+import java.time.Duration;
+import java.util.List;
+
+// All queries cover the most recent window, rounded up to the analytics bucket width
+public interface SalesReporting {
+
+    double revenue(Cookies cookie, Duration window);
+
+    long unitsSold(Cookies cookie, Duration window);
+
+    // revenue of the cookie per step over the window, oldest step first
+    double[] revenueTimeline(Cookies cookie, Duration window, Duration step);
+
+    // best-selling cookies by revenue over the window
+    List<Cookies> topSellers(int n, Duration window);
+
+}
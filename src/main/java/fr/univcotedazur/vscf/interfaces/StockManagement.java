@@ -0,0 +1,20 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+
+import java.util.Map;
+
+// Recipes without a stock level are unlimited
+public interface StockManagement {
+
+    // units left of the recipes with a stock level
+    Map<Cookies, Long> levels();
+
+    void setLevel(Cookies cookie, long units);
+
+    // adds units to a stock level, returning the new one (-1 when unlimited)
+    long restock(Cookies cookie, long units);
+
+    void unlimit(Cookies cookie);
+
+}
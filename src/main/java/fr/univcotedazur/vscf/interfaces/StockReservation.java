@@ -0,0 +1,16 @@
+package fr.univcotedazur.vscf.interfaces;
+
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+
+import java.util.Set;
+
+public interface StockReservation {
+
+    // all the items or none of them
+    void reserve(Set<Item> items) throws OutOfStockException;
+
+    // gives back the items of a reservation whose payment failed
+    void release(Set<Item> items);
+
+}
@@ -0,0 +1,29 @@
+package fr.univcotedazur.vscf.jfr;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.univcotedazur.vscf.BankCall")
+@Label("Bank Call")
+public final class BankCallEvent extends ComponentEvent {
+
+    public static final String REFUSED = "REFUSED";
+
+    @Label("Customer Id")
+    String customerId;
+
+    @Label("Amount")
+    double amount;
+
+    public void end(Customer customer, double amount, boolean accepted) {
+        if (!ending())
+            return;
+        this.customerId = id(customer.getId());
+        this.amount = amount;
+        if (!accepted && RETURNED.equals(outcome))
+            outcome = REFUSED;
+        commit();
+    }
+
+}
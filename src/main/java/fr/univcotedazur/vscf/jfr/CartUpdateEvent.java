@@ -0,0 +1,34 @@
+package fr.univcotedazur.vscf.jfr;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.univcotedazur.vscf.CartUpdate")
+@Label("Cart Update")
+public final class CartUpdateEvent extends ComponentEvent {
+
+    @Label("Customer Id")
+    String customerId;
+
+    @Label("Cookie")
+    String cookie;
+
+    @Label("Quantity")
+    int quantity;
+
+    @Label("Cart Size")
+    int cartSize;
+
+    public void end(Customer customer, Item item, int cartSize) {
+        if (!ending())
+            return;
+        this.customerId = id(customer.getId());
+        this.cookie = item.getCookie().name();
+        this.quantity = item.getQuantity();
+        this.cartSize = cartSize;
+        commit();
+    }
+
+}
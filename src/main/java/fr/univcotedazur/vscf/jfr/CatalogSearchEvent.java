@@ -0,0 +1,24 @@
+package fr.univcotedazur.vscf.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.univcotedazur.vscf.CatalogSearch")
+@Label("Catalog Search")
+public final class CatalogSearchEvent extends ComponentEvent {
+
+    @Label("Expression")
+    String expression;
+
+    @Label("Results")
+    int results;
+
+    public void end(String expression, int results) {
+        if (!ending())
+            return;
+        this.expression = expression;
+        this.results = results;
+        commit();
+    }
+
+}
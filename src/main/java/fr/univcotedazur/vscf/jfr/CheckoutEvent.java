@@ -0,0 +1,31 @@
+package fr.univcotedazur.vscf.jfr;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Order;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.univcotedazur.vscf.Checkout")
+@Label("Checkout")
+public final class CheckoutEvent extends ComponentEvent {
+
+    @Label("Customer Id")
+    String customerId;
+
+    @Label("Order Id")
+    String orderId;
+
+    @Label("Cart Size")
+    int cartSize;
+
+    // the order is null when the checkout failed
+    public void end(Customer customer, Order order, int cartSize) {
+        if (!ending())
+            return;
+        this.customerId = id(customer.getId());
+        this.orderId = order == null ? null : id(order.getId());
+        this.cartSize = cartSize;
+        commit();
+    }
+
+}
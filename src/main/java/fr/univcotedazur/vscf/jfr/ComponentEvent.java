@@ -0,0 +1,47 @@
+package fr.univcotedazur.vscf.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * Flight Recorder event of a component operation, begun at the start of the operation and
+ * ended by the ComponentEvents aspect whatever its outcome. Its fields are only filled when the event is
+ * to be committed: while no recording enables it, begin() and end() do nothing and the JIT
+ * removes the event altogether.
+ */
+@Category("Cookie Factory")
+@StackTrace(false)
+public abstract class ComponentEvent extends Event {
+
+    public static final String RETURNED = "RETURNED";
+
+    @Label("Outcome")
+    @Description("RETURNED, or the simple name of the exception thrown")
+    String outcome;
+
+    // to be called before rethrowing what the operation threw
+    public void failed(Throwable thrown) {
+        if (isEnabled())
+            outcome = thrown.getClass().getSimpleName();
+    }
+
+    // ends the event, telling whether a recording wants it, its fields then to be filled and committed
+    final boolean ending() {
+        end();
+        if (!shouldCommit())
+            return false;
+        if (outcome == null)
+            outcome = RETURNED;
+        return true;
+    }
+
+    static String id(UUID id) {
+        return id == null ? null : id.toString();
+    }
+
+}
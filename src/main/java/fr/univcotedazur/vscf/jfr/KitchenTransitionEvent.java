@@ -0,0 +1,34 @@
+package fr.univcotedazur.vscf.jfr;
+
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.univcotedazur.vscf.KitchenTransition")
+@Label("Kitchen Transition")
+public final class KitchenTransitionEvent extends ComponentEvent {
+
+    @Label("Customer Id")
+    String customerId;
+
+    @Label("Order Id")
+    String orderId;
+
+    @Label("Cart Size")
+    int cartSize;
+
+    @Label("Status")
+    String status;
+
+    public void end(Order order, OrderStatus status) {
+        if (!ending())
+            return;
+        this.customerId = id(order.getCustomerId());
+        this.orderId = id(order.getId());
+        this.cartSize = order.getItems().size();
+        this.status = status.name();
+        commit();
+    }
+
+}
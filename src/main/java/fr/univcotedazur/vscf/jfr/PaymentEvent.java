@@ -0,0 +1,37 @@
+package fr.univcotedazur.vscf.jfr;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Order;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.univcotedazur.vscf.Payment")
+@Label("Payment")
+public final class PaymentEvent extends ComponentEvent {
+
+    @Label("Customer Id")
+    String customerId;
+
+    @Label("Order Id")
+    String orderId;
+
+    @Label("Cart Size")
+    int cartSize;
+
+    @Label("Amount")
+    double amount;
+
+    // the order is null when the price could not be computed
+    public void end(Customer customer, Order order, int cartSize) {
+        if (!ending())
+            return;
+        this.customerId = id(customer.getId());
+        this.cartSize = cartSize;
+        if (order != null) {
+            this.orderId = id(order.getId());
+            this.amount = order.getPrice();
+        }
+        commit();
+    }
+
+}
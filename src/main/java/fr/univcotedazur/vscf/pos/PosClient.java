@@ -0,0 +1,113 @@
+package fr.univcotedazur.vscf.pos;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Blocking client of the point-of-sale endpoint, not thread-safe. Requests are buffered
+ * until flush(), so that many of them can be pipelined on the connection; responses are
+ * then read in order with read().
+ */
+public class PosClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer in = ByteBuffer.allocate(PosProtocol.MAX_FRAME + Integer.BYTES);
+    private final Queue<Byte> pendingOpcodes = new ArrayDeque<>();
+
+    public PosClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        in.flip();
+    }
+
+    public void update(UUID customerId, Cookies cookie, int quantity) throws IOException {
+        request(PosProtocol.UPDATE, customerId, 5).put((byte) cookie.ordinal()).putInt(quantity);
+    }
+
+    public void validate(UUID customerId) throws IOException {
+        request(PosProtocol.VALIDATE, customerId, 0);
+    }
+
+    public void contents(UUID customerId) throws IOException {
+        request(PosProtocol.CONTENTS, customerId, 0);
+    }
+
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    // Blocks until the response to the oldest pending request is received
+    public PosResponse read() throws IOException {
+        Byte opcode = pendingOpcodes.poll();
+        if (opcode == null)
+            throw new IllegalStateException("No pending request");
+        if (out.position() > 0)
+            flush();
+        ByteBuffer frame = nextFrame();
+        byte status = frame.get();
+        if (status != PosProtocol.OK)
+            return new PosResponse(status, 0, null, 0.0, null);
+        switch (opcode) {
+            case PosProtocol.UPDATE:
+                return new PosResponse(status, frame.getInt(), null, 0.0, null);
+            case PosProtocol.VALIDATE:
+                return new PosResponse(status, 0, new UUID(frame.getLong(), frame.getLong()), frame.getDouble(), null);
+            default:
+                Set<Item> items = new HashSet<>();
+                for (int count = frame.get(); count > 0; count--)
+                    items.add(new Item(PosProtocol.COOKIES[frame.get()], frame.getInt()));
+                return new PosResponse(status, 0, null, 0.0, items);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer request(byte opcode, UUID customerId, int extra) throws IOException {
+        int length = 1 + 2 * Long.BYTES + extra;
+        if (out.remaining() < Integer.BYTES + length)
+            flush();
+        pendingOpcodes.add(opcode);
+        return out.putInt(length).put(opcode)
+                .putLong(customerId.getMostSignificantBits()).putLong(customerId.getLeastSignificantBits());
+    }
+
+    private ByteBuffer nextFrame() throws IOException {
+        fill(Integer.BYTES);
+        int length = in.getInt();
+        fill(length);
+        ByteBuffer frame = in.slice().limit(length);
+        in.position(in.position() + length);
+        return frame;
+    }
+
+    private void fill(int needed) throws IOException {
+        while (in.remaining() < needed) {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0)
+                throw new EOFException("Connection closed by the server");
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package fr.univcotedazur.vscf.pos;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+
+/**
+ * Binary protocol of the point-of-sale endpoint. Every message is a frame made of an int
+ * length followed by that many bytes. Requests are pipelined: a terminal may send many
+ * frames without waiting, responses come back in the same order.
+ *
+ * Requests start with an opcode, then the customer id as two longs:
+ *   UPDATE   + cookie ordinal (byte) + quantity (int)  -> status + new quantity (int)
+ *   VALIDATE                                           -> status + order id (2 longs) + price (double)
+ *   CONTENTS                                           -> status + count (byte) + count x (ordinal byte, quantity int)
+ * Responses start with a status byte; any status other than OK carries no payload. OVERLOADED
+ * refuses a checkout at once, while the instance is at its limit: the terminal may retry later.
+ * RATE_LIMITED refuses a cart update of a customer calling too often.
+ */
+public final class PosProtocol {
+
+    private PosProtocol() {}
+
+    public static final byte UPDATE = 1;
+    public static final byte VALIDATE = 2;
+    public static final byte CONTENTS = 3;
+
+    public static final byte OK = 0;
+    public static final byte UNKNOWN_CUSTOMER = 1;
+    public static final byte NEGATIVE_QUANTITY = 2;
+    public static final byte EMPTY_CART = 3;
+    public static final byte PAYMENT_REFUSED = 4;
+    public static final byte BAD_REQUEST = 5;
+    public static final byte NOT_LEADER = 6;
+    public static final byte UNAVAILABLE = 7;
+    public static final byte OUT_OF_STOCK = 8;
+    public static final byte OVERLOADED = 9;
+    public static final byte RATE_LIMITED = 10;
+
+    public static final int MAX_FRAME = 64 * 1024;
+
+    static final Cookies[] COOKIES = Cookies.values();
+
+}
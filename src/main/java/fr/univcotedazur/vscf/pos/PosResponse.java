@@ -0,0 +1,51 @@
+package fr.univcotedazur.vscf.pos;
+
+import fr.univcotedazur.vscf.entities.Item;
+
+import java.util.Set;
+import java.util.UUID;
+
+// Decoded response of the point-of-sale endpoint, fields depending on the request
+public class PosResponse {
+
+    private final byte status;
+    private final int quantity;
+    private final UUID orderId;
+    private final double price;
+    private final Set<Item> items;
+
+    PosResponse(byte status, int quantity, UUID orderId, double price, Set<Item> items) {
+        this.status = status;
+        this.quantity = quantity;
+        this.orderId = orderId;
+        this.price = price;
+        this.items = items;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return status == PosProtocol.OK;
+    }
+
+    // new quantity after an UPDATE
+    public int getQuantity() {
+        return quantity;
+    }
+
+    // created order after a VALIDATE
+    public UUID getOrderId() {
+        return orderId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    // cart after a CONTENTS
+    public Set<Item> getItems() {
+        return items;
+    }
+}
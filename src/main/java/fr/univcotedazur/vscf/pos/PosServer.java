@@ -0,0 +1,381 @@
+package fr.univcotedazur.vscf.pos;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.exceptions.ClusterException;
+import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.NotLeaderException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.OverloadedException;
+import fr.univcotedazur.vscf.exceptions.PaymentException;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CustomerFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional binary endpoint for the point-of-sale terminals (see PosProtocol), enabled by
+ * setting vscf.pos.port (0 for an ephemeral port). A single NIO selector thread reads the
+ * pipelined frames of every connection and writes back their responses, while a pool of
+ * vscf.pos.workers threads maps them onto CartModifier/CartProcessor, so that a slow bank
+ * never holds the other connections. The frames of a connection are handled one after the
+ * other, by one worker at a time, hence answered in order; a connection stops being read
+ * while it has MAX_PENDING frames waiting, or MAX_OUTPUT bytes of responses not yet sent.
+ */
+@Component
+@Lazy(false) // the endpoint must listen even when beans are lazily initialized
+@ConditionalOnProperty("vscf.pos.port")
+public class PosServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PosServer.class);
+
+    private static final int MAX_PENDING = 1024;
+    private static final int MAX_OUTPUT = 1024 * 1024;
+
+    private final CustomerFinder finder;
+    private final CartModifier cartModifier;
+    private final CartProcessor cartProcessor;
+    private final String bindAddress;
+    private final int requestedPort;
+    private final String endpoint;
+    private final int workerCount;
+    // the connections whose responses or reading are to be updated by the selector thread
+    private final Queue<SelectionKey> flushes = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private ExecutorService workers;
+
+    @Autowired
+    public PosServer(CustomerFinder finder, CartModifier cartModifier, CartProcessor cartProcessor,
+                     @Value("${vscf.pos.port}") int port,
+                     @Value("${vscf.pos.workers:16}") int workers) {
+        this(finder, cartModifier, cartProcessor, null, port, workers, "POS");
+    }
+
+    // For the endpoints extending the protocol, named in the logs and threads, listening on
+    // the given address (all of them when null)
+    protected PosServer(CustomerFinder finder, CartModifier cartModifier, CartProcessor cartProcessor,
+                        String bindAddress, int port, int workers, String endpoint) {
+        if (workers < 1)
+            throw new IllegalArgumentException("at least one worker is required, got " + workers);
+        this.finder = finder;
+        this.cartModifier = cartModifier;
+        this.cartProcessor = cartProcessor;
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+        this.workerCount = workers;
+        this.endpoint = endpoint;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(bindAddress == null ? new InetSocketAddress(requestedPort) : new InetSocketAddress(bindAddress, requestedPort));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        // a connection has at most one task queued or running, the queue being bounded by them
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread worker = new Thread(task, "vscf-" + endpoint.toLowerCase() + "-worker-" + threads.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        selectorThread = new Thread(this::loop, "vscf-" + endpoint.toLowerCase());
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        LOG.info("VSCF:{} endpoint listening on port {}", endpoint, getPort());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        selectorThread.interrupt();
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+        selector.close();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void loop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select();
+                for (SelectionKey key = flushes.poll(); key != null; key = flushes.poll())
+                    flush(key);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable())
+                                read(key);
+                            if (key.isValid() && key.isWritable())
+                                write(key);
+                        }
+                    } catch (IOException e) {
+                        close(key, e);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("VSCF:{} selector failure", endpoint, e);
+            } catch (RuntimeException e) {
+                if (selector.isOpen())
+                    LOG.warn("VSCF:{} unexpected failure", endpoint, e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        if (!accepts((InetSocketAddress) channel.getRemoteAddress())) {
+            LOG.warn("VSCF:{} refusing a connection from {}", endpoint, channel.getRemoteAddress());
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(connection.in) < 0)
+            throw new IOException("closed by the terminal");
+        connection.in.flip();
+        while (connection.in.remaining() >= Integer.BYTES) {
+            int length = connection.in.getInt(connection.in.position());
+            if (length <= 0 || length > PosProtocol.MAX_FRAME)
+                throw new IOException("invalid frame length " + length);
+            if (connection.in.remaining() < Integer.BYTES + length)
+                break;
+            connection.in.getInt();
+            int end = connection.in.position() + length;
+            // copied, the input buffer being reused by the next reads
+            ByteBuffer frame = ByteBuffer.allocate(length).put(connection.in.slice().limit(length)).flip();
+            connection.in.position(end);
+            if (connection.enqueue(frame))
+                workers.execute(() -> serve(key, connection));
+        }
+        connection.in.compact();
+        interests(key, connection);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        synchronized (connection) {
+            connection.out.flip();
+            ((SocketChannel) key.channel()).write(connection.out);
+            connection.out.compact();
+        }
+        interests(key, connection);
+    }
+
+    // Reads unless the connection is saturated, and writes while responses are waiting
+    private static void interests(SelectionKey key, Connection connection) {
+        int ops = 0;
+        synchronized (connection) {
+            if (connection.pending.size() < MAX_PENDING && connection.out.position() < MAX_OUTPUT)
+                ops |= SelectionKey.OP_READ;
+            if (connection.out.position() > 0)
+                ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    // On the selector thread, once workers answered or drained a connection
+    private void flush(SelectionKey key) {
+        if (!key.isValid())
+            return;
+        ((Connection) key.attachment()).flushing.set(false);
+        try {
+            write(key);
+        } catch (IOException e) {
+            close(key, e);
+        }
+    }
+
+    private void close(SelectionKey key, Exception cause) {
+        LOG.debug("VSCF:{} closing connection: {}", endpoint, cause.toString());
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            LOG.debug("VSCF:{} failed to close a connection: {}", endpoint, e.toString());
+        }
+    }
+
+    // On a worker, handles the frames of a connection in their order until none is left, the
+    // selector thread writing the responses as they come
+    private void serve(SelectionKey key, Connection connection) {
+        for (ByteBuffer frame = connection.next(); frame != null; frame = connection.next()) {
+            ByteBuffer response;
+            try {
+                response = handle(frame);
+            } catch (RuntimeException e) {
+                // the terminal would wait for the response forever
+                LOG.warn("VSCF:{} unexpected failure", endpoint, e);
+                connection.discard();
+                close(key, e);
+                return;
+            }
+            connection.respond(response);
+            if (connection.flushing.compareAndSet(false, true)) {
+                flushes.add(key);
+                selector.wakeup();
+            }
+        }
+    }
+
+    // Whether connections from the address are served
+    protected boolean accepts(InetSocketAddress remote) {
+        return true;
+    }
+
+    // Decodes a request frame and encodes its response (without the length prefix)
+    protected ByteBuffer handle(ByteBuffer frame) {
+        ByteBuffer response = ByteBuffer.allocate(64);
+        try {
+            byte opcode = frame.get();
+            Optional<Customer> customer = finder.findById(new UUID(frame.getLong(), frame.getLong()));
+            if (customer.isEmpty())
+                return response.put(PosProtocol.UNKNOWN_CUSTOMER).flip();
+            switch (opcode) {
+                case PosProtocol.UPDATE:
+                    int ordinal = frame.get();
+                    if (ordinal < 0 || ordinal >= PosProtocol.COOKIES.length)
+                        return response.put(PosProtocol.BAD_REQUEST).flip();
+                    int quantity = cartModifier.update(customer.get(), new Item(PosProtocol.COOKIES[ordinal], frame.getInt()));
+                    return response.put(PosProtocol.OK).putInt(quantity).flip();
+                case PosProtocol.VALIDATE:
+                    Order order = cartProcessor.validate(customer.get());
+                    return response.put(PosProtocol.OK).putLong(order.getId().getMostSignificantBits())
+                            .putLong(order.getId().getLeastSignificantBits()).putDouble(order.getPrice()).flip();
+                case PosProtocol.CONTENTS:
+                    Set<Item> items = cartProcessor.contents(customer.get());
+                    response = ByteBuffer.allocate(2 + items.size() * 5).put(PosProtocol.OK).put((byte) items.size());
+                    for (Item item : items)
+                        response.put((byte) item.getCookie().ordinal()).putInt(item.getQuantity());
+                    return response.flip();
+                default:
+                    return response.put(PosProtocol.BAD_REQUEST).flip();
+            }
+        } catch (NegativeQuantityException e) {
+            return response.clear().put(PosProtocol.NEGATIVE_QUANTITY).flip();
+        } catch (EmptyCartException e) {
+            return response.clear().put(PosProtocol.EMPTY_CART).flip();
+        } catch (PaymentException e) {
+            return response.clear().put(PosProtocol.PAYMENT_REFUSED).flip();
+        } catch (OutOfStockException e) {
+            return response.clear().put(PosProtocol.OUT_OF_STOCK).flip();
+        } catch (NotLeaderException e) {
+            return response.clear().put(PosProtocol.NOT_LEADER).flip();
+        } catch (ClusterException e) {
+            return response.clear().put(PosProtocol.UNAVAILABLE).flip();
+        } catch (OverloadedException e) {
+            return response.clear().put(PosProtocol.OVERLOADED).flip();
+        } catch (RateLimitedException e) {
+            return response.clear().put(PosProtocol.RATE_LIMITED).flip();
+        } catch (BufferUnderflowException e) {
+            return response.clear().put(PosProtocol.BAD_REQUEST).flip();
+        }
+    }
+
+    // The input buffer is only used by the selector thread, the frames and the responses being
+    // shared with the workers under the lock of the connection
+    private static final class Connection {
+
+        private final ByteBuffer in = ByteBuffer.allocate(PosProtocol.MAX_FRAME + Integer.BYTES);
+        private final Queue<ByteBuffer> pending = new ArrayDeque<>();
+        private final AtomicBoolean flushing = new AtomicBoolean();
+        private boolean serving;
+        private ByteBuffer out = ByteBuffer.allocate(16 * 1024);
+
+        // Whether a worker is to be started for the frame, none serving the connection
+        private synchronized boolean enqueue(ByteBuffer frame) {
+            pending.add(frame);
+            if (serving)
+                return false;
+            serving = true;
+            return true;
+        }
+
+        private synchronized ByteBuffer next() {
+            ByteBuffer frame = pending.poll();
+            if (frame == null)
+                serving = false;
+            return frame;
+        }
+
+        private synchronized void discard() {
+            pending.clear();
+            serving = false;
+        }
+
+        private synchronized void respond(ByteBuffer response) {
+            if (out.remaining() < Integer.BYTES + response.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + Integer.BYTES + response.remaining()));
+                out.flip();
+                out = larger.put(out);
+            }
+            out.putInt(response.remaining()).put(response);
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package fr.univcotedazur.vscf.replication;
+
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static fr.univcotedazur.vscf.replication.ReplicationProtocol.*;
+
+/**
+ * Follower side of the replication: a thread connects to the first peer accepting it as
+ * the leader, applies the stream to the local repositories and measures the lag. When the
+ * leader is silent for longer than the timeout, it tries the peers again, and resynchronises
+ * from the snapshot given by the leader it finds.
+ */
+class FollowerStream implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FollowerStream.class);
+
+    private final CustomerRepository customerRepository;
+    private final OrderRepository orderRepository;
+    private final List<InetSocketAddress> peers;
+    private final int timeoutMillis;
+    private final Thread applier;
+
+    private final Inflater inflater = new Inflater();
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile boolean connected;
+    private volatile long sequence;
+    private volatile long leaderSequence;
+    private volatile long lagMillis;
+
+    // ids received during a snapshot, the other local entities being stale
+    private Set<UUID> snapshotCustomers;
+    private Set<UUID> snapshotOrders;
+
+    FollowerStream(CustomerRepository customerRepository, OrderRepository orderRepository,
+                   List<InetSocketAddress> peers, int timeoutMillis) {
+        this.customerRepository = customerRepository;
+        this.orderRepository = orderRepository;
+        this.peers = peers;
+        this.timeoutMillis = timeoutMillis;
+        this.applier = new Thread(this::follow, "vscf-replication-follower");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    ReplicationStatus status() {
+        return new ReplicationStatus(false, connected, 0, sequence, leaderSequence, lagMillis, 1);
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Socket current = socket;
+        if (current != null)
+            current.close();
+        applier.interrupt();
+        try {
+            applier.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inflater.end();
+    }
+
+    private void follow() {
+        int next = 0;
+        while (!closed) {
+            InetSocketAddress peer = peers.get(next++ % peers.size());
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.connect(peer, timeoutMillis);
+                current.setSoTimeout(timeoutMillis);
+                current.setTcpNoDelay(true);
+                LOG.info("VSCF:Replication following {}", peer);
+                read(new DataInputStream(new BufferedInputStream(current.getInputStream(), 64 * 1024)));
+            } catch (IOException | DataFormatException e) {
+                if (!closed)
+                    LOG.debug("VSCF:Replication no stream from {}: {}", peer, e.toString());
+            } finally {
+                connected = false;
+            }
+            if (!closed && next % peers.size() == 0)
+                pause();
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException, DataFormatException {
+        byte[] frame = new byte[0];
+        while (!closed) {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_FRAME)
+                throw new IOException("invalid frame length " + length);
+            connected = true;
+            byte type = in.readByte();
+            long lastSequence = in.readLong();
+            long timestampMillis = in.readLong();
+            leaderSequence = lastSequence;
+            if (type == HEARTBEAT) {
+                if (sequence == lastSequence)
+                    lagMillis = 0;
+                continue;
+            }
+            int count = in.readInt();
+            int rawLength = in.readInt();
+            int compressedLength = length - (1 + Long.BYTES * 2 + Integer.BYTES * 2);
+            if (frame.length < compressedLength)
+                frame = new byte[compressedLength];
+            in.readFully(frame, 0, compressedLength);
+            byte[] raw = new byte[rawLength];
+            inflater.reset();
+            inflater.setInput(frame, 0, compressedLength);
+            if (inflater.inflate(raw) != rawLength)
+                throw new IOException("truncated batch");
+            DataInputStream records = new DataInputStream(new ByteArrayInputStream(raw));
+            for (int i = 0; i < count; i++)
+                apply(records);
+            if (snapshotCustomers != null)
+                continue; // not up to date before the end of the snapshot
+            sequence = lastSequence;
+            lagMillis = Math.max(0, System.currentTimeMillis() - timestampMillis);
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte repository = in.readByte();
+        byte operation = in.readByte();
+        switch (operation) {
+            case SAVE:
+                UUID id = readId(in);
+                if (repository == CUSTOMERS) {
+                    Customer customer = readCustomer(id, in);
+                    customerRepository.save(customer, id);
+                    if (snapshotCustomers != null)
+                        snapshotCustomers.add(id);
+                } else {
+                    Order order = readOrder(id, in);
+                    orderRepository.save(order, id);
+                    if (snapshotOrders != null)
+                        snapshotOrders.add(id);
+                }
+                break;
+            case DELETE:
+                if (repository == CUSTOMERS)
+                    customerRepository.deleteById(readId(in));
+                else
+                    orderRepository.deleteById(readId(in));
+                break;
+            case CLEAR:
+                if (repository == CUSTOMERS)
+                    customerRepository.deleteAll();
+                else
+                    orderRepository.deleteAll();
+                break;
+            case SNAPSHOT_BEGIN:
+                snapshotCustomers = new HashSet<>();
+                snapshotOrders = new HashSet<>();
+                break;
+            case SNAPSHOT_END:
+                deleteStale();
+                break;
+            default:
+                throw new IOException("unknown operation " + operation);
+        }
+    }
+
+    // entities deleted on the leader while this follower was not connected
+    private void deleteStale() {
+        List<UUID> stale = new ArrayList<>();
+        for (Customer customer : customerRepository.findAll())
+            if (!snapshotCustomers.contains(customer.getId()))
+                stale.add(customer.getId());
+        stale.forEach(customerRepository::deleteById);
+        stale.clear();
+        for (Order order : orderRepository.findAll())
+            if (!snapshotOrders.contains(order.getId()))
+                stale.add(order.getId());
+        stale.forEach(orderRepository::deleteById);
+        snapshotCustomers = null;
+        snapshotOrders = null;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(Math.min(timeoutMillis, 200));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+
+}
@@ -0,0 +1,410 @@
+package fr.univcotedazur.vscf.replication;
+
+import fr.univcotedazur.repositories.RepositoryListener;
+import fr.univcotedazur.repositories.RepositorySnapshot;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static fr.univcotedazur.vscf.replication.ReplicationProtocol.*;
+
+/**
+ * Leader side of the replication: the mutations of the repositories are encoded by the
+ * mutating threads and queued, then a shipper thread batches and deflates them, handing the
+ * frames, or a heartbeat when there is nothing to ship, to the sender thread of every
+ * follower. A joining follower first gets a snapshot of the repositories, built and sent by
+ * its own sender thread. Both queues are bounded, and nothing waits for a follower: one
+ * lagging behind by more than the backlog is dropped, as are all of them when the mutations
+ * come faster than the shipper goes, the followers then reconnecting for a new snapshot.
+ */
+class LeaderStream implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LeaderStream.class);
+
+    private final CustomerRepository customerRepository;
+    private final OrderRepository orderRepository;
+    private final int batchSize;
+    private final long heartbeatMillis;
+    private final int backlog;
+
+    private final BlockingQueue<Mutation> mutations;
+    private volatile boolean overflowed; // a mutation was dropped, the followers are behind for good
+    private final Queue<Socket> joining = new ConcurrentLinkedQueue<>();
+    private final List<Follower> followers = new ArrayList<>(); // shipper thread only
+
+    private final RepositoryListener<Customer, UUID> customerListener;
+    private final RepositoryListener<Order, UUID> orderListener;
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final Thread shipper;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED); // shipper thread only
+
+    private volatile long sequence;
+    private volatile int followerCount;
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong shippedBytes = new AtomicLong();
+
+    // backlog: the batches a follower may lag behind, the shipper queue holding as many
+    LeaderStream(CustomerRepository customerRepository, OrderRepository orderRepository, int port,
+                 long sequence, int batchSize, long heartbeatMillis, int backlog) throws IOException {
+        if (backlog <= 0)
+            throw new IllegalArgumentException("Replication backlog must be positive: " + backlog);
+        this.customerRepository = customerRepository;
+        this.orderRepository = orderRepository;
+        this.sequence = sequence;
+        this.batchSize = batchSize;
+        this.heartbeatMillis = heartbeatMillis;
+        this.backlog = backlog;
+        this.mutations = new ArrayBlockingQueue<>((int) Math.min(Integer.MAX_VALUE, (long) backlog * batchSize));
+        this.customerListener = new Listener<>(CUSTOMERS, ReplicationProtocol::saveCustomer);
+        this.orderListener = new Listener<>(ORDERS, ReplicationProtocol::saveOrder);
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        customerRepository.addListener(customerListener);
+        orderRepository.addListener(orderListener);
+        this.acceptor = new Thread(this::accept, "vscf-replication-acceptor");
+        this.shipper = new Thread(this::ship, "vscf-replication-shipper");
+        acceptor.setDaemon(true);
+        shipper.setDaemon(true);
+        acceptor.start();
+        shipper.start();
+        LOG.info("VSCF:Replication leading on port {} from sequence {}", getPort(), sequence);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    ReplicationStatus status() {
+        long shipped = shippedBytes.get();
+        return new ReplicationStatus(true, true, followerCount, sequence, sequence, 0,
+                shipped == 0 ? 1 : (double) rawBytes.get() / shipped);
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        customerRepository.removeListener(customerListener);
+        orderRepository.removeListener(orderListener);
+        serverSocket.close();
+        shipper.interrupt();
+        try {
+            shipper.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Follower follower : followers)
+            follower.close();
+        for (Socket socket : joining)
+            socket.close();
+        deflater.end();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                joining.add(socket);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed())
+                    LOG.warn("VSCF:Replication accept failure", e);
+            }
+        }
+    }
+
+    private void ship() {
+        List<Mutation> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (overflowed)
+                    resynchronize();
+                Mutation first = mutations.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    mutations.drainTo(batch, batchSize - 1);
+                    send(batch);
+                    batch.clear();
+                } else {
+                    heartbeat();
+                }
+                Socket socket;
+                while ((socket = joining.poll()) != null)
+                    join(socket, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Follower follower : followers)
+            follower.close();
+    }
+
+    // the queued mutations are given up, and every follower with them: they rejoin for a snapshot
+    private void resynchronize() {
+        overflowed = false;
+        mutations.clear();
+        if (!followers.isEmpty())
+            LOG.warn("VSCF:Replication queue full, the {} followers resynchronize", followers.size());
+        for (Follower follower : followers)
+            follower.fail("the leader dropped mutations");
+        removeFailed();
+    }
+
+    // Mutations queued before the snapshots are opened are shipped first, those queued after
+    // reach the follower after them, once its sender thread has sent the snapshot
+    private void join(Socket socket, List<Mutation> batch) {
+        while (mutations.drainTo(batch, batchSize) > 0) {
+            send(batch);
+            batch.clear();
+        }
+        RepositorySnapshot<Customer, UUID> customers = customerRepository.snapshot();
+        RepositorySnapshot<Order, UUID> orders = orderRepository.snapshot();
+        Follower follower;
+        try {
+            follower = new Follower(socket, customers, orders, sequence);
+        } catch (IOException e) {
+            customers.close();
+            orders.close();
+            LOG.warn("VSCF:Replication cannot accept follower", e);
+            return;
+        }
+        followers.add(follower);
+        followerCount = followers.size();
+        follower.start();
+    }
+
+    private void send(List<Mutation> batch) {
+        sequence += batch.size();
+        byte[] frame = frame(batch, sequence, deflater);
+        for (Follower follower : followers)
+            follower.offer(frame);
+        removeFailed();
+    }
+
+    private void heartbeat() {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + 1 + Long.BYTES * 2);
+        frame.putInt(1 + Long.BYTES * 2).put(HEARTBEAT).putLong(sequence).putLong(System.currentTimeMillis());
+        for (Follower follower : followers) {
+            if (follower.frames.isEmpty()) // else the follower has more than a heartbeat to wait for
+                follower.offer(frame.array());
+        }
+        removeFailed();
+    }
+
+    // a BATCH frame, length included, of the records deflated together
+    private byte[] frame(List<Mutation> batch, long lastSequence, Deflater deflater) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(batch.size() * 64);
+        for (Mutation mutation : batch)
+            raw.writeBytes(mutation.record);
+        deflater.reset();
+        deflater.setInput(raw.toByteArray());
+        deflater.finish();
+        byte[] deflated = new byte[16 * 1024];
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 2 + 64);
+        while (!deflater.finished())
+            compressed.write(deflated, 0, deflater.deflate(deflated));
+        rawBytes.addAndGet(raw.size());
+        shippedBytes.addAndGet(compressed.size());
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(Integer.BYTES + 1 + Long.BYTES * 2 + Integer.BYTES * 2 + compressed.size());
+        DataOutputStream out = new DataOutputStream(frame);
+        try {
+            out.writeInt(1 + Long.BYTES * 2 + Integer.BYTES * 2 + compressed.size());
+            out.writeByte(BATCH);
+            out.writeLong(lastSequence);
+            out.writeLong(batch.get(0).timestampMillis);
+            out.writeInt(batch.size());
+            out.writeInt(raw.size());
+            compressed.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in memory
+        }
+        return frame.toByteArray();
+    }
+
+    private void removeFailed() {
+        Iterator<Follower> iterator = followers.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().failed)
+                iterator.remove();
+        }
+        followerCount = followers.size();
+    }
+
+    private static final class Mutation {
+        private final byte[] record;
+        private final long timestampMillis;
+
+        private Mutation(byte[] record, long timestampMillis) {
+            this.record = record;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+
+    // A follower and its sender thread, writing the snapshot, then the frames handed by the shipper
+    private final class Follower implements Closeable {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(backlog);
+        private final Thread sender;
+        private RepositorySnapshot<Customer, UUID> customers; // until sent
+        private RepositorySnapshot<Order, UUID> orders;
+        private final long snapshotSequence;
+        private volatile boolean failed;
+
+        private Follower(Socket socket, RepositorySnapshot<Customer, UUID> customers,
+                         RepositorySnapshot<Order, UUID> orders, long snapshotSequence) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            this.customers = customers;
+            this.orders = orders;
+            this.snapshotSequence = snapshotSequence;
+            this.sender = new Thread(this::send, "vscf-replication-sender-" + socket.getRemoteSocketAddress());
+            sender.setDaemon(true);
+        }
+
+        private void start() {
+            sender.start();
+        }
+
+        // dropped when lagging behind by the whole backlog
+        private void offer(byte[] frame) {
+            if (!failed && !frames.offer(frame))
+                fail("lagging behind by " + backlog + " batches");
+        }
+
+        private void send() {
+            Deflater snapshotDeflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                sendSnapshot(snapshotDeflater);
+                LOG.info("VSCF:Replication follower {} joined at sequence {}", socket.getRemoteSocketAddress(), snapshotSequence);
+                while (!failed) {
+                    out.write(frames.take());
+                    if (frames.isEmpty())
+                        out.flush();
+                }
+            } catch (IOException e) {
+                fail(e.toString());
+            } catch (InterruptedException e) {
+                fail("closed");
+            } finally {
+                snapshotDeflater.end();
+                closeSnapshots();
+            }
+        }
+
+        private void sendSnapshot(Deflater snapshotDeflater) throws IOException {
+            List<Mutation> batch = new ArrayList<>(batchSize);
+            long now = System.currentTimeMillis();
+            batch.add(new Mutation(marker(CUSTOMERS, SNAPSHOT_BEGIN), now));
+            for (Customer customer : customers.findAll())
+                snapshot(batch, saveCustomer(customer), now, snapshotDeflater);
+            for (Order order : orders.findAll())
+                snapshot(batch, saveOrder(order), now, snapshotDeflater);
+            closeSnapshots();
+            batch.add(new Mutation(marker(CUSTOMERS, SNAPSHOT_END), now));
+            out.write(frame(batch, snapshotSequence, snapshotDeflater));
+            out.flush();
+        }
+
+        private void snapshot(List<Mutation> batch, byte[] record, long now, Deflater snapshotDeflater) throws IOException {
+            batch.add(new Mutation(record, now));
+            if (batch.size() == batchSize) {
+                out.write(frame(batch, snapshotSequence, snapshotDeflater));
+                batch.clear();
+            }
+        }
+
+        private synchronized void closeSnapshots() {
+            if (customers != null)
+                customers.close();
+            if (orders != null)
+                orders.close();
+            customers = null;
+            orders = null;
+        }
+
+        private void fail(String reason) {
+            if (failed)
+                return;
+            failed = true;
+            LOG.info("VSCF:Replication follower {} left: {}", socket.getRemoteSocketAddress(), reason);
+            close();
+        }
+
+        @Override
+        public void close() {
+            failed = true;
+            sender.interrupt();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("VSCF:Replication close failure", e);
+            }
+        }
+    }
+
+    // Runs on the writing threads, which notify their mutations: never waits for the shipper
+    private final class Listener<T> implements RepositoryListener<T, UUID> {
+
+        private final byte repository;
+        private final Function<T, byte[]> encoder;
+
+        private Listener(byte repository, Function<T, byte[]> encoder) {
+            this.repository = repository;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public void saved(UUID id, T entity) {
+            queue(encoder.apply(entity));
+        }
+
+        @Override
+        public void deleted(UUID id) {
+            queue(delete(repository, id));
+        }
+
+        @Override
+        public void cleared() {
+            queue(marker(repository, CLEAR));
+        }
+
+        private void queue(byte[] record) {
+            if (!mutations.offer(new Mutation(record, System.currentTimeMillis())))
+                overflowed = true;
+        }
+    }
+
+}
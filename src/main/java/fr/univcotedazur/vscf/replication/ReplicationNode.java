@@ -0,0 +1,128 @@
+package fr.univcotedazur.vscf.replication;
+
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leader/follower replication of the customer and order repositories, enabled by setting
+ * vscf.replication.port, where this node listens for its followers while it is the leader.
+ * Followers replicate the stream of the leader, found among vscf.replication.peers, and
+ * serve reads; writes must go to the leader (see ReplicaWriteGuard). Carts, sales analytics
+ * and the card vault stay local to each node. A follower becomes the leader when promoted,
+ * the other followers then find it among their peers.
+ */
+@Component
+@Lazy(false) // the node must replicate even when beans are lazily initialized
+@ConditionalOnProperty("vscf.replication.port")
+public class ReplicationNode {
+
+    private final CustomerRepository customerRepository;
+    private final OrderRepository orderRepository;
+    private final int port;
+    private final boolean startAsLeader;
+    private final List<InetSocketAddress> peers;
+    private final int batchSize;
+    private final int backlog;
+    private final Duration heartbeat;
+    private final Duration timeout;
+
+    private volatile LeaderStream leaderStream;
+    private volatile FollowerStream followerStream;
+
+    @Autowired
+    public ReplicationNode(CustomerRepository customerRepository, OrderRepository orderRepository,
+                           @Value("${vscf.replication.port}") int port,
+                           @Value("${vscf.replication.role:leader}") String role,
+                           @Value("${vscf.replication.peers:}") String peers,
+                           @Value("${vscf.replication.batch-size:512}") int batchSize,
+                           @Value("${vscf.replication.backlog:1024}") int backlog,
+                           @Value("${vscf.replication.heartbeat:100ms}") Duration heartbeat,
+                           @Value("${vscf.replication.timeout:1s}") Duration timeout) {
+        if (!role.equals("leader") && !role.equals("follower"))
+            throw new IllegalArgumentException("Replication role must be leader or follower: " + role);
+        this.customerRepository = customerRepository;
+        this.orderRepository = orderRepository;
+        this.port = port;
+        this.startAsLeader = role.equals("leader");
+        this.peers = parsePeers(peers);
+        if (!startAsLeader && this.peers.isEmpty())
+            throw new IllegalArgumentException("A follower needs vscf.replication.peers");
+        this.batchSize = batchSize;
+        this.backlog = backlog;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (startAsLeader)
+            leaderStream = new LeaderStream(customerRepository, orderRepository, port, 0, batchSize, heartbeat.toMillis(), backlog);
+        else
+            followerStream = new FollowerStream(customerRepository, orderRepository, peers, (int) timeout.toMillis());
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (leaderStream != null)
+            leaderStream.close();
+        if (followerStream != null)
+            followerStream.close();
+        leaderStream = null;
+        followerStream = null;
+    }
+
+    // Turns this follower into the leader, continuing the sequence of the mutations it applied
+    public synchronized void promote() {
+        if (leaderStream != null)
+            return;
+        try {
+            long sequence = followerStream.sequence();
+            followerStream.close();
+            followerStream = null;
+            leaderStream = new LeaderStream(customerRepository, orderRepository, port, sequence, batchSize, heartbeat.toMillis(), backlog);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isLeader() {
+        return leaderStream != null;
+    }
+
+    // Port listening for the followers, -1 when not the leader
+    public synchronized int getPort() {
+        return leaderStream == null ? -1 : leaderStream.getPort();
+    }
+
+    public synchronized ReplicationStatus status() {
+        return leaderStream != null ? leaderStream.status() : followerStream.status();
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            if (peer.isBlank())
+                continue;
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0)
+                throw new IllegalArgumentException("Replication peers are host:port, not " + peer);
+            addresses.add(new InetSocketAddress(peer.substring(0, colon).trim(), Integer.parseInt(peer.substring(colon + 1).trim())));
+        }
+        return addresses;
+    }
+
+}
@@ -0,0 +1,130 @@
+package fr.univcotedazur.vscf.replication;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Replication stream from the leader to its followers. Every message is a frame made of an
+ * int length followed by that many bytes, starting with a frame type:
+ *   BATCH     + last sequence (long) + oldest mutation time (long, epoch millis)
+ *             + record count (int) + raw length (int) + deflated records
+ *   HEARTBEAT + last sequence (long) + leader time (long, epoch millis)
+ * A record is a repository byte and an operation byte, then:
+ *   SAVE      + id (2 longs) + entity, an order starting with the id of its customer (2 longs),
+ *               then its status, price and items
+ *   DELETE    + id (2 longs)
+ *   CLEAR, SNAPSHOT_BEGIN, SNAPSHOT_END with no payload
+ * A follower joining gets a snapshot of the repositories, framed by SNAPSHOT_BEGIN and
+ * SNAPSHOT_END records, then the mutations made since it started.
+ */
+public final class ReplicationProtocol {
+
+    private ReplicationProtocol() {}
+
+    public static final byte BATCH = 1;
+    public static final byte HEARTBEAT = 2;
+
+    public static final byte CUSTOMERS = 1;
+    public static final byte ORDERS = 2;
+
+    public static final byte SAVE = 1;
+    public static final byte DELETE = 2;
+    public static final byte CLEAR = 3;
+    public static final byte SNAPSHOT_BEGIN = 4;
+    public static final byte SNAPSHOT_END = 5;
+
+    public static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private static final Cookies[] COOKIES = Cookies.values();
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    static byte[] saveCustomer(Customer customer) {
+        return record(CUSTOMERS, SAVE, customer.getId(), out -> writeCustomer(out, customer));
+    }
+
+    static byte[] saveOrder(Order order) {
+        return record(ORDERS, SAVE, order.getId(), out -> {
+            out.writeLong(order.getCustomerId().getMostSignificantBits());
+            out.writeLong(order.getCustomerId().getLeastSignificantBits());
+            out.writeByte(order.getStatus().ordinal());
+            out.writeDouble(order.getPrice());
+            out.writeByte(order.getItems().size());
+            for (Item item : order.getItems()) {
+                out.writeByte(item.getCookie().ordinal());
+                out.writeInt(item.getQuantity());
+            }
+        });
+    }
+
+    static byte[] delete(byte repository, UUID id) {
+        return record(repository, DELETE, id, out -> {});
+    }
+
+    static byte[] marker(byte repository, byte operation) {
+        return record(repository, operation, null, out -> {});
+    }
+
+    static Customer readCustomer(UUID id, DataInput in) throws IOException {
+        String name = in.readUTF();
+        String cardToken = in.readBoolean() ? in.readUTF() : null;
+        return new Customer(id, name, cardToken);
+    }
+
+    static Order readOrder(UUID id, DataInput in) throws IOException {
+        UUID customerId = readId(in);
+        OrderStatus status = STATUSES[in.readByte()];
+        double price = in.readDouble();
+        int count = in.readByte();
+        Set<Item> items = new HashSet<>();
+        for (int i = 0; i < count; i++)
+            items.add(new Item(COOKIES[in.readByte()], in.readInt()));
+        return Order.restore(id, customerId, items, status, price);
+    }
+
+    static UUID readId(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeCustomer(DataOutput out, Customer customer) throws IOException {
+        out.writeUTF(customer.getName());
+        out.writeBoolean(customer.getCardToken() != null);
+        if (customer.getCardToken() != null)
+            out.writeUTF(customer.getCardToken());
+    }
+
+    private static byte[] record(byte repository, byte operation, UUID id, Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(repository);
+            out.writeByte(operation);
+            if (id != null) {
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Payload {
+        void write(DataOutput out) throws IOException;
+    }
+
+}
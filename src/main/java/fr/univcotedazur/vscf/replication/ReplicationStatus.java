@@ -0,0 +1,76 @@
+package fr.univcotedazur.vscf.replication;
+
+// Snapshot of the replication state of a node
+public class ReplicationStatus {
+
+    private boolean leader;
+
+    private boolean connected;
+
+    private int followers;
+
+    private long sequence;
+
+    private long leaderSequence;
+
+    private long lagMillis;
+
+    private double compressionRatio;
+
+    public ReplicationStatus(boolean leader, boolean connected, int followers, long sequence,
+                             long leaderSequence, long lagMillis, double compressionRatio) {
+        this.leader = leader;
+        this.connected = connected;
+        this.followers = followers;
+        this.sequence = sequence;
+        this.leaderSequence = leaderSequence;
+        this.lagMillis = lagMillis;
+        this.compressionRatio = compressionRatio;
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    // whether a follower currently receives the stream of a leader, always true for a leader
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // followers currently connected to a leader
+    public int getFollowers() {
+        return followers;
+    }
+
+    // mutations shipped by a leader, or applied by a follower
+    public long getSequence() {
+        return sequence;
+    }
+
+    // last sequence announced by the leader to a follower
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    // mutations a follower still has to apply
+    public long getPendingMutations() {
+        return Math.max(0, leaderSequence - sequence);
+    }
+
+    // time between a mutation on the leader and its application by a follower, for the last batch
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    // raw over shipped bytes of the stream of a leader
+    public double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    @Override
+    public String toString() {
+        return leader
+                ? String.format("leader, %d followers, sequence %d, compression %.1fx", followers, sequence, compressionRatio)
+                : String.format("follower, %s, sequence %d/%d, lag %d ms", connected ? "connected" : "disconnected", sequence, leaderSequence, lagMillis);
+    }
+}
@@ -0,0 +1,332 @@
+package fr.univcotedazur.vscf.repositories;
+
+import fr.univcotedazur.repositories.Repository;
+import fr.univcotedazur.vscf.entities.CartStoreMetrics;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Carts of the customers, by customer id, within a memory budget. A cart is packed as one
+ * quantity per cookie ordinal and empty carts are not stored. When the budget is exceeded,
+ * the least recently used carts are evicted to a spill file, and restored in memory the
+ * next time they are read. Found carts are returned as new sets, owned by the caller.
+ * The operations on a cart hold the lock of its stripe of ids, so that the carts of
+ * different customers are read and written in parallel; the resident map and the spill
+ * file are only locked around their own operations, never together.
+ */
+@org.springframework.stereotype.Repository
+public class CartRepository implements Repository<Set<Item>, UUID> {
+
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    private static final int STRIPES = 64;
+
+    // estimated heap cost of a resident cart: map entry, UUID key and packed quantities
+    static final long CART_FOOTPRINT = 88 + ((16 + 4L * COOKIES.length + 7) & ~7);
+
+    // access-ordered, the eldest entry is the least recently used cart; guarded by itself
+    private final LinkedHashMap<UUID, int[]> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    // a cart is read, written, evicted and restored under the lock of its stripe, hence
+    // never seen between memory and the spill file
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final long maxResidentCarts;
+
+    private final Path spillDirectory;
+
+    private final Object spillLock = new Object();
+
+    private CartSpillFile spill; // created on the first eviction, guarded by spillLock
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong restores = new AtomicLong();
+    private volatile long startNanos = System.nanoTime();
+
+    @Autowired
+    public CartRepository(@Value("${vscf.carts.memory-budget:64MB}") DataSize memoryBudget,
+                          @Value("${vscf.carts.spill-directory:${java.io.tmpdir}}") Path spillDirectory) {
+        if (memoryBudget.toBytes() < CART_FOOTPRINT)
+            throw new IllegalArgumentException("Cart memory budget too small: " + memoryBudget);
+        this.maxResidentCarts = memoryBudget.toBytes() / CART_FOOTPRINT;
+        this.spillDirectory = spillDirectory;
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    @Override
+    public long count() {
+        return residentCarts() + spilled();
+    }
+
+    @Override
+    public void deleteAll() {
+        for (ReentrantLock stripe : stripes)
+            stripe.lock();
+        try {
+            synchronized (resident) {
+                resident.clear();
+            }
+            synchronized (spillLock) {
+                if (spill != null)
+                    spill.clear();
+            }
+        } finally {
+            for (ReentrantLock stripe : stripes)
+                stripe.unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(UUID customerId) {
+        remove(customerId);
+    }
+
+    // Removes the cart and returns it, so that a checkout takes the cart it pays
+    public Optional<Set<Item>> remove(UUID customerId) {
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            int[] packed;
+            synchronized (resident) {
+                packed = resident.remove(customerId);
+            }
+            if (packed == null)
+                packed = unspill(customerId);
+            return packed == null ? Optional.empty() : Optional.of(unpack(packed));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(UUID customerId) {
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            synchronized (resident) {
+                if (resident.containsKey(customerId))
+                    return true;
+            }
+            synchronized (spillLock) {
+                return spill != null && spill.size() > 0 && spill.contains(customerId);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    // Spilled carts are read from the file but stay there. Not a consistent cut: a cart
+    // evicted or restored meanwhile may be missed or found twice.
+    @Override
+    public Iterable<Set<Item>> findAll() {
+        List<int[]> packedCarts;
+        synchronized (resident) {
+            packedCarts = new ArrayList<>(resident.values());
+        }
+        List<Set<Item>> carts = new ArrayList<>(packedCarts.size());
+        for (int[] packed : packedCarts) {
+            carts.add(unpack(packed));
+        }
+        synchronized (spillLock) {
+            if (spill != null)
+                spill.forEach((customerId, packed) -> carts.add(unpack(packed)));
+        }
+        return carts;
+    }
+
+    @Override
+    public Optional<Set<Item>> findById(UUID customerId) {
+        int[] packed;
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            packed = load(customerId);
+        } finally {
+            stripe.unlock();
+        }
+        evictIfNeeded();
+        return packed == null ? Optional.empty() : Optional.of(unpack(packed));
+    }
+
+    // Saving an empty cart deletes it.
+    @Override
+    public <S extends Set<Item>> void save(S cart, UUID customerId) {
+        int[] packed = pack(cart);
+        if (packed == null) {
+            deleteById(customerId);
+            return;
+        }
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            store(customerId, packed);
+        } finally {
+            stripe.unlock();
+        }
+        evictIfNeeded();
+    }
+
+    // A missing cart being an empty one, the transformation is given an empty cart when the
+    // customer has none, and an empty result deletes the cart: the result is then empty.
+    @Override
+    public Optional<Set<Item>> update(UUID customerId, UnaryOperator<Set<Item>> transformation) {
+        Set<Item> updated;
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            int[] packed = load(customerId);
+            updated = transformation.apply(packed == null ? new HashSet<>() : unpack(packed));
+            int[] repacked = pack(updated);
+            if (repacked != null) {
+                store(customerId, repacked);
+            } else if (packed != null) {
+                synchronized (resident) {
+                    resident.remove(customerId); // restored by load
+                }
+            }
+        } finally {
+            stripe.unlock();
+        }
+        evictIfNeeded();
+        return updated.isEmpty() ? Optional.empty() : Optional.of(updated);
+    }
+
+    public CartStoreMetrics metrics() {
+        return new CartStoreMetrics(residentCarts(), spilled(), evictions.get(), restores.get(), (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    public void resetMetrics() {
+        evictions.set(0);
+        restores.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (spillLock) {
+            if (spill != null)
+                spill.close();
+        }
+    }
+
+    private ReentrantLock stripe(UUID customerId) {
+        return stripes[Math.floorMod(customerId.hashCode(), STRIPES)];
+    }
+
+    private long residentCarts() {
+        synchronized (resident) {
+            return resident.size();
+        }
+    }
+
+    private long spilled() {
+        synchronized (spillLock) {
+            return spill == null ? 0 : spill.size();
+        }
+    }
+
+    // The packed cart, restored in memory if spilled, or null; under the stripe of the id
+    private int[] load(UUID customerId) {
+        int[] packed;
+        synchronized (resident) {
+            packed = resident.get(customerId);
+        }
+        if (packed == null) {
+            packed = unspill(customerId);
+            if (packed != null) {
+                restores.incrementAndGet();
+                synchronized (resident) {
+                    resident.put(customerId, packed);
+                }
+            }
+        }
+        return packed;
+    }
+
+    // Under the stripe of the id
+    private void store(UUID customerId, int[] packed) {
+        int[] former;
+        synchronized (resident) {
+            former = resident.put(customerId, packed);
+        }
+        if (former == null)
+            unspill(customerId); // stale copy
+    }
+
+    private int[] unspill(UUID customerId) {
+        synchronized (spillLock) {
+            return spill == null || spill.size() == 0 ? null : spill.remove(customerId);
+        }
+    }
+
+    // Spills the least recently used carts beyond the budget, each under the lock of its
+    // stripe, taken once the caller released its own
+    private void evictIfNeeded() {
+        while (true) {
+            UUID idle;
+            synchronized (resident) {
+                if (resident.size() <= maxResidentCarts)
+                    return;
+                idle = resident.keySet().iterator().next();
+            }
+            ReentrantLock stripe = stripe(idle);
+            stripe.lock();
+            try {
+                int[] packed;
+                synchronized (resident) {
+                    if (resident.size() <= maxResidentCarts)
+                        return;
+                    packed = resident.remove(idle);
+                }
+                if (packed != null) {
+                    synchronized (spillLock) {
+                        if (spill == null)
+                            spill = new CartSpillFile(spillDirectory, COOKIES.length);
+                        spill.put(idle, packed);
+                    }
+                    evictions.incrementAndGet();
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    // null for an empty cart
+    private static int[] pack(Set<Item> cart) {
+        if (cart.isEmpty())
+            return null;
+        int[] packed = new int[COOKIES.length];
+        for (Item item : cart) {
+            packed[item.getCookie().ordinal()] += item.getQuantity();
+        }
+        return packed;
+    }
+
+    private static Set<Item> unpack(int[] packed) {
+        Set<Item> cart = new HashSet<>();
+        for (int i = 0; i < packed.length; i++) {
+            if (packed[i] != 0)
+                cart.add(new Item(COOKIES[i], packed[i]));
+        }
+        return cart;
+    }
+
+}
@@ -0,0 +1,263 @@
+package fr.univcotedazur.vscf.repositories;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * On-disk open-addressing hash table of packed carts: fixed-size records of a state byte,
+ * the customer id as two longs and one quantity per cookie, probed linearly from the hash
+ * of the id. Nothing is kept on the heap per cart, the OS page cache does the caching.
+ * The table grows incrementally: records are moved to a new file a few slots per write,
+ * lookups reading both files meanwhile, so that no write copies the whole file.
+ * The files are temporary and deleted when closed. Not thread-safe, guarded by CartRepository.
+ */
+final class CartSpillFile implements Closeable {
+
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final long INITIAL_CAPACITY = 1024;
+    // slots of the former file moved by each write, all of them moved before the new file is half full
+    private static final long MIGRATION_STEP = 64;
+
+    private final Path directory;
+    private final int quantities;
+    private final int recordSize;
+    private final ByteBuffer record;
+
+    private FileChannel channel;
+    private long capacity;
+    private long used; // in both files
+    private long deleted; // in the current file
+    // file being moved into the current one, its slots before migrated being moved already
+    private FileChannel previous;
+    private long previousCapacity;
+    private long migrated;
+
+    CartSpillFile(Path directory, int quantities) {
+        this.directory = directory;
+        this.quantities = quantities;
+        this.recordSize = 1 + 2 * Long.BYTES + quantities * Integer.BYTES;
+        this.record = ByteBuffer.allocate(recordSize);
+        this.capacity = INITIAL_CAPACITY;
+        this.channel = open();
+    }
+
+    long size() {
+        return used;
+    }
+
+    boolean contains(UUID id) {
+        return find(channel, capacity, id) >= 0 || findPrevious(id) >= 0;
+    }
+
+    // Inserts a cart that is known not to be in the file. A growth never waits for a migration:
+    // the former file is moved within capacity / MIGRATION_STEP writes, each adding at most a
+    // record or a tombstone, and the new file, twice as large or with at most a quarter of its
+    // slots used, cannot get half full meanwhile.
+    void put(UUID id, int[] packed) {
+        migrate();
+        if (previous == null && (used + deleted + 1) * 2 > capacity)
+            grow(used * 4 > capacity ? capacity * 2 : capacity);
+        insert(id, packed);
+        used++;
+    }
+
+    // Removes the cart and returns its quantities, or null if absent
+    int[] remove(UUID id) {
+        migrate();
+        long slot = find(channel, capacity, id);
+        if (slot >= 0) {
+            deleted++;
+            return delete(channel, slot);
+        }
+        slot = findPrevious(id);
+        return slot < 0 ? null : delete(previous, slot);
+    }
+
+    void forEach(BiConsumer<UUID, int[]> action) {
+        for (long slot = 0; slot < capacity; slot++) {
+            if (readState(channel, slot) == USED)
+                action.accept(readId(), readQuantities());
+        }
+        for (long slot = migrated; previous != null && slot < previousCapacity; slot++) {
+            if (readState(previous, slot) == USED)
+                action.accept(readId(), readQuantities());
+        }
+    }
+
+    void clear() {
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        closePrevious();
+        used = 0;
+        deleted = 0;
+    }
+
+    @Override
+    public void close() {
+        closePrevious();
+        close(channel);
+    }
+
+    // slot of the cart, or -1; stops at the first never used slot
+    private long find(FileChannel source, long sourceCapacity, UUID id) {
+        long slot = slot(id, sourceCapacity);
+        for (long probes = 0; probes < sourceCapacity; probes++) {
+            byte state = readState(source, slot);
+            if (state == FREE)
+                return -1;
+            if (state == USED && record.getLong(1) == id.getMostSignificantBits() && record.getLong(9) == id.getLeastSignificantBits())
+                return slot;
+            slot = (slot + 1) & (sourceCapacity - 1);
+        }
+        return -1;
+    }
+
+    // slot of a cart not moved yet from the former file, or -1
+    private long findPrevious(UUID id) {
+        if (previous == null)
+            return -1;
+        long slot = find(previous, previousCapacity, id);
+        return slot < migrated ? -1 : slot;
+    }
+
+    private static long slot(UUID id, long capacity) {
+        long h = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h & (capacity - 1);
+    }
+
+    private void insert(UUID id, int[] packed) {
+        long slot = slot(id, capacity);
+        while (readState(channel, slot) == USED) {
+            slot = (slot + 1) & (capacity - 1);
+        }
+        if (record.get(0) == DELETED)
+            deleted--;
+        write(channel, slot, id, packed);
+    }
+
+    // marks the slot just found as deleted and returns its quantities
+    private int[] delete(FileChannel target, long slot) {
+        int[] packed = readQuantities();
+        record.clear();
+        record.put(DELETED).flip();
+        writeFully(target, record, slot * recordSize);
+        used--;
+        return packed;
+    }
+
+    // reads the whole record into the buffer; past the end of file, slots are free
+    private byte readState(FileChannel source, long slot) {
+        record.clear();
+        try {
+            long position = slot * recordSize;
+            while (record.hasRemaining()) {
+                if (source.read(record, position + record.position()) < 0) {
+                    record.put(0, FREE);
+                    return FREE;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return record.get(0);
+    }
+
+    private UUID readId() {
+        return new UUID(record.getLong(1), record.getLong(9));
+    }
+
+    private int[] readQuantities() {
+        int[] packed = new int[quantities];
+        for (int i = 0; i < quantities; i++) {
+            packed[i] = record.getInt(17 + i * Integer.BYTES);
+        }
+        return packed;
+    }
+
+    private void write(FileChannel target, long slot, UUID id, int[] packed) {
+        record.clear();
+        record.put(USED).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        for (int quantity : packed) {
+            record.putInt(quantity);
+        }
+        record.flip();
+        writeFully(target, record, slot * recordSize);
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) {
+        try {
+            while (buffer.hasRemaining()) {
+                position += target.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // starts moving the live records into a new file, dropping the tombstones
+    private void grow(long newCapacity) {
+        previous = channel;
+        previousCapacity = capacity;
+        migrated = 0;
+        channel = open();
+        capacity = newCapacity;
+        deleted = 0;
+    }
+
+    // moves the next slots of the former file, closing it once all of them are moved
+    private void migrate() {
+        if (previous == null)
+            return;
+        long end = Math.min(migrated + MIGRATION_STEP, previousCapacity);
+        for (; migrated < end; migrated++) {
+            if (readState(previous, migrated) == USED)
+                insert(readId(), readQuantities());
+        }
+        if (migrated == previousCapacity)
+            closePrevious();
+    }
+
+    private void closePrevious() {
+        if (previous != null)
+            close(previous);
+        previous = null;
+    }
+
+    private static void close(FileChannel file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileChannel open() {
+        try {
+            Path file = Files.createTempFile(directory, "vscf-carts-", ".bin");
+            return FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -1,11 +1,71 @@
 package fr.univcotedazur.vscf.repositories;
 
 import fr.univcotedazur.repositories.BasicRepositoryImpl;
+import fr.univcotedazur.repositories.UuidStorage;
 import fr.univcotedazur.vscf.entities.Customer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Repository
 public class CustomerRepository extends BasicRepositoryImpl<Customer, UUID> {
+
+    private static final int EXPECTED_CUSTOMERS = 1024;
+
+    // told of the card tokens no customer holds any more, e.g. to forget the cards behind them
+    private volatile Consumer<String> droppedCards = token -> {};
+
+    // id of the customer per name, so that registrations do not scan every customer
+    private final Map<String, UUID> byName = new ConcurrentHashMap<>();
+
+    public CustomerRepository(Duration retention) {
+        this(retention, Clock.systemUTC());
+    }
+
+    @Autowired
+    public CustomerRepository(@Value("${vscf.customers.retention:0s}") Duration retention,
+                              @Value("${vscf.repositories.storage:hash-map}") UuidStorage storage) {
+        this(retention, storage, Clock.systemUTC());
+    }
+
+    public CustomerRepository(Duration retention, Clock clock) {
+        this(retention, UuidStorage.HASH_MAP, clock);
+    }
+
+    // Customers are deleted once not saved for the given retention, zero keeping them forever
+    public CustomerRepository(Duration retention, UuidStorage storage, Clock clock) {
+        super(storage.create(EXPECTED_CUSTOMERS), retention.isZero() ? null : customer -> retention, clock, Duration.ofSeconds(1));
+    }
+
+    public void onCardDropped(Consumer<String> droppedCards) {
+        this.droppedCards = droppedCards;
+    }
+
+    public Optional<Customer> findByName(String name) {
+        UUID id = byName.get(name);
+        return id == null ? Optional.empty() : findById(id).filter(customer -> name.equals(customer.getName()));
+    }
+
+    // the card of a customer is dropped once deleted, expired, handed over or saved with another card
+    @Override
+    protected void changed(UUID id, Customer former, Customer customer) {
+        if (former != null && former.getName() != null
+                && (customer == null || !former.getName().equals(customer.getName())))
+            byName.remove(former.getName(), id);
+        if (customer != null && customer.getName() != null)
+            byName.put(customer.getName(), id);
+        if (former != null && former.getCardToken() != null
+                && (customer == null || !Objects.equals(former.getCardToken(), customer.getCardToken())))
+            droppedCards.accept(former.getCardToken());
+    }
+
 }
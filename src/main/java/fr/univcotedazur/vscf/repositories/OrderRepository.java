@@ -1,11 +1,259 @@
 package fr.univcotedazur.vscf.repositories;
 
 import fr.univcotedazur.repositories.BasicRepositoryImpl;
+import fr.univcotedazur.repositories.UuidStorage;
+import fr.univcotedazur.vscf.entities.IdGenerator;
 import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderPage;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 @Repository
 public class OrderRepository extends BasicRepositoryImpl<Order, UUID> {
+
+    // customer id -> ids of the customer's most recent orders, maintained as orders are created and deleted
+    private final Map<UUID, RecentOrders> ordersByCustomer = new ConcurrentHashMap<>();
+
+    private final int historyPerCustomer;
+
+    // ids of the orders per status, maintained on every mutation, expiry included
+    private final StatusIndex ordersByStatus = new StatusIndex();
+
+    // tag of the ids of the orders taken by this node (see IdGenerator), negative for untagged ids
+    private volatile int nodeTag = -1;
+
+    private static final int EXPECTED_ORDERS = 1024;
+
+    public OrderRepository(int historyPerCustomer) {
+        this(historyPerCustomer, Duration.ZERO, Clock.systemUTC());
+    }
+
+    @Autowired
+    public OrderRepository(@Value("${vscf.orders.history-per-customer:100}") int historyPerCustomer,
+                           @Value("${vscf.orders.retention-after-ready:0s}") Duration retentionAfterReady,
+                           @Value("${vscf.repositories.storage:hash-map}") UuidStorage storage) {
+        this(historyPerCustomer, retentionAfterReady, storage, Clock.systemUTC());
+    }
+
+    public OrderRepository(int historyPerCustomer, Duration retentionAfterReady, Clock clock) {
+        this(historyPerCustomer, retentionAfterReady, UuidStorage.HASH_MAP, clock);
+    }
+
+    // Ready orders are deleted after the given retention, zero keeping them forever
+    public OrderRepository(int historyPerCustomer, Duration retentionAfterReady, UuidStorage storage, Clock clock) {
+        super(storage.create(EXPECTED_ORDERS),
+                retentionAfterReady.isZero() ? null : order -> order.getStatus() == OrderStatus.READY ? retentionAfterReady : null,
+                clock, Duration.ofSeconds(1));
+        if (historyPerCustomer <= 0)
+            throw new IllegalArgumentException("History size must be positive: " + historyPerCustomer);
+        this.historyPerCustomer = historyPerCustomer;
+    }
+
+    // In cluster mode, the ids tell which node keeps the order
+    public void setNodeTag(int nodeTag) {
+        this.nodeTag = nodeTag;
+    }
+
+    public UUID nextId() {
+        int tag = nodeTag;
+        return tag < 0 ? IdGenerator.next() : IdGenerator.next(tag);
+    }
+
+    // Newest orders first, skipping the orders deleted while read.
+    // Cost only depends on the page and the retained history, not on the number of orders.
+    public List<Order> findByCustomerId(UUID customerId, int page, int pageSize) {
+        RecentOrders recent = ordersByCustomer.get(customerId);
+        List<Order> result = new ArrayList<>();
+        if (recent == null)
+            return result;
+        for (UUID orderId : recent.newestFirst((long) page * pageSize, pageSize)) {
+            findById(orderId).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    // Oldest first in the status, after the given cursor (0 for the first page), skipping the orders
+    // whose status changed since they were read. Cost only depends on the page, not on the number
+    // of orders before the cursor or in other statuses. An order is indexed before the storage shows
+    // it in the status: the page stops before it, rather than the cursor passing it.
+    public OrderPage findByStatus(OrderStatus status, long after, int pageSize) {
+        List<Order> orders = new ArrayList<>(Math.min(pageSize, EXPECTED_ORDERS));
+        long next = after;
+        Iterator<Map.Entry<Long, UUID>> inStatus = ordersByStatus.after(status, after).entrySet().iterator();
+        while (orders.size() < pageSize && inStatus.hasNext()) {
+            Map.Entry<Long, UUID> entry = inStatus.next();
+            Optional<Order> order = findById(entry.getValue()).filter(o -> o.getStatus() == status);
+            if (order.isEmpty() && ordersByStatus.holds(status, entry.getKey()))
+                break; // still being written
+            order.ifPresent(orders::add);
+            next = entry.getKey();
+        }
+        return new OrderPage(orders, next);
+    }
+
+    public int countByStatus(OrderStatus status) {
+        return ordersByStatus.count(status);
+    }
+
+    // an order is new when the storage held none under its id, even when saved concurrently;
+    // the history of a customer goes once the last order in it is deleted, expiry included
+    @Override
+    protected void changed(UUID id, Order former, Order order) {
+        if (former == null && order != null) {
+            ordersByCustomer.compute(order.getCustomerId(), (customerId, recent) -> {
+                RecentOrders orders = recent == null ? new RecentOrders(historyPerCustomer) : recent;
+                orders.add(id);
+                return orders;
+            });
+        } else if (former != null && order == null) {
+            ordersByCustomer.computeIfPresent(former.getCustomerId(), (customerId, recent) -> recent.remove(id) ? null : recent);
+        }
+        ordersByStatus.changed(id, former, order);
+    }
+
+    // Ids of the orders per status, keyed by the position at which they reached it. Updated within
+    // the atomic update of each order, so that every order is in a single status, without any lock:
+    // the writers of different statuses share nothing, and those of a status only count positions.
+    private static final class StatusIndex {
+
+        private final Map<OrderStatus, InStatus> statuses = new EnumMap<>(OrderStatus.class);
+        private final Map<UUID, Long> positions = new ConcurrentHashMap<>();
+
+        private StatusIndex() {
+            for (OrderStatus status : OrderStatus.values())
+                statuses.put(status, new InStatus());
+        }
+
+        // an order keeps its place while saved again in the same status
+        private void changed(UUID id, Order former, Order order) {
+            if (former != null && order != null && former.getStatus() == order.getStatus())
+                return;
+            if (former != null) {
+                Long position = positions.remove(id);
+                if (position != null)
+                    statuses.get(former.getStatus()).remove(position);
+            }
+            if (order != null)
+                positions.put(id, statuses.get(order.getStatus()).add(id));
+        }
+
+        private int count(OrderStatus status) {
+            return statuses.get(status).count.get();
+        }
+
+        private NavigableMap<Long, UUID> after(OrderStatus status, long position) {
+            return statuses.get(status).after(position);
+        }
+
+        private boolean holds(OrderStatus status, long position) {
+            return statuses.get(status).ids.containsKey(position);
+        }
+    }
+
+    // The orders in a status. Positions are claimed by counting, then published in their order
+    // once their ids are in: a reader only goes up to the last position before one still being
+    // written, so that a cursor never passes a position still to come. The position of an order
+    // is marked written in a ring, from which the writers and readers advance the published one,
+    // a writer only waiting when the whole ring is still to be published.
+    private static final class InStatus {
+
+        private static final int WINDOW = 1024; // positions written ahead of the published one
+
+        private final ConcurrentSkipListMap<Long, UUID> ids = new ConcurrentSkipListMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong claimed = new AtomicLong();
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLongArray written = new AtomicLongArray(WINDOW);
+
+        private long add(UUID id) {
+            long position = claimed.incrementAndGet();
+            while (position - published.get() > WINDOW) { // its slot still holds an unpublished position
+                publish();
+                Thread.onSpinWait();
+            }
+            ids.put(position, id);
+            count.incrementAndGet();
+            written.set((int) (position & (WINDOW - 1)), position);
+            publish();
+            return position;
+        }
+
+        private void remove(long position) {
+            if (ids.remove(position) != null)
+                count.decrementAndGet();
+        }
+
+        private NavigableMap<Long, UUID> after(long position) {
+            publish();
+            long last = published.get();
+            return position >= last ? Collections.emptyNavigableMap() : ids.subMap(position, false, last, true);
+        }
+
+        // moves the published position over the written ones that follow it
+        private void publish() {
+            for (long next = published.get() + 1; written.get((int) (next & (WINDOW - 1))) == next; next = published.get() + 1)
+                published.compareAndSet(next - 1, next);
+        }
+    }
+
+    // Bounded ring of order ids, the oldest being forgotten when full
+    private static final class RecentOrders {
+
+        private final UUID[] ring;
+        private int next;
+        private int size;
+
+        private RecentOrders(int capacity) {
+            this.ring = new UUID[capacity];
+        }
+
+        private synchronized void add(UUID orderId) {
+            ring[next] = orderId;
+            next = (next + 1) % ring.length;
+            size = Math.min(size + 1, ring.length);
+        }
+
+        // forgets the order, the newer ones moving down a place, telling whether none is left
+        private synchronized boolean remove(UUID orderId) {
+            for (int i = 0; i < size; i++) {
+                if (orderId.equals(ring[Math.floorMod(next - 1 - i, ring.length)])) {
+                    for (int j = i; j > 0; j--)
+                        ring[Math.floorMod(next - 1 - j, ring.length)] = ring[Math.floorMod(next - j, ring.length)];
+                    next = Math.floorMod(next - 1, ring.length);
+                    ring[next] = null;
+                    size--;
+                    break;
+                }
+            }
+            return size == 0;
+        }
+
+        private synchronized List<UUID> newestFirst(long skip, int limit) {
+            List<UUID> ids = new ArrayList<>(Math.min(limit, size));
+            for (long i = skip; i < size && ids.size() < limit; i++) {
+                ids.add(ring[Math.floorMod(next - 1 - (int) i, ring.length)]);
+            }
+            return ids;
+        }
+    }
+
 }
@@ -0,0 +1,205 @@
+package fr.univcotedazur.vscf.tools;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of a Flight Recorder file per component operation (the events of the jfr package):
+ * count, latency percentiles, outcomes, and the memory allocated during the operation, the
+ * jdk.ObjectAllocationSample events of its thread falling within it being attributed to it.
+ * Operations are inclusive, a checkout allocating what its payment allocates. As the samples
+ * are throttled, allocations are estimates, reliable over many calls.
+ * Run with: java -cp target/classes fr.univcotedazur.vscf.tools.FlightRecordingSummary recording.jfr
+ * on a recording made with e.g. -XX:StartFlightRecording=settings=profile,filename=recording.jfr
+ */
+public final class FlightRecordingSummary {
+
+    public static final String REPORT_PREFIX = "VSCF:JFR";
+    public static final String EVENT_PREFIX = "fr.univcotedazur.vscf.";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+
+    private final Map<String, Operation> operations = new TreeMap<>();
+    private long allocationSamples;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FlightRecordingSummary recording.jfr");
+            System.exit(2);
+        }
+        read(Path.of(args[0])).print(System.out);
+    }
+
+    public static FlightRecordingSummary read(Path recording) throws IOException {
+        FlightRecordingSummary summary = new FlightRecordingSummary();
+        Map<Long, List<Span>> spansPerThread = new HashMap<>();
+        List<Sample> samples = new ArrayList<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (name.startsWith(EVENT_PREFIX)) {
+                    Operation operation = summary.operations.computeIfAbsent(event.getEventType().getLabel(), Operation::new);
+                    Span span = new Span(operation, nanos(event.getStartTime()), nanos(event.getEndTime()));
+                    operation.add(span.end - span.start, event.hasField("outcome") ? event.getString("outcome") : null);
+                    spansPerThread.computeIfAbsent(threadId(event.getThread()), t -> new ArrayList<>()).add(span);
+                } else if (name.equals(ALLOCATION_SAMPLE)) {
+                    samples.add(new Sample(threadId(event.getThread("eventThread")), nanos(event.getStartTime()), event.getLong("weight")));
+                }
+            }
+        }
+        summary.attribute(spansPerThread, samples);
+        return summary;
+    }
+
+    // Every span of the thread of a sample containing it gets its weight, nested spans included
+    private void attribute(Map<Long, List<Span>> spansPerThread, List<Sample> samples) {
+        Map<Long, Long> longestPerThread = new HashMap<>();
+        spansPerThread.forEach((thread, spans) -> {
+            spans.sort(Comparator.comparingLong(span -> span.start));
+            longestPerThread.put(thread, spans.stream().mapToLong(span -> span.end - span.start).max().orElse(0));
+        });
+        for (Sample sample : samples) {
+            List<Span> spans = spansPerThread.get(sample.thread);
+            if (spans == null)
+                continue;
+            allocationSamples++;
+            long earliest = sample.time - longestPerThread.get(sample.thread);
+            for (int i = lastStartingBefore(spans, sample.time); i >= 0 && spans.get(i).start >= earliest; i--) {
+                Span span = spans.get(i);
+                if (sample.time <= span.end)
+                    span.operation.allocatedBytes += sample.weight;
+            }
+        }
+    }
+
+    private static int lastStartingBefore(List<Span> spans, long time) {
+        int low = 0;
+        int high = spans.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (spans.get(middle).start <= time)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return high;
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static long threadId(RecordedThread thread) {
+        return thread == null ? -1 : thread.getJavaThreadId();
+    }
+
+    public Map<String, Operation> operations() {
+        return operations;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%s %d operation(s), allocations attributed from %d sample(s)%n", REPORT_PREFIX, operations.size(), allocationSamples);
+        out.printf("%-20s %10s %10s %10s %10s %10s %14s  %s%n", "operation", "count", "p50 (us)", "p95 (us)", "p99 (us)", "max (us)", "alloc/call (B)", "outcomes");
+        for (Operation operation : operations.values()) {
+            out.printf("%-20s %10d %10.1f %10.1f %10.1f %10.1f %14d  %s%n", operation.name, operation.count(),
+                    operation.percentile(50) / 1e3, operation.percentile(95) / 1e3, operation.percentile(99) / 1e3,
+                    operation.percentile(100) / 1e3, operation.allocatedBytesPerCall(), operation.outcomes);
+        }
+    }
+
+    public static final class Operation {
+
+        private final String name;
+        private final Map<String, Long> outcomes = new TreeMap<>();
+        private long[] durations = new long[64];
+        private int count;
+        private long allocatedBytes;
+        private boolean sorted;
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        private void add(long durationNanos, String outcome) {
+            if (count == durations.length)
+                durations = Arrays.copyOf(durations, count * 2);
+            durations[count++] = durationNanos;
+            sorted = false;
+            if (outcome != null)
+                outcomes.merge(outcome, 1L, Long::sum);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public Map<String, Long> getOutcomes() {
+            return outcomes;
+        }
+
+        // latency percentile in nanoseconds, e.g. percentile(99.0)
+        public long percentile(double percentile) {
+            if (count == 0)
+                return 0;
+            if (!sorted) {
+                Arrays.sort(durations, 0, count);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return durations[Math.max(0, Math.min(rank, count - 1))];
+        }
+
+        // estimated from the allocation samples
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long allocatedBytesPerCall() {
+            return count == 0 ? 0 : allocatedBytes / count;
+        }
+    }
+
+    private static final class Span {
+
+        private final Operation operation;
+        private final long start;
+        private final long end;
+
+        private Span(Operation operation, long start, long end) {
+            this.operation = operation;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class Sample {
+
+        private final long thread;
+        private final long time;
+        private final long weight;
+
+        private Sample(long thread, long time, long weight) {
+            this.thread = thread;
+            this.time = time;
+            this.weight = weight;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package fr.univcotedazur.vscf.tools;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Startup measurement, enabled with --vscf.startup-probe=true: once the context is started,
+ * performs a first checkout, prints the time elapsed since the process start and the resident
+ * set size, then exits. Works the same on the JVM and in a native image.
+ */
+@Component
+@ConditionalOnProperty(name = "vscf.startup-probe", havingValue = "true")
+public class StartupProbe implements ApplicationRunner {
+
+    public static final String REPORT_PREFIX = "VSCF:STARTUP";
+
+    private final ApplicationContext context;
+    private final CustomerRegistration registration;
+    private final CartModifier cartModifier;
+    private final CartProcessor cartProcessor;
+
+    @Autowired
+    public StartupProbe(ApplicationContext context, CustomerRegistration registration,
+                        CartModifier cartModifier, CartProcessor cartProcessor) {
+        this.context = context;
+        this.registration = registration;
+        this.cartModifier = cartModifier;
+        this.cartProcessor = cartProcessor;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Customer customer = registration.register("startup-probe", "1234-896983");
+        cartModifier.update(customer, new Item(Cookies.CHOCOLALALA, 1));
+        cartProcessor.validate(customer);
+        Instant processStart = ProcessHandle.current().info().startInstant().orElseThrow();
+        System.out.println(REPORT_PREFIX + " time-to-first-checkout-ms=" + Duration.between(processStart, Instant.now()).toMillis()
+                + " rss-kb=" + residentSetKb());
+        System.exit(SpringApplication.exit(context));
+    }
+
+    // from /proc on Linux, -1 elsewhere
+    static long residentSetKb() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+
+}
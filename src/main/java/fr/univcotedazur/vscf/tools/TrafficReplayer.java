@@ -0,0 +1,65 @@
+package fr.univcotedazur.vscf.tools;
+
+import fr.univcotedazur.vscf.capture.ReplayReport;
+import fr.univcotedazur.vscf.capture.TrafficReader;
+import fr.univcotedazur.vscf.capture.TrafficRecord;
+import fr.univcotedazur.vscf.capture.TrafficReplay;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CatalogExplorator;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Traffic replay, enabled with --vscf.replay.file=capture.vscf: once the context is started,
+ * replays a log captured by TrafficRecorder at --vscf.replay.speed (1 for the original pace,
+ * 2 twice as fast, max as fast as possible) over --vscf.replay.lanes threads, prints the
+ * report, then exits. Start it with the configuration of the release to measure, e.g.
+ * --spring.main.web-application-type=none --vscf.aspects.logging=false.
+ */
+@Component
+@ConditionalOnProperty("vscf.replay.file")
+public class TrafficReplayer implements ApplicationRunner {
+
+    public static final String REPORT_PREFIX = "VSCF:REPLAY";
+
+    private final ApplicationContext context;
+    private final TrafficReplay replay;
+    private final Path file;
+    private final double speed;
+    private final int lanes;
+
+    @Autowired
+    public TrafficReplayer(ApplicationContext context, CustomerRegistration registration, CartModifier cartModifier,
+                           CartProcessor cartProcessor, Tracker tracker, CatalogExplorator catalog,
+                           @Value("${vscf.replay.file}") String file,
+                           @Value("${vscf.replay.speed:1}") String speed,
+                           @Value("${vscf.replay.lanes:16}") int lanes) {
+        this.context = context;
+        this.replay = new TrafficReplay(registration, cartModifier, cartProcessor, tracker, catalog);
+        this.file = Path.of(file);
+        this.speed = "max".equalsIgnoreCase(speed.trim()) ? TrafficReplay.MAX_SPEED : Double.parseDouble(speed);
+        this.lanes = lanes;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<TrafficRecord> records = TrafficReader.readAll(file);
+        System.out.println(REPORT_PREFIX + " " + records.size() + " calls read from " + file);
+        ReplayReport report = replay.replay(records, speed, lanes);
+        report.print(System.out);
+        System.exit(SpringApplication.exit(context));
+    }
+
+}
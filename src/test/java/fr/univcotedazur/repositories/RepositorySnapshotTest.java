@@ -0,0 +1,202 @@
+package fr.univcotedazur.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositorySnapshotTest {
+
+    private static final class Names extends BasicRepositoryImpl<String, UUID> {
+        Names(Map<UUID, Object> storage) {
+            super(storage, null, null, null);
+        }
+    }
+
+    private static final UUID JOHN = new UUID(0, 1);
+    private static final UUID PAT = new UUID(0, 2);
+    private static final UUID TOM = new UUID(0, 3);
+
+    @Test
+    void snapshotsIgnoreLaterMutations() {
+        Names names = new Names(new ConcurrentHashMap<>());
+        names.save("john", JOHN);
+        names.save("pat", PAT);
+        try (RepositorySnapshot<String, UUID> snapshot = names.snapshot()) {
+            names.save("johnny", JOHN);
+            names.update(JOHN, name -> name + "!");
+            names.deleteById(PAT);
+            names.save("tom", TOM);
+            assertEquals(Optional.of("john"), snapshot.findById(JOHN));
+            assertEquals(Optional.of("pat"), snapshot.findById(PAT));
+            assertEquals(Optional.empty(), snapshot.findById(TOM));
+            assertEquals(List.of("john", "pat"), sorted(snapshot.findAll()));
+            assertEquals(2, snapshot.count());
+            names.deleteAll();
+            assertEquals(List.of("john", "pat"), sorted(snapshot.findAll()));
+            assertEquals(0, names.count());
+            assertFalse(names.existsById(JOHN));
+        }
+        assertEquals(0, names.versioned());
+        assertEquals(0, names.count());
+    }
+
+    @Test
+    void eachSnapshotSeesItsOwnPointInTime() {
+        Names names = new Names(UuidHashMap.offHeap(0));
+        names.save("john", JOHN);
+        RepositorySnapshot<String, UUID> first = names.snapshot();
+        names.save("pat", PAT);
+        names.save("johnny", JOHN);
+        RepositorySnapshot<String, UUID> second = names.snapshot();
+        names.deleteById(JOHN);
+        names.save("tom", TOM);
+        assertEquals(List.of("john"), sorted(first.findAll()));
+        assertEquals(List.of("johnny", "pat"), sorted(second.findAll()));
+        assertEquals(List.of("pat", "tom"), sorted(names.findAll()));
+        first.close();
+        assertEquals(List.of("johnny", "pat"), sorted(second.findAll()));
+        assertTrue(names.versioned() > 0);
+        second.close();
+        second.close();
+        assertEquals(0, names.versioned());
+        assertEquals(List.of("pat", "tom"), sorted(names.findAll()));
+        assertEquals(2, names.count());
+    }
+
+    // a writer rewrites every name generation after generation: a consistent snapshot sees a
+    // single switch from a generation to the previous one, and the same names at every read
+    @Test
+    void snapshotsAreConsistentCutsOfConcurrentWrites() throws InterruptedException {
+        Names names = new Names(new ConcurrentHashMap<>());
+        int count = 1_000;
+        for (int i = 0; i < count; i++)
+            names.save("0", new UUID(0, i));
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int generation = 1; !done.get(); generation++) {
+                for (int i = 0; i < count; i++)
+                    names.save(String.valueOf(generation), new UUID(0, i));
+            }
+        });
+        writer.start();
+        try {
+            for (int scan = 0; scan < 200; scan++) {
+                try (RepositorySnapshot<String, UUID> snapshot = names.snapshot()) {
+                    int[] generations = new int[count];
+                    for (int i = 0; i < count; i++)
+                        generations[i] = Integer.parseInt(snapshot.findById(new UUID(0, i)).orElseThrow());
+                    int switches = 0;
+                    for (int i = 1; i < count; i++) {
+                        if (generations[i] != generations[i - 1]) {
+                            assertEquals(generations[i - 1] - 1, generations[i]);
+                            switches++;
+                        }
+                    }
+                    assertTrue(switches <= 1);
+                    for (int i = 0; i < count; i++)
+                        assertEquals(String.valueOf(generations[i]), snapshot.findById(new UUID(0, i)).orElseThrow());
+                    assertEquals(count, snapshot.count());
+                }
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+        assertEquals(0, names.versioned());
+        assertEquals(count, names.count());
+    }
+
+    // listeners are told of each change queued within it, hence in its order for a given id
+    @Test
+    void listenersFollowTheChangesOfEachEntity() throws InterruptedException {
+        Names names = new Names(UuidHashMap.onHeap(0));
+        Map<UUID, String> seen = new ConcurrentHashMap<>();
+        List<String> clears = new ArrayList<>();
+        names.addListener(new RepositoryListener<>() {
+            @Override
+            public void saved(UUID id, String name) {
+                seen.put(id, name);
+            }
+
+            @Override
+            public void deleted(UUID id) {
+                seen.remove(id);
+            }
+
+            @Override
+            public void cleared() {
+                seen.clear();
+                clears.add("cleared");
+            }
+        });
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    UUID id = new UUID(0, i % 100);
+                    if (i % 7 == 0)
+                        names.deleteById(id);
+                    else
+                        names.update(id, name -> name + "!");
+                    names.save(String.valueOf(i), id);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers)
+            writer.join();
+        assertEquals(names.count(), seen.size());
+        seen.forEach((id, name) -> assertEquals(Optional.of(name), names.findById(id)));
+        try (RepositorySnapshot<String, UUID> snapshot = names.snapshot()) {
+            names.deleteAll();
+            assertEquals(100, snapshot.count());
+        }
+        assertEquals(List.of("cleared"), clears);
+        assertTrue(seen.isEmpty());
+    }
+
+    // listeners are told once the update is done, out of the atomic update of the storage
+    @Test
+    void listenersAreToldOnceTheEntityIsStored() {
+        Names names = new Names(new ConcurrentHashMap<>());
+        List<Optional<String>> stored = new ArrayList<>();
+        names.addListener(new RepositoryListener<>() {
+            @Override
+            public void saved(UUID id, String name) {
+                stored.add(names.findById(id));
+            }
+
+            @Override
+            public void deleted(UUID id) {
+                stored.add(names.findById(id));
+            }
+
+            @Override
+            public void cleared() {
+                stored.add(Optional.of("cleared"));
+            }
+        });
+        names.save("john", JOHN);
+        names.update(JOHN, name -> name + "!");
+        names.deleteById(JOHN);
+        names.deleteAll();
+        assertEquals(List.of(Optional.of("john"), Optional.of("john!"), Optional.empty(), Optional.of("cleared")), stored);
+    }
+
+    private static List<String> sorted(Iterable<String> names) {
+        List<String> result = new ArrayList<>();
+        names.forEach(result::add);
+        result.sort(null);
+        return result;
+    }
+
+}
@@ -0,0 +1,57 @@
+package fr.univcotedazur.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void keysExpireAtTheFirstTickAfterTheirDeadline() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 1_000);
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int key = 0; key < 10_000; key++) {
+            // from a few ticks to a few levels ahead
+            long deadline = 1_000 + 1 + (long) Math.pow(10, 1 + random.nextDouble() * 7);
+            deadlines.put(key, deadline);
+            assertTrue(wheel.schedule(key, deadline));
+        }
+        long now = 1_000;
+        while (!deadlines.isEmpty()) {
+            now += 1 + random.nextInt(5_000);
+            List<Integer> expired = new ArrayList<>();
+            wheel.advance(now, expired::add);
+            for (Integer key : expired) {
+                long deadline = deadlines.remove(key);
+                assertTrue(deadline <= now, "expired too early");
+                assertTrue(deadline > now - 5_010, "expired too late");
+            }
+            for (long deadline : deadlines.values())
+                assertTrue(deadline > now - 10, "not expired");
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rescheduledAndCancelledKeys() {
+        TimingWheel<String> wheel = new TimingWheel<>(1_000, 0);
+        assertTrue(wheel.schedule("john", 5_000));
+        assertTrue(wheel.schedule("pat", 5_000));
+        assertTrue(wheel.schedule("john", 100_000));
+        assertTrue(wheel.cancel("pat"));
+        assertFalse(wheel.schedule("tom", 0));
+        List<String> expired = new ArrayList<>();
+        wheel.advance(99_999, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(100_000, expired::add);
+        assertEquals(List.of("john"), expired);
+    }
+
+}
@@ -0,0 +1,192 @@
+package fr.univcotedazur.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidHashMapTest {
+
+    @Test
+    void behavesLikeAHashMapOnHeap() {
+        randomOperations(UuidHashMap.onHeap(0));
+    }
+
+    @Test
+    void behavesLikeAHashMapOffHeap() {
+        UuidHashMap<Integer> map = UuidHashMap.offHeap(0);
+        assertTrue(map.isOffHeap());
+        randomOperations(map);
+    }
+
+    // growing and shrinking from the minimal table, with few distinct keys so that removals hit
+    private static void randomOperations(UuidHashMap<Integer> map) {
+        Map<UUID, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++)
+            keys.add(new UUID(random.nextLong() & 0xFFFF, random.nextInt(10))); // colliding halves
+        for (int i = 0; i < 200_000; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        for (UUID key : keys)
+            assertEquals(expected.get(key), map.get(key));
+    }
+
+    @Test
+    void nilUuidIsAKeyLikeAnyOther() {
+        UuidHashMap<String> map = UuidHashMap.onHeap(4);
+        UUID nil = new UUID(0, 0);
+        assertNull(map.get(nil));
+        assertNull(map.put(nil, "nil"));
+        assertEquals("nil", map.get(nil));
+        assertTrue(map.containsKey(nil));
+        assertEquals("nil", map.remove(nil));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void conditionalWrites() {
+        UuidHashMap<String> map = UuidHashMap.offHeap(4);
+        UUID id = UUID.randomUUID();
+        assertNull(map.replace(id, "pat"));
+        assertNull(map.putIfAbsent(id, "john"));
+        assertEquals("john", map.putIfAbsent(id, "pat"));
+        assertFalse(map.replace(id, "pat", "tom"));
+        assertTrue(map.replace(id, "john", "tom"));
+        assertEquals("TOM", map.computeIfPresent(id, (key, name) -> name.toUpperCase()));
+        assertNull(map.computeIfPresent(id, (key, name) -> null));
+        assertFalse(map.containsKey(id));
+        assertNull(map.computeIfPresent(id, (key, name) -> fail("absent key")));
+        map.put(id, "john");
+        assertFalse(map.remove(id, "pat"));
+        assertTrue(map.remove(id, "john"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void clearedMapStartsOverAndViewsAreSnapshots() {
+        UuidHashMap<Integer> map = UuidHashMap.onHeap(0);
+        for (int i = 0; i < 1_000; i++)
+            map.put(new UUID(i, i), i);
+        long grown = map.footprint();
+        assertEquals(1_000, map.keySet().size());
+        for (Map.Entry<UUID, Integer> entry : map.entrySet())
+            map.remove(entry.getKey());
+        assertTrue(map.isEmpty());
+        map.put(new UUID(1, 1), 1);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertTrue(map.footprint() < grown);
+    }
+
+    // the views are copied a chunk at a time while the map grows and shrinks under them
+    @Test
+    void viewsHoldEveryStableEntryOnce() throws InterruptedException {
+        UuidHashMap<Integer> map = UuidHashMap.onHeap(0);
+        int stable = 20_000;
+        for (int i = 0; i < stable; i++)
+            map.put(new UUID(1, i), i);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(7);
+            while (!done.get()) {
+                UUID key = new UUID(2, random.nextInt(100_000));
+                if (random.nextBoolean())
+                    map.put(key, -1);
+                else
+                    map.remove(key);
+            }
+        });
+        writer.start();
+        try {
+            for (int copy = 0; copy < 50; copy++) {
+                boolean[] seen = new boolean[stable];
+                for (Integer value : map.values()) {
+                    if (value >= 0) {
+                        assertFalse(seen[value]);
+                        seen[value] = true;
+                    }
+                }
+                for (boolean one : seen)
+                    assertTrue(one);
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+
+    @Test
+    void readersNeverMissAnEntryWhileTheTableGrows() throws InterruptedException {
+        UuidHashMap<Integer> map = UuidHashMap.offHeap(0);
+        int entries = 200_000;
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger misses = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                Random random = new Random();
+                while (!done.get()) {
+                    int bound = written.get();
+                    if (bound == 0)
+                        continue;
+                    int i = random.nextInt(bound);
+                    Integer value = map.get(new UUID(i * 31L, i));
+                    if (value == null || value != i)
+                        misses.incrementAndGet();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 0; i < entries; i++) {
+            map.put(new UUID(i * 31L, i), i);
+            written.set(i + 1);
+        }
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+        assertEquals(0, misses.get());
+        assertEquals(entries, map.size());
+    }
+
+    // the largest tables are never allocated here: their key arrays would take 8 GB on heap
+    @Test
+    void growthStopsAtTheLargestAllocatableTable() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            int max = UuidHashMap.maxCapacity(offHeap);
+            long keyBytes = 16L * max;
+            assertTrue(offHeap ? keyBytes <= Integer.MAX_VALUE : keyBytes / Long.BYTES <= Integer.MAX_VALUE - 8,
+                    "keys of " + max + " slots fit in a single " + (offHeap ? "buffer" : "array"));
+            assertEquals(max, UuidHashMap.capacityFor(Integer.MAX_VALUE, max));
+            assertEquals(max, UuidHashMap.grownCapacity(max / 2, offHeap, 0));
+            IllegalStateException full = assertThrows(IllegalStateException.class,
+                    () -> UuidHashMap.grownCapacity(max, offHeap, 42));
+            assertTrue(full.getMessage().contains("full at 42 entries"));
+        }
+    }
+
+}
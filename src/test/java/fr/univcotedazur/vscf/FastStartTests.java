@@ -0,0 +1,28 @@
+package fr.univcotedazur.vscf;
+
+import fr.univcotedazur.vscf.aspects.ComponentLogger;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+@ActiveProfiles("faststart")
+class FastStartTests {
+
+	@Autowired
+	ApplicationContext context;
+
+	@Test
+	void noLoggingProxies() {
+		assertEquals(0, context.getBeanNamesForType(ComponentLogger.class).length);
+		assertFalse(AopUtils.isAopProxy(context.getBean(CartProcessor.class)));
+	}
+
+}
@@ -0,0 +1,146 @@
+package fr.univcotedazur.vscf.admission;
+
+import fr.univcotedazur.vscf.exceptions.OverloadedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+    // A bank paying 2 orders at once in 10ms each: 200 checkouts/s at best
+    private static final int BANK_CAPACITY = 2;
+    private static final long BANK_MILLIS = 10;
+    private static final int RATE = 5 * BANK_CAPACITY * 1000 / (int) BANK_MILLIS; // 5x overload
+    private static final int SECONDS = 3;
+
+    private final Semaphore bank = new Semaphore(BANK_CAPACITY, true);
+
+    private void pay() {
+        bank.acquireUninterruptibly();
+        try {
+            Thread.sleep(BANK_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            bank.release();
+        }
+    }
+
+    @Test
+    void checkoutsBeyondTheLimitAreRefusedAtOnce() {
+        AdmissionControl admission = new AdmissionControl(true, 2, 2, 2, 1);
+        AdmissionControl.Permit first = admission.admitCheckout();
+        admission.admitCheckout();
+        OverloadedException refused = assertThrows(OverloadedException.class, admission::admitCheckout);
+        assertEquals(AdmissionControl.CHECKOUT, refused.getLane());
+        assertEquals(2, refused.getLimit());
+        // the read lane is not taken by the checkouts
+        AdmissionControl.Permit read = admission.admitRead();
+        assertThrows(OverloadedException.class, admission::admitRead);
+        read.release();
+        first.release();
+        admission.admitCheckout();
+        assertEquals(1, admission.status().getCheckoutsRejected());
+        assertEquals(1, admission.status().getReadsRejected());
+    }
+
+    @Test
+    void callsWithinAPermitAreNotAdmittedTwice() throws Exception {
+        AdmissionControl admission = new AdmissionControl(true, 2, 2, 2, 1);
+        AdmissionControl.Permit permit = admission.admitCheckout();
+        assertEquals(1, (int) permit.within(() -> {
+            admission.admitCheckout();
+            admission.admitCheckout();
+            return admission.status().getCheckoutsInFlight();
+        }));
+        permit.release();
+        assertEquals(0, admission.status().getCheckoutsInFlight());
+    }
+
+    @Test
+    void disabledAdmissionLetsEverythingIn() {
+        AdmissionControl admission = new AdmissionControl(false, 2, 2, 2, 1);
+        for (int i = 0; i < 10; i++)
+            admission.admitCheckout();
+        assertEquals(0, admission.status().getCheckoutsInFlight());
+    }
+
+    // Open loop: checkouts keep arriving at 5 times what the bank can take, whatever the answers
+    @Test
+    void latencyStaysBoundedUnderFiveTimesTheLoad() throws Exception {
+        AdmissionControl admission = new AdmissionControl(true, 20, 2, 200, 256);
+        List<Long> admitted = Collections.synchronizedList(new ArrayList<>());
+        List<Long> refused = Collections.synchronizedList(new ArrayList<>());
+        List<Long> reads = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService clients = Executors.newCachedThreadPool();
+        AtomicBoolean running = new AtomicBoolean(true);
+        // the higher-priority lane keeps serving the tracking meanwhile
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                long start = System.nanoTime();
+                admission.admitRead().release();
+                reads.add(System.nanoTime() - start);
+                LockSupport.parkNanos(1_000_000);
+            }
+        });
+        reader.start();
+        long start = System.nanoTime();
+        long interval = 1_000_000_000L / RATE;
+        for (int i = 0; i < RATE * SECONDS; i++) {
+            long arrival = start + i * interval;
+            LockSupport.parkNanos(arrival - System.nanoTime());
+            clients.execute(() -> {
+                AdmissionControl.Permit permit;
+                try {
+                    permit = admission.admitCheckout();
+                } catch (OverloadedException e) {
+                    refused.add(System.nanoTime() - arrival);
+                    return;
+                }
+                try {
+                    pay();
+                } finally {
+                    permit.release();
+                }
+                admitted.add(System.nanoTime() - arrival);
+            });
+        }
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(30, TimeUnit.SECONDS));
+        running.set(false);
+        reader.join();
+
+        long p99 = percentile(admitted, 99);
+        System.out.printf("5x load: %d admitted (p99 %.1f ms), %d refused (p99 %.2f ms), limit %d, %d reads (p99 %.2f ms)%n",
+                admitted.size(), p99 / 1e6, refused.size(), percentile(refused, 99) / 1e6,
+                admission.status().getCheckoutLimit(), reads.size(), percentile(reads, 99) / 1e6);
+        // queued without limit, the last checkouts would wait for seconds
+        assertTrue(p99 < 250_000_000L, "admitted p99 " + p99 / 1e6 + " ms");
+        assertTrue(percentile(refused, 99) < 50_000_000L, "refusals must not wait");
+        // the bank is kept busy: at least half of its capacity is used
+        assertTrue(admitted.size() >= BANK_CAPACITY * 1000 / BANK_MILLIS * SECONDS / 2, admitted.size() + " admitted");
+        assertTrue(refused.size() > RATE * SECONDS / 2, refused.size() + " refused");
+        assertEquals(0, admission.status().getReadsRejected());
+    }
+
+    private static long percentile(List<Long> samples, double percentile) {
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        if (sorted.isEmpty())
+            return 0;
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile / 100 * sorted.size()) - 1));
+    }
+
+}
@@ -0,0 +1,79 @@
+package fr.univcotedazur.vscf.admission;
+
+import fr.univcotedazur.vscf.MutableClock;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitsTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-11-20T10:00:00Z"));
+
+    @Test
+    void burstThenRefilledLazily() {
+        RateLimits limits = new RateLimits("CartModifier.update=5/1s", 1024, clock);
+        UUID customer = UUID.randomUUID();
+        for (int i = 0; i < 5; i++)
+            limits.acquireCartUpdate(customer);
+        RateLimitedException refused = assertThrows(RateLimitedException.class, () -> limits.acquireCartUpdate(customer));
+        assertEquals(RateLimits.CART_UPDATE, refused.getOperation());
+        assertEquals(customer.toString(), refused.getKey());
+        assertEquals(200, refused.getRetryAfterMillis());
+        clock.advance(Duration.ofMillis(200));
+        limits.acquireCartUpdate(customer);
+        assertThrows(RateLimitedException.class, () -> limits.acquireCartUpdate(customer));
+        // idle for a while, the bucket is full again but not beyond
+        clock.advance(Duration.ofMinutes(1));
+        for (int i = 0; i < 5; i++)
+            limits.acquireCartUpdate(customer);
+        assertThrows(RateLimitedException.class, () -> limits.acquireCartUpdate(customer));
+        assertEquals(3, limits.limited());
+    }
+
+    @Test
+    void limitsPerOperationAndKey() {
+        RateLimits limits = new RateLimits("CustomerRegistration.register=1/1m", 1024, clock);
+        UUID customer = UUID.randomUUID();
+        for (int i = 0; i < 100; i++)
+            limits.acquireCartUpdate(customer); // not limited
+        limits.acquireRegistration("john");
+        limits.acquireRegistration("pat");
+        RateLimitedException refused = assertThrows(RateLimitedException.class, () -> limits.acquireRegistration("john"));
+        assertEquals(60_000, refused.getRetryAfterMillis());
+    }
+
+    @Test
+    void memoryStaysBoundedWithManyKeys() {
+        RateLimits limits = new RateLimits("CartModifier.update=10/1s", 1024, clock);
+        UUID bot = UUID.randomUUID();
+        for (int i = 0; i < 10; i++)
+            limits.acquireCartUpdate(bot);
+        // far more customers than slots, all in the same instant: their buckets are fuller than the bot's one
+        for (int i = 0; i < 100_000; i++)
+            limits.acquireCartUpdate(UUID.randomUUID());
+        assertThrows(RateLimitedException.class, () -> limits.acquireCartUpdate(bot));
+        assertTrue(limits.evictions() > 0);
+        // once idle, buckets are reused without evicting anything
+        clock.advance(Duration.ofSeconds(1));
+        long evictions = limits.evictions();
+        for (int i = 0; i < 200; i++)
+            limits.acquireCartUpdate(UUID.randomUUID());
+        assertEquals(evictions, limits.evictions());
+    }
+
+    @Test
+    void badLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("Cashier.payOrder=1/1s", 1024, clock));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("CartModifier.update=1", 1024, clock));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("CartModifier.update=0/1s", 1024, clock));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("CartModifier.update=1/1s", 1000, clock));
+    }
+
+}
@@ -0,0 +1,60 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.connectors.BankProxy;
+import fr.univcotedazur.vscf.connectors.OffHeapCardVault;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.interfaces.CardVault;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark -Dtest=CardVaultBenchmark
+@Tag("benchmark")
+class CardVaultBenchmark {
+
+    private static final int CUSTOMERS = 2_000; // the active customers of a busy shop
+    private static final int PAYMENTS = 10_000_000;
+
+    @Test
+    void resolveOverheadOnPayment() {
+        CardVault plain = new CardVault() { // the former way, the card number at hand
+            @Override
+            public String tokenize(String cardNumber) {
+                return cardNumber;
+            }
+
+            @Override
+            public Optional<String> resolve(String token) {
+                return Optional.of(token);
+            }
+
+            @Override
+            public void forget(String token) {
+            }
+        };
+        for (int round = 0; round < 3; round++) { // first rounds are warm-up
+            System.out.printf("plain card number : %6.1f ns/payment%n", nanosPerPayment(plain));
+            System.out.printf("vault             : %6.1f ns/payment%n", nanosPerPayment(new OffHeapCardVault()));
+        }
+    }
+
+    private double nanosPerPayment(CardVault vault) {
+        BankProxy bank = new BankProxy(vault);
+        Customer[] customers = new Customer[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers[i] = new Customer("customer" + i, vault.tokenize("4970-1000-0000-" + i));
+        long paid = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < PAYMENTS; i++) {
+            if (bank.pay(customers[i % CUSTOMERS], 12.5))
+                paid++;
+        }
+        double nanos = (double) (System.nanoTime() - start) / PAYMENTS;
+        assertEquals(PAYMENTS, paid);
+        return nanos;
+    }
+
+}
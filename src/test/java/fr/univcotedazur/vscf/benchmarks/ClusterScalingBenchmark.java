@@ -0,0 +1,184 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.VerySimpleCookieFactoryApplication;
+import fr.univcotedazur.vscf.cluster.HashRing;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.pos.PosClient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cart update throughput of a cluster of 1 to 4 processes on localhost. Terminals send each
+ * update to the point-of-sale endpoint of the owner of the customer (ring-aware), or to any
+ * node, which then forwards it. Scaling needs at least as many cores as nodes and terminals.
+ * Run with: mvn test -Pbenchmark -Dtest=ClusterScalingBenchmark [-Dbench.customers=2000 -Dbench.updates=200000 -Dbench.terminals=4]
+ */
+@Tag("benchmark")
+class ClusterScalingBenchmark {
+
+    private static final int CUSTOMERS = Integer.getInteger("bench.customers", 2_000);
+    private static final int UPDATES = Integer.getInteger("bench.updates", 200_000);
+    private static final int TERMINALS = Integer.getInteger("bench.terminals", 4);
+    private static final int PIPELINE = 128;
+    private static final Pattern ID = Pattern.compile("\"id\":\"([0-9a-f-]{36})\"");
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private static final class Node {
+        final int httpPort = freePort();
+        final int posPort = freePort();
+        final int clusterPort = freePort();
+        Process process;
+
+        String address() {
+            return "localhost:" + clusterPort;
+        }
+    }
+
+    @Test
+    void oneToFourNodes() throws Exception {
+        for (int size = 1; size <= 4; size++) {
+            List<Node> nodes = new ArrayList<>();
+            for (int i = 0; i < size; i++)
+                nodes.add(new Node());
+            try {
+                start(nodes);
+                List<UUID> customers = register(nodes.get(0));
+                HashRing ring = new HashRing(nodes.stream().map(Node::address).toList(), 128);
+                updates(nodes, customers, ring, true); // warm-up
+                double owner = updates(nodes, customers, ring, true);
+                double any = updates(nodes, customers, ring, false);
+                System.out.printf("%d node(s): %10.0f updates/s sent to the owners   %10.0f updates/s sent to any node%n",
+                        size, owner, any);
+            } finally {
+                for (Node node : nodes)
+                    if (node.process != null)
+                        node.process.destroy();
+                for (Node node : nodes)
+                    if (node.process != null)
+                        node.process.waitFor();
+            }
+        }
+    }
+
+    private void start(List<Node> nodes) throws Exception {
+        String members = String.join(",", nodes.stream().map(Node::address).toList());
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        for (Node node : nodes) {
+            node.process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    VerySimpleCookieFactoryApplication.class.getName(),
+                    "--server.port=" + node.httpPort, "--vscf.pos.port=" + node.posPort,
+                    "--vscf.cluster.port=" + node.clusterPort, "--vscf.cluster.nodes=" + members,
+                    "--vscf.aspects.logging=false", "--logging.level.fr.univcotedazur.vscf=WARN")
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectErrorStream(true).start();
+        }
+        for (Node node : nodes) {
+            long deadline = System.currentTimeMillis() + 120_000;
+            while (!ready(node)) {
+                assertTrue(node.process.isAlive() && System.currentTimeMillis() < deadline, "node did not start");
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private boolean ready(Node node) throws InterruptedException {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + node.httpPort + "/cluster")).build();
+            return http.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // through the REST layer of a single node, which creates every customer on its owner
+    private List<UUID> register(Node node) throws Exception {
+        List<UUID> customers = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + node.httpPort + "/customers"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"customer" + i + "\",\"creditCard\":\"1234567890\"}"))
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(201, response.statusCode(), response.body());
+            Matcher matcher = ID.matcher(response.body());
+            assertTrue(matcher.find());
+            customers.add(UUID.fromString(matcher.group(1)));
+        }
+        return customers;
+    }
+
+    private double updates(List<Node> nodes, List<UUID> customers, HashRing ring, boolean toOwner) throws Exception {
+        Map<String, Node> byAddress = new HashMap<>();
+        nodes.forEach(node -> byAddress.put(node.address(), node));
+        ExecutorService terminals = Executors.newFixedThreadPool(TERMINALS);
+        List<Future<?>> done = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < TERMINALS; t++) {
+            int terminal = t;
+            done.add(terminals.submit(() -> {
+                Map<Node, PosClient> clients = new HashMap<>();
+                try {
+                    for (Node node : nodes)
+                        clients.put(node, new PosClient("localhost", node.posPort));
+                    Map<PosClient, Integer> pending = new HashMap<>();
+                    for (int i = terminal; i < UPDATES; i += TERMINALS) {
+                        UUID customer = customers.get(i % customers.size());
+                        Node target = toOwner ? byAddress.get(ring.owner(customer)) : nodes.get(i % nodes.size());
+                        PosClient client = clients.get(target);
+                        client.update(customer, Cookies.CHOCOLALALA, 1);
+                        if (pending.merge(client, 1, Integer::sum) == PIPELINE)
+                            drain(client, pending);
+                    }
+                    for (PosClient client : clients.values())
+                        drain(client, pending);
+                    for (PosClient client : clients.values())
+                        client.close();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : done)
+            future.get();
+        terminals.shutdown();
+        return UPDATES / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void drain(PosClient client, Map<PosClient, Integer> pending) throws IOException {
+        client.flush();
+        for (int i = pending.getOrDefault(client, 0); i > 0; i--)
+            assertTrue(client.read().isOk());
+        pending.put(client, 0);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
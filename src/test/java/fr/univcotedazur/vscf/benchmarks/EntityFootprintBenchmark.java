@@ -0,0 +1,146 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.IdGenerator;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.lang.ref.Reference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Heap taken by a million customers and a million orders, with the former layout (UUID
+ * objects, orders holding their customer and a HashSet of items) and the compact one (ids as
+ * pairs of longs, orders referencing their customer by id, packed and shared baskets, shared
+ * names), measured by JOL over the whole object graphs and by the used heap after a GC.
+ * Customers have names among 5,000 first names, and orders baskets of 1 to 3 recipes.
+ * Run with: mvn test -Pbenchmark -Dtest=EntityFootprintBenchmark [-Dbench.entities=1000000]
+ */
+@Tag("benchmark")
+class EntityFootprintBenchmark {
+
+    private static final int ENTITIES = Integer.getInteger("bench.entities", 1_000_000);
+    private static final int NAMES = 5_000;
+    private static final Cookies[] COOKIES = Cookies.values();
+
+    // the layout of the entities before they were made compact
+    private static final class FormerCustomer {
+        private final UUID id;
+        private final String name;
+        private final String cardToken;
+
+        FormerCustomer(UUID id, String name, String cardToken) {
+            this.id = id;
+            this.name = name;
+            this.cardToken = cardToken;
+        }
+    }
+
+    private static final class FormerOrder {
+        private final UUID id;
+        private final FormerCustomer customer;
+        private final Set<Item> items;
+        private final OrderStatus status;
+        private final double price;
+
+        FormerOrder(UUID id, FormerCustomer customer, Set<Item> items, OrderStatus status, double price) {
+            this.id = id;
+            this.customer = customer;
+            this.items = Collections.unmodifiableSet(items);
+            this.status = status;
+            this.price = price;
+        }
+    }
+
+    @Test
+    void heapPerMillionEntities() {
+        System.out.println(ClassLayout.parseClass(FormerCustomer.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(Customer.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(FormerOrder.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(Order.class).toPrintable());
+
+        Object[] former = entities(i -> new FormerCustomer(IdGenerator.next(), name(i), token(i)),
+                (customer, i) -> new FormerOrder(IdGenerator.next(), (FormerCustomer) customer, basket(i), OrderStatus.IN_PROGRESS, 4.2));
+        long formerJol = GraphLayout.parseInstance(former).totalSize();
+        long formerHeap = retained(() -> entities(i -> new FormerCustomer(IdGenerator.next(), name(i), token(i)),
+                (customer, i) -> new FormerOrder(IdGenerator.next(), (FormerCustomer) customer, basket(i), OrderStatus.IN_PROGRESS, 4.2)));
+        former = null;
+
+        Object[] compact = entities(i -> new Customer(name(i), token(i)),
+                (customer, i) -> new Order(IdGenerator.next(), (Customer) customer, basket(i), 4.2).withStatus(OrderStatus.IN_PROGRESS));
+        long compactJol = GraphLayout.parseInstance(compact).totalSize();
+        long compactHeap = retained(() -> entities(i -> new Customer(name(i), token(i)),
+                (customer, i) -> new Order(IdGenerator.next(), (Customer) customer, basket(i), 4.2).withStatus(OrderStatus.IN_PROGRESS)));
+
+        double million = ENTITIES / 1e6;
+        System.out.printf("%,d customers and %,d orders%n", ENTITIES, ENTITIES);
+        System.out.printf("former : %7.1f MB per million of each (JOL), %7.1f MB (heap), %5d bytes per customer and order%n",
+                formerJol / million / 1e6, formerHeap / million / 1e6, formerJol / ENTITIES);
+        System.out.printf("compact: %7.1f MB per million of each (JOL), %7.1f MB (heap), %5d bytes per customer and order%n",
+                compactJol / million / 1e6, compactHeap / million / 1e6, compactJol / ENTITIES);
+        assertTrue(compactJol < formerJol);
+    }
+
+    private interface OrderFactory {
+        Object order(Object customer, int i);
+    }
+
+    // the customers then the orders, one order per customer
+    private static Object[] entities(IntFunction<Object> customers, OrderFactory orders) {
+        Object[] entities = new Object[2 * ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            entities[i] = customers.apply(i);
+            entities[ENTITIES + i] = orders.order(entities[i], i);
+        }
+        return entities;
+    }
+
+    // used heap kept by the built entities, after a GC
+    private static long retained(Supplier<Object> build) {
+        long before = usedAfterGc();
+        Object kept = build.get();
+        long after = usedAfterGc();
+        Reference.reachabilityFence(kept);
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String name(int i) {
+        return "customer" + (i % NAMES);
+    }
+
+    // as long as the tokens of the vault
+    private static String token(int i) {
+        return String.format("tok_%016x", i * 0x9E3779B97F4A7C15L);
+    }
+
+    private static Set<Item> basket(int i) {
+        Random random = new Random(i);
+        Set<Item> items = new HashSet<>();
+        int recipes = 1 + random.nextInt(3);
+        for (int r = 0; r < recipes; r++)
+            items.add(new Item(COOKIES[(i + r) % COOKIES.length], 1 + random.nextInt(6)));
+        return items;
+    }
+
+}
@@ -0,0 +1,121 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Closed-loop load on the REST layer: each virtual user registers, fills a cart, checks
+ * its price, validates it and tracks the order, while browsing the catalog.
+ * Reports throughput and latency percentiles per endpoint.
+ * Run with: mvn test -Pbenchmark -Dtest=HttpLoadGenerator [-Dbench.users=64 -Dbench.iterations=200]
+ * or against a running instance with -Dbench.baseUrl=http://localhost:8080
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class HttpLoadGenerator {
+
+    private static final int USERS = Integer.getInteger("bench.users", 32);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 100);
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Latencies latencies = new Latencies();
+    private String baseUrl;
+
+    @Test
+    void endpointsUnderLoad() throws Exception {
+        baseUrl = System.getProperty("bench.baseUrl", "http://localhost:" + port);
+        runUsers(Math.max(1, USERS / 4), Math.max(1, ITERATIONS / 10), "warmup-"); // warm-up
+        latencies.reset();
+        long start = System.nanoTime();
+        runUsers(USERS, ITERATIONS, "user-");
+        latencies.print((System.nanoTime() - start) / 1e9);
+    }
+
+    private void runUsers(int users, int iterations, String prefix) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        try {
+            List<Future<?>> flows = new ArrayList<>();
+            for (int u = 0; u < users; u++) {
+                String name = prefix + u + "-" + System.nanoTime();
+                flows.add(executor.submit(() -> { userFlow(name, iterations); return null; }));
+            }
+            for (Future<?> flow : flows)
+                flow.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void userFlow(String name, int iterations) throws Exception {
+        String customer = extractId(call("register", "POST", "/customers",
+                "{\"name\":\"" + name + "\",\"creditCard\":\"1234-896983\"}", 201));
+        for (int i = 0; i < iterations; i++) {
+            call("catalog", "GET", "/catalog", null, 200);
+            call("cart update", "POST", "/customers/" + customer + "/cart",
+                    "{\"cookie\":\"CHOCOLALALA\",\"quantity\":2}", 200);
+            call("cart update", "POST", "/customers/" + customer + "/cart",
+                    "{\"cookie\":\"DARK_TEMPTATION\",\"quantity\":1}", 200);
+            call("cart price", "GET", "/customers/" + customer + "/cart/price", null, 200);
+            String order;
+            do { // shed by the admission control: the user tries again
+                order = checkout(customer);
+            } while (order == null);
+            call("order status", "GET", "/orders/" + order + "/status", null, 200);
+        }
+    }
+
+    private String checkout(String customer) throws Exception {
+        HttpResponse<String> response = send("validate", "POST", "/customers/" + customer + "/cart/validate", null);
+        if (response.statusCode() == 503)
+            return null;
+        assertEquals(200, response.statusCode(), "validate: " + response.body());
+        return extractId(response.body());
+    }
+
+    private String call(String endpoint, String method, String path, String json, int expectedStatus) throws Exception {
+        HttpResponse<String> response = send(endpoint, method, path, json);
+        assertEquals(expectedStatus, response.statusCode(), endpoint + ": " + response.body());
+        return response.body();
+    }
+
+    private HttpResponse<String> send(String endpoint, String method, String path, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        if (json != null) {
+            request.header("Content-Type", "application/json").method(method, HttpRequest.BodyPublishers.ofString(json));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        latencies.record(response.statusCode() == 503 ? endpoint + " refused" : endpoint, System.nanoTime() - start);
+        return response;
+    }
+
+    private static String extractId(String json) {
+        Matcher matcher = ID.matcher(json);
+        if (!matcher.find())
+            throw new IllegalStateException("No id in " + json);
+        return matcher.group(1);
+    }
+
+}
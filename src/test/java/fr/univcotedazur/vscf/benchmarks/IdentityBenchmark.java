@@ -0,0 +1,117 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.IdGenerator;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark -Dtest=IdentityBenchmark
+@Tag("benchmark")
+class IdentityBenchmark {
+
+    private static final int IDS_PER_THREAD = 1_000_000;
+    private static final int ORDERS = 20_000; // the former identity is quadratic here
+
+    @Test
+    void idGeneration() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int round = 0; round < 3; round++) { // first rounds are warm-up
+            System.out.printf("UUID.randomUUID: %8.1f ns/id (1 thread) %8.1f ns/id (%d threads)%n",
+                    nanosPerId(UUID::randomUUID, 1), nanosPerId(UUID::randomUUID, threads), threads);
+            System.out.printf("IdGenerator    : %8.1f ns/id (1 thread) %8.1f ns/id (%d threads)%n",
+                    nanosPerId(IdGenerator::next, 1), nanosPerId(IdGenerator::next, threads), threads);
+        }
+    }
+
+    private double nanosPerId(Supplier<UUID> generator, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    long sink = 0;
+                    for (int i = 0; i < IDS_PER_THREAD; i++)
+                        sink += generator.get().getLeastSignificantBits();
+                    return sink;
+                }));
+            }
+            for (Future<Long> result : results)
+                result.get();
+            return (double) (System.nanoTime() - start) / IDS_PER_THREAD;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void hashSetOfOrders() {
+        Customer john = new Customer("john", "1234-896983");
+        Set<Item> items = Set.of(new Item(Cookies.CHOCOLALALA, 3), new Item(Cookies.DARK_TEMPTATION, 2));
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++)
+            orders.add(new Order(john, items));
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            Set<Object> legacy = new HashSet<>();
+            for (Order order : orders)
+                legacy.add(new FormerOrderIdentity(order, john));
+            long legacyNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Set<Order> current = new HashSet<>(orders);
+            for (Order order : orders)
+                current.contains(order);
+            long currentNanos = System.nanoTime() - start;
+            // the former hashCode ignored the id: all orders of a customer with the same cart collided
+            System.out.printf("former equals/hashCode: %10.1f ns/order (%d distinct), id-based: %6.1f ns/order (%d distinct)%n",
+                    (double) legacyNanos / ORDERS, legacy.size(), (double) currentNanos / ORDERS, current.size());
+            assertEquals(ORDERS, current.size());
+        }
+    }
+
+    // equals/hashCode as they were before being based on ids, including the former Customer hashCode
+    private static final class FormerOrderIdentity {
+
+        private final Order order;
+        private final Customer customer; // formerly held by the order
+
+        FormerOrderIdentity(Order order, Customer customer) {
+            this.order = order;
+            this.customer = customer;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FormerOrderIdentity)) return false;
+            FormerOrderIdentity other = (FormerOrderIdentity) o;
+            return order.getId().equals(other.order.getId())
+                    && customer.getName().equals(other.customer.getName())
+                    && customer.getCardToken().equals(other.customer.getCardToken())
+                    && order.getItems().equals(other.order.getItems())
+                    && order.getStatus() == other.order.getStatus();
+        }
+
+        @Override
+        public int hashCode() {
+            int customerHash = Objects.hash(customer.getName(), customer.getCardToken());
+            return Objects.hash(customerHash, order.getItems(), order.getStatus());
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.components.Inventory;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.interfaces.StockReservation;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reservations per second of 1 to 8 threads racing for DARK_TEMPTATION: the lock-free
+ * Inventory against a stock guarded by a single lock, the former way to be correct.
+ * In a flash sale, the stock runs out and most checkouts are refused, each costing the
+ * OutOfStockException it throws rather than the counter.
+ * Run with: mvn test -Pbenchmark -Dtest=InventoryContentionBenchmark [-Dbench.reservations=5000000]
+ */
+@Tag("benchmark")
+class InventoryContentionBenchmark {
+
+    private static final int RESERVATIONS = Integer.getInteger("bench.reservations", 5_000_000);
+    private static final Set<Item> ONE_DARK = Set.of(new Item(Cookies.DARK_TEMPTATION, 1));
+    private static final Set<Item> BASKET = Set.of(new Item(Cookies.DARK_TEMPTATION, 1), new Item(Cookies.CHOCOLALALA, 2));
+
+    // a single lock around the whole stock
+    private static final class LockedStock implements StockReservation {
+        private final Map<Cookies, Long> levels = new EnumMap<>(Cookies.class);
+
+        LockedStock(long units) {
+            for (Cookies cookie : Cookies.values())
+                levels.put(cookie, units);
+        }
+
+        @Override
+        public synchronized void reserve(Set<Item> items) throws OutOfStockException {
+            for (Item item : items)
+                if (levels.get(item.getCookie()) < item.getQuantity())
+                    throw new OutOfStockException(item.getCookie(), item.getQuantity(), levels.get(item.getCookie()));
+            for (Item item : items)
+                levels.merge(item.getCookie(), (long) -item.getQuantity(), Long::sum);
+        }
+
+        @Override
+        public synchronized void release(Set<Item> items) {
+            for (Item item : items)
+                levels.merge(item.getCookie(), (long) item.getQuantity(), Long::sum);
+        }
+    }
+
+    @Test
+    void racingForTheLastUnits() throws Exception {
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                long plenty = 4L * RESERVATIONS;
+                long scarce = RESERVATIONS / 10;
+                System.out.printf("%d thread(s): in stock %6.1f M/s (locked %6.1f M/s)   basket %6.1f M/s (locked %6.1f M/s)   flash sale %6.1f M/s (locked %6.1f M/s)%n",
+                        threads,
+                        rate(new Inventory(levels(plenty)), ONE_DARK, threads, plenty), rate(new LockedStock(plenty), ONE_DARK, threads, plenty),
+                        rate(new Inventory(levels(plenty)), BASKET, threads, plenty), rate(new LockedStock(plenty), BASKET, threads, plenty),
+                        rate(new Inventory(levels(scarce)), ONE_DARK, threads, scarce), rate(new LockedStock(scarce), ONE_DARK, threads, scarce));
+            }
+        }
+    }
+
+    private static String levels(long units) {
+        return "DARK_TEMPTATION=" + units + ",CHOCOLALALA=" + (2 * units) + ",SOO_CHOCOLATE=" + units;
+    }
+
+    // Millions of attempts per second, checking that exactly the stock was sold
+    private static double rate(StockReservation stock, Set<Item> basket, int threads, long units) throws Exception {
+        AtomicLong sold = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            done.add(pool.submit(() -> {
+                start.await();
+                long mine = 0;
+                for (int i = 0; i < RESERVATIONS / threads; i++) {
+                    try {
+                        stock.reserve(basket);
+                        mine++;
+                    } catch (OutOfStockException e) {
+                        // sold out
+                    }
+                }
+                sold.addAndGet(mine);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : done)
+            future.get();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        pool.shutdown();
+        assertEquals(Math.min(units, (long) RESERVATIONS / threads * threads), sold.get());
+        return RESERVATIONS / seconds / 1e6;
+    }
+
+}
@@ -0,0 +1,48 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.components.OvenPool;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Run with: mvn test -Pbenchmark -Dtest=KitchenScalingBenchmark
+@Tag("benchmark")
+class KitchenScalingBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("bench.orders", 2_000);
+    private static final double OVEN_SPEED = Double.parseDouble(System.getProperty("bench.ovenSpeed", "2000"));
+
+    @Test
+    void throughputFromOneToSixtyFourOvens() throws Exception {
+        Customer john = new Customer("john", "1234-896983");
+        Set<Item> items = Set.of(new Item(Cookies.CHOCOLALALA, 6), new Item(Cookies.DARK_TEMPTATION, 4),
+                new Item(Cookies.SOO_CHOCOLATE, 2));
+        System.out.printf("%6s %12s %12s %12s%n", "ovens", "orders/s", "wait (ms)", "utilisation");
+        for (int ovens = 1; ovens <= 64; ovens *= 2) {
+            OvenPool pool = new OvenPool(ovens, OVEN_SPEED);
+            try {
+                CountDownLatch baked = new CountDownLatch(ORDERS);
+                long start = System.nanoTime();
+                for (int i = 0; i < ORDERS; i++) {
+                    pool.bake(new Order(john, items), o -> baked.countDown());
+                }
+                assertTrue(baked.await(10, TimeUnit.MINUTES));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%6d %12.1f %12.2f %11.1f%%%n", ovens, ORDERS / seconds,
+                        pool.metrics().getAverageQueueWaitMillis(), pool.metrics().getUtilisation() * 100);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Thread-safe latency samples per operation, reported as throughput and percentiles
+public class Latencies {
+
+    private final Map<String, Samples> samples = new ConcurrentSkipListMap<>();
+
+    public void record(String operation, long nanos) {
+        samples.computeIfAbsent(operation, o -> new Samples()).add(nanos);
+    }
+
+    public void reset() {
+        samples.clear();
+    }
+
+    public long count(String operation) {
+        Samples s = samples.get(operation);
+        return s == null ? 0 : s.size.get();
+    }
+
+    // latency percentile in nanoseconds, e.g. percentile("checkout", 99.0)
+    public long percentile(String operation, double percentile) {
+        Samples s = samples.get(operation);
+        if (s == null)
+            return 0;
+        long[] sorted = s.sorted();
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+    }
+
+    public void print(double elapsedSeconds) {
+        System.out.printf("%-24s %10s %12s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 (us)", "p95 (us)", "p99 (us)", "max (us)");
+        for (String operation : samples.keySet()) {
+            System.out.printf("%-24s %10d %12.1f %10.1f %10.1f %10.1f %10.1f%n", operation, count(operation),
+                    count(operation) / elapsedSeconds, percentile(operation, 50) / 1e3, percentile(operation, 95) / 1e3,
+                    percentile(operation, 99) / 1e3, percentile(operation, 100) / 1e3);
+        }
+    }
+
+    private static final class Samples {
+
+        private final AtomicInteger size = new AtomicInteger();
+        private long[] values = new long[1024];
+
+        private synchronized void add(long nanos) {
+            int index = size.get();
+            if (index == values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[index] = nanos;
+            size.incrementAndGet();
+        }
+
+        private synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size.get());
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark -Dtest=OrderHistoryBenchmark -Dbench.orders=10000000 -DargLine=-Xmx8g
+@Tag("benchmark")
+class OrderHistoryBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("bench.orders", 1_000_000);
+    private static final int CUSTOMERS = 10_000;
+    private static final int QUERIES = 100_000;
+
+    @Test
+    void historyLatencyIsIndependentOfOrderCount() {
+        OrderRepository orderRepository = new OrderRepository(100);
+        Customer[] customers = new Customer[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers[i] = new Customer("customer" + i, "card" + i);
+        Set<Item> items = Set.of(new Item(Cookies.CHOCOLALALA, 2));
+        System.out.printf("%12s %16s %16s%n", "orders", "history (ns)", "full scan (ns)");
+        int saved = 0;
+        for (int target = 10_000; target <= ORDERS; target *= 10) {
+            for (; saved < target; saved++) {
+                Order order = new Order(customers[saved % CUSTOMERS], items);
+                orderRepository.save(order, order.getId());
+            }
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++)
+                sink += orderRepository.findByCustomerId(customers[q % CUSTOMERS].getId(), 0, 10).size();
+            long indexed = (System.nanoTime() - start) / QUERIES;
+            // the former way: scanning all orders, only measured a few times
+            start = System.nanoTime();
+            for (int q = 0; q < 3; q++) {
+                for (Order order : orderRepository.findAll())
+                    if (order.belongsTo(customers[q]))
+                        sink++;
+            }
+            long scan = (System.nanoTime() - start) / 3;
+            System.out.printf("%12d %16d %16d%n", target, indexed, scan);
+            assertEquals(true, sink > 0);
+        }
+    }
+
+}
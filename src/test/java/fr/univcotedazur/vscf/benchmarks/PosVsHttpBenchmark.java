@@ -0,0 +1,85 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.pos.PosClient;
+import fr.univcotedazur.vscf.pos.PosServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cart updates through the REST layer (one request at a time on a keep-alive connection)
+ * versus the binary point-of-sale endpoint (pipelined in batches).
+ * Run with: mvn test -Pbenchmark -Dtest=PosVsHttpBenchmark [-Dbench.updates=100000 -Dbench.pipeline=256]
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {"vscf.pos.port=0",
+        "logging.level.fr.univcotedazur.vscf=WARN"})
+class PosVsHttpBenchmark {
+
+    private static final int UPDATES = Integer.getInteger("bench.updates", 20_000);
+    private static final int PIPELINE = Integer.getInteger("bench.pipeline", 256);
+
+    @LocalServerPort
+    private int httpPort;
+
+    @Autowired
+    private PosServer posServer;
+
+    @Autowired
+    private CustomerRegistration registry;
+
+    @Test
+    void cartUpdates() throws Exception {
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            Customer httpCustomer = registry.register("http" + round, "1234");
+            Customer posCustomer = registry.register("pos" + round, "1234");
+            double http = httpUpdates(httpCustomer);
+            double pos = posUpdates(posCustomer);
+            System.out.printf("HTTP/JSON: %10.0f updates/s   POS binary (pipeline %d): %10.0f updates/s   (x%.1f)%n",
+                    http, PIPELINE, pos, pos / http);
+        }
+    }
+
+    private double httpUpdates(Customer customer) throws Exception {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + httpPort + "/customers/" + customer.getId() + "/cart"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"cookie\":\"CHOCOLALALA\",\"quantity\":1}"))
+                .build();
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+        }
+        return UPDATES / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private double posUpdates(Customer customer) throws Exception {
+        try (PosClient client = new PosClient("localhost", posServer.getPort())) {
+            long start = System.nanoTime();
+            for (int sent = 0; sent < UPDATES; sent += PIPELINE) {
+                int batch = Math.min(PIPELINE, UPDATES - sent);
+                for (int i = 0; i < batch; i++)
+                    client.update(customer.getId(), Cookies.CHOCOLALALA, 1);
+                client.flush();
+                for (int i = 0; i < batch; i++)
+                    assertTrue(client.read().isOk());
+            }
+            return UPDATES / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+}
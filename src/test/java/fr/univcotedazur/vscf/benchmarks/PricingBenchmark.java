@@ -0,0 +1,140 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.components.Cashier;
+import fr.univcotedazur.vscf.components.Inventory;
+import fr.univcotedazur.vscf.components.Kitchen;
+import fr.univcotedazur.vscf.components.OvenPool;
+import fr.univcotedazur.vscf.components.PricingEngine;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.PricingRule;
+import fr.univcotedazur.vscf.interfaces.Pricing;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Cost of pricing a cart, and of a whole checkout through the Cashier (in memory, with an
+ * accepting bank), without promotions and with 1,000 active rules, compiled by the
+ * PricingEngine or interpreted rule by rule at every call, the naive way.
+ * Run with: mvn test -Pbenchmark -Dtest=PricingBenchmark [-Dbench.rules=1000]
+ */
+@Tag("benchmark")
+class PricingBenchmark {
+
+    private static final int RULES = Integer.getInteger("bench.rules", 1_000);
+    private static final int CUSTOMERS = 2_000;
+    private static final int PRICES = 1_000_000;
+    private static final int CHECKOUTS = 200_000;
+
+    private final Customer[] customers = new Customer[CUSTOMERS];
+    private final Set<Item> cart = Set.of(new Item(Cookies.CHOCOLALALA, 4), new Item(Cookies.DARK_TEMPTATION, 7), new Item(Cookies.SOO_CHOCOLATE, 2));
+
+    PricingBenchmark() {
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers[i] = new Customer("customer" + i, "1234-896983");
+    }
+
+    // customer discounts for 40% of the rules, happy hours and multi-buy deals for 30% each
+    private static List<PricingRule> rules(int count) {
+        Random random = new Random(42);
+        Cookies[] cookies = Cookies.values();
+        List<PricingRule> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Cookies cookie = cookies[random.nextInt(cookies.length)];
+            if (i % 10 < 4) {
+                rules.add(PricingRule.customerDiscount("customer" + random.nextInt(CUSTOMERS), random.nextBoolean() ? cookie : null, 1 + random.nextInt(30)));
+            } else if (i % 10 < 7) {
+                LocalTime from = LocalTime.of(random.nextInt(24), random.nextInt(60));
+                rules.add(PricingRule.happyHour(random.nextBoolean() ? cookie : null, from, from.plusMinutes(15 + random.nextInt(120)), 1 + random.nextInt(40)));
+            } else {
+                rules.add(PricingRule.multiBuy(cookie, 1 + random.nextInt(10), 1 + random.nextInt(5)));
+            }
+        }
+        return rules;
+    }
+
+    // every rule evaluated for every item at every call
+    private static Pricing interpreted(List<PricingRule> rules) {
+        return (customer, items) -> {
+            int minute = LocalTime.now().getHour() * 60 + LocalTime.now().getMinute();
+            double result = 0.0;
+            for (Item item : items) {
+                int paid = item.getQuantity();
+                double factor = 1.0;
+                for (PricingRule rule : rules) {
+                    if (rule.getCookie() != null && rule.getCookie() != item.getCookie())
+                        continue;
+                    switch (rule.getKind()) {
+                        case MULTI_BUY:
+                            int size = rule.getBuy() + rule.getFree();
+                            paid = Math.min(paid, item.getQuantity() / size * rule.getBuy() + item.getQuantity() % size);
+                            break;
+                        case HAPPY_HOUR:
+                            int from = rule.getFrom().getHour() * 60 + rule.getFrom().getMinute();
+                            int to = rule.getTo().getHour() * 60 + rule.getTo().getMinute();
+                            if (from <= to ? minute >= from && minute < to : minute >= from || minute < to)
+                                factor = Math.min(factor, 1.0 - rule.getPercent() / 100.0);
+                            break;
+                        case CUSTOMER_DISCOUNT:
+                            if (rule.getCustomer().equals(customer.getName()))
+                                factor = Math.min(factor, 1.0 - rule.getPercent() / 100.0);
+                            break;
+                    }
+                }
+                result += paid * item.getCookie().getPrice() * factor;
+            }
+            return result;
+        };
+    }
+
+    @Test
+    void checkoutWithActiveRules() throws Exception {
+        List<PricingRule> rules = rules(RULES);
+        long start = System.nanoTime();
+        new PricingEngine("").replaceRules(rules);
+        System.out.printf("compiling %d rules: %.1f ms%n", RULES, (System.nanoTime() - start) / 1e6);
+        for (int round = 0; round < 3; round++) { // first rounds are warm-up
+            PricingEngine none = new PricingEngine("");
+            PricingEngine compiled = new PricingEngine("");
+            compiled.replaceRules(rules);
+            System.out.printf("price, no rule  : %7.1f ns   compiled %d rules: %7.1f ns   interpreted: %8.1f ns%n",
+                    nanosPerPrice(none), RULES, nanosPerPrice(compiled), nanosPerPrice(interpreted(rules)));
+            System.out.printf("checkout, no rule: %7.1f ns   compiled %d rules: %7.1f ns   interpreted: %8.1f ns%n",
+                    nanosPerCheckout(none), RULES, nanosPerCheckout(compiled), nanosPerCheckout(interpreted(rules)));
+        }
+    }
+
+    private double nanosPerPrice(Pricing pricing) {
+        double total = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < PRICES; i++)
+            total += pricing.price(customers[i % CUSTOMERS], cart);
+        double nanos = (double) (System.nanoTime() - start) / PRICES;
+        if (total <= 0)
+            throw new IllegalStateException("free cookies");
+        return nanos;
+    }
+
+    private double nanosPerCheckout(Pricing pricing) throws Exception {
+        OvenPool ovens = new OvenPool(0, 10);
+        OrderRepository orders = new OrderRepository(10);
+        Cashier cashier = new Cashier((customer, value) -> true, new Kitchen(orders, ovens), orders, new Inventory(""), pricing);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < CHECKOUTS; i++)
+                cashier.payOrder(customers[i % CUSTOMERS], cart);
+            return (double) (System.nanoTime() - start) / CHECKOUTS;
+        } finally {
+            ovens.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.admission.RateLimits;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cost per call of the rate limits of cart updates: one hot customer, 1,000 customers, and
+ * as many customers as calls, far beyond the table (its buckets being evicted), by 1 to
+ * bench.threads threads. The limit is never reached, so that only the bookkeeping is measured;
+ * the RateLimitedException of a refused call costs about a microsecond more.
+ * Run with: mvn test -Pbenchmark -Dtest=RateLimitBenchmark [-Dbench.calls=20000000 -Dbench.threads=4]
+ */
+@Tag("benchmark")
+class RateLimitBenchmark {
+
+    private static final int CALLS = Integer.getInteger("bench.calls", 20_000_000);
+    private static final int THREADS = Integer.getInteger("bench.threads", 4);
+    private static final int BUCKETS = 262_144;
+
+    @Test
+    void overheadPerCall() throws Exception {
+        RateLimits limits = new RateLimits("CartModifier.update=1000000000/1s", BUCKETS, Clock.systemUTC());
+        for (int round = 0; round < 3; round++) // warm-up
+            run(limits, 1, 1_000);
+        for (int threads = 1; threads <= THREADS; threads *= 2) {
+            System.out.printf("%d thread(s): %6.1f ns/call one customer   %6.1f ns/call 1,000 customers   %6.1f ns/call %,d customers%n",
+                    threads, run(limits, threads, 1), run(limits, threads, 1_000), run(limits, threads, CALLS), CALLS);
+        }
+        System.out.printf("%d buckets evicted, %d calls refused%n", limits.evictions(), limits.limited());
+    }
+
+    // nanoseconds per call and per thread
+    private static double run(RateLimits limits, int threads, int customers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        long seed = System.nanoTime();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            done.add(executor.submit(() -> {
+                for (int i = thread; i < CALLS; i += threads) {
+                    try {
+                        limits.acquireCartUpdate(new UUID(seed, i % customers));
+                    } catch (RateLimitedException e) {
+                        throw new IllegalStateException("limit reached", e);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : done)
+            future.get();
+        executor.shutdown();
+        return (System.nanoTime() - start) * (double) threads / CALLS;
+    }
+
+}
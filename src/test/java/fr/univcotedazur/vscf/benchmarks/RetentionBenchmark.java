@@ -0,0 +1,74 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.MutableClock;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark -Dtest=RetentionBenchmark -Dbench.orders=5000000 -DargLine=-Xmx8g
+@Tag("benchmark")
+class RetentionBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("bench.orders", 2_000_000);
+    private static final int CUSTOMERS = 10_000;
+
+    // Orders become ready over 30 days and are kept 30 days, then the clock runs a minute at a time:
+    // each expiry pass only costs the orders expiring in that minute, whatever the repository size.
+    @Test
+    void expiryCostFollowsExpiringOrders() {
+        MutableClock clock = new MutableClock(Instant.parse("2022-11-01T00:00:00Z"));
+        OrderRepository orderRepository = new OrderRepository(100, Duration.ofDays(30), clock);
+        Customer[] customers = new Customer[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers[i] = new Customer("customer" + i, "card" + i);
+        Set<Item> items = Set.of(new Item(Cookies.CHOCOLALALA, 2));
+        Duration spacing = Duration.ofDays(30).dividedBy(ORDERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order(customers[i % CUSTOMERS], items).withStatus(OrderStatus.READY);
+            orderRepository.save(order, order.getId());
+            clock.advance(spacing);
+        }
+        System.out.printf("saved %d ready orders in %d ms%n", ORDERS, (System.nanoTime() - start) / 1_000_000);
+        System.out.printf("%12s %12s %16s %16s%n", "stored", "expired", "expiry pass (us)", "per order (ns)");
+        long expiredTotal = 0;
+        long passes = 0;
+        while (orderRepository.expiring() > 0) {
+            long before = orderRepository.expiring();
+            clock.advance(Duration.ofMinutes(1));
+            start = System.nanoTime();
+            orderRepository.expire();
+            long elapsed = System.nanoTime() - start;
+            long expired = before - orderRepository.expiring();
+            expiredTotal += expired;
+            if (passes++ % 4_000 == 0)
+                System.out.printf("%12d %12d %16d %16d%n", before, expired, elapsed / 1_000, expired == 0 ? 0 : elapsed / expired);
+        }
+        assertEquals(ORDERS, expiredTotal);
+        assertEquals(0, orderRepository.count());
+        // the former way: a periodic scan of findAll(), measured once at full size
+        OrderRepository scanned = new OrderRepository(100);
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order(customers[i % CUSTOMERS], items).withStatus(OrderStatus.READY);
+            scanned.save(order, order.getId());
+        }
+        start = System.nanoTime();
+        long ready = 0;
+        for (Order order : scanned.findAll())
+            if (order.getStatus() == OrderStatus.READY)
+                ready++;
+        System.out.printf("full scan of %d orders: %d us%n", ready, (System.nanoTime() - start) / 1_000);
+    }
+
+}
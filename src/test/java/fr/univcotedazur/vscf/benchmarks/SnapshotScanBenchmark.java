@@ -0,0 +1,175 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.repositories.RepositoryListener;
+import fr.univcotedazur.repositories.RepositorySnapshot;
+import fr.univcotedazur.repositories.UuidStorage;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of writers moving orders between statuses while a report scans the whole order
+ * repository over and over: without any report, with reports reading snapshots, and with
+ * reports holding a global lock that the writers take shared, the consistent alternative
+ * without snapshots. Each snapshot scan checks that it sees every order exactly once.
+ * The repository keeps ready orders for an hour and has the listeners of a leader: its status
+ * index, plus a replication stream queueing every change for a shipper thread, first measured
+ * without that stream.
+ * Run with: mvn test -Pbenchmark -Dtest=SnapshotScanBenchmark [-Dbench.orders=1000000] [-Dbench.writers=4] [-Dbench.seconds=5] [-Dbench.storage=off-heap]
+ */
+@Tag("benchmark")
+class SnapshotScanBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("bench.orders", 1_000_000);
+    private static final int WRITERS = Integer.getInteger("bench.writers", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int SECONDS = Integer.getInteger("bench.seconds", 5);
+    private static final UuidStorage STORAGE = UuidStorage.valueOf(System.getProperty("bench.storage", "hash-map").toUpperCase().replace('-', '_'));
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private interface Scan {
+        long orders(OrderRepository orderRepository);
+    }
+
+    @Test
+    void writersDuringLongScans() throws InterruptedException {
+        OrderRepository orderRepository = new OrderRepository(100, Duration.ofHours(1), STORAGE, Clock.systemUTC());
+        Set<Item> items = Set.of(new Item(Cookies.CHOCOLALALA, 2));
+        UUID[] ids = new UUID[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order(new Customer("customer" + i % 10_000, "card"), items);
+            orderRepository.save(order, order.getId());
+            ids[i] = order.getId();
+        }
+        ReadWriteLock global = new ReentrantReadWriteLock();
+        System.out.printf("%,d orders in %s storage, %d writer(s), %d s per run%n", ORDERS, STORAGE, WRITERS, SECONDS);
+        System.out.printf("%-16s %14s %16s %8s %14s%n", "reports", "updates/s", "max update (ms)", "scans", "scan (ms)");
+        run("none, no stream", orderRepository, ids, null, null);
+        Stream stream = new Stream();
+        orderRepository.addListener(stream);
+        stream.start();
+        run("none", orderRepository, ids, null, null);
+        run("snapshots", orderRepository, ids, null, repository -> {
+            try (RepositorySnapshot<Order, UUID> snapshot = repository.snapshot()) {
+                long count = snapshot.count();
+                assertEquals(ORDERS, count);
+                return count;
+            }
+        });
+        run("global lock", orderRepository, ids, global, repository -> {
+            global.writeLock().lock();
+            try {
+                long count = 0;
+                for (Order ignored : repository.findAll())
+                    count++;
+                return count;
+            } finally {
+                global.writeLock().unlock();
+            }
+        });
+        stream.interrupt();
+        stream.join();
+        assertEquals(0, orderRepository.versioned());
+    }
+
+    // stands for the replication stream of a leader, encoding each change for its shipper
+    private static final class Stream extends Thread implements RepositoryListener<Order, UUID> {
+
+        private final Queue<String> changes = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void saved(UUID id, Order order) {
+            changes.add(id + " " + order.getStatus());
+        }
+
+        @Override
+        public void deleted(UUID id) {
+            changes.add(id + " deleted");
+        }
+
+        @Override
+        public void cleared() {
+            changes.add("cleared");
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                if (changes.poll() == null)
+                    Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void run(String name, OrderRepository orderRepository, UUID[] ids, ReadWriteLock global, Scan scan)
+            throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong updates = new AtomicLong();
+        LongAccumulator slowest = new LongAccumulator(Math::max, 0);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            Thread writer = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (!done.get()) {
+                    UUID id = ids[random.nextInt(ids.length)];
+                    OrderStatus status = STATUSES[random.nextInt(STATUSES.length)];
+                    long begin = System.nanoTime();
+                    if (global != null)
+                        global.readLock().lock();
+                    try {
+                        orderRepository.update(id, order -> order.withStatus(status));
+                    } finally {
+                        if (global != null)
+                            global.readLock().unlock();
+                    }
+                    slowest.accumulate(System.nanoTime() - begin);
+                    count++;
+                }
+                updates.addAndGet(count);
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        long scans = 0;
+        long scanNanos = 0;
+        long end = System.nanoTime() + SECONDS * 1_000_000_000L;
+        if (scan == null) {
+            Thread.sleep(SECONDS * 1_000L);
+        } else {
+            while (System.nanoTime() < end) {
+                long begin = System.nanoTime();
+                scan.orders(orderRepository);
+                scanNanos += System.nanoTime() - begin;
+                scans++;
+            }
+        }
+        done.set(true);
+        for (Thread writer : writers)
+            writer.join();
+        System.out.printf("%-16s %14.0f %16.1f %8d %14.1f%n", name, updates.get() / (double) SECONDS,
+                slowest.get() / 1e6, scans, scans == 0 ? 0 : scanNanos / 1e6 / scans);
+    }
+
+}
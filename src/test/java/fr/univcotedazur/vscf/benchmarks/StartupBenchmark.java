@@ -0,0 +1,70 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.vscf.VerySimpleCookieFactoryApplication;
+import fr.univcotedazur.vscf.tools.StartupProbe;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Time-to-first-checkout and resident memory of fresh processes, in the default JVM mode,
+ * the JVM faststart profile and, when built with mvn -Pnative native:compile, the native image.
+ * Run with: mvn test -Pbenchmark -Dtest=StartupBenchmark [-Dbench.runs=5 -Dbench.native=target/cookie-factory]
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int RUNS = Integer.getInteger("bench.runs", 5);
+    private static final Pattern REPORT = Pattern.compile(StartupProbe.REPORT_PREFIX + " time-to-first-checkout-ms=(\\d+) rss-kb=(-?\\d+)");
+
+    @Test
+    void timeToFirstCheckout() throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> jvm = List.of(java, "-cp", System.getProperty("java.class.path"),
+                VerySimpleCookieFactoryApplication.class.getName());
+        measure("JVM", jvm, List.of());
+        measure("JVM faststart", jvm, List.of("--spring.profiles.active=faststart"));
+        String nativeImage = System.getProperty("bench.native", "target/cookie-factory");
+        if (Files.isExecutable(Path.of(nativeImage))) {
+            measure("native", List.of(nativeImage), List.of());
+        } else {
+            System.out.println("No native image at " + nativeImage + ", build it with: mvn -Pnative native:compile");
+        }
+    }
+
+    private void measure(String mode, List<String> launcher, List<String> extraArgs) throws Exception {
+        long totalMillis = 0;
+        long totalRss = 0;
+        for (int run = 0; run < RUNS; run++) {
+            List<String> command = new ArrayList<>(launcher);
+            command.addAll(List.of("--vscf.startup-probe=true", "--server.port=0"));
+            command.addAll(extraArgs);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            Matcher report = null;
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                for (String line = output.readLine(); line != null; line = output.readLine()) {
+                    Matcher matcher = REPORT.matcher(line);
+                    if (matcher.find())
+                        report = matcher;
+                }
+            }
+            process.waitFor();
+            assertTrue(report != null, mode + " run did not report its startup");
+            totalMillis += Long.parseLong(report.group(1));
+            totalRss += Long.parseLong(report.group(2));
+        }
+        System.out.printf("%-14s time-to-first-checkout %6d ms   RSS %8d KB   (mean of %d runs)%n",
+                mode, totalMillis / RUNS, totalRss / RUNS, RUNS);
+    }
+
+}
@@ -0,0 +1,87 @@
+package fr.univcotedazur.vscf.benchmarks;
+
+import fr.univcotedazur.repositories.UuidHashMap;
+import fr.univcotedazur.vscf.entities.IdGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Insertion, lookup and memory of the repository storages at 10 million entries: HashMap,
+ * ConcurrentHashMap, and UuidHashMap with its keys on the heap or off the heap. Every map
+ * holds the same values, so that the differences are the keys and the per-entry overhead;
+ * memory is the used heap after a GC plus, off the heap, the size of the direct buffers.
+ * Run with: mvn test -Pbenchmark -Dtest=UuidMapBenchmark [-Dbench.entries=10000000] (with -Xmx4g)
+ */
+@Tag("benchmark")
+class UuidMapBenchmark {
+
+    private static final int ENTRIES = Integer.getInteger("bench.entries", 10_000_000);
+
+    private final Object value = new Object();
+    private final long[] highs = new long[ENTRIES];
+    private final long[] lows = new long[ENTRIES];
+
+    @Test
+    void uuidMaps() {
+        for (int i = 0; i < ENTRIES; i++) {
+            UUID id = IdGenerator.next();
+            highs[i] = id.getMostSignificantBits();
+            lows[i] = id.getLeastSignificantBits();
+        }
+        System.out.printf("%,d entries%n", ENTRIES);
+        long hashMap = measure("HashMap", HashMap::new);
+        measure("ConcurrentHashMap", ConcurrentHashMap::new);
+        long heap = measure("UuidHashMap (heap)", () -> UuidHashMap.onHeap(0));
+        long offHeap = measure("UuidHashMap (off-heap)", () -> UuidHashMap.offHeap(0));
+        assertTrue(heap < hashMap);
+        assertTrue(offHeap < hashMap);
+    }
+
+    // prints the insertion and lookup rates and returns the memory taken by the filled map
+    private long measure(String name, Supplier<Map<UUID, Object>> storage) {
+        long before = usedAfterGc() + usedDirect();
+        Map<UUID, Object> map = storage.get();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++)
+            map.put(new UUID(highs[i], lows[i]), value);
+        double insertSeconds = (System.nanoTime() - begin) / 1e9;
+        long used = usedAfterGc() + usedDirect() - before;
+        int found = 0;
+        begin = System.nanoTime();
+        for (int i = ENTRIES - 1; i >= 0; i--)
+            if (map.get(new UUID(highs[i], lows[i])) != null)
+                found++;
+        double lookupSeconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("%-24s insert %6.1f M/s, lookup %6.1f M/s, %7.1f MB, %5.1f bytes per entry%n", name,
+                ENTRIES / insertSeconds / 1e6, found / lookupSeconds / 1e6, used / 1e6, (double) used / ENTRIES);
+        Reference.reachabilityFence(map);
+        return used;
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // direct buffers, where the off-heap keys are
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals("direct"))
+                return pool.getMemoryUsed();
+        return 0;
+    }
+
+}
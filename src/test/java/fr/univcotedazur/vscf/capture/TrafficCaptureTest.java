@@ -0,0 +1,110 @@
+package fr.univcotedazur.vscf.capture;
+
+import fr.univcotedazur.vscf.aspects.TrafficRecorder;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CatalogExplorator;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import fr.univcotedazur.vscf.repositories.CartRepository;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "vscf.capture.file=target/traffic-capture-test.vscf")
+class TrafficCaptureTest {
+
+    private static final Path CAPTURE = Path.of("target/traffic-capture-test.vscf");
+
+    @Autowired
+    private CustomerRegistration registration;
+
+    @Autowired
+    private CartModifier cartModifier;
+
+    @Autowired
+    private CartProcessor cartProcessor;
+
+    @Autowired
+    private Tracker tracker;
+
+    @Autowired
+    private CatalogExplorator catalog;
+
+    @Autowired
+    private TrafficRecorder recorder;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @BeforeEach
+    void setUp() {
+        customerRepository.deleteAll();
+        orderRepository.deleteAll();
+        cartRepository.deleteAll();
+    }
+
+    @Test
+    void capturedTrafficIsReplayed() throws Exception {
+        int before = TrafficReader.readAll(flushed()).size();
+        Customer john = registration.register("john", "1234-896983");
+        assertThrows(AlreadyExistingCustomerException.class, () -> registration.register("john", "1234-896983"));
+        cartModifier.update(john, new Item(Cookies.CHOCOLALALA, 3));
+        Order order = cartProcessor.validate(john);
+        assertThrows(EmptyCartException.class, () -> cartProcessor.validate(john));
+        tracker.retrieveStatus(order.getId());
+        catalog.exploreCatalogue("Dark.*");
+
+        List<TrafficRecord> records = TrafficReader.readAll(flushed());
+        records = records.subList(before, records.size());
+        assertEquals(List.of(TrafficRecord.Operation.REGISTER, TrafficRecord.Operation.REGISTER, TrafficRecord.Operation.UPDATE,
+                TrafficRecord.Operation.VALIDATE, TrafficRecord.Operation.VALIDATE, TrafficRecord.Operation.STATUS,
+                TrafficRecord.Operation.EXPLORE), records.stream().map(TrafficRecord::getOperation).toList());
+        assertEquals(john.getId(), records.get(0).getCustomerId());
+        assertEquals(TrafficRecord.Outcome.REFUSED, records.get(1).getOutcome());
+        assertEquals(3, records.get(2).getQuantity());
+        assertEquals(order.getId(), records.get(3).getOrderId());
+        assertEquals(order.getId(), records.get(5).getOrderId());
+        assertEquals("Dark.*", records.get(6).getRegexp());
+        assertTrue(records.get(6).getStartNanos() >= records.get(0).getStartNanos());
+
+        // against an empty instance, as fast as possible then paced
+        for (double speed : new double[] {TrafficReplay.MAX_SPEED, 10}) {
+            setUp();
+            ReplayReport report = new TrafficReplay(registration, cartModifier, cartProcessor, tracker, catalog)
+                    .replay(records, speed, 4);
+            assertEquals(7, report.total());
+            for (TrafficRecord.Operation operation : TrafficRecord.Operation.values())
+                assertEquals(0, report.mismatches(operation), operation + " replayed differently");
+            assertTrue(report.percentile(TrafficRecord.Operation.VALIDATE, 99) > 0);
+        }
+    }
+
+    private Path flushed() throws Exception {
+        recorder.flush();
+        return CAPTURE;
+    }
+
+}
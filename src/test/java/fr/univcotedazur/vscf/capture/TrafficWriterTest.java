@@ -0,0 +1,57 @@
+package fr.univcotedazur.vscf.capture;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TrafficWriterTest {
+
+    @Test
+    void concurrentCallsAreAllWritten() throws Exception {
+        Path file = Files.createTempFile("traffic", ".vscf");
+        try (TrafficWriter writer = new TrafficWriter(file)) {
+            List<Thread> callers = new ArrayList<>();
+            for (int c = 0; c < 4; c++) {
+                Thread caller = new Thread(() -> {
+                    for (int i = 0; i < 10_000; i++)
+                        writer.append(status(writer.clock()));
+                });
+                caller.start();
+                callers.add(caller);
+            }
+            for (Thread caller : callers)
+                caller.join();
+            writer.flush();
+            assertEquals(0, writer.dropped());
+            assertEquals(40_000, TrafficReader.readAll(file).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // the calls go on: only the capture fails, from the next record on
+    @Test
+    void failedWritesStopTheCapture() throws Exception {
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full));
+        TrafficWriter writer = new TrafficWriter(full);
+        writer.append(status(writer.clock()));
+        assertThrows(IOException.class, writer::flush);
+        assertThrows(UncheckedIOException.class, () -> writer.append(status(writer.clock())));
+        assertThrows(IOException.class, writer::close);
+    }
+
+    private static TrafficRecord status(long start) {
+        return TrafficRecord.of("retrieveStatus", new Object[] {UUID.randomUUID()}, null, TrafficRecord.Outcome.RETURNED, start, 1_000);
+    }
+
+}
@@ -0,0 +1,276 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.vscf.VerySimpleCookieFactoryApplication;
+import fr.univcotedazur.vscf.admission.RateLimits;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.IdGenerator;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.RateLimitedException;
+import fr.univcotedazur.vscf.exceptions.UnknownOrderId;
+import fr.univcotedazur.vscf.interfaces.CardVault;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CustomerFinder;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import fr.univcotedazur.vscf.repositories.CartRepository;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterTest {
+
+    private static final int CUSTOMERS = 200;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    // Each node is a full application, the nodes only talking through their cluster endpoint on localhost
+    private ConfigurableApplicationContext node(int port, String members, String... properties) {
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(VerySimpleCookieFactoryApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("vscf.cluster.port=" + port, "vscf.cluster.nodes=" + members)
+                .properties(properties)
+                .run();
+        nodes.add(node);
+        return node;
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String members(int... ports) {
+        return Arrays.stream(ports).mapToObj(port -> "localhost:" + port).collect(Collectors.joining(","));
+    }
+
+    private static long stored(ConfigurableApplicationContext node) {
+        return node.getBean(CustomerRepository.class).count();
+    }
+
+    @Test
+    void callsAreRoutedToTheOwnerOfTheCustomer() throws Exception {
+        int[] ports = {freePort(), freePort(), freePort()};
+        ConfigurableApplicationContext a = node(ports[0], members(ports));
+        ConfigurableApplicationContext b = node(ports[1], members(ports));
+        ConfigurableApplicationContext c = node(ports[2], members(ports));
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers.add(a.getBean(CustomerRegistration.class).register("customer" + i, "1234567890"));
+        // every customer is kept by its owner only
+        assertEquals(CUSTOMERS, stored(a) + stored(b) + stored(c));
+        for (ConfigurableApplicationContext node : nodes)
+            assertTrue(stored(node) > CUSTOMERS / 6, "unbalanced");
+        for (Customer customer : customers) {
+            ConfigurableApplicationContext owner = nodes.stream()
+                    .filter(node -> node.getBean(ClusterNode.class).getSelf().equals(a.getBean(ClusterNode.class).owner(customer.getId())))
+                    .findFirst().get();
+            assertTrue(owner.getBean(CustomerRepository.class).existsById(customer.getId()));
+        }
+        assertThrows(AlreadyExistingCustomerException.class, () -> c.getBean(CustomerRegistration.class).register("customer7", "1234567890"));
+        // the cards stay with the node that took them, the owners only getting their tokens
+        for (Customer customer : customers) {
+            assertEquals(Optional.of("1234567890"), a.getBean(CardVault.class).resolve(customer.getCardToken()));
+            assertEquals(Optional.empty(), c.getBean(CardVault.class).resolve(customer.getCardToken()));
+        }
+
+        // any node reaches any customer
+        Customer john = b.getBean(CustomerFinder.class).findByName("customer42").get();
+        assertEquals(Optional.of(john), c.getBean(CustomerFinder.class).findById(john.getId()));
+        b.getBean(CartModifier.class).update(john, new Item(Cookies.CHOCOLALALA, 3));
+        c.getBean(CartModifier.class).update(john, new Item(Cookies.DARK_TEMPTATION, 2));
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA, 3), new Item(Cookies.DARK_TEMPTATION, 2)),
+                a.getBean(CartProcessor.class).contents(john));
+        assertThrows(NegativeQuantityException.class, () -> a.getBean(CartModifier.class).update(john, new Item(Cookies.CHOCOLALALA, -4)));
+        double price = c.getBean(CartProcessor.class).price(john);
+        assertEquals(3 * Cookies.CHOCOLALALA.getPrice() + 2 * Cookies.DARK_TEMPTATION.getPrice(), price, 0.001);
+        Order order = b.getBean(CartProcessor.class).validate(john);
+        assertEquals(price, order.getPrice(), 0.001);
+        assertTrue(a.getBean(CartProcessor.class).contents(john).isEmpty());
+        long paid = nodes.stream().filter(node -> node.getBean(OrderRepository.class).existsById(order.getId())).count();
+        assertEquals(1, paid); // by the owner, with the card it keeps
+    }
+
+    @Test
+    void customersMoveWhenNodesJoinAndLeave() throws Exception {
+        int[] ports = {freePort(), freePort(), freePort()};
+        ConfigurableApplicationContext a = node(ports[0], members(ports[0], ports[1]));
+        ConfigurableApplicationContext b = node(ports[1], members(ports[0], ports[1]));
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer customer = a.getBean(CustomerRegistration.class).register("customer" + i, "1234567890");
+            a.getBean(CartModifier.class).update(customer, new Item(Cookies.SOO_CHOCOLATE, i + 1));
+            customers.add(customer);
+        }
+
+        ConfigurableApplicationContext c = node(ports[2], members(ports));
+        b.getBean(ClusterNode.class).join("localhost:" + ports[2]);
+        for (ConfigurableApplicationContext node : nodes)
+            node.getBean(ClusterNode.class).awaitRebalancing(Duration.ofSeconds(10));
+        long movedOut = a.getBean(ClusterNode.class).status().getMovedOut() + b.getBean(ClusterNode.class).status().getMovedOut();
+        assertEquals(stored(c), movedOut); // only the customers of the new node moved
+        assertEquals(stored(c), c.getBean(ClusterNode.class).status().getMovedIn());
+        assertTrue(stored(c) > CUSTOMERS / 6 && stored(c) < CUSTOMERS / 2, stored(c) + " moved");
+        assertEquals(CUSTOMERS, stored(a) + stored(b) + stored(c));
+        for (int i = 0; i < CUSTOMERS; i++) // carts followed their customers
+            assertEquals(Set.of(new Item(Cookies.SOO_CHOCOLATE, i + 1)), b.getBean(CartProcessor.class).contents(customers.get(i)));
+        assertEquals(stored(c), c.getBean(CartRepository.class).count());
+
+        a.getBean(ClusterNode.class).leave("localhost:" + ports[0]); // a hands all its customers over
+        for (ConfigurableApplicationContext node : nodes)
+            node.getBean(ClusterNode.class).awaitRebalancing(Duration.ofSeconds(10));
+        assertEquals(0, stored(a));
+        assertEquals(CUSTOMERS, stored(b) + stored(c));
+        Customer last = customers.get(CUSTOMERS - 1);
+        assertEquals(Set.of(new Item(Cookies.SOO_CHOCOLATE, CUSTOMERS)), c.getBean(CartProcessor.class).contents(last));
+        assertNotNull(b.getBean(CartProcessor.class).validate(last)); // the card moved along
+    }
+
+    // the customers are fenced while handed over, then reached on their new owner
+    @Test
+    void cartUpdatesDuringHandoversAreNeitherLostNorRefused() throws Exception {
+        int[] ports = {freePort(), freePort(), freePort()};
+        ConfigurableApplicationContext a = node(ports[0], members(ports[0], ports[1]));
+        ConfigurableApplicationContext b = node(ports[1], members(ports[0], ports[1]));
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers.add(a.getBean(CustomerRegistration.class).register("customer" + i, "1234567890"));
+        ConfigurableApplicationContext c = node(ports[2], members(ports));
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicIntegerArray added = new AtomicIntegerArray(CUSTOMERS);
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        List<Thread> writers = new ArrayList<>();
+        List<ConfigurableApplicationContext> entries = List.of(a, b, c);
+        for (int w = 0; w < entries.size(); w++) {
+            ConfigurableApplicationContext node = entries.get(w);
+            int first = w;
+            Thread writer = new Thread(() -> { // each customer updated by a single writer
+                Random random = new Random();
+                while (!done.get()) {
+                    int i = first + entries.size() * random.nextInt(CUSTOMERS / entries.size());
+                    try {
+                        node.getBean(CartModifier.class).update(customers.get(i), new Item(Cookies.CHOCOLALALA, 1));
+                        added.incrementAndGet(i);
+                    } catch (Exception e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        Thread.sleep(100);
+        b.getBean(ClusterNode.class).join("localhost:" + ports[2]);
+        for (ConfigurableApplicationContext node : nodes)
+            node.getBean(ClusterNode.class).awaitRebalancing(Duration.ofSeconds(10));
+        Thread.sleep(100);
+        done.set(true);
+        for (Thread writer : writers)
+            writer.join();
+
+        assertEquals(List.of(), failures);
+        assertTrue(c.getBean(ClusterNode.class).status().getMovedIn() > 0);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Set<Item> expected = added.get(i) == 0 ? Set.of() : Set.of(new Item(Cookies.CHOCOLALALA, added.get(i)));
+            assertEquals(expected, a.getBean(CartProcessor.class).contents(customers.get(i)));
+        }
+    }
+
+    // counted by the node taking them, whichever node the new customers belong to
+    @Test
+    void registrationsAreRateLimited() throws Exception {
+        int[] ports = {freePort(), freePort()};
+        String limits = "vscf.ratelimit.limits=CustomerRegistration.register=3/1h";
+        ConfigurableApplicationContext a = node(ports[0], members(ports), limits);
+        ConfigurableApplicationContext b = node(ports[1], members(ports), limits);
+        CustomerRegistration registration = a.getBean(CustomerRegistration.class);
+        registration.register("bot", "1234567890");
+        assertThrows(AlreadyExistingCustomerException.class, () -> registration.register("bot", "1234567890"));
+        assertThrows(AlreadyExistingCustomerException.class, () -> registration.register("bot", "1234567890"));
+        RateLimitedException limited = assertThrows(RateLimitedException.class, () -> registration.register("bot", "1234567890"));
+        assertEquals("CustomerRegistration.register", limited.getOperation());
+        assertEquals(1, a.getBean(RateLimits.class).limited());
+        // other names, created on either node, each have their own bucket
+        for (int i = 0; i < 20; i++)
+            registration.register("customer" + i, "1234567890");
+        assertEquals(21, stored(a) + stored(b));
+        assertTrue(stored(a) > 0 && stored(b) > 0);
+    }
+
+    @Test
+    void ordersAreTrackedFromAnyNode() throws Exception {
+        int[] ports = {freePort(), freePort(), freePort()};
+        ConfigurableApplicationContext a = node(ports[0], members(ports));
+        ConfigurableApplicationContext b = node(ports[1], members(ports));
+        ConfigurableApplicationContext c = node(ports[2], members(ports));
+        Customer john = a.getBean(CustomerRegistration.class).register("john", "1234567890");
+        a.getBean(CartModifier.class).update(john, new Item(Cookies.CHOCOLALALA, 2));
+        Order order = a.getBean(CartProcessor.class).validate(john);
+
+        // the order stays with the owner of the customer, which its id names
+        String owner = a.getBean(ClusterNode.class).owner(john.getId());
+        ConfigurableApplicationContext keeper = nodes.stream()
+                .filter(node -> node.getBean(ClusterNode.class).getSelf().equals(owner)).findFirst().get();
+        ConfigurableApplicationContext other = keeper == c ? b : c;
+        assertTrue(keeper.getBean(OrderRepository.class).existsById(order.getId()));
+        for (ConfigurableApplicationContext node : nodes)
+            assertEquals(owner, node.getBean(ClusterNode.class).orderNode(order.getId()));
+
+        // asked once, then served from the near-cache
+        assertEquals(OrderStatus.IN_PROGRESS, other.getBean(Tracker.class).retrieveStatus(order.getId()));
+        assertEquals(OrderStatus.IN_PROGRESS, other.getBean(Tracker.class).retrieveStatus(order.getId()));
+        assertEquals(1, other.getBean(OrderTracking.class).status().getMisses());
+        assertEquals(1, other.getBean(OrderTracking.class).status().getHits());
+        assertEquals(1, keeper.getBean(OrderTracking.class).status().getWatched());
+
+        // a change on the keeper invalidates the cached status
+        keeper.getBean(OrderRepository.class).update(order.getId(), baked -> baked.withStatus(OrderStatus.READY));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (other.getBean(OrderTracking.class).status().getInvalidationsReceived() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "no invalidation received");
+            Thread.sleep(10);
+        }
+        assertEquals(OrderStatus.READY, other.getBean(Tracker.class).retrieveStatus(order.getId()));
+        assertEquals(2, other.getBean(OrderTracking.class).status().getMisses());
+        assertEquals(OrderStatus.READY, keeper.getBean(Tracker.class).retrieveStatus(order.getId()));
+
+        UUID unknown = IdGenerator.next(keeper.getBean(ClusterNode.class).getTag());
+        assertThrows(UnknownOrderId.class, () -> other.getBean(Tracker.class).retrieveStatus(unknown));
+        assertEquals(1, keeper.getBean(OrderTracking.class).status().getWatched());
+    }
+
+}
@@ -0,0 +1,86 @@
+package fr.univcotedazur.vscf.cluster;
+
+import fr.univcotedazur.vscf.entities.IdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+
+    private static final int IDS = 100_000;
+
+    private final List<UUID> ids = new ArrayList<>();
+
+    HashRingTest() {
+        for (int i = 0; i < IDS; i++)
+            ids.add(IdGenerator.next());
+    }
+
+    private Map<UUID, String> owners(HashRing ring) {
+        Map<UUID, String> owners = new HashMap<>();
+        for (UUID id : ids)
+            owners.put(id, ring.owner(id));
+        return owners;
+    }
+
+    @Test
+    void customersAreSpreadEvenly() {
+        HashRing ring = new HashRing(Set.of("a:1", "b:1", "c:1", "d:1"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        owners(ring).values().forEach(node -> counts.merge(node, 1, Integer::sum));
+        assertEquals(4, counts.size());
+        for (int count : counts.values())
+            assertTrue(Math.abs(count - IDS / 4) < IDS / 4 * 0.15, "unbalanced: " + counts);
+    }
+
+    @Test
+    void ownersDoNotDependOnTheInsertionOrder() {
+        HashRing ring = new HashRing(List.of("a:1", "b:1", "c:1"), 64);
+        HashRing other = new HashRing(List.of("c:1", "a:1"), 64).with("b:1");
+        assertEquals(owners(ring), owners(other));
+    }
+
+    @Test
+    void aJoiningNodeOnlyTakesItsShare() {
+        HashRing ring = new HashRing(Set.of("a:1", "b:1", "c:1", "d:1"), 128);
+        Map<UUID, String> before = owners(ring);
+        Map<UUID, String> after = owners(ring.with("e:1"));
+        int moved = 0;
+        for (UUID id : ids) {
+            if (!before.get(id).equals(after.get(id))) {
+                assertEquals("e:1", after.get(id)); // only towards the new node
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - IDS / 5) < IDS / 5 * 0.2, moved + " moved");
+    }
+
+    @Test
+    void aLeavingNodeOnlyGivesItsShare() {
+        HashRing ring = new HashRing(Set.of("a:1", "b:1", "c:1", "d:1"), 128);
+        Map<UUID, String> before = owners(ring);
+        Map<UUID, String> after = owners(ring.without("b:1"));
+        for (UUID id : ids) {
+            if (!before.get(id).equals("b:1"))
+                assertEquals(before.get(id), after.get(id));
+            else
+                assertNotEquals("b:1", after.get(id));
+        }
+    }
+
+    @Test
+    void emptyRing() {
+        HashRing ring = new HashRing(Set.of(), 16);
+        assertTrue(ring.isEmpty());
+        assertThrows(IllegalStateException.class, () -> ring.owner(IdGenerator.next()));
+        assertEquals("a:1", ring.with("a:1").owner(IdGenerator.next()));
+    }
+
+}
@@ -0,0 +1,75 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.OrderHistory;
+import fr.univcotedazur.vscf.interfaces.OrderProcessing;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ArchivistTest {
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerRegistration registry;
+
+    @Autowired
+    private OrderProcessing processor;
+
+    @Autowired
+    private OrderHistory orderHistory;
+
+    private Customer john;
+    private Customer pat;
+
+    @BeforeEach
+    public void setUpContext() throws Exception {
+        customerRepository.deleteAll();
+        orderRepository.deleteAll();
+        john = registry.register("john", "1234-896983");
+        pat = registry.register("pat", "1234-567890");
+    }
+
+    @Test
+    void paginatedHistoryNewestFirst() {
+        List<Order> johnOrders = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Order order = new Order(john, Set.of(new Item(Cookies.CHOCOLALALA, i)));
+            processor.process(order);
+            johnOrders.add(0, order);
+            processor.process(new Order(pat, Set.of(new Item(Cookies.SOO_CHOCOLATE, i))));
+        }
+        assertEquals(johnOrders.subList(0, 2), orderHistory.history(john, 0, 2));
+        assertEquals(johnOrders.subList(2, 4), orderHistory.history(john, 1, 2));
+        assertEquals(johnOrders.subList(4, 5), orderHistory.history(john, 2, 2));
+        assertTrue(orderHistory.history(john, 3, 2).isEmpty());
+    }
+
+    @Test
+    void noHistoryForNewCustomer() {
+        assertTrue(orderHistory.history(john, 0, 10).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> orderHistory.history(john, -1, 10));
+    }
+
+}
@@ -6,17 +6,25 @@ import fr.univcotedazur.vscf.entities.Item;
 import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.vscf.exceptions.EmptyCartException;
 import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.PaidCheckoutException;
+import fr.univcotedazur.vscf.exceptions.PaymentException;
 import fr.univcotedazur.vscf.interfaces.CartModifier;
 import fr.univcotedazur.vscf.interfaces.CartProcessor;
 import fr.univcotedazur.vscf.interfaces.CustomerFinder;
 import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.repositories.CartRepository;
 import fr.univcotedazur.vscf.repositories.CustomerRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -41,6 +49,9 @@ class CartHandlerTest {
 
     private Customer john;
 
+    @TempDir
+    Path tempDir;
+
     @BeforeEach
     void setUp() throws AlreadyExistingCustomerException {
         customerRepository.deleteAll();
@@ -100,6 +111,44 @@ class CartHandlerTest {
         assertEquals(12.20, cartProcessor.price(john), 0.01);
     }
 
+    @Test
+    public void concurrentUpdatesAddUp() throws InterruptedException {
+        List<Thread> terminals = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread terminal = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    try {
+                        cartModifier.update(john, new Item(Cookies.CHOCOLALALA, 1));
+                    } catch (NegativeQuantityException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            terminal.start();
+            terminals.add(terminal);
+        }
+        for (Thread terminal : terminals)
+            terminal.join();
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA, 4_000)), cartProcessor.contents(john));
+    }
+
+    // a refused checkout gives the cart back, not one whose payment went through
+    @Test
+    public void cartIsGivenBackUnlessPaid() throws Exception {
+        CartRepository carts = new CartRepository(DataSize.ofMegabytes(1), tempDir);
+        CartHandler refusing = new CartHandler(carts, (customer, items) -> { throw new PaymentException(customer.getName(), 1.0); },
+                (customer, items) -> 1.0);
+        refusing.update(john, new Item(Cookies.CHOCOLALALA, 2));
+        Assertions.assertThrows(PaymentException.class, () -> refusing.validate(john));
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA, 2)), refusing.contents(john));
+        CartHandler failingOncePaid = new CartHandler(carts, (customer, items) -> {
+            throw new PaidCheckoutException(customer.getName(), 1.0, new IllegalStateException("oven on fire"));
+        }, (customer, items) -> 1.0);
+        Assertions.assertThrows(PaidCheckoutException.class, () -> failingOncePaid.validate(john));
+        assertEquals(0, failingOncePaid.contents(john).size());
+        carts.close();
+    }
+
     @Test
     public void cannotProcessEmptyCart() throws Exception {
         assertEquals(0, cartProcessor.contents(john).size());
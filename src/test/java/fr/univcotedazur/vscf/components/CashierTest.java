@@ -4,10 +4,18 @@ import fr.univcotedazur.vscf.entities.Cookies;
 import fr.univcotedazur.vscf.entities.Customer;
 import fr.univcotedazur.vscf.entities.Item;
 import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.PricingRule;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import fr.univcotedazur.vscf.exceptions.PaidCheckoutException;
 import fr.univcotedazur.vscf.exceptions.PaymentException;
 import fr.univcotedazur.vscf.interfaces.Bank;
 import fr.univcotedazur.vscf.interfaces.Payment;
+import fr.univcotedazur.vscf.interfaces.PricingManagement;
+import fr.univcotedazur.vscf.interfaces.SalesReporting;
+import fr.univcotedazur.vscf.interfaces.StockManagement;
 import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,13 +23,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
+import java.time.Duration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -33,6 +44,15 @@ class CashierTest {
     @Autowired
     private Payment cashier;
 
+    @Autowired
+    private SalesReporting salesReporting;
+
+    @Autowired
+    private StockManagement stock;
+
+    @Autowired
+    private PricingManagement pricing;
+
     @MockBean
     private Bank bankMock;
 
@@ -58,22 +78,76 @@ class CashierTest {
         when(bankMock.pay(eq(pat),  anyDouble())).thenReturn(false);
     }
 
+    @AfterEach
+    public void tearDown() {
+        stock.unlimit(Cookies.DARK_TEMPTATION);
+        pricing.replaceRules(List.of());
+    }
+
     @Test
     public void processToPayment() throws Exception {
         // paying order
         Order order = cashier.payOrder(john, items);
         assertNotNull(order);
-        assertEquals(john, order.getCustomer());
+        assertEquals(john.getId(), order.getCustomerId());
         assertEquals(items, order.getItems());
         double price = (3 * Cookies.CHOCOLALALA.getPrice()) + (2 * Cookies.DARK_TEMPTATION.getPrice());
         assertEquals(price, order.getPrice(), 0.0);
         assertEquals(2,order.getItems().size());
     }
 
+    @Test
+    public void paidOrdersFeedAnalytics() throws Exception {
+        long soldBefore = salesReporting.unitsSold(Cookies.CHOCOLALALA, Duration.ofHours(1));
+        cashier.payOrder(john, items);
+        assertEquals(soldBefore + 3, salesReporting.unitsSold(Cookies.CHOCOLALALA, Duration.ofHours(1)));
+        Assertions.assertThrows( PaymentException.class, () -> cashier.payOrder(pat, items));
+        assertEquals(soldBefore + 3, salesReporting.unitsSold(Cookies.CHOCOLALALA, Duration.ofHours(1)));
+    }
+
     @Test
     public void identifyPaymentError() {
         Assertions.assertThrows( PaymentException.class, () -> {
             cashier.payOrder(pat, items);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void stockIsReservedAndReleasedOnRefusal() throws Exception {
+        stock.setLevel(Cookies.DARK_TEMPTATION, 3);
+        Assertions.assertThrows(PaymentException.class, () -> cashier.payOrder(pat, items));
+        assertEquals(3, stock.levels().get(Cookies.DARK_TEMPTATION)); // back on sale
+        cashier.payOrder(john, items);
+        assertEquals(1, stock.levels().get(Cookies.DARK_TEMPTATION));
+        OutOfStockException refused = Assertions.assertThrows(OutOfStockException.class, () -> cashier.payOrder(john, items));
+        assertEquals(Cookies.DARK_TEMPTATION, refused.getCookie());
+        assertEquals(1, refused.getAvailable());
+    }
+
+    // a bank failing gives the stock back; once paid, it goes with the saved order
+    @Test
+    public void stockIsReleasedUntilTheOrderIsSaved() {
+        Inventory inventory = new Inventory("DARK_TEMPTATION=3");
+        OrderRepository orders = new OrderRepository(3);
+        Cashier bankFailing = new Cashier((customer, value) -> { throw new IllegalStateException("bank down"); },
+                order -> order, orders, inventory, (customer, basket) -> 1.0);
+        Assertions.assertThrows(IllegalStateException.class, () -> bankFailing.payOrder(john, items));
+        assertEquals(3, inventory.levels().get(Cookies.DARK_TEMPTATION));
+        assertEquals(0, orders.count());
+        Cashier kitchenFailing = new Cashier((customer, value) -> true,
+                order -> { throw new IllegalStateException("oven on fire"); }, orders, inventory, (customer, basket) -> 1.0);
+        PaidCheckoutException paid = Assertions.assertThrows(PaidCheckoutException.class, () -> kitchenFailing.payOrder(john, items));
+        assertEquals("john", paid.getName());
+        assertEquals(1, orders.count());
+        assertEquals(1, inventory.levels().get(Cookies.DARK_TEMPTATION));
+    }
+
+    @Test
+    public void ordersArePaidWithPromotions() throws Exception {
+        pricing.replaceRules(List.of(PricingRule.multiBuy(Cookies.CHOCOLALALA, 2, 1), PricingRule.customerDiscount("john", Cookies.DARK_TEMPTATION, 50)));
+        Order order = cashier.payOrder(john, items);
+        double price = (2 * Cookies.CHOCOLALALA.getPrice()) + (2 * Cookies.DARK_TEMPTATION.getPrice() * 0.5);
+        assertEquals(price, order.getPrice(), 1e-9);
+        verify(bankMock).pay(john, order.getPrice());
+    }
+}
@@ -2,6 +2,7 @@ package fr.univcotedazur.vscf.components;
 
 import fr.univcotedazur.vscf.entities.Customer;
 import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.vscf.interfaces.CardVault;
 import fr.univcotedazur.vscf.interfaces.CustomerFinder;
 import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
 import fr.univcotedazur.vscf.repositories.CustomerRepository;
@@ -27,6 +28,9 @@ class CustomerRegistryTest {
     @Autowired
     private CustomerFinder finder;
 
+    @Autowired
+    private CardVault cardVault;
+
     private String name = "John";
     private String creditCard = "credit card number";
 
@@ -49,7 +53,19 @@ class CustomerRegistryTest {
         assertEquals(john,returned);
         assertEquals(john,finder.findById(returned.getId()).get());
         assertEquals(name, john.getName());
-        assertEquals(creditCard, john.getCreditCard());
+        assertNotEquals(creditCard, john.getCardToken());
+        assertEquals(Optional.of(creditCard), cardVault.resolve(john.getCardToken()));
+    }
+
+    @Test
+    public void deletedCustomersLeaveNoCard() throws Exception {
+        Customer john = registry.register(name, creditCard);
+        Customer pat = registry.register("Pat", "another card number");
+        customerRepository.deleteById(john.getId());
+        assertEquals(Optional.empty(), cardVault.resolve(john.getCardToken()));
+        assertEquals(Optional.of("another card number"), cardVault.resolve(pat.getCardToken()));
+        customerRepository.deleteAll();
+        assertEquals(Optional.empty(), cardVault.resolve(pat.getCardToken()));
     }
 
     @Test
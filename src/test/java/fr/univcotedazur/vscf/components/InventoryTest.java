@@ -0,0 +1,106 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryTest {
+
+    @Test
+    void recipesAreUnlimitedByDefault() throws Exception {
+        Inventory inventory = new Inventory("");
+        inventory.reserve(Set.of(new Item(Cookies.DARK_TEMPTATION, 1_000_000)));
+        assertTrue(inventory.levels().isEmpty());
+        assertEquals(-1, inventory.restock(Cookies.DARK_TEMPTATION, 10));
+    }
+
+    @Test
+    void configuredLevels() {
+        Inventory inventory = new Inventory("DARK_TEMPTATION=5, CHOCOLALALA=10");
+        assertEquals(Map.of(Cookies.DARK_TEMPTATION, 5L, Cookies.CHOCOLALALA, 10L), inventory.levels());
+        assertThrows(IllegalArgumentException.class, () -> new Inventory("DARK_TEMPTATION"));
+        assertThrows(IllegalArgumentException.class, () -> new Inventory("VANILLA=3"));
+        assertThrows(IllegalArgumentException.class, () -> new Inventory("CHOCOLALALA=-3"));
+    }
+
+    @Test
+    void allItemsOrNone() throws Exception {
+        Inventory inventory = new Inventory("DARK_TEMPTATION=5,CHOCOLALALA=10");
+        Set<Item> basket = Set.of(new Item(Cookies.CHOCOLALALA, 4), new Item(Cookies.SOO_CHOCOLATE, 7), new Item(Cookies.DARK_TEMPTATION, 6));
+        OutOfStockException refused = assertThrows(OutOfStockException.class, () -> inventory.reserve(basket));
+        assertEquals(Cookies.DARK_TEMPTATION, refused.getCookie());
+        assertEquals(6, refused.getRequested());
+        assertEquals(5, refused.getAvailable());
+        assertEquals(Map.of(Cookies.DARK_TEMPTATION, 5L, Cookies.CHOCOLALALA, 10L), inventory.levels());
+
+        Set<Item> smaller = Set.of(new Item(Cookies.CHOCOLALALA, 4), new Item(Cookies.DARK_TEMPTATION, 5));
+        inventory.reserve(smaller);
+        assertEquals(Map.of(Cookies.DARK_TEMPTATION, 0L, Cookies.CHOCOLALALA, 6L), inventory.levels());
+        inventory.release(smaller);
+        assertEquals(Map.of(Cookies.DARK_TEMPTATION, 5L, Cookies.CHOCOLALALA, 10L), inventory.levels());
+        assertEquals(8, inventory.restock(Cookies.DARK_TEMPTATION, 3));
+        inventory.unlimit(Cookies.DARK_TEMPTATION);
+        assertEquals(Map.of(Cookies.CHOCOLALALA, 10L), inventory.levels());
+    }
+
+    // Many more customers than units race for the last cookies, some payments being refused
+    @Test
+    void flashSaleNeverOversells() throws Exception {
+        int threads = 8;
+        Inventory inventory = new Inventory("DARK_TEMPTATION=1000,CHOCOLALALA=500");
+        AtomicLong darkSold = new AtomicLong();
+        AtomicLong chocolalalaSold = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService customers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            done.add(customers.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    Set<Item> basket = new HashSet<>();
+                    basket.add(new Item(Cookies.DARK_TEMPTATION, random.nextInt(1, 4)));
+                    if (random.nextBoolean())
+                        basket.add(new Item(Cookies.CHOCOLALALA, random.nextInt(1, 3)));
+                    try {
+                        inventory.reserve(basket);
+                    } catch (OutOfStockException e) {
+                        continue;
+                    }
+                    if (random.nextInt(10) == 0) { // payment refused
+                        inventory.release(basket);
+                        continue;
+                    }
+                    for (Item item : basket)
+                        (item.getCookie() == Cookies.DARK_TEMPTATION ? darkSold : chocolalalaSold).addAndGet(item.getQuantity());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : done)
+            future.get();
+        customers.shutdown();
+        Map<Cookies, Long> left = inventory.levels();
+        assertTrue(left.get(Cookies.DARK_TEMPTATION) >= 0 && left.get(Cookies.CHOCOLALALA) >= 0, left.toString());
+        assertEquals(1000, darkSold.get() + left.get(Cookies.DARK_TEMPTATION));
+        assertEquals(500, chocolalalaSold.get() + left.get(Cookies.CHOCOLALALA));
+        assertTrue(left.get(Cookies.DARK_TEMPTATION) < 3, "demand exceeded the stock: " + left);
+    }
+
+}
@@ -15,6 +15,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
 class KitchenTest {
@@ -54,4 +56,14 @@ class KitchenTest {
         assertEquals(OrderStatus.IN_PROGRESS, tracker.retrieveStatus(inProgress.getId()));
     }
 
+    @Test
+    void statusTransitionsProduceNewVersions() {
+        Order validated = new Order(john, items);
+        Order inProgress = processor.process(validated);
+        assertEquals(OrderStatus.VALIDATED, validated.getStatus());
+        assertEquals(OrderStatus.IN_PROGRESS, inProgress.getStatus());
+        assertSame(inProgress, orderRepository.findById(validated.getId()).get());
+        assertThrows(UnsupportedOperationException.class, () -> inProgress.getItems().clear());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OvenMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OvenPoolTest {
+
+    private OvenPool ovenPool;
+
+    private final Customer john = new Customer("john", "1234-896983");
+
+    @AfterEach
+    void tearDown() {
+        if (ovenPool != null)
+            ovenPool.shutdown();
+    }
+
+    @Test
+    void noOvenMeansNoBaking() throws Exception {
+        ovenPool = new OvenPool(0, 10);
+        CountDownLatch baked = new CountDownLatch(1);
+        ovenPool.bake(new Order(john, Set.of(new Item(Cookies.CHOCOLALALA, 1))), o -> baked.countDown());
+        assertFalse(baked.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, ovenPool.metrics().getBakedOrders());
+    }
+
+    @Test
+    void everyOrderIsBaked() throws Exception {
+        ovenPool = new OvenPool(4, 1000);
+        CountDownLatch baked = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            ovenPool.bake(new Order(john, Set.of(new Item(Cookies.CHOCOLALALA, 5), new Item(Cookies.SOO_CHOCOLATE, 3))),
+                    o -> baked.countDown());
+        }
+        assertTrue(baked.await(5, TimeUnit.SECONDS));
+        OvenMetrics metrics = ovenPool.metrics();
+        assertEquals(20, metrics.getBakedOrders());
+        assertEquals(40, metrics.getBakedBatches());
+        assertTrue(metrics.getUtilisation() > 0.0);
+    }
+
+    @Test
+    void idleOvensStealBatches() throws Exception {
+        // one batch per cookie, the two CHOCOLALALA items being packed into one batch of 300 ms:
+        // sequential baking would need 700 ms
+        ovenPool = new OvenPool(4, 10);
+        CountDownLatch baked = new CountDownLatch(1);
+        long start = System.nanoTime();
+        ovenPool.bake(new Order(john, Set.of(new Item(Cookies.CHOCOLALALA, 2), new Item(Cookies.SOO_CHOCOLATE, 2),
+                new Item(Cookies.DARK_TEMPTATION, 2), new Item(Cookies.CHOCOLALALA, 1))),
+                o -> baked.countDown());
+        assertTrue(baked.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertEquals(3, ovenPool.metrics().getBakedBatches());
+    }
+
+}
@@ -0,0 +1,99 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.PricingRule;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineTest {
+
+    private final Customer john = new Customer("john", "1234-896983");
+    private final Customer pat = new Customer("pat", "1234-567890");
+
+    private static PricingEngine at(String time) {
+        return new PricingEngine(Clock.fixed(Instant.parse("2024-03-01T" + time + ":00Z"), ZoneOffset.UTC));
+    }
+
+    private static double dark(int quantity) {
+        return quantity * Cookies.DARK_TEMPTATION.getPrice();
+    }
+
+    @Test
+    void catalogPricesWithoutRules() {
+        PricingEngine engine = at("12:00");
+        Set<Item> items = Set.of(new Item(Cookies.CHOCOLALALA, 3), new Item(Cookies.DARK_TEMPTATION, 2));
+        assertEquals(3 * Cookies.CHOCOLALALA.getPrice() + dark(2), engine.price(john, items), 1e-9);
+        assertTrue(engine.rules().isEmpty());
+    }
+
+    @Test
+    void multiBuyDealsAreCombinedAtBest() {
+        PricingEngine engine = at("12:00");
+        engine.replaceRules(List.of(PricingRule.multiBuy(Cookies.DARK_TEMPTATION, 2, 1), PricingRule.multiBuy(Cookies.DARK_TEMPTATION, 3, 2)));
+        assertEquals(dark(2), engine.price(john, Set.of(new Item(Cookies.DARK_TEMPTATION, 2))), 1e-9);
+        assertEquals(dark(2), engine.price(john, Set.of(new Item(Cookies.DARK_TEMPTATION, 3))), 1e-9);
+        assertEquals(dark(5), engine.price(john, Set.of(new Item(Cookies.DARK_TEMPTATION, 8))), 1e-9); // 3 for 2, then 5 for 3
+        assertEquals(dark(600), engine.price(john, Set.of(new Item(Cookies.DARK_TEMPTATION, 1000))), 1e-6); // beyond the table
+        assertEquals(8 * Cookies.CHOCOLALALA.getPrice(), engine.price(john, Set.of(new Item(Cookies.CHOCOLALALA, 8))), 1e-9);
+    }
+
+    @Test
+    void happyHours() {
+        List<PricingRule> rules = List.of(PricingRule.happyHour(null, LocalTime.of(16, 0), LocalTime.of(17, 0), 20),
+                PricingRule.happyHour(Cookies.DARK_TEMPTATION, LocalTime.of(23, 0), LocalTime.of(1, 0), 50));
+        Set<Item> items = Set.of(new Item(Cookies.DARK_TEMPTATION, 2));
+        for (String time : List.of("16:00", "16:59")) {
+            PricingEngine engine = at(time);
+            engine.replaceRules(rules);
+            assertEquals(dark(2) * 0.8, engine.price(john, items), 1e-9, time);
+        }
+        for (String time : List.of("15:59", "17:00", "01:00")) {
+            PricingEngine engine = at(time);
+            engine.replaceRules(rules);
+            assertEquals(dark(2), engine.price(john, items), 1e-9, time);
+        }
+        PricingEngine midnight = at("00:30"); // the window wraps around midnight
+        midnight.replaceRules(rules);
+        assertEquals(dark(2) * 0.5, midnight.price(john, items), 1e-9);
+    }
+
+    @Test
+    void discountsDoNotStack() {
+        PricingEngine engine = at("16:30");
+        engine.replaceRules(List.of(PricingRule.customerDiscount("john", Cookies.DARK_TEMPTATION, 10),
+                PricingRule.customerDiscount("pat", null, 30),
+                PricingRule.happyHour(null, LocalTime.of(16, 0), LocalTime.of(17, 0), 20),
+                PricingRule.multiBuy(Cookies.DARK_TEMPTATION, 2, 1)));
+        Set<Item> items = Set.of(new Item(Cookies.DARK_TEMPTATION, 3));
+        assertEquals(dark(2) * 0.8, engine.price(john, items), 1e-9); // the happy hour beats his discount
+        assertEquals(dark(2) * 0.7, engine.price(pat, items), 1e-9);
+        assertEquals(dark(2) * 0.8, engine.price(new Customer("ann", null), items), 1e-9);
+    }
+
+    @Test
+    void invalidRuleSetsAreRejectedAsAWhole() {
+        PricingEngine engine = at("12:00");
+        List<PricingRule> valid = List.of(PricingRule.customerDiscount("john", null, 10));
+        engine.replaceRules(valid);
+        assertThrows(IllegalArgumentException.class, () -> engine.replaceRules(List.of(PricingRule.customerDiscount("pat", null, 10),
+                PricingRule.multiBuy(Cookies.DARK_TEMPTATION, 0, 1))));
+        assertThrows(IllegalArgumentException.class, () -> engine.replaceRules(List.of(PricingRule.customerDiscount("pat", null, 120))));
+        assertThrows(IllegalArgumentException.class, () -> engine.replaceRules(List.of(new PricingRule())));
+        assertThrows(IllegalArgumentException.class, () -> engine.replaceRules(List.of(PricingRule.customerDiscount("pat", null, Double.NaN))));
+        assertThrows(IllegalArgumentException.class, () -> engine.replaceRules(List.of(
+                PricingRule.happyHour(null, LocalTime.of(16, 0), LocalTime.of(16, 0, 30), 20))));
+        assertEquals(valid, engine.rules());
+        assertEquals(Cookies.CHOCOLALALA.getPrice(), engine.price(pat, Set.of(new Item(Cookies.CHOCOLALALA, 1))), 1e-9);
+    }
+
+}
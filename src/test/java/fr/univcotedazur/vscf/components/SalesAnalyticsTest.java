@@ -0,0 +1,75 @@
+package fr.univcotedazur.vscf.components;
+
+import fr.univcotedazur.vscf.MutableClock;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesAnalyticsTest {
+
+    private MutableClock clock;
+    private SalesAnalytics analytics;
+    private final Customer john = new Customer("john", "1234-896983");
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2022-11-01T10:00:00Z"));
+        analytics = new SalesAnalytics(clock, Duration.ofMinutes(1), 60);
+    }
+
+    private void sell(Item... items) {
+        analytics.record(new Order(john, Set.of(items)));
+    }
+
+    @Test
+    void countsUnitsAndRevenuePerCookie() {
+        sell(new Item(Cookies.CHOCOLALALA, 3), new Item(Cookies.DARK_TEMPTATION, 2));
+        sell(new Item(Cookies.CHOCOLALALA, 1));
+        assertEquals(4, analytics.unitsSold(Cookies.CHOCOLALALA, Duration.ofMinutes(1)));
+        assertEquals(5.20, analytics.revenue(Cookies.CHOCOLALALA, Duration.ofMinutes(1)), 0.001);
+        assertEquals(3.80, analytics.revenue(Cookies.DARK_TEMPTATION, Duration.ofMinutes(1)), 0.001);
+        assertEquals(0, analytics.unitsSold(Cookies.SOO_CHOCOLATE, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void rollingWindows() {
+        sell(new Item(Cookies.CHOCOLALALA, 1));
+        clock.advance(Duration.ofMinutes(10));
+        sell(new Item(Cookies.CHOCOLALALA, 2));
+        assertEquals(2, analytics.unitsSold(Cookies.CHOCOLALALA, Duration.ofMinutes(5)));
+        assertEquals(3, analytics.unitsSold(Cookies.CHOCOLALALA, Duration.ofMinutes(15)));
+        // the first sale is out of the history once the ring has wrapped
+        clock.advance(Duration.ofMinutes(55));
+        assertEquals(2, analytics.unitsSold(Cookies.CHOCOLALALA, Duration.ofHours(2)));
+        sell(new Item(Cookies.CHOCOLALALA, 5));
+        assertEquals(7, analytics.unitsSold(Cookies.CHOCOLALALA, Duration.ofHours(1)));
+    }
+
+    @Test
+    void timelinePerStep() {
+        sell(new Item(Cookies.SOO_CHOCOLATE, 4));
+        clock.advance(Duration.ofMinutes(20));
+        sell(new Item(Cookies.SOO_CHOCOLATE, 8));
+        double[] timeline = analytics.revenueTimeline(Cookies.SOO_CHOCOLATE, Duration.ofMinutes(30), Duration.ofMinutes(10));
+        assertArrayEquals(new double[] {5.0, 0.0, 10.0}, timeline, 0.001);
+    }
+
+    @Test
+    void topSellersByRevenue() {
+        sell(new Item(Cookies.CHOCOLALALA, 10), new Item(Cookies.DARK_TEMPTATION, 1));
+        sell(new Item(Cookies.DARK_TEMPTATION, 10));
+        assertEquals(List.of(Cookies.DARK_TEMPTATION, Cookies.CHOCOLALALA), analytics.topSellers(5, Duration.ofHours(1)));
+        assertEquals(List.of(Cookies.DARK_TEMPTATION), analytics.topSellers(1, Duration.ofHours(1)));
+    }
+
+}
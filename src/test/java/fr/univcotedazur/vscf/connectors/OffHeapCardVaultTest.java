@@ -0,0 +1,99 @@
+package fr.univcotedazur.vscf.connectors;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCardVaultTest {
+
+    @Test
+    void tokensResolveToTheirCards() {
+        OffHeapCardVault vault = new OffHeapCardVault();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) // several off-heap chunks
+            tokens.add(vault.tokenize("4970-1000-0000-" + i));
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < tokens.size(); i++)
+                assertEquals(Optional.of("4970-1000-0000-" + i), vault.resolve(tokens.get(i)));
+        }
+        assertFalse(tokens.get(0).contains("4970"));
+    }
+
+    @Test
+    void forgottenCardsAreWipedAndTheirSlotsReused() {
+        OffHeapCardVault vault = new OffHeapCardVault();
+        String john = vault.tokenize("1234-896983");
+        String pat = vault.tokenize("4970-100000");
+        vault.forget(john);
+        vault.forget(john);
+        vault.forget(null);
+        vault.forget("tok_AAAAAQAAAAAAAAAA");
+        assertEquals(Optional.empty(), vault.resolve(john));
+        String tom = vault.tokenize("5555-444444");
+        assertEquals(slot(john), slot(tom));
+        assertNotEquals(john, tom);
+        assertEquals(Optional.empty(), vault.resolve(john));
+        vault.forget(john);
+        assertEquals(Optional.of("5555-444444"), vault.resolve(tom));
+        assertEquals(Optional.of("4970-100000"), vault.resolve(pat));
+    }
+
+    private static int slot(String token) {
+        return ByteBuffer.wrap(Base64.getUrlDecoder().decode(token.substring("tok_".length()))).getInt();
+    }
+
+    // a reader never gets the card of the next holder of a slot
+    @Test
+    void tokensNeverResolveToAnotherCard() throws InterruptedException {
+        OffHeapCardVault vault = new OffHeapCardVault();
+        AtomicReference<String> current = new AtomicReference<>(vault.tokenize("card-0"));
+        Map<String, String> cards = new ConcurrentHashMap<>();
+        cards.put(current.get(), "card-0");
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger mismatches = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                String token = current.get();
+                vault.resolve(token).ifPresent(card -> {
+                    if (!card.equals(cards.get(token)))
+                        mismatches.incrementAndGet();
+                });
+            }
+        });
+        reader.start();
+        for (int i = 1; i < 200_000; i++) {
+            String card = "card-" + i;
+            vault.forget(current.get());
+            String token = vault.tokenize(card);
+            cards.put(token, card);
+            current.set(token);
+        }
+        done.set(true);
+        reader.join();
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    void forgedTokensAreRejected() {
+        OffHeapCardVault vault = new OffHeapCardVault();
+        String token = vault.tokenize("1234-896983");
+        assertEquals(Optional.empty(), vault.resolve(null));
+        assertEquals(Optional.empty(), vault.resolve("1234-896983"));
+        assertEquals(Optional.empty(), vault.resolve(token.substring(0, token.length() - 1) + (token.endsWith("A") ? "B" : "A")));
+        assertEquals(Optional.empty(), vault.resolve("tok_AAAAAQAAAAAAAAAA")); // allocated slot, no card
+        assertEquals(Optional.of("1234-896983"), vault.resolve(token));
+        assertThrows(IllegalArgumentException.class, () -> vault.tokenize("1".repeat(100)));
+    }
+
+}
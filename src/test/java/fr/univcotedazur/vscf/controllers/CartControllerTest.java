@@ -0,0 +1,108 @@
+package fr.univcotedazur.vscf.controllers;
+
+import fr.univcotedazur.vscf.controllers.dto.RegistrationDTO;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+class CartControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private String johnId;
+
+    @BeforeEach
+    void setUp() {
+        customerRepository.deleteAll();
+        orderRepository.deleteAll();
+        johnId = client.post().uri("/customers").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RegistrationDTO("john", "1234-896983"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Map.class)
+                .returnResult().getResponseBody().get("id").toString();
+    }
+
+    private WebTestClient.ResponseSpec order(int quantity, String cookie) {
+        return client.post().uri("/customers/{id}/cart", johnId).contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("cookie", cookie, "quantity", quantity))
+                .exchange();
+    }
+
+    @Test
+    void registeredCustomerWithoutCreditCard() {
+        client.get().uri("/customers/{id}", johnId).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("john")
+                .jsonPath("$.creditCard").doesNotExist();
+    }
+
+    @Test
+    void registeringTwiceIsAConflict() {
+        client.post().uri("/customers").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RegistrationDTO("john", "1234-896983"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void fillAndValidateCart() {
+        order(5, "CHOCOLALALA").expectStatus().isOk().expectBody(Integer.class).isEqualTo(5);
+        order(3, "DARK_TEMPTATION").expectStatus().isOk();
+        client.get().uri("/customers/{id}/cart", johnId).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(2);
+        client.get().uri("/customers/{id}/cart/price", johnId).exchange()
+                .expectBody(Double.class).isEqualTo(12.2);
+        String orderId = client.post().uri("/customers/{id}/cart/validate", johnId).exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class)
+                .returnResult().getResponseBody().get("id").toString();
+        client.get().uri("/orders/{id}/status", orderId).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("\"IN_PROGRESS\"");
+    }
+
+    @Test
+    void businessErrors() {
+        order(-1, "CHOCOLALALA").expectStatus().isBadRequest();
+        order(1, "UNKNOWN_COOKIE").expectStatus().isBadRequest();
+        client.post().uri("/customers/{id}/cart/validate", johnId).exchange()
+                .expectStatus().isBadRequest();
+        client.get().uri("/customers/{id}/cart", "00000000-0000-7000-8000-000000000000").exchange()
+                .expectStatus().isNotFound();
+        client.get().uri("/orders/{id}/status", "00000000-0000-7000-8000-000000000000").exchange()
+                .expectStatus().isNotFound();
+        client.get().uri("/orders?status=READY&size=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void browseCatalog() {
+        client.get().uri("/catalog").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(3);
+        client.get().uri("/catalog?pattern=.*CHOCO.*").exchange()
+                .expectBody().jsonPath("$.length()").isEqualTo(2);
+    }
+
+}
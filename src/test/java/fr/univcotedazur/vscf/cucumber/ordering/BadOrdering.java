@@ -3,6 +3,7 @@ package fr.univcotedazur.vscf.cucumber.ordering;
 import fr.univcotedazur.vscf.entities.Customer;
 import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
 import fr.univcotedazur.vscf.exceptions.PaymentException;
 import fr.univcotedazur.vscf.interfaces.CartProcessor;
 import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
@@ -46,7 +47,7 @@ public class BadOrdering {
         } catch (EmptyCartException e) {
             validationRefused = true;
             return;
-        } catch (PaymentException e) {
+        } catch (PaymentException | OutOfStockException e) {
         }
         validationRefused = false;
     }
@@ -4,6 +4,7 @@ import fr.univcotedazur.vscf.entities.*;
 import fr.univcotedazur.vscf.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.vscf.exceptions.EmptyCartException;
 import fr.univcotedazur.vscf.exceptions.NegativeQuantityException;
+import fr.univcotedazur.vscf.exceptions.OutOfStockException;
 import fr.univcotedazur.vscf.exceptions.PaymentException;
 import fr.univcotedazur.vscf.interfaces.*;
 import fr.univcotedazur.vscf.repositories.CustomerRepository;
@@ -101,7 +102,7 @@ public class OrderingCookies {
     }
 
     @And("{string} validates the cart and pays through the bank")
-    public void validatesTheCart(String customerName) throws EmptyCartException, PaymentException {
+    public void validatesTheCart(String customerName) throws EmptyCartException, PaymentException, OutOfStockException {
         customer = customerFinder.findByName(customerName).get();
         order = cartProcessor.validate(customer);
     }
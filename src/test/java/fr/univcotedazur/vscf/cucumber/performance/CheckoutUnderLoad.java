@@ -0,0 +1,217 @@
+package fr.univcotedazur.vscf.cucumber.performance;
+
+import fr.univcotedazur.vscf.benchmarks.Latencies;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Steps running many customers at once against the Spring context: each thread takes its share
+ * of the customers, and every call is timed on its own (registration, cart update, checkout,
+ * tracking), so that the scenarios can assert percentiles and throughputs. A failed call is
+ * counted apart, without any latency.
+ */
+public class CheckoutUnderLoad {
+
+    private static final String REGISTRATION = "registration";
+    private static final String CART_UPDATE = "cart update";
+    private static final String CHECKOUT = "checkout";
+    private static final String TRACKING = "tracking";
+    // registrations of the first and of the last tenth of the customers
+    private static final String FIRST_REGISTRATIONS = "first registrations";
+    private static final String LAST_REGISTRATIONS = "last registrations";
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerRegistration customerRegistration;
+
+    @Autowired
+    private CartModifier cartModifier;
+
+    @Autowired
+    private CartProcessor cartProcessor;
+
+    @Autowired
+    private Tracker tracker;
+
+    private final Latencies latencies = new Latencies();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final Map<String, Double> elapsedSeconds = new ConcurrentHashMap<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Order[] orders = new Order[0];
+
+    @Before
+    public void settingUpContext() {
+        customerRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @After
+    public void reporting() {
+        double longest = elapsedSeconds.values().stream().mapToDouble(Double::doubleValue).max().orElse(1);
+        System.out.printf("%d thread(s), %.2f s%n", threads, longest);
+        latencies.print(longest);
+        failures.forEach((failure, count) -> System.out.printf("failed %s: %d%n", failure, count.sum()));
+    }
+
+    @Given("the load runs on {int} threads")
+    public void theLoadRunsOnThreads(int howMany) {
+        threads = howMany;
+    }
+
+    @Given("the factory is warmed up with {int} checkouts")
+    public void theFactoryIsWarmedUp(int checkouts) throws Exception {
+        customersOrderingConcurrently(checkouts, 3);
+        settingUpContext();
+        latencies.reset();
+        failures.clear();
+        elapsedSeconds.clear();
+    }
+
+    @Given("{int} customers each ordering {int} cookies concurrently")
+    public void customersOrderingConcurrently(int customers, int cookies) throws Exception {
+        Cookies[] recipes = Cookies.values();
+        orders = new Order[customers];
+        double seconds = concurrently(customers, i -> {
+            long begin = System.nanoTime();
+            Customer customer = timed(REGISTRATION, () -> customerRegistration.register("load-" + i, "1234-896983"));
+            if (i < customers / 10)
+                latencies.record(FIRST_REGISTRATIONS, System.nanoTime() - begin);
+            else if (i >= customers - customers / 10)
+                latencies.record(LAST_REGISTRATIONS, System.nanoTime() - begin);
+            if (customer == null)
+                return;
+            for (int c = 0; c < cookies; c++) {
+                Item item = new Item(recipes[(i + c) % recipes.length], 1);
+                timed(CART_UPDATE, () -> cartModifier.update(customer, item));
+            }
+            orders[i] = timed(CHECKOUT, () -> cartProcessor.validate(customer));
+        });
+        elapsedSeconds.put(REGISTRATION, seconds);
+        elapsedSeconds.put(CART_UPDATE, seconds);
+        elapsedSeconds.put(CHECKOUT, seconds);
+    }
+
+    @When("they each track their order {int} times concurrently")
+    public void theyEachTrackTheirOrder(int times) throws Exception {
+        Order[] tracked = orders;
+        double seconds = concurrently(tracked.length, i -> {
+            if (tracked[i] == null)
+                return;
+            for (int t = 0; t < times; t++)
+                timed(TRACKING, () -> tracker.retrieveStatus(tracked[i].getId()));
+        });
+        elapsedSeconds.put(TRACKING, seconds);
+    }
+
+    @Then("every checkout succeeded")
+    public void everyCheckoutSucceeded() {
+        assertTrue(failures.isEmpty(), () -> "Failed calls: " + failures);
+        assertEquals(orders.length, latencies.count(CHECKOUT));
+    }
+
+    @Then("every tracking succeeded")
+    public void everyTrackingSucceeded() {
+        assertTrue(failures.isEmpty(), () -> "Failed calls: " + failures);
+    }
+
+    @Then("^p(\\d+(?:\\.\\d+)?) (registration|cart update|checkout|tracking) latency is below (\\d+(?:\\.\\d+)?) (ms|us)$")
+    public void latencyIsBelow(double percentile, String operation, double bound, String unit) {
+        double boundNanos = bound * (unit.equals("ms") ? 1e6 : 1e3);
+        long measured = latencies.percentile(operation, percentile);
+        assertTrue(latencies.count(operation) > 0, () -> "No " + operation + " measured");
+        assertTrue(measured < boundNanos, () -> String.format("p%s %s latency is %.1f us, above %s %s",
+                percentile, operation, measured / 1e3, bound, unit));
+    }
+
+    @Then("^(registration|cart update|checkout|tracking) throughput is above (\\d+) calls per second$")
+    public void throughputIsAbove(String operation, long bound) {
+        double throughput = latencies.count(operation) / elapsedSeconds.getOrDefault(operation, Double.MAX_VALUE);
+        assertTrue(throughput > bound, () -> String.format("%s throughput is %.1f calls/s, below %d",
+                operation, throughput, bound));
+    }
+
+    // Relative, hence independent of the machine: a registration scanning the customers would
+    // take many times longer at the end of the rush than at its beginning
+    @Then("registration latency does not grow with the number of customers")
+    public void registrationLatencyDoesNotGrow() {
+        long first = latencies.percentile(FIRST_REGISTRATIONS, 50);
+        long last = latencies.percentile(LAST_REGISTRATIONS, 50);
+        assertTrue(latencies.count(FIRST_REGISTRATIONS) > 0 && latencies.count(LAST_REGISTRATIONS) > 0,
+                "No registration measured");
+        assertTrue(last < 4 * first, () -> String.format("median registration latency grew from %.1f us to %.1f us",
+                first / 1e3, last / 1e3));
+    }
+
+    // Runs work(0) to work(count - 1), the indices being shared out between the threads,
+    // and returns the elapsed time in seconds from the moment they all start
+    private double concurrently(int count, IntConsumer work) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            done.add(pool.submit(() -> {
+                start.await();
+                for (int i = first; i < count; i += threads)
+                    work.accept(i);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            for (Future<?> future : done)
+                future.get();
+        } finally {
+            pool.shutdown();
+        }
+        return (System.nanoTime() - begin) / 1e9;
+    }
+
+    private <T> T timed(String operation, Callable<T> call) {
+        long begin = System.nanoTime();
+        try {
+            T result = call.call();
+            latencies.record(operation, System.nanoTime() - begin);
+            return result;
+        } catch (Exception e) {
+            failures.computeIfAbsent(operation + " (" + e.getClass().getSimpleName() + ")", f -> new LongAdder()).increment();
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package fr.univcotedazur.vscf.cucumber.performance;
+
+import io.cucumber.spring.CucumberContextConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// The real components, bank included, without the logging aspect whose console output would be measured
+@CucumberContextConfiguration
+@SpringBootTest(properties = "vscf.aspects.logging=false")
+public class PerformanceCucumberConfig {
+}
@@ -0,0 +1,20 @@
+package fr.univcotedazur.vscf.cucumber.performance;
+
+import org.junit.platform.suite.api.ConfigurationParameter;
+import org.junit.platform.suite.api.IncludeEngines;
+import org.junit.platform.suite.api.IncludeTags;
+import org.junit.platform.suite.api.SelectClasspathResource;
+import org.junit.platform.suite.api.Suite;
+
+import static io.cucumber.junit.platform.engine.Constants.GLUE_PROPERTY_NAME;
+import static io.cucumber.junit.platform.engine.Constants.PLUGIN_PROPERTY_NAME;
+
+// Scenarios tagged @performance, excluded from the default build: run them with mvn test -Pperformance
+@Suite(failIfNoTests = false)
+@IncludeEngines("cucumber")
+@IncludeTags("performance")
+@SelectClasspathResource("features/performance")
+@ConfigurationParameter(key = PLUGIN_PROPERTY_NAME, value = "pretty")
+@ConfigurationParameter(key = GLUE_PROPERTY_NAME, value = "fr.univcotedazur.vscf.cucumber.performance")
+public class PerformanceCucumberRunnerTest {
+}
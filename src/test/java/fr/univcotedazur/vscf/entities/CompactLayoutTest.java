@@ -0,0 +1,53 @@
+package fr.univcotedazur.vscf.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactLayoutTest {
+
+    private final Customer john = new Customer("John", "tok_john");
+
+    @Test
+    void idsKeptAsLongsKeepTheirUuidIdentity() {
+        Customer same = new Customer(john.getId(), "Johnny", "tok_other");
+        assertEquals(john, same);
+        assertEquals(john.getId().hashCode(), john.hashCode());
+        Order order = new Order(john, Set.of(new Item(Cookies.CHOCOLALALA, 1)));
+        assertEquals(order.getId().hashCode(), order.hashCode());
+        assertEquals(order, order.withStatus(OrderStatus.READY));
+        assertEquals(john.getId(), order.getCustomerId());
+        assertTrue(order.belongsTo(same));
+        assertFalse(order.belongsTo(new Customer("Pat", "tok_pat")));
+    }
+
+    @Test
+    void packedItemsBehaveAsASet() {
+        Set<Item> items = new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA, 3), new Item(Cookies.SOO_CHOCOLATE, 2)));
+        PackedItems packed = new Order(john, items).getItems();
+        assertEquals(items, packed);
+        assertEquals(packed, items);
+        assertEquals(items.hashCode(), packed.hashCode());
+        assertEquals(2, packed.size());
+        assertTrue(packed.contains(new Item(Cookies.SOO_CHOCOLATE, 2)));
+        assertFalse(packed.contains(new Item(Cookies.SOO_CHOCOLATE, 1)));
+        assertFalse(packed.contains(new Item(Cookies.DARK_TEMPTATION, 0)));
+        assertEquals(0, packed.quantity(Cookies.DARK_TEMPTATION));
+        assertThrows(UnsupportedOperationException.class, () -> packed.add(new Item(Cookies.DARK_TEMPTATION, 1)));
+        items.clear(); // the order does not keep the given set
+        assertEquals(2, packed.size());
+    }
+
+    @Test
+    void recurringValuesAreShared() {
+        Customer other = new Customer(new String("John"), "tok_other");
+        assertSame(john.getName(), other.getName());
+        int[] basket = PackedItems.pack(Set.of(new Item(Cookies.DARK_TEMPTATION, 4)));
+        assertSame(basket, PackedItems.pack(Set.of(new Item(Cookies.DARK_TEMPTATION, 4))));
+    }
+
+}
@@ -0,0 +1,58 @@
+package fr.univcotedazur.vscf.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    @Test
+    void versionSevenLayout() {
+        long before = System.currentTimeMillis();
+        UUID id = IdGenerator.next();
+        long after = System.currentTimeMillis();
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertTrue(IdGenerator.timestamp(id) >= before && IdGenerator.timestamp(id) <= after);
+    }
+
+    @Test
+    void uniqueAndTimeOrdered() throws InterruptedException {
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++)
+            assertTrue(ids.add(IdGenerator.next()));
+        UUID earlier = IdGenerator.next();
+        Thread.sleep(2);
+        assertTrue(IdGenerator.next().compareTo(earlier) > 0);
+    }
+
+    @Test
+    void taggedIds() {
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = IdGenerator.next(0xABC);
+            assertEquals(0xABC, IdGenerator.tag(id));
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+            assertTrue(ids.add(id));
+        }
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.next(IdGenerator.MAX_TAG + 1));
+    }
+
+    @Test
+    void entityEqualityIsIdBased() {
+        Customer john = new Customer("john", "1234");
+        Order order = new Order(john, new HashSet<>(Set.of(new Item(Cookies.CHOCOLALALA, 1))));
+        int hash = order.hashCode();
+        assertEquals(hash, order.withStatus(OrderStatus.READY).hashCode());
+        assertEquals(order, order.withStatus(OrderStatus.READY));
+        john.setCardToken("5678");
+        assertEquals(john, john);
+        assertNotEquals(john, new Customer("john", "5678"));
+    }
+
+}
@@ -0,0 +1,93 @@
+package fr.univcotedazur.vscf.jfr;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.exceptions.EmptyCartException;
+import fr.univcotedazur.vscf.interfaces.CartModifier;
+import fr.univcotedazur.vscf.interfaces.CartProcessor;
+import fr.univcotedazur.vscf.interfaces.CatalogExplorator;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.tools.FlightRecordingSummary;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ComponentEventsTest {
+
+    private static final Path RECORDING = Path.of("target/component-events-test.jfr");
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerRegistration customerRegistration;
+
+    @Autowired
+    private CartModifier cartModifier;
+
+    @Autowired
+    private CartProcessor cartProcessor;
+
+    @Autowired
+    private CatalogExplorator catalogExplorator;
+
+    private Customer john;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        customerRepository.deleteAll();
+        john = customerRegistration.register("John", "1234-896983");
+    }
+
+    @Test
+    void operationsAreRecordedWithTheirIdsAndOutcome() throws Exception {
+        Order order;
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationSample");
+            recording.start();
+            assertThrows(EmptyCartException.class, () -> cartProcessor.validate(john));
+            cartModifier.update(john, new Item(Cookies.CHOCOLALALA, 2));
+            cartModifier.update(john, new Item(Cookies.DARK_TEMPTATION, 3));
+            order = cartProcessor.validate(john);
+            catalogExplorator.exploreCatalogue(".*CHOCO.*");
+            recording.stop();
+            recording.dump(RECORDING);
+        }
+
+        List<RecordedEvent> checkouts = RecordingFile.readAllEvents(RECORDING).stream()
+                .filter(event -> event.getEventType().getName().equals("fr.univcotedazur.vscf.Checkout")).toList();
+        assertEquals(2, checkouts.size());
+        assertEquals("EmptyCartException", checkouts.get(0).getString("outcome"));
+        RecordedEvent paid = checkouts.get(1);
+        assertEquals(ComponentEvent.RETURNED, paid.getString("outcome"));
+        assertEquals(john.getId().toString(), paid.getString("customerId"));
+        assertEquals(order.getId().toString(), paid.getString("orderId"));
+        assertEquals(2, paid.getInt("cartSize"));
+
+        Map<String, FlightRecordingSummary.Operation> operations = FlightRecordingSummary.read(RECORDING).operations();
+        assertEquals(2, operations.get("Checkout").count());
+        assertEquals(2, operations.get("Cart Update").count());
+        assertEquals(1, operations.get("Payment").count());
+        assertEquals(1, operations.get("Bank Call").count());
+        assertEquals(1, operations.get("Kitchen Transition").count());
+        assertEquals(Map.of(ComponentEvent.RETURNED, 1L), operations.get("Catalog Search").getOutcomes());
+        assertTrue(operations.get("Checkout").percentile(100) >= operations.get("Payment").percentile(100));
+    }
+
+}
@@ -0,0 +1,126 @@
+package fr.univcotedazur.vscf.pos;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.interfaces.CustomerRegistration;
+import fr.univcotedazur.vscf.interfaces.Tracker;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "vscf.pos.port=0")
+class PosServerTest {
+
+    @Autowired
+    private PosServer posServer;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerRegistration registry;
+
+    @Autowired
+    private Tracker tracker;
+
+    private Customer john;
+    private PosClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        customerRepository.deleteAll();
+        john = registry.register("john", "1234-896983");
+        client = new PosClient("localhost", posServer.getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+    }
+
+    @Test
+    void pipelinedUpdatesThenValidation() throws Exception {
+        for (int i = 0; i < 100; i++)
+            client.update(john.getId(), Cookies.CHOCOLALALA, 1);
+        client.update(john.getId(), Cookies.DARK_TEMPTATION, 2);
+        client.contents(john.getId());
+        client.validate(john.getId());
+        client.flush();
+        for (int i = 1; i <= 100; i++)
+            assertEquals(i, client.read().getQuantity());
+        assertEquals(2, client.read().getQuantity());
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA, 100), new Item(Cookies.DARK_TEMPTATION, 2)), client.read().getItems());
+        PosResponse validated = client.read();
+        assertTrue(validated.isOk());
+        assertEquals(133.8, validated.getPrice(), 0.001);
+        assertEquals(OrderStatus.IN_PROGRESS, tracker.retrieveStatus(validated.getOrderId()));
+    }
+
+    @Test
+    void errorsAreReportedInOrder() throws Exception {
+        client.update(john.getId(), Cookies.CHOCOLALALA, -1);
+        client.validate(john.getId());
+        client.update(UUID.randomUUID(), Cookies.CHOCOLALALA, 1);
+        client.update(john.getId(), Cookies.SOO_CHOCOLATE, 1);
+        client.flush();
+        assertEquals(PosProtocol.NEGATIVE_QUANTITY, client.read().getStatus());
+        assertEquals(PosProtocol.EMPTY_CART, client.read().getStatus());
+        assertEquals(PosProtocol.UNKNOWN_CUSTOMER, client.read().getStatus());
+        assertEquals(1, client.read().getQuantity());
+    }
+
+    // a terminal waiting for a slow call does not hold the others, each getting its responses
+    // in order, even beyond the frames a connection may have waiting
+    @Test
+    void slowCallsOnlyHoldTheirConnection() throws Exception {
+        UUID slowCustomer = UUID.randomUUID();
+        CountDownLatch bank = new CountDownLatch(1);
+        PosServer server = new PosServer(null, null, null, "localhost", 0, 4, "Test") {
+            @Override
+            protected ByteBuffer handle(ByteBuffer frame) {
+                frame.get();
+                UUID id = new UUID(frame.getLong(), frame.getLong());
+                frame.get();
+                int quantity = frame.getInt();
+                if (id.equals(slowCustomer)) {
+                    try {
+                        bank.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return ByteBuffer.allocate(5).put(PosProtocol.OK).putInt(quantity).flip();
+            }
+        };
+        server.start();
+        try (PosClient slow = new PosClient("localhost", server.getPort());
+             PosClient fast = new PosClient("localhost", server.getPort())) {
+            slow.update(slowCustomer, Cookies.CHOCOLALALA, 1);
+            slow.update(john.getId(), Cookies.CHOCOLALALA, 2);
+            slow.flush();
+            for (int i = 0; i < 5_000; i++)
+                fast.update(john.getId(), Cookies.CHOCOLALALA, i);
+            fast.flush();
+            for (int i = 0; i < 5_000; i++)
+                assertEquals(i, fast.read().getQuantity());
+            bank.countDown();
+            assertEquals(1, slow.read().getQuantity());
+            assertEquals(2, slow.read().getQuantity());
+        } finally {
+            server.stop();
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package fr.univcotedazur.vscf.replication;
+
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import fr.univcotedazur.vscf.repositories.CustomerRepository;
+import fr.univcotedazur.vscf.repositories.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    // Several nodes in this JVM, each with its own repositories, talking over localhost
+    private static final class Node {
+        final CustomerRepository customers = new CustomerRepository(Duration.ZERO);
+        final OrderRepository orders = new OrderRepository(100);
+        final ReplicationNode replication;
+
+        Node(int port, String role, String peers, int backlog) throws IOException {
+            replication = new ReplicationNode(customers, orders, port, role, peers, 64, backlog,
+                    Duration.ofMillis(20), Duration.ofMillis(300));
+            replication.start();
+        }
+    }
+
+    private Node node(int port, String role, String peers) throws IOException {
+        return node(port, role, peers, 1024);
+    }
+
+    private Node node(int port, String role, String peers, int backlog) throws IOException {
+        Node node = new Node(port, role, peers, backlog);
+        nodes.add(node);
+        return node;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Node node : nodes)
+            node.replication.stop();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "replication did not converge");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Order checkout(Node node, Customer customer) {
+        Order order = new Order(customer, Set.of(new Item(Cookies.CHOCOLALALA, 3)));
+        node.orders.save(order, order.getId());
+        return order;
+    }
+
+    @Test
+    void followersReplicateTheMutationsAndServeReads() throws Exception {
+        int leaderPort = freePort();
+        Node leader = node(leaderPort, "leader", "");
+        Customer early = new Customer("early", "tok_early");
+        leader.customers.save(early, early.getId());
+        Node follower = node(freePort(), "follower", "localhost:" + leaderPort);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Customer customer = new Customer("customer" + i, "tok_" + i);
+            leader.customers.save(customer, customer.getId());
+            orders.add(checkout(leader, customer));
+        }
+        leader.orders.update(orders.get(0).getId(), o -> o.withStatus(OrderStatus.READY));
+        leader.orders.deleteById(orders.get(1).getId());
+        leader.customers.deleteById(early.getId());
+        // the last mutation applied, then the follower catching up with the sequence of the leader
+        await(() -> !follower.customers.existsById(early.getId()));
+        await(() -> follower.replication.status().getSequence() == leader.replication.status().getSequence());
+        assertEquals(1000, follower.customers.count());
+        assertEquals(999, follower.orders.count());
+        Order replicated = follower.orders.findById(orders.get(0).getId()).get();
+        assertEquals(OrderStatus.READY, replicated.getStatus());
+        assertEquals(orders.get(0).getCustomerId(), replicated.getCustomerId());
+        assertEquals("tok_0", follower.customers.findById(replicated.getCustomerId()).get().getCardToken());
+        assertEquals(orders.get(0).getItems(), replicated.getItems());
+        assertEquals(Optional.empty(), follower.orders.findById(orders.get(1).getId()));
+        assertEquals(1, leader.replication.status().getFollowers());
+        assertTrue(leader.replication.status().getCompressionRatio() > 1);
+        assertEquals(0, follower.replication.status().getPendingMutations());
+        assertTrue(follower.replication.status().getLagMillis() >= 0);
+        assertFalse(follower.replication.isLeader());
+    }
+
+    @Test
+    void failoverToAPromotedFollower() throws Exception {
+        int leaderPort = freePort();
+        int firstPort = freePort();
+        int secondPort = freePort();
+        String peers = "localhost:" + leaderPort + ",localhost:" + firstPort + ",localhost:" + secondPort;
+        Node leader = node(leaderPort, "leader", peers);
+        Node first = node(firstPort, "follower", peers);
+        Node second = node(secondPort, "follower", peers);
+        Customer john = new Customer("john", "tok_john");
+        leader.customers.save(john, john.getId());
+        Order before = checkout(leader, john);
+        await(() -> first.orders.existsById(before.getId()) && second.orders.existsById(before.getId()));
+
+        leader.replication.stop(); // the leader crashes
+        await(() -> !first.replication.status().isConnected());
+        first.replication.promote();
+        assertTrue(first.replication.isLeader());
+        assertEquals(firstPort, first.replication.getPort());
+
+        Order after = checkout(first, john);
+        first.orders.update(before.getId(), o -> o.withStatus(OrderStatus.READY));
+        await(() -> second.orders.existsById(after.getId())
+                && second.orders.findById(before.getId()).get().getStatus() == OrderStatus.READY);
+        assertEquals(Optional.of(john), second.customers.findById(john.getId()));
+        assertEquals(1, first.replication.status().getFollowers());
+    }
+
+    // a backlog of a single batch: bursts overflow it, dropping the follower that resynchronizes
+    @Test
+    void followersDroppedByAnOverflowingLeaderResynchronize() throws Exception {
+        int leaderPort = freePort();
+        Node leader = node(leaderPort, "leader", "", 1);
+        Node follower = node(freePort(), "follower", "localhost:" + leaderPort);
+        await(() -> leader.replication.status().getFollowers() == 1);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    Customer customer = new Customer("customer" + writer + "-" + i, "tok");
+                    leader.customers.save(customer, customer.getId());
+                }
+            });
+            thread.start();
+            writers.add(thread);
+        }
+        for (Thread writer : writers)
+            writer.join();
+        Customer last = new Customer("last", "tok_last");
+        leader.customers.save(last, last.getId());
+        await(() -> follower.customers.existsById(last.getId()));
+        await(() -> follower.customers.count() == leader.customers.count());
+        assertEquals(20_001, follower.customers.count());
+        await(() -> leader.replication.status().getFollowers() == 1);
+    }
+
+}
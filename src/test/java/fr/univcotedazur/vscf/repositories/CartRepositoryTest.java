@@ -0,0 +1,159 @@
+package fr.univcotedazur.vscf.repositories;
+
+import fr.univcotedazur.vscf.entities.CartStoreMetrics;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartRepositoryTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    CartRepository cartRepository;
+
+    @BeforeEach
+    void setup() {
+        // room for two carts in memory
+        cartRepository = new CartRepository(DataSize.ofBytes(2 * CartRepository.CART_FOOTPRINT), spillDirectory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartRepository.close();
+    }
+
+    private static Set<Item> cart(int quantity) {
+        return Set.of(new Item(Cookies.CHOCOLALALA, quantity), new Item(Cookies.SOO_CHOCOLATE, 1));
+    }
+
+    @Test
+    void leastRecentlyUsedCartsAreSpilledAndRestored() {
+        UUID john = UUID.randomUUID();
+        UUID pat = UUID.randomUUID();
+        UUID tom = UUID.randomUUID();
+        cartRepository.save(cart(1), john);
+        cartRepository.save(cart(2), pat);
+        cartRepository.findById(john);
+        cartRepository.save(cart(3), tom); // pat is the idle one
+        CartStoreMetrics metrics = cartRepository.metrics();
+        assertEquals(2, metrics.getResidentCarts());
+        assertEquals(1, metrics.getSpilledCarts());
+        assertEquals(1, metrics.getEvictions());
+        assertEquals(3, cartRepository.count());
+        assertEquals(Optional.of(cart(2)), cartRepository.findById(pat));
+        metrics = cartRepository.metrics();
+        assertEquals(1, metrics.getRestores());
+        assertEquals(2, metrics.getEvictions());
+        assertEquals(Optional.of(cart(1)), cartRepository.findById(john));
+        assertEquals(Optional.of(cart(3)), cartRepository.findById(tom));
+    }
+
+    @Test
+    void savingASpilledCartReplacesIt() {
+        UUID john = UUID.randomUUID();
+        cartRepository.save(cart(1), john);
+        cartRepository.save(cart(2), UUID.randomUUID());
+        cartRepository.save(cart(3), UUID.randomUUID());
+        assertEquals(1, cartRepository.metrics().getSpilledCarts());
+        cartRepository.save(cart(4), john);
+        assertEquals(3, cartRepository.count());
+        assertEquals(Optional.of(cart(4)), cartRepository.findById(john));
+        assertEquals(0, cartRepository.metrics().getRestores());
+    }
+
+    @Test
+    void emptyAndDeletedCartsAreGone() {
+        UUID john = UUID.randomUUID();
+        UUID pat = UUID.randomUUID();
+        cartRepository.save(cart(1), john);
+        cartRepository.save(cart(2), pat);
+        cartRepository.save(cart(3), UUID.randomUUID());
+        cartRepository.deleteById(john); // spilled
+        cartRepository.save(Set.of(), pat);
+        assertEquals(1, cartRepository.count());
+        assertFalse(cartRepository.existsById(john));
+        assertTrue(cartRepository.findById(pat).isEmpty());
+    }
+
+    @Test
+    void manySpilledCartsAreAllKept() {
+        List<UUID> customers = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            UUID customer = UUID.randomUUID();
+            customers.add(customer);
+            cartRepository.save(cart(i), customer);
+            if (i % 3 == 0)
+                cartRepository.deleteById(customers.get(i / 2));
+        }
+        long expected = 5000 - 5000 / 3;
+        assertEquals(expected, cartRepository.count());
+        int found = 0;
+        for (Set<Item> cart : cartRepository.findAll()) {
+            found++;
+        }
+        assertEquals(expected, found);
+        assertEquals(Optional.of(cart(4999)), cartRepository.findById(customers.get(4998)));
+        assertEquals(Optional.of(cart(1)), cartRepository.findById(customers.get(0)));
+        cartRepository.deleteAll();
+        assertEquals(0, cartRepository.count());
+        assertFalse(cartRepository.existsById(customers.get(4998)));
+    }
+
+    // more customers than the budget, their carts being spilled and restored all along
+    @Test
+    void concurrentUpdatesOfACartAddUp() throws InterruptedException {
+        List<UUID> customers = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            customers.add(UUID.randomUUID());
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    cartRepository.update(customers.get(i % customers.size()), cart -> {
+                        Set<Item> updated = new HashSet<>();
+                        int quantity = 1;
+                        for (Item item : cart)
+                            quantity += item.getQuantity();
+                        updated.add(new Item(Cookies.CHOCOLALALA, quantity));
+                        return updated;
+                    });
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers)
+            writer.join();
+        for (UUID customer : customers)
+            assertEquals(Optional.of(Set.of(new Item(Cookies.CHOCOLALALA, 4_000))), cartRepository.findById(customer));
+        assertEquals(customers.size(), cartRepository.count());
+        assertTrue(cartRepository.metrics().getRestores() > 0);
+    }
+
+    @Test
+    void takenCartsAreGone() {
+        UUID john = UUID.randomUUID();
+        cartRepository.save(cart(1), john);
+        cartRepository.save(cart(2), UUID.randomUUID());
+        cartRepository.save(cart(3), UUID.randomUUID()); // john is spilled
+        assertEquals(Optional.of(cart(1)), cartRepository.remove(john));
+        assertEquals(Optional.empty(), cartRepository.remove(john));
+        assertEquals(2, cartRepository.count());
+    }
+
+}
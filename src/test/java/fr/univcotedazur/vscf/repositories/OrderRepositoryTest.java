@@ -0,0 +1,183 @@
+package fr.univcotedazur.vscf.repositories;
+
+import fr.univcotedazur.vscf.MutableClock;
+import fr.univcotedazur.vscf.entities.Cookies;
+import fr.univcotedazur.vscf.entities.Customer;
+import fr.univcotedazur.vscf.entities.Item;
+import fr.univcotedazur.vscf.entities.Order;
+import fr.univcotedazur.vscf.entities.OrderPage;
+import fr.univcotedazur.vscf.entities.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderRepositoryTest {
+
+    OrderRepository orderRepository;
+
+    Customer john;
+    Customer pat;
+
+    @BeforeEach
+    void setup() {
+        orderRepository = new OrderRepository(3);
+        john = new Customer("john", "1234567890");
+        pat = new Customer("pat", "0987654321");
+    }
+
+    private Order order(Customer customer) {
+        Order order = new Order(customer, Set.of(new Item(Cookies.CHOCOLALALA, 1)));
+        orderRepository.save(order, order.getId());
+        return order;
+    }
+
+    @Test
+    void historyIsBoundedAndNewestFirst() {
+        Order first = order(john);
+        Order second = order(john);
+        Order third = order(john);
+        Order fourth = order(john);
+        order(pat);
+        assertEquals(List.of(fourth, third, second), orderRepository.findByCustomerId(john.getId(), 0, 10));
+        assertEquals(5, orderRepository.count());
+        assertTrue(orderRepository.existsById(first.getId()));
+    }
+
+    @Test
+    void savingTwiceIndexesOnce() {
+        Order order = order(john);
+        orderRepository.save(order, order.getId());
+        assertEquals(List.of(order), orderRepository.findByCustomerId(john.getId(), 0, 10));
+    }
+
+    @Test
+    void concurrentSavesIndexOnce() throws InterruptedException {
+        Order order = new Order(john, Set.of(new Item(Cookies.CHOCOLALALA, 1)));
+        List<Thread> savers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread saver = new Thread(() -> orderRepository.save(order, order.getId()));
+            savers.add(saver);
+        }
+        savers.forEach(Thread::start);
+        for (Thread saver : savers)
+            saver.join();
+        assertEquals(List.of(order), orderRepository.findByCustomerId(john.getId(), 0, 10));
+    }
+
+    @Test
+    void deletedOrdersLeaveTheHistory() {
+        Order first = order(john);
+        Order second = order(john);
+        Order third = order(john);
+        orderRepository.deleteById(second.getId());
+        assertEquals(List.of(third, first), orderRepository.findByCustomerId(john.getId(), 0, 2));
+        Order fourth = order(john);
+        assertEquals(List.of(fourth, third, first), orderRepository.findByCustomerId(john.getId(), 0, 10));
+        orderRepository.deleteById(fourth.getId());
+        orderRepository.deleteById(third.getId());
+        assertEquals(List.of(first), orderRepository.findByCustomerId(john.getId(), 0, 10));
+        orderRepository.deleteAll();
+        assertTrue(orderRepository.findByCustomerId(john.getId(), 0, 10).isEmpty());
+    }
+
+    @Test
+    void ordersAreIndexedByStatusOldestFirst() {
+        Order first = order(john);
+        Order second = order(pat);
+        Order third = order(john);
+        assertEquals(List.of(first, second, third), orderRepository.findByStatus(OrderStatus.VALIDATED, 0, 10).getOrders());
+        orderRepository.save(second.withStatus(OrderStatus.IN_PROGRESS), second.getId());
+        orderRepository.save(first.withStatus(OrderStatus.IN_PROGRESS), first.getId());
+        orderRepository.update(second.getId(), o -> o.withStatus(OrderStatus.READY));
+        orderRepository.save(first.withStatus(OrderStatus.IN_PROGRESS), first.getId());
+        assertEquals(List.of(third), orderRepository.findByStatus(OrderStatus.VALIDATED, 0, 10).getOrders());
+        assertEquals(List.of(first), orderRepository.findByStatus(OrderStatus.IN_PROGRESS, 0, 10).getOrders());
+        assertEquals(List.of(second.getId()), orderRepository.findByStatus(OrderStatus.READY, 0, 10).getOrders().stream().map(Order::getId).toList());
+        assertEquals(1, orderRepository.countByStatus(OrderStatus.READY));
+        orderRepository.deleteById(second.getId());
+        assertEquals(0, orderRepository.countByStatus(OrderStatus.READY));
+        orderRepository.deleteAll();
+        assertEquals(0, orderRepository.countByStatus(OrderStatus.VALIDATED));
+        assertEquals(0, orderRepository.countByStatus(OrderStatus.IN_PROGRESS));
+    }
+
+    @Test
+    void statusPagesFollowTheArrivalInTheStatus() {
+        Order[] orders = new Order[5];
+        for (int i = 0; i < orders.length; i++)
+            orders[i] = order(i % 2 == 0 ? john : pat);
+        OrderPage page = orderRepository.findByStatus(OrderStatus.VALIDATED, 0, 2);
+        assertEquals(List.of(orders[0], orders[1]), page.getOrders());
+        orderRepository.save(orders[2].withStatus(OrderStatus.IN_PROGRESS), orders[2].getId());
+        orderRepository.save(orders[0].withStatus(OrderStatus.IN_PROGRESS), orders[0].getId());
+        page = orderRepository.findByStatus(OrderStatus.VALIDATED, page.getNext(), 2);
+        assertEquals(List.of(orders[3], orders[4]), page.getOrders());
+        page = orderRepository.findByStatus(OrderStatus.VALIDATED, page.getNext(), 2);
+        assertTrue(page.getOrders().isEmpty());
+        orderRepository.save(orders[2], orders[2].getId());
+        assertEquals(List.of(orders[2]), orderRepository.findByStatus(OrderStatus.VALIDATED, page.getNext(), 2).getOrders());
+        assertEquals(4, orderRepository.countByStatus(OrderStatus.VALIDATED));
+    }
+
+    // a cursor never passes a position still being written: read page by page while the orders
+    // arrive, each order is seen once
+    @Test
+    void concurrentArrivalsAreNeverSkipped() throws Exception {
+        int writers = 4;
+        int perWriter = 5_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++)
+                    order(i % 2 == 0 ? john : pat);
+            });
+            writer.start();
+            threads.add(writer);
+        }
+        Set<Order> seen = new HashSet<>();
+        long cursor = 0;
+        while (seen.size() < writers * perWriter) {
+            OrderPage page = orderRepository.findByStatus(OrderStatus.VALIDATED, cursor, 100);
+            for (Order order : page.getOrders())
+                assertTrue(seen.add(order), "read twice");
+            if (page.getOrders().isEmpty() && threads.stream().noneMatch(Thread::isAlive)
+                    && orderRepository.findByStatus(OrderStatus.VALIDATED, cursor, 100).getOrders().isEmpty())
+                break;
+            cursor = page.getNext();
+        }
+        for (Thread writer : threads)
+            writer.join();
+        assertEquals(writers * perWriter, seen.size());
+        assertEquals(writers * perWriter, orderRepository.countByStatus(OrderStatus.VALIDATED));
+    }
+
+    @Test
+    void readyOrdersAreDeletedAfterTheirRetention() {
+        MutableClock clock = new MutableClock(Instant.parse("2022-11-01T10:00:00Z"));
+        orderRepository = new OrderRepository(3, Duration.ofDays(30), clock);
+        Order inProgress = order(john);
+        Order ready = order(john).withStatus(OrderStatus.READY);
+        orderRepository.save(ready, ready.getId());
+        clock.advance(Duration.ofDays(20));
+        Order readyLater = orderRepository.update(inProgress.getId(), o -> o.withStatus(OrderStatus.READY)).get();
+        assertEquals(2, orderRepository.expiring());
+        clock.advance(Duration.ofDays(10).minusSeconds(1));
+        assertEquals(2, orderRepository.count());
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(List.of(readyLater), orderRepository.findByCustomerId(john.getId(), 0, 10));
+        assertEquals(List.of(readyLater), orderRepository.findByStatus(OrderStatus.READY, 0, 10).getOrders());
+        clock.advance(Duration.ofDays(20));
+        assertTrue(orderRepository.findByCustomerId(john.getId(), 0, 10).isEmpty());
+        assertEquals(0, orderRepository.count());
+        assertEquals(0, orderRepository.expiring());
+    }
+
+}
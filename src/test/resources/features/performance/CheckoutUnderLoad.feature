@@ -0,0 +1,32 @@
+@performance
+Feature: Checking out under load
+
+  This feature checks that the factory keeps its latencies and throughput when many customers
+  register, fill their cart and check out at the same time, on as many threads as cores.
+  The absolute bounds are generous, to hold on any build machine: the costs growing with the
+  number of customers are caught by comparing the latest calls with the first ones
+
+  Background:
+    Given the factory is warmed up with 2000 checkouts
+
+  Scenario: A rush of customers checking out
+    Given 10000 customers each ordering 5 cookies concurrently
+    Then every checkout succeeded
+    And p99 checkout latency is below 50 ms
+    And p99 cart update latency is below 20 ms
+    And p99 registration latency is below 20 ms
+    And checkout throughput is above 500 calls per second
+    And registration latency does not grow with the number of customers
+
+  Scenario: A rush of customers on a few threads
+    Given the load runs on 2 threads
+    And 5000 customers each ordering 3 cookies concurrently
+    Then every checkout succeeded
+    And p99 checkout latency is below 50 ms
+
+  Scenario: Tracking orders while the kitchen is busy
+    Given 2000 customers each ordering 3 cookies concurrently
+    When they each track their order 10 times concurrently
+    Then every tracking succeeded
+    And p99 tracking latency is below 10 ms
+    And tracking throughput is above 5000 calls per second